@@ -0,0 +1,124 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.hl7.fhir.r4.model.Bundle;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.parsing.ER7MessageIndex;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+import io.github.linuxforhealth.hl7.parsing.MSHHeader;
+import io.github.linuxforhealth.hl7.parsing.ParseMode;
+import io.github.linuxforhealth.hl7.parsing.SegmentFilter;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+/**
+ * Compares building the HAPI model of a message with reading its type from {@link MSHHeader}, and
+ * parsing a message that carries Z-segments with and without the {@link SegmentFilter}. The convert
+ * benchmarks measure the whole conversion of both messages in the default {@link ParseMode#HAPI}
+ * mode and in {@link ParseMode#REFERENCED_SEGMENTS}, which also pays for indexing the message.
+ * 
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="MessageParsingBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessageParsingBenchmark {
+
+    static final String CUSTOM_SEGMENTS_MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00004|P|2.6|\r"
+            + "EVN|A01|20130617154644|\r"
+            + "PID|1||12345678^^^MRN^MR||DOE^JANE||19700101|F|\r"
+            + "ZPD|1|A^B^C|D~E~F|20130617154644|GHI^JKL&MNO|\r"
+            + "ZPD|2|A^B^C|D~E~F|20130617154644|GHI^JKL&MNO|\r"
+            + "PV1|1|I|\r"
+            + "ZPV|1|A^B^C|D~E~F|20130617154644|GHI^JKL&MNO|\r"
+            + "ZPV|2|A^B^C|D~E~F|20130617154644|GHI^JKL&MNO|\r"
+            + "ZIN|1|A^B^C|D~E~F|20130617154644|GHI^JKL&MNO|\r"
+            + "AL1|1||^PENICILLIN|\r";
+
+    private HL7HapiParser parser;
+    private Set<String> referencedSegments;
+    private HL7ToFHIRConverter converter;
+    private ConverterOptions hapiOptions;
+    private ConverterOptions referencedSegmentsOptions;
+
+    @Setup
+    public void setup() {
+        parser = new HL7HapiParser();
+        referencedSegments = ResourceReader.getInstance().getMessageTemplates().get("ADT_A01")
+                .getReferencedSegments();
+        converter = new HL7ToFHIRConverter();
+        hapiOptions = new ConverterOptions.Builder().build();
+        referencedSegmentsOptions = new ConverterOptions.Builder().withParseMode(ParseMode.REFERENCED_SEGMENTS)
+                .build();
+    }
+
+    @Benchmark
+    public Message hapiParse() throws HL7Exception {
+        return parser.getParser().parse(PatientConversionBenchmark.PATIENT_MESSAGE);
+    }
+
+    @Benchmark
+    public String mshHeaderMessageType() {
+        return MSHHeader.peek(PatientConversionBenchmark.PATIENT_MESSAGE).getMessageType();
+    }
+
+    @Benchmark
+    public Message hapiParseCustomSegments() throws HL7Exception {
+        return parser.getParser().parse(CUSTOM_SEGMENTS_MESSAGE);
+    }
+
+    @Benchmark
+    public Message filteredParseCustomSegments() throws HL7Exception {
+        SegmentFilter filter = SegmentFilter.filter(ER7MessageIndex.index(CUSTOM_SEGMENTS_MESSAGE),
+                referencedSegments);
+        return parser.getParser().parse(filter.hasSkippedSegments() ? filter.getText() : CUSTOM_SEGMENTS_MESSAGE);
+    }
+
+    @Benchmark
+    public Bundle convertHapi() {
+        return converter.convertToBundle(PatientConversionBenchmark.PATIENT_MESSAGE, hapiOptions, null);
+    }
+
+    @Benchmark
+    public Bundle convertReferencedSegments() {
+        return converter.convertToBundle(PatientConversionBenchmark.PATIENT_MESSAGE, referencedSegmentsOptions,
+                null);
+    }
+
+    @Benchmark
+    public Bundle convertHapiCustomSegments() {
+        return converter.convertToBundle(CUSTOM_SEGMENTS_MESSAGE, hapiOptions, null);
+    }
+
+    @Benchmark
+    public Bundle convertReferencedSegmentsCustomSegments() {
+        return converter.convertToBundle(CUSTOM_SEGMENTS_MESSAGE, referencedSegmentsOptions, null);
+    }
+
+}
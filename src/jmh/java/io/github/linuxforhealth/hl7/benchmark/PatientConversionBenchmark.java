@@ -0,0 +1,66 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Measures the throughput and allocation rate of converting an ADT_A01 message with a fully
+ * populated PID segment. Run it with the GC profiler to see the allocation rate per operation:
+ * 
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="PatientConversionBenchmark -prof gc"
+ * </pre>
+ * 
+ * The gc.alloc.rate.norm metric (bytes allocated per conversion) is the number to compare between
+ * runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PatientConversionBenchmark {
+
+    static final String PATIENT_MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00001|P|2.6|\r"
+            + "EVN|A01|20130617154644||||20130617154644|\r"
+            + "PID|1||12345678^^^MRN^MR~ABC1234^^^SSN^SS||DOE^JANE^ANN^^MRS^^L~DOE^JANIE^^^^^N||19800202|F||2106-3^White^CDCREC|"
+            + "1234 W FIRST ST^APT 5^BEVERLY HILLS^CA^90210^USA^H||^PRN^PH^^^555^5555555~^NET^Internet^jane@example.com|"
+            + "^WPN^PH^^^555^6666666|ENG^English^ISO639|M^Married^HL70002|CHR^Christian^HL70006|ACCT123^^^MRN^AN||||"
+            + "N^Not Hispanic or Latino^HL70189|BIRTH CITY|Y|2||||20200101|Y|\r"
+            + "PV1|1|I|6N^1234^A^GENERAL HOSPITAL2||||0100^ANDERSON^CARL|0148^ADDISON^JAMES||SUR|||||||0148^ANDERSON^CARL|S|1400|A|||||||||||||||||||SF|K||||20130617154644||||||\r";
+
+    private HL7ToFHIRConverter converter;
+    private ConverterOptions options;
+
+    @Setup
+    public void setup() {
+        converter = new HL7ToFHIRConverter();
+        options = new ConverterOptions.Builder().build();
+    }
+
+    @Benchmark
+    public Bundle convertPatient() {
+        return converter.convertToBundle(PATIENT_MESSAGE, options, null);
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+/**
+ * Measures conversion of sparse messages, where most segments carry only a few fields and most
+ * template expressions find no data. This is the path that used to be dominated by exceptions
+ * thrown and caught for every absent segment, field and component.
+ * 
+ * <pre>
+ * ./gradlew jmh -PjmhArgs="SparseMessageConversionBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SparseMessageConversionBenchmark {
+
+    static final String SPARSE_ADT_MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+            + "EVN|A01|20130617154644|\r"
+            + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+            + "PV1|1|I|\r"
+            + "AL1|1||^PENICILLIN|\r"
+            + "DG1|1||I10^Hypertension|\r";
+
+    static final String SPARSE_ORU_MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ORU^R01|MSG00003|P|2.6|\r"
+            + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+            + "OBR|1||ORD1|1554-5^GLUCOSE|\r"
+            + "OBX|1|NM|1554-5^GLUCOSE||182|\r"
+            + "OBX|2|ST|2345-7^NOTE||normal|\r"
+            + "OBX|3|NM|\r";
+
+    private HL7ToFHIRConverter converter;
+    private ConverterOptions options;
+
+    @Setup
+    public void setup() {
+        converter = new HL7ToFHIRConverter();
+        options = new ConverterOptions.Builder().build();
+    }
+
+    @Benchmark
+    public Bundle convertSparseAdt() {
+        return converter.convertToBundle(SPARSE_ADT_MESSAGE, options, null);
+    }
+
+    @Benchmark
+    public Bundle convertSparseOru() {
+        return converter.convertToBundle(SPARSE_ORU_MESSAGE, options, null);
+    }
+
+}
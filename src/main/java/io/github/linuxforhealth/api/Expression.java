@@ -42,7 +42,10 @@ public interface Expression {
   List<Specification> getspecs();
 
   /**
-   * Evaluates the expression and returns the GenericResult Object
+   * Evaluates the expression and returns the GenericResult Object. A required expression that
+   * cannot produce a value returns
+   * {@link io.github.linuxforhealth.core.expression.EvaluationResultFactory#getRequiredConstraintFailureResult()}
+   * instead of throwing.
    * 
    * @param primaryDataSource {@link InputDataExtractor} input data
    * @param contextValues - Map of values for variables
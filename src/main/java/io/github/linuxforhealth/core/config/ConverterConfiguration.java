@@ -24,6 +24,7 @@ import org.apache.commons.configuration2.io.FileLocationStrategy;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
 
 public class ConverterConfiguration {
   private static final Logger LOGGER = LoggerFactory.getLogger(ConverterConfiguration.class);
@@ -34,8 +35,18 @@ public class ConverterConfiguration {
   private static final String CONFIG_PROPERTIES = "config.properties";
   private static final String ADDITIONAL_CONCEPT_MAPS_FILE = "additional.conceptmap.file";
   private static final String ADDITIONAL_RESOURCES_LOCATION = "additional.resources.location";
+  private static final String DIAGNOSTICS_VERBOSITY = "diagnostics.verbosity";
+  private static final String DIAGNOSTICS_SAMPLE_LIMIT = "diagnostics.sample.limit";
+  private static final int DEFAULT_DIAGNOSTICS_SAMPLE_LIMIT = 20;
+  private static final String DIAGNOSTICS_EVALUATION_PATH = "diagnostics.evaluation.path";
+  private static final String TEMPLATE_SNAPSHOT_FILE = "template.snapshot.file";
+  private static final String TEMPLATE_LOADING_LAZY = "template.loading.lazy";
+  private static final String TEMPLATE_WARMUP_MESSAGES = "template.warmup.messages";
+  private static final String TEMPLATE_LOADING_THREADS = "template.loading.threads";
+  private static final String TEMPLATE_ANALYSIS = "template.analysis";
 
-  private static ConverterConfiguration configuration;
+  private static volatile ConverterConfiguration configuration;
+  private static final ThreadLocal<ConverterConfiguration> BOUND = new ThreadLocal<>();
 
   private String resourceFolder;
   private boolean resourcefromClassPath;
@@ -43,6 +54,14 @@ public class ConverterConfiguration {
   private ZoneId zoneId;
   private String additionalConceptmapFile;
   private String additionalResourcesLocation;
+  private DiagnosticsVerbosity diagnosticsVerbosity = DiagnosticsVerbosity.COUNT;
+  private int diagnosticsSampleLimit;
+  private boolean evaluationPathTracked;
+  private String templateSnapshotFile;
+  private boolean templateLoadingLazy;
+  private List<String> templateWarmupMessages;
+  private int templateLoadingThreads;
+  private TemplateAnalysisMode templateAnalysisMode = TemplateAnalysisMode.OFF;
 
   private ConverterConfiguration() {
     try {
@@ -92,6 +111,33 @@ public class ConverterConfiguration {
       // get additional resources location
       additionalResourcesLocation = config.getString(ADDITIONAL_RESOURCES_LOCATION, null);
 
+      // get diagnostics verbosity and sample limit
+      String verbosityText = config.getString(DIAGNOSTICS_VERBOSITY, null);
+      if (StringUtils.isNotBlank(verbosityText)) {
+        getDiagnosticsVerbosity(verbosityText);
+      }
+      diagnosticsSampleLimit =
+          Math.max(0, config.getInt(DIAGNOSTICS_SAMPLE_LIMIT, DEFAULT_DIAGNOSTICS_SAMPLE_LIMIT));
+      evaluationPathTracked = config.getBoolean(DIAGNOSTICS_EVALUATION_PATH, true);
+
+      // get template snapshot file
+      templateSnapshotFile = StringUtils.trimToNull(config.getString(TEMPLATE_SNAPSHOT_FILE, null));
+
+      // get lazy template loading and the message templates loaded up front
+      templateLoadingLazy = config.getBoolean(TEMPLATE_LOADING_LAZY, false);
+      templateWarmupMessages = config.getList(String.class, TEMPLATE_WARMUP_MESSAGES, new ArrayList<>()).stream()
+          .filter(StringUtils::isNotBlank).map(String::trim).collect(Collectors.toList());
+
+      // get number of threads that compile the templates
+      templateLoadingThreads = Math.max(1,
+          config.getInt(TEMPLATE_LOADING_THREADS, Runtime.getRuntime().availableProcessors()));
+
+      // get analysis of the message templates when they are loaded
+      String analysisText = config.getString(TEMPLATE_ANALYSIS, null);
+      if (StringUtils.isNotBlank(analysisText)) {
+        getTemplateAnalysisMode(analysisText);
+      }
+
     } catch (ConfigurationException e) {
       throw new IllegalStateException("Cannot read configuration for resource location", e);
     }
@@ -107,13 +153,69 @@ public class ConverterConfiguration {
     }
   }
 
+  private void getDiagnosticsVerbosity(String verbosityText) {
+    try {
+      diagnosticsVerbosity = DiagnosticsVerbosity.valueOf(verbosityText.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Cannot read diagnostics verbosity, using {}", diagnosticsVerbosity);
+      LOGGER.debug("Cannot read diagnostics verbosity from :" + verbosityText, e);
+    }
+  }
+
+  private void getTemplateAnalysisMode(String analysisText) {
+    try {
+      templateAnalysisMode = TemplateAnalysisMode.valueOf(analysisText.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Cannot read template analysis mode, using {}", templateAnalysisMode);
+      LOGGER.debug("Cannot read template analysis mode from :" + analysisText, e);
+    }
+  }
+
+  /**
+   * Returns the configuration bound to the current thread by {@link #bind(ConverterConfiguration)},
+   * otherwise the configuration read from config.properties when first needed.
+   * 
+   * @return The configuration
+   */
   public static ConverterConfiguration getInstance() {
+    ConverterConfiguration bound = BOUND.get();
+    if (bound != null) {
+      return bound;
+    }
     if (configuration == null) {
       configuration = new ConverterConfiguration();
     }
     return configuration;
   }
 
+  /**
+   * Reads config.properties again, without changing the configuration returned by
+   * {@link #getInstance()}.
+   * 
+   * @return The configuration read
+   * @throws IllegalStateException if the configuration cannot be read
+   */
+  public static ConverterConfiguration load() {
+    return new ConverterConfiguration();
+  }
+
+  /**
+   * Makes {@link #getInstance()} return the configuration on the current thread, until this method
+   * is called again with the binding it returned.
+   * 
+   * @param config Configuration to use, null to use the configuration read when first needed
+   * @return The configuration bound before, null if none
+   */
+  public static ConverterConfiguration bind(ConverterConfiguration config) {
+    ConverterConfiguration previous = BOUND.get();
+    if (config != null) {
+      BOUND.set(config);
+    } else {
+      BOUND.remove();
+    }
+    return previous;
+  }
+
   public static void reset() {
     configuration = null;
   }
@@ -146,4 +248,81 @@ public class ConverterConfiguration {
     return additionalResourcesLocation;
   }
 
+  /**
+   * Returns the diagnostics verbosity used when the converter options do not set one. Defaults to
+   * {@link DiagnosticsVerbosity#COUNT}.
+   * 
+   * @return {@link DiagnosticsVerbosity}
+   */
+  public DiagnosticsVerbosity getDiagnosticsVerbosity() {
+    return diagnosticsVerbosity;
+  }
+
+  public int getDiagnosticsSampleLimit() {
+    return diagnosticsSampleLimit;
+  }
+
+  /**
+   * Returns whether the resource and expressions being evaluated are tracked so that diagnostics
+   * and error logs can report where they happened. Defaults to true.
+   * 
+   * @return true if the evaluation path is tracked
+   */
+  public boolean isEvaluationPathTracked() {
+    return evaluationPathTracked;
+  }
+
+  /**
+   * Returns the file of the compiled template snapshot the converter reads at startup instead of the
+   * YAML templates, and writes when it is missing or out of date. Not set by default.
+   * 
+   * @return path of the snapshot file, null if no snapshot is used
+   */
+  public String getTemplateSnapshotFile() {
+    return templateSnapshotFile;
+  }
+
+  /**
+   * Returns whether each message template is loaded the first time a message of its type is
+   * converted, instead of all templates when the converter is created. Defaults to false. Not used
+   * when a template snapshot is configured, the snapshot holds all templates.
+   * 
+   * @return true if message templates are loaded on first use
+   */
+  public boolean isTemplateLoadingLazy() {
+    return templateLoadingLazy;
+  }
+
+  /**
+   * Returns the message types whose templates are loaded when the converter is created, with lazy
+   * template loading.
+   * 
+   * @return List of message types, empty if none
+   */
+  public List<String> getTemplateWarmupMessages() {
+    return templateWarmupMessages;
+  }
+
+  /**
+   * Returns the number of threads that compile the resource templates of the message templates
+   * being loaded. Defaults to the number of available processors, 1 loads them on the calling
+   * thread.
+   * 
+   * @return Number of template loading threads, at least 1
+   */
+  public int getTemplateLoadingThreads() {
+    return templateLoadingThreads;
+  }
+
+  /**
+   * Returns what is done with the analysis of each message template when it is loaded, see
+   * {@link io.github.linuxforhealth.hl7.resource.TemplateAnalyzer}. Defaults to
+   * {@link TemplateAnalysisMode#OFF}.
+   * 
+   * @return {@link TemplateAnalysisMode}
+   */
+  public TemplateAnalysisMode getTemplateAnalysisMode() {
+    return templateAnalysisMode;
+  }
+
 }
@@ -0,0 +1,25 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.config;
+
+/**
+ * Controls the analysis of each message template when it is loaded.
+ */
+public enum TemplateAnalysisMode {
+
+  /** Templates are not analyzed. */
+  OFF,
+
+  /** The analysis of each template is written to the log. */
+  REPORT,
+
+  /**
+   * The analysis of each template is written to the log, and expressions that can never produce a
+   * value are removed from the resources of the template.
+   */
+  PRUNE;
+
+}
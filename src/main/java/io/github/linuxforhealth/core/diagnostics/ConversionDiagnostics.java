@@ -0,0 +1,94 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diagnostic events collected while converting one message: a count per
+ * {@link DiagnosticEventType} and, depending on the verbosity, a bounded sample of the events.
+ */
+public final class ConversionDiagnostics {
+
+  private final DiagnosticsVerbosity verbosity;
+  private final Map<DiagnosticEventType, Integer> counts;
+  private final List<DiagnosticEvent> samples;
+  private final int droppedSamples;
+
+  ConversionDiagnostics(DiagnosticsVerbosity verbosity, Map<DiagnosticEventType, Integer> counts,
+      List<DiagnosticEvent> samples, int droppedSamples) {
+    this.verbosity = verbosity;
+    this.counts = Collections.unmodifiableMap(new EnumMap<>(counts));
+    this.samples = samples.isEmpty() ? Collections.emptyList()
+        : Collections.unmodifiableList(samples);
+    this.droppedSamples = droppedSamples;
+  }
+
+  /**
+   * Returns diagnostics with no events, as reported when collection is switched off.
+   * 
+   * @return empty {@link ConversionDiagnostics}
+   */
+  public static ConversionDiagnostics empty() {
+    return new ConversionDiagnostics(DiagnosticsVerbosity.OFF,
+        new EnumMap<>(DiagnosticEventType.class), Collections.emptyList(), 0);
+  }
+
+  public DiagnosticsVerbosity getVerbosity() {
+    return verbosity;
+  }
+
+  /**
+   * Returns the number of events of each type. Types without events are not included.
+   * 
+   * @return map of event type to count
+   */
+  public Map<DiagnosticEventType, Integer> getCounts() {
+    return counts;
+  }
+
+  public int getCount(DiagnosticEventType type) {
+    return counts.getOrDefault(type, 0);
+  }
+
+  public int getTotalCount() {
+    int total = 0;
+    for (int count : counts.values()) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * Returns the sampled events in the order they were raised. Empty unless the verbosity is
+   * {@link DiagnosticsVerbosity#SAMPLE} or {@link DiagnosticsVerbosity#LOG}.
+   * 
+   * @return list of {@link DiagnosticEvent}
+   */
+  public List<DiagnosticEvent> getSamples() {
+    return samples;
+  }
+
+  /**
+   * Returns the number of events that were counted but not sampled because the sample limit was
+   * reached.
+   * 
+   * @return number of events not sampled
+   */
+  public int getDroppedSamples() {
+    return droppedSamples;
+  }
+
+  @Override
+  public String toString() {
+    return "ConversionDiagnostics [verbosity=" + verbosity + ", counts=" + counts + ", samples="
+        + samples.size() + ", droppedSamples=" + droppedSamples + "]";
+  }
+
+}
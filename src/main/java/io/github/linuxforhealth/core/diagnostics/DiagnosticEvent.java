@@ -0,0 +1,58 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+/**
+ * A sampled diagnostic event. The message only carries structural details such as segment names
+ * and field positions, never message content.
+ */
+public final class DiagnosticEvent {
+
+  private final DiagnosticEventType type;
+  private final String source;
+  private final String path;
+  private final String message;
+
+  public DiagnosticEvent(DiagnosticEventType type, String source, String path, String message) {
+    this.type = type;
+    this.source = source;
+    this.path = path;
+    this.message = message;
+  }
+
+  public DiagnosticEventType getType() {
+    return type;
+  }
+
+  /**
+   * Returns the name of the logger that raised the event, normally the class name.
+   * 
+   * @return source of the event
+   */
+  public String getSource() {
+    return source;
+  }
+
+  /**
+   * Returns the resource and expressions that were being evaluated when the event was raised, in
+   * the form {@code Resource-> Field:name-> Field:name}.
+   * 
+   * @return evaluation path, null if the path was not tracked
+   */
+  public String getPath() {
+    return path;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  @Override
+  public String toString() {
+    return type + " " + source + (path != null ? " [" + path + "]" : "") + ": " + message;
+  }
+
+}
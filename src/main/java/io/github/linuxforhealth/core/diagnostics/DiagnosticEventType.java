@@ -0,0 +1,41 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+import org.slf4j.event.Level;
+
+/**
+ * Kinds of events collected by {@link DiagnosticsCollector}. Each kind carries the level it is
+ * logged at when the verbosity is {@link DiagnosticsVerbosity#LOG}.
+ */
+public enum DiagnosticEventType {
+
+  /** A segment, field or component could not be extracted from the message. */
+  MISSING_DATA(Level.WARN),
+
+  /** A value was present but could not be converted to the requested type. */
+  INVALID_VALUE(Level.WARN),
+
+  /** An expression could not be evaluated. */
+  EXPRESSION_FAILURE(Level.WARN),
+
+  /** A resource was dropped because a required expression did not produce a value. */
+  REQUIRED_CONSTRAINT_FAILURE(Level.WARN),
+
+  /** An expression or data function was evaluated. */
+  EVALUATION_TRACE(Level.INFO);
+
+  private final Level level;
+
+  DiagnosticEventType(Level level) {
+    this.level = level;
+  }
+
+  public Level getLevel() {
+    return level;
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.slf4j.helpers.MessageFormatter;
+import com.google.common.base.Preconditions;
+
+/**
+ * Collects the diagnostic events raised while converting one message. Missing segments, fields and
+ * components are common in HL7 data, so these events are counted here instead of being logged one
+ * by one.
+ * <p>
+ * A collector is bound to the converting thread by {@link #start(DiagnosticsVerbosity, int)} and
+ * unbound by {@link #close()}. Code on the evaluation path reports events through the static
+ * {@code record} methods, which do nothing when no collector is bound. The messages passed to
+ * {@code record} use SLF4J {@code {}} placeholders and are only formatted when the event is sampled
+ * or logged. Arguments must not contain message content (PHI); pass segment names and positions.
+ * <p>
+ * The collector also tracks the evaluation path, the resource and expressions being evaluated, via
+ * {@link #enter(String)} and {@link #exit()}. The path is rendered only when an event is sampled or
+ * logged, or when {@link #withPathInMdc(Runnable)} is used around an error log statement.
+ */
+public final class DiagnosticsCollector implements AutoCloseable {
+
+  private static final ThreadLocal<DiagnosticsCollector> CURRENT = new ThreadLocal<>();
+  private static final DiagnosticEventType[] TYPES = DiagnosticEventType.values();
+
+  /** MDC key the evaluation path is published under, referenced by log patterns. */
+  public static final String PATH_MDC_KEY = "Resource";
+
+  private final DiagnosticsVerbosity verbosity;
+  private final int sampleLimit;
+  private final DiagnosticsCollector previous;
+  private final EvaluationPath path;
+  private final int[] counts = new int[TYPES.length];
+  private final List<DiagnosticEvent> samples = new ArrayList<>();
+  private int droppedSamples;
+
+  private DiagnosticsCollector(DiagnosticsVerbosity verbosity, int sampleLimit,
+      boolean trackPath, DiagnosticsCollector previous) {
+    this.verbosity = verbosity;
+    this.sampleLimit = sampleLimit;
+    this.path = trackPath ? new EvaluationPath() : null;
+    this.previous = previous;
+  }
+
+  /**
+   * Starts collecting events raised on the current thread, with evaluation path tracking. Must be
+   * closed on the same thread.
+   * 
+   * @param verbosity how much to collect for each event
+   * @param sampleLimit maximum number of events sampled
+   * @return the collector bound to the current thread
+   */
+  public static DiagnosticsCollector start(DiagnosticsVerbosity verbosity, int sampleLimit) {
+    return start(verbosity, sampleLimit, true);
+  }
+
+  /**
+   * Starts collecting events raised on the current thread. Must be closed on the same thread.
+   * 
+   * @param verbosity how much to collect for each event
+   * @param sampleLimit maximum number of events sampled
+   * @param trackPath whether to track the evaluation path
+   * @return the collector bound to the current thread
+   */
+  public static DiagnosticsCollector start(DiagnosticsVerbosity verbosity, int sampleLimit,
+      boolean trackPath) {
+    Preconditions.checkArgument(verbosity != null, "verbosity cannot be null");
+    Preconditions.checkArgument(sampleLimit >= 0, "sampleLimit cannot be negative");
+    DiagnosticsCollector collector =
+        new DiagnosticsCollector(verbosity, sampleLimit, trackPath, CURRENT.get());
+    CURRENT.set(collector);
+    return collector;
+  }
+
+  /**
+   * Adds a resource or expression name to the evaluation path. Every call must be matched by a call
+   * to {@link #exit()}, normally in a finally block.
+   * 
+   * @param name resource or expression name
+   */
+  public static void enter(String name) {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null && collector.path != null) {
+      collector.path.push(name);
+    }
+  }
+
+  /**
+   * Removes the innermost name from the evaluation path.
+   */
+  public static void exit() {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null && collector.path != null) {
+      collector.path.pop();
+    }
+  }
+
+  /**
+   * Returns the current evaluation path in the form {@code Resource-> Field:name-> Field:name}.
+   * 
+   * @return the path, null if no path is tracked on the current thread
+   */
+  public static String currentPath() {
+    DiagnosticsCollector collector = CURRENT.get();
+    return collector != null && collector.path != null ? collector.path.render() : null;
+  }
+
+  /**
+   * Runs the action with the current evaluation path published to the MDC under
+   * {@link #PATH_MDC_KEY}, the previous MDC value is restored afterwards. Use it around log
+   * statements that should show where the evaluation failed:
+   * 
+   * <pre>
+   * DiagnosticsCollector.withPathInMdc(() -&gt; LOGGER.error(...));
+   * </pre>
+   * 
+   * @param action Action to run, usually a log statement
+   */
+  public static void withPathInMdc(Runnable action) {
+    withPathInMdc(currentPath(), action);
+  }
+
+  public static void record(Logger logger, DiagnosticEventType type, String message) {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null) {
+      collector.add(logger, type, message, 0, null, null, null);
+    }
+  }
+
+  public static void record(Logger logger, DiagnosticEventType type, String message,
+      Object arg1) {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null) {
+      collector.add(logger, type, message, 1, arg1, null, null);
+    }
+  }
+
+  public static void record(Logger logger, DiagnosticEventType type, String message, Object arg1,
+      Object arg2) {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null) {
+      collector.add(logger, type, message, 2, arg1, arg2, null);
+    }
+  }
+
+  public static void record(Logger logger, DiagnosticEventType type, String message, Object arg1,
+      Object arg2, Object arg3) {
+    DiagnosticsCollector collector = CURRENT.get();
+    if (collector != null) {
+      collector.add(logger, type, message, 3, arg1, arg2, arg3);
+    }
+  }
+
+  /**
+   * Returns the verbosity of the collector bound to the current thread.
+   * 
+   * @return {@link DiagnosticsVerbosity}, OFF if no collector is bound
+   */
+  public static DiagnosticsVerbosity currentVerbosity() {
+    DiagnosticsCollector collector = CURRENT.get();
+    return collector != null ? collector.verbosity : DiagnosticsVerbosity.OFF;
+  }
+
+  private void add(Logger logger, DiagnosticEventType type, String message, int argCount,
+      Object arg1, Object arg2, Object arg3) {
+    if (verbosity == DiagnosticsVerbosity.OFF) {
+      return;
+    }
+    counts[type.ordinal()]++;
+    if (verbosity == DiagnosticsVerbosity.COUNT) {
+      return;
+    }
+
+    Object[] args = new Object[argCount];
+    if (argCount > 0) {
+      args[0] = arg1;
+    }
+    if (argCount > 1) {
+      args[1] = arg2;
+    }
+    if (argCount > 2) {
+      args[2] = arg3;
+    }
+    String renderedPath = path != null ? path.render() : null;
+    if (samples.size() < sampleLimit) {
+      samples.add(new DiagnosticEvent(type, logger.getName(), renderedPath,
+          MessageFormatter.arrayFormat(message, args).getMessage()));
+    } else {
+      droppedSamples++;
+    }
+    if (verbosity == DiagnosticsVerbosity.LOG) {
+      withPathInMdc(renderedPath, () -> log(logger, type, message, args));
+    }
+  }
+
+  private static void log(Logger logger, DiagnosticEventType type, String message,
+      Object[] args) {
+    switch (type.getLevel()) {
+      case ERROR:
+        logger.error(message, args);
+        break;
+      case WARN:
+        logger.warn(message, args);
+        break;
+      case INFO:
+        logger.info(message, args);
+        break;
+      case DEBUG:
+        logger.debug(message, args);
+        break;
+      default:
+        logger.trace(message, args);
+        break;
+    }
+  }
+
+  public DiagnosticsVerbosity getVerbosity() {
+    return verbosity;
+  }
+
+  /**
+   * Returns a snapshot of the events collected so far.
+   * 
+   * @return {@link ConversionDiagnostics}
+   */
+  public ConversionDiagnostics getDiagnostics() {
+    Map<DiagnosticEventType, Integer> countsByType = new EnumMap<>(DiagnosticEventType.class);
+    for (DiagnosticEventType type : TYPES) {
+      if (counts[type.ordinal()] > 0) {
+        countsByType.put(type, counts[type.ordinal()]);
+      }
+    }
+    return new ConversionDiagnostics(verbosity, countsByType, new ArrayList<>(samples),
+        droppedSamples);
+  }
+
+  /**
+   * Unbinds this collector from the current thread and restores the collector that was bound
+   * before it, if any.
+   */
+  @Override
+  public void close() {
+    if (CURRENT.get() == this) {
+      if (previous != null) {
+        CURRENT.set(previous);
+      } else {
+        CURRENT.remove();
+      }
+    }
+  }
+
+  private static void withPathInMdc(String path, Runnable action) {
+    if (path == null) {
+      action.run();
+      return;
+    }
+    String previousValue = MDC.get(PATH_MDC_KEY);
+    MDC.put(PATH_MDC_KEY, path);
+    try {
+      action.run();
+    } finally {
+      if (previousValue != null) {
+        MDC.put(PATH_MDC_KEY, previousValue);
+      } else {
+        MDC.remove(PATH_MDC_KEY);
+      }
+    }
+  }
+
+}
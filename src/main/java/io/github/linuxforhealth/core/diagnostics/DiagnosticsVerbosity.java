@@ -0,0 +1,28 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+/**
+ * Controls how much work is done for each diagnostic event raised while converting a message.
+ */
+public enum DiagnosticsVerbosity {
+
+  /** Events are ignored. */
+  OFF,
+
+  /** Events are counted per {@link DiagnosticEventType}. */
+  COUNT,
+
+  /** Events are counted and the first events of each message are kept as samples. */
+  SAMPLE,
+
+  /**
+   * Events are counted and sampled, and every event is also written to the log of the class that
+   * raised it.
+   */
+  LOG;
+
+}
@@ -0,0 +1,60 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+import java.util.Arrays;
+
+/**
+ * Names of the resource and the expressions being evaluated, innermost last. Entering and leaving
+ * an expression only stores or clears an array slot; the path is turned into a string only when an
+ * event or error needs it.
+ */
+final class EvaluationPath {
+
+  private static final String SEPARATOR = "-> Field:";
+
+  private String[] names = new String[16];
+  private int depth;
+
+  void push(String name) {
+    if (depth == names.length) {
+      names = Arrays.copyOf(names, depth * 2);
+    }
+    names[depth++] = name;
+  }
+
+  void pop() {
+    if (depth > 0) {
+      names[--depth] = null;
+    }
+  }
+
+  int getDepth() {
+    return depth;
+  }
+
+  /**
+   * Renders the path in the form {@code Resource-> Field:name-> Field:name}.
+   * 
+   * @return the path, null if nothing is being evaluated
+   */
+  String render() {
+    if (depth == 0) {
+      return null;
+    }
+    StringBuilder path = new StringBuilder(names[0]);
+    for (int i = 1; i < depth; i++) {
+      path.append(SEPARATOR).append(names[i]);
+    }
+    return path.toString();
+  }
+
+  @Override
+  public String toString() {
+    return String.valueOf(render());
+  }
+
+}
@@ -5,7 +5,8 @@
  */
 package io.github.linuxforhealth.core.expression;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.ResourceValue;
@@ -17,14 +18,20 @@ import io.github.linuxforhealth.api.ResourceValue;
  *
  * @author pbhallam
  */
-public class EmptyEvaluationResult implements EvaluationResult {
+public class EmptyEvaluationResult implements EvaluationResult, Serializable {
 
+  private static final long serialVersionUID = 1L;
 
   @Override
   public Object getValue() {
     return null;
   }
 
+  // Keeps the shared instance of EvaluationResultFactory when a template snapshot is read.
+  private Object readResolve() {
+    return EvaluationResultFactory.getEmptyEvaluationResult();
+  }
+
   @Override
   public String toString() {
     return " Value : [ null ]";
@@ -48,8 +55,9 @@ public class EmptyEvaluationResult implements EvaluationResult {
   }
 
 
+  @Override
   public List<ResourceValue> getAdditionalResources() {
-    return new ArrayList<>();
+    return Collections.emptyList();
   }
 
 
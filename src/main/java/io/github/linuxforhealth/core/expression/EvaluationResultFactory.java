@@ -5,6 +5,8 @@
  */
 package io.github.linuxforhealth.core.expression;
 
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.List;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.ResourceValue;
@@ -12,14 +14,51 @@ import io.github.linuxforhealth.api.ResourceValue;
 
 public class EvaluationResultFactory {
 
+  // EmptyEvaluationResult carries no state, so a single shared instance represents every null value.
+  private static final EvaluationResult EMPTY_RESULT = new EmptyEvaluationResult();
+
+  // Returned by a required expression that evaluated to nothing. Missing data is common in HL7
+  // messages, so this is reported as a value rather than as an exception.
+  private static final EvaluationResult REQUIRED_CONSTRAINT_FAILURE =
+      new RequiredConstraintFailureResult();
+
   private EvaluationResultFactory() {}
 
+  /**
+   * Returns the shared empty result.
+   * 
+   * @return {@link EvaluationResult} that wraps null
+   */
+  public static EvaluationResult getEmptyEvaluationResult() {
+    return EMPTY_RESULT;
+  }
+
+  /**
+   * Returns the shared result that signals a required expression did not produce a value. It is
+   * empty, so callers that do not check for it treat it like any other missing value.
+   * 
+   * @return {@link EvaluationResult} marking a failed required constraint
+   */
+  public static EvaluationResult getRequiredConstraintFailureResult() {
+    return REQUIRED_CONSTRAINT_FAILURE;
+  }
+
+  /**
+   * Checks whether the result signals a failed required constraint.
+   * 
+   * @param result result returned by an expression, may be null
+   * @return true if the result is the required constraint failure marker
+   */
+  public static boolean isRequiredConstraintFailure(EvaluationResult result) {
+    return result == REQUIRED_CONSTRAINT_FAILURE;
+  }
+
   public static <V> EvaluationResult getEvaluationResult(V value,
       List<ResourceValue> additionalResources) {
     if (value != null) {
       return new SimpleEvaluationResult<>(value, additionalResources);
     } else {
-      return new EmptyEvaluationResult();
+      return EMPTY_RESULT;
     }
   }
 
@@ -27,11 +66,49 @@ public class EvaluationResultFactory {
     if (value != null) {
       return new SimpleEvaluationResult<>(value);
     } else {
-      return new EmptyEvaluationResult();
+      return EMPTY_RESULT;
     }
   }
 
 
-}
+  private static final class RequiredConstraintFailureResult implements EvaluationResult, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
+    @Override
+    public <V> V getValue() {
+      return null;
+    }
+
+    @Override
+    public String getIdentifier() {
+      return null;
+    }
 
+    @Override
+    public Class<?> getValueType() {
+      return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return true;
+    }
+
+    @Override
+    public List<ResourceValue> getAdditionalResources() {
+      return Collections.emptyList();
+    }
+
+    // Keeps the marker identity when a template snapshot is read.
+    private Object readResolve() {
+      return REQUIRED_CONSTRAINT_FAILURE;
+    }
+
+    @Override
+    public String toString() {
+      return " Value : [ required constraint not satisfied ]";
+    }
+  }
+
+}
@@ -5,7 +5,9 @@
  */
 package io.github.linuxforhealth.core.expression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import com.google.common.base.Preconditions;
@@ -22,7 +24,9 @@ import io.github.linuxforhealth.core.data.DataTypeUtil;
  * @param <V> The value to be evaluated
  * 
  */
-public class SimpleEvaluationResult<V> implements EvaluationResult {
+public class SimpleEvaluationResult<V> implements EvaluationResult, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private UUID groupId;
   private V value;
@@ -32,7 +36,7 @@ public class SimpleEvaluationResult<V> implements EvaluationResult {
 
 
   public SimpleEvaluationResult(V value) {
-    this(value, new ArrayList<>());
+    this(value, Collections.emptyList());
   }
 
 
@@ -44,24 +48,21 @@ public class SimpleEvaluationResult<V> implements EvaluationResult {
     this.value = value;
 
     this.klass = value.getClass();
-    this.klassName = DataTypeUtil.getDataType(value);
-    this.additionalResources = new ArrayList<>();
-    this.additionalResources.addAll(additionalResources);
+    this.additionalResources = immutableCopy(additionalResources);
     this.groupId = groupId;
 
   }
 
 
   public SimpleEvaluationResult(V value, List<ResourceValue> additionalResources) {
-    Preconditions.checkArgument(value != null, "value cannot be null");
-    Preconditions.checkArgument(additionalResources != null, "additionalResources cannot be null");
-    this.value = value;
-
-    this.klass = value.getClass();
-    this.klassName = DataTypeUtil.getDataType(value);
-    this.additionalResources = new ArrayList<>();
-    this.additionalResources.addAll(additionalResources);
+    this(value, additionalResources, null);
+  }
 
+  private static List<ResourceValue> immutableCopy(List<ResourceValue> additionalResources) {
+    if (additionalResources.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(new ArrayList<>(additionalResources));
   }
 
   @Override
@@ -72,7 +73,7 @@ public class SimpleEvaluationResult<V> implements EvaluationResult {
   @Override
   public String toString() {
     if (value != null) {
-      return "Type: [" + this.klassName + "] Value : [" + value.toString() + "]";
+      return "Type: [" + this.getIdentifier() + "] Value : [" + value.toString() + "]";
     } else {
       return "";
     }
@@ -84,8 +85,15 @@ public class SimpleEvaluationResult<V> implements EvaluationResult {
   }
 
 
+  /**
+   * The identifier is the HL7 data type name of the value. It is only needed when the value is
+   * added to a context map, so it is resolved on first use rather than for every result created.
+   */
   @Override
   public String getIdentifier() {
+    if (klassName == null) {
+      klassName = DataTypeUtil.getDataType(value);
+    }
     return klassName;
   }
 
@@ -94,8 +102,15 @@ public class SimpleEvaluationResult<V> implements EvaluationResult {
     return this.value == null;
   }
 
+  /**
+   * Returns the additional resources generated with this value. The list is immutable and is not
+   * copied on each call.
+   * 
+   * @return List of {@link ResourceValue}
+   */
+  @Override
   public List<ResourceValue> getAdditionalResources() {
-    return new ArrayList<>(additionalResources);
+    return additionalResources;
   }
 
   public UUID getGroupId() {
@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.core.expression.condition;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -12,7 +13,9 @@ import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.EvaluationResult;
 
-public class CompoundORCondition implements Condition {
+public class CompoundORCondition implements Condition, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private List<Condition> conditions;
 
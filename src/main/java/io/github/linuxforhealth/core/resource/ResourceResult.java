@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.core.resource;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.api.EvaluationResult;
@@ -36,7 +37,7 @@ public class ResourceResult implements EvaluationResult {
     Preconditions.checkArgument(resource != null, "resources cannot be null.");
     Preconditions.checkArgument(additionalResources != null, "additionalResources cannot be null.");
     this.resource = resource;
-    this.additionalResources = new ArrayList<>(additionalResources);
+    this.additionalResources = Collections.unmodifiableList(new ArrayList<>(additionalResources));
     this.groupId = groupId;
     this.pendingExpressions = pendingExpressions;
   }
@@ -44,7 +45,7 @@ public class ResourceResult implements EvaluationResult {
 
   @Override
   public List<ResourceValue> getAdditionalResources() {
-    return new ArrayList<>(additionalResources);
+    return additionalResources;
   }
 
   public String getGroupId() {
@@ -7,6 +7,7 @@ package io.github.linuxforhealth.core.terminology;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -14,6 +15,8 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.google.common.base.Preconditions;
+
 import com.fasterxml.jackson.core.type.TypeReference;
 
 import io.github.linuxforhealth.core.Constants;
@@ -26,10 +29,13 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
  * 
  * Load tables from files into a cache; provides lookup capability.
  * Use Constants (EXTENSION_URL_MAPPING, CODING_SYSTEM_MAPPING) for urlType.
+ * 
+ * The static methods look up the mappings bound to the current thread by {@link #bind(UrlLookup)},
+ * otherwise the mappings loaded with the current configuration. Loaded mappings do not change, a
+ * reset loads new mappings and replaces them as a whole, so a lookup never sees partial mappings.
  */
 public class UrlLookup {
 
-    static Map<String, Map<String, CodingSystem>> urlMaps = new HashMap<>(); // key is urlType
     static Map<String, String> urlMappingPaths; // key=urlType, value=resource mapping path
     static {
         urlMappingPaths = new HashMap<>();
@@ -37,6 +43,52 @@ public class UrlLookup {
         urlMappingPaths.put(Constants.EXTENSION_URL_MAPPING, Constants.EXTENSION_URL_MAPPING_PATH);
     }
 
+    private static volatile UrlLookup urlLookup;
+    private static final ThreadLocal<UrlLookup> BOUND = new ThreadLocal<>();
+
+    private final Map<String, Map<String, CodingSystem>> urlMaps; // key is urlType
+
+    private UrlLookup(Map<String, Map<String, CodingSystem>> urlMaps) {
+        this.urlMaps = Collections.unmodifiableMap(urlMaps);
+    }
+
+    /**
+     * Loads the mappings of all URL types from the resources of the reader and the additional
+     * concept map file of the configuration, without changing the mappings used by the static
+     * methods.
+     * 
+     * @param reader Reader of the mapping resources
+     * @param config Configuration naming the additional concept map file
+     * @return The mappings
+     * @throws IllegalArgumentException if a mapping file cannot be read
+     */
+    public static UrlLookup load(ResourceReader reader, ConverterConfiguration config) {
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        Preconditions.checkArgument(config != null, "config cannot be null");
+        Map<String, Map<String, CodingSystem>> urlMaps = new HashMap<>();
+        for (String urlType : urlMappingPaths.keySet()) {
+            urlMaps.put(urlType, loadUrlMap(urlType, reader, config));
+        }
+        return new UrlLookup(urlMaps);
+    }
+
+    /**
+     * Makes the static methods use the mappings on the current thread, until this method is called
+     * again with the binding it returned.
+     * 
+     * @param lookup Mappings to use, null to use the mappings loaded with the current configuration
+     * @return The mappings bound before, null if none
+     */
+    public static UrlLookup bind(UrlLookup lookup) {
+        UrlLookup previous = BOUND.get();
+        if (lookup != null) {
+            BOUND.set(lookup);
+        } else {
+            BOUND.remove();
+        }
+        return previous;
+    }
+
     /**
      * Get the extension URL
      * 
@@ -79,12 +131,23 @@ public class UrlLookup {
      * @return System result
      */
     public static String getUrl(String urlType, String value) {
-        Map<String, CodingSystem> urlMap = getUrlMap(urlType);
+        return current().lookup(urlType, value);
+    }
+
+    /**
+     * Get the system associated with the value for the URL set of these mappings.
+     * 
+     * @param urlType Which mapping type to use
+     * @param value The key for System lookup
+     * @return System result
+     */
+    public String lookup(String urlType, String value) {
         if (StringUtils.startsWith(value, "http://") || StringUtils.startsWith(value, "https://")
                 || StringUtils.startsWith(value, "urn")) {
             return value;
         } else if (value != null) {
-            CodingSystem system = urlMap.get(StringUtils.upperCase(value));
+            Map<String, CodingSystem> urlMap = urlMaps.get(urlType);
+            CodingSystem system = urlMap != null ? urlMap.get(StringUtils.upperCase(value)) : null;
             if (system != null) {
                 return system.getUrl();
             }
@@ -95,37 +158,53 @@ public class UrlLookup {
     /**
      * Reloads the urls from the file.
      */
-    public static void reset() {
-        urlMaps.clear();
-        getUrlMap(Constants.CODING_SYSTEM_MAPPING);
-        getUrlMap(Constants.EXTENSION_URL_MAPPING);
+    public static synchronized void reset() {
+        urlLookup = load(ResourceReader.getInstance(), ConverterConfiguration.getInstance());
     }
 
     public static void init() {
-        getUrlMap(Constants.CODING_SYSTEM_MAPPING);
-        getUrlMap(Constants.EXTENSION_URL_MAPPING);
+        current();
     }
 
-    public static void reset(String urlType) {
-        urlMaps.remove(urlType);
-        getUrlMap(urlType);
+    public static synchronized void reset(String urlType) {
+        Map<String, Map<String, CodingSystem>> urlMaps = new HashMap<>();
+        if (urlLookup != null) {
+            urlMaps.putAll(urlLookup.urlMaps);
+        }
+        urlMaps.put(urlType,
+                loadUrlMap(urlType, ResourceReader.getInstance(), ConverterConfiguration.getInstance()));
+        urlLookup = new UrlLookup(urlMaps);
     }
 
-    private static Map<String, CodingSystem> getUrlMap(String urlKey) {
-        if (urlMaps.get(urlKey) == null) {
-            Map<String, CodingSystem> urls = loadFromFile(urlKey);
-            urls.putAll(loadAdditionalFromFile());
-            urlMaps.put(urlKey, urls);
+    private static UrlLookup current() {
+        UrlLookup lookup = BOUND.get();
+        if (lookup == null) {
+            lookup = urlLookup;
         }
-        return urlMaps.get(urlKey);
+        if (lookup == null) {
+            synchronized (UrlLookup.class) {
+                if (urlLookup == null) {
+                    reset();
+                }
+                lookup = urlLookup;
+            }
+        }
+        return lookup;
+    }
+
+    private static Map<String, CodingSystem> loadUrlMap(String urlKey, ResourceReader reader,
+            ConverterConfiguration config) {
+        Map<String, CodingSystem> urls = loadFromFile(urlKey, reader);
+        urls.putAll(loadAdditionalFromFile(config));
+        return Collections.unmodifiableMap(urls);
     }
 
     // ConverterConfiguration
-    private static Map<String, CodingSystem> loadFromFile(String urlKey) {
+    private static Map<String, CodingSystem> loadFromFile(String urlKey, ResourceReader reader) {
         TypeReference<List<CodingSystem>> typeRef = new TypeReference<List<CodingSystem>>() {
         };
         try {
-            String content = ResourceReader.getInstance().getResourceInHl7Folder(urlMappingPaths.get(urlKey));
+            String content = reader.getResourceInHl7Folder(urlMappingPaths.get(urlKey));
             List<CodingSystem> systems = ObjectMapperUtil.getYAMLInstance().readValue(content, typeRef);
             return systems.stream().collect(Collectors.toMap(CodingSystem::getId, codeSystem -> codeSystem));
 
@@ -134,13 +213,12 @@ public class UrlLookup {
         }
     }
 
-    private static Map<String, CodingSystem> loadAdditionalFromFile() {
+    private static Map<String, CodingSystem> loadAdditionalFromFile(ConverterConfiguration config) {
         TypeReference<List<CodingSystem>> typeRef = new TypeReference<List<CodingSystem>>() {
         };
-        String filePath = ConverterConfiguration.getInstance().getAdditionalConceptmapFile();
+        String filePath = config.getAdditionalConceptmapFile();
         if (StringUtils.isNotBlank(filePath)) {
-            try {
-                FileInputStream fis = new FileInputStream(filePath);
+            try (FileInputStream fis = new FileInputStream(filePath)) {
                 List<CodingSystem> systems = ObjectMapperUtil.getYAMLInstance().readValue(fis, typeRef);
                 return systems.stream().collect(Collectors.toMap(CodingSystem::getId, codeSystem -> codeSystem));
 
@@ -0,0 +1,78 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+/**
+ * Statistics of an HL7 batch file (FHS to FTS), or of a stream of messages without a file envelope.
+ */
+public class BatchFileSummary {
+
+    private final String fileControlId;
+    private final int batchCount;
+    private final Integer expectedBatchCount;
+    private final long messageCount;
+    private final long failedCount;
+    private final long elapsedNanos;
+
+    public BatchFileSummary(String fileControlId, int batchCount, Integer expectedBatchCount, long messageCount,
+            long failedCount, long elapsedNanos) {
+        this.fileControlId = fileControlId;
+        this.batchCount = batchCount;
+        this.expectedBatchCount = expectedBatchCount;
+        this.messageCount = messageCount;
+        this.failedCount = failedCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns FHS-11, null if the file has no header or FHS-11 is not present.
+     */
+    public String getFileControlId() {
+        return fileControlId;
+    }
+
+    /**
+     * Returns the number of batches read.
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the batch count from FTS-1, null if the file has no trailer or FTS-1 is not a number.
+     */
+    public Integer getExpectedBatchCount() {
+        return expectedBatchCount;
+    }
+
+    /**
+     * Returns true if the file trailer is present and its count matches the batches read.
+     */
+    public boolean isCountValid() {
+        return expectedBatchCount != null && expectedBatchCount == batchCount;
+    }
+
+    /**
+     * Returns the number of messages read, including messages outside of a batch.
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public long getConvertedCount() {
+        return messageCount - failedCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+}
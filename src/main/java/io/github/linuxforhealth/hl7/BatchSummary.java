@@ -0,0 +1,81 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+/**
+ * Statistics of one batch (BHS to BTS) of an HL7 batch file.
+ */
+public class BatchSummary {
+
+    private final int batchNumber;
+    private final String batchControlId;
+    private final int messageCount;
+    private final Integer expectedMessageCount;
+    private final int failedCount;
+    private final long elapsedNanos;
+
+    public BatchSummary(int batchNumber, String batchControlId, int messageCount, Integer expectedMessageCount,
+            int failedCount, long elapsedNanos) {
+        this.batchNumber = batchNumber;
+        this.batchControlId = batchControlId;
+        this.messageCount = messageCount;
+        this.expectedMessageCount = expectedMessageCount;
+        this.failedCount = failedCount;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the one based number of the batch in the file.
+     */
+    public int getBatchNumber() {
+        return batchNumber;
+    }
+
+    /**
+     * Returns BHS-11, null if not present.
+     */
+    public String getBatchControlId() {
+        return batchControlId;
+    }
+
+    /**
+     * Returns the number of messages read in the batch.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the message count from BTS-1, null if the batch has no trailer or BTS-1 is not a number.
+     */
+    public Integer getExpectedMessageCount() {
+        return expectedMessageCount;
+    }
+
+    /**
+     * Returns true if the batch trailer is present and its count matches the messages read.
+     */
+    public boolean isCountValid() {
+        return expectedMessageCount != null && expectedMessageCount == messageCount;
+    }
+
+    public int getConvertedCount() {
+        return messageCount - failedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Returns the time from reading the batch header to converting the last message of the batch.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.parsing.MappedMessageSplitter;
+
+/**
+ * Converts a large message file to one output file, one JSON bundle per line when the options do not
+ * pretty print, and can resume a conversion that was stopped. Progress is recorded in a checkpoint
+ * file next to the output, see {@link #getCheckpointFile(Path)}: the byte offset and index of the
+ * next message to convert and the length of the output written for the messages before it. The
+ * output is synced to disk before the checkpoint is written, and the checkpoint is replaced
+ * atomically.
+ *
+ * <p>
+ * When the checkpoint file exists, the conversion resumes from it: the output is truncated to the
+ * recorded length, which drops anything written after the checkpoint, and the input is read from the
+ * recorded offset. Every message is then in the output exactly once. A finished conversion leaves its
+ * final checkpoint behind, converting again does nothing until the output and the checkpoint are
+ * deleted.
+ *
+ * <p>
+ * A checkpoint is taken after a number of messages or after a period of time, whichever comes first.
+ * Each checkpoint costs two syncs, so larger intervals are faster and redo more work on resume.
+ */
+public class CheckpointedFileConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointedFileConverter.class);
+
+    public static final String CHECKPOINT_EXTENSION = ".checkpoint";
+    public static final int DEFAULT_CHECKPOINT_MESSAGES = 10000;
+    public static final Duration DEFAULT_CHECKPOINT_PERIOD = Duration.ofSeconds(30);
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final HL7BatchConverter batchConverter;
+    private final int checkpointMessages;
+    private final long checkpointNanos;
+
+    /**
+     * Creates a converter that takes a checkpoint every 10000 messages or 30 seconds.
+     *
+     * @param batchConverter Converter for the messages of the file
+     */
+    public CheckpointedFileConverter(HL7BatchConverter batchConverter) {
+        this(batchConverter, DEFAULT_CHECKPOINT_MESSAGES, DEFAULT_CHECKPOINT_PERIOD);
+    }
+
+    /**
+     * Creates a converter.
+     *
+     * @param batchConverter Converter for the messages of the file
+     * @param checkpointMessages Number of messages between checkpoints
+     * @param checkpointPeriod Maximum time between checkpoints
+     */
+    public CheckpointedFileConverter(HL7BatchConverter batchConverter, int checkpointMessages,
+            Duration checkpointPeriod) {
+        Preconditions.checkArgument(batchConverter != null, "batchConverter cannot be null");
+        Preconditions.checkArgument(checkpointMessages > 0, "checkpointMessages must be greater than 0");
+        Preconditions.checkArgument(checkpointPeriod != null && !checkpointPeriod.isNegative(),
+                "checkpointPeriod cannot be null or negative");
+        this.batchConverter = batchConverter;
+        this.checkpointMessages = checkpointMessages;
+        this.checkpointNanos = checkpointPeriod.toNanos();
+    }
+
+    /**
+     * Returns the checkpoint file of an output file.
+     */
+    public static Path getCheckpointFile(Path output) {
+        return output.resolveSibling(output.getFileName() + CHECKPOINT_EXTENSION);
+    }
+
+    /**
+     * Converts the messages of the input file, or the messages after the checkpoint if there is one.
+     * Messages that fail to convert have no output and are handed to failures. Failures after the last
+     * checkpoint of a stopped conversion are handed to failures again when it is resumed.
+     *
+     * @param input File with HL7 messages
+     * @param charset Character set of messages that do not name one in MSH-18
+     * @param output File the bundles are written to
+     * @param failures Receives the messages that failed to convert, in file order
+     * @return number of messages converted by this call
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a result
+     * @throws IllegalStateException if the input or the output changed since the checkpoint
+     */
+    public long convert(Path input, Charset charset, Path output, Consumer<MessageConversionResult> failures)
+            throws IOException, InterruptedException {
+        Preconditions.checkArgument(input != null, "input cannot be null");
+        Preconditions.checkArgument(output != null, "output cannot be null");
+        Preconditions.checkArgument(failures != null, "failures cannot be null");
+        Path checkpointFile = getCheckpointFile(output);
+        long inputSize = Files.size(input);
+        ConversionCheckpoint checkpoint = ConversionCheckpoint.read(checkpointFile);
+        if (checkpoint == null) {
+            checkpoint = new ConversionCheckpoint(inputSize, 0, 0, 0);
+        } else if (checkpoint.getInputSize() != inputSize) {
+            throw new IllegalStateException("Input " + input + " changed since checkpoint " + checkpointFile);
+        } else {
+            LOGGER.info("Resuming conversion of {} at {}", input, checkpoint);
+        }
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                MappedMessageSplitter splitter = MappedMessageSplitter.open(input,
+                        MappedMessageSplitter.DEFAULT_WINDOW_SIZE, checkpoint.getInputOffset(),
+                        checkpoint.getMessageIndex())) {
+            if (channel.size() < checkpoint.getOutputLength()) {
+                throw new IllegalStateException("Output " + output + " is shorter than checkpoint " + checkpointFile);
+            }
+            channel.truncate(checkpoint.getOutputLength());
+            channel.position(checkpoint.getOutputLength());
+            Progress progress = new Progress(channel, checkpointFile, inputSize, checkpoint, failures);
+            long count;
+            try {
+                count = batchConverter.convert(splitter, charset, progress);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            progress.checkpoint(inputSize, checkpoint.getMessageIndex() + count);
+            return count;
+        }
+    }
+
+    /**
+     * Writes the results to the output and takes the checkpoints. A checkpoint is taken before the
+     * output of a message is written, so it records the offset and index of that message.
+     */
+    private class Progress implements Consumer<MessageConversionResult> {
+        private final FileChannel channel;
+        private final OutputStream out;
+        private final Path checkpointFile;
+        private final long inputSize;
+        private final Consumer<MessageConversionResult> failures;
+        private long outputLength;
+        private int messagesSinceCheckpoint;
+        private long lastCheckpointNanos = System.nanoTime();
+
+        Progress(FileChannel channel, Path checkpointFile, long inputSize, ConversionCheckpoint start,
+                Consumer<MessageConversionResult> failures) {
+            this.channel = channel;
+            // The stream is not closed, closing it would close the channel before the final checkpoint.
+            this.out = new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE);
+            this.checkpointFile = checkpointFile;
+            this.inputSize = inputSize;
+            this.failures = failures;
+            this.outputLength = start.getOutputLength();
+        }
+
+        @Override
+        public void accept(MessageConversionResult result) {
+            try {
+                if (messagesSinceCheckpoint >= checkpointMessages
+                        || messagesSinceCheckpoint > 0 && System.nanoTime() - lastCheckpointNanos >= checkpointNanos) {
+                    checkpoint(result.getOffset(), result.getIndex());
+                }
+                messagesSinceCheckpoint++;
+                if (result.isSuccess()) {
+                    byte[] json = result.getFhirJson().getBytes(StandardCharsets.UTF_8);
+                    out.write(json);
+                    out.write('\n');
+                    outputLength += json.length + 1;
+                } else {
+                    failures.accept(result);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void checkpoint(long inputOffset, long messageIndex) throws IOException {
+            out.flush();
+            channel.force(false);
+            new ConversionCheckpoint(inputSize, inputOffset, messageIndex, outputLength).write(checkpointFile);
+            messagesSinceCheckpoint = 0;
+            lastCheckpointNanos = System.nanoTime();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Progress of a file conversion: every message before the input offset was converted and its output
+ * is in the first outputLength bytes of the output file. Stored as a properties file next to the
+ * output.
+ */
+public class ConversionCheckpoint {
+
+    private static final String INPUT_SIZE = "inputSize";
+    private static final String INPUT_OFFSET = "inputOffset";
+    private static final String MESSAGE_INDEX = "messageIndex";
+    private static final String OUTPUT_LENGTH = "outputLength";
+
+    private final long inputSize;
+    private final long inputOffset;
+    private final long messageIndex;
+    private final long outputLength;
+
+    public ConversionCheckpoint(long inputSize, long inputOffset, long messageIndex, long outputLength) {
+        Preconditions.checkArgument(inputOffset >= 0 && inputOffset <= inputSize,
+                "inputOffset must be between 0 and inputSize");
+        Preconditions.checkArgument(messageIndex >= 0, "messageIndex cannot be negative");
+        Preconditions.checkArgument(outputLength >= 0, "outputLength cannot be negative");
+        this.inputSize = inputSize;
+        this.inputOffset = inputOffset;
+        this.messageIndex = messageIndex;
+        this.outputLength = outputLength;
+    }
+
+    /**
+     * Returns the size of the input file, used to detect that the input changed since the checkpoint.
+     */
+    public long getInputSize() {
+        return inputSize;
+    }
+
+    /**
+     * Returns the byte offset of the first message not yet converted.
+     */
+    public long getInputOffset() {
+        return inputOffset;
+    }
+
+    /**
+     * Returns the index of the first message not yet converted.
+     */
+    public long getMessageIndex() {
+        return messageIndex;
+    }
+
+    /**
+     * Returns the number of output bytes written and synced for the messages before the input offset.
+     */
+    public long getOutputLength() {
+        return outputLength;
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param file Checkpoint file
+     * @return the checkpoint, null if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    public static ConversionCheckpoint read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            return new ConversionCheckpoint(Long.parseLong(properties.getProperty(INPUT_SIZE)),
+                    Long.parseLong(properties.getProperty(INPUT_OFFSET)),
+                    Long.parseLong(properties.getProperty(MESSAGE_INDEX)),
+                    Long.parseLong(properties.getProperty(OUTPUT_LENGTH)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint file " + file, e);
+        }
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file, syncs it and renames it over the checkpoint file, so
+     * the checkpoint file always holds a complete checkpoint, even after a crash.
+     *
+     * @param file Checkpoint file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(INPUT_SIZE, Long.toString(inputSize));
+        properties.setProperty(INPUT_OFFSET, Long.toString(inputOffset));
+        properties.setProperty(MESSAGE_INDEX, Long.toString(messageIndex));
+        properties.setProperty(OUTPUT_LENGTH, Long.toString(outputLength));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        properties.store(bytes, null);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Makes the rename durable. Not every platform can open a directory, there the rename is synced
+     * by the file system on its own schedule.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened on Windows
+        }
+    }
+
+    @Override
+    public String toString() {
+        return INPUT_OFFSET + "=" + inputOffset + ", " + MESSAGE_INDEX + "=" + messageIndex + ", " + OUTPUT_LENGTH
+                + "=" + outputLength;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import org.hl7.fhir.r4.model.Bundle;
+import io.github.linuxforhealth.core.diagnostics.ConversionDiagnostics;
+
+/**
+ * Result of converting one HL7 message: the FHIR bundle, its JSON representation and the
+ * diagnostics collected during the conversion.
+ */
+public class ConversionResult {
+
+  private final Bundle bundle;
+  private final String fhirJson;
+  private final ConversionDiagnostics diagnostics;
+
+  public ConversionResult(Bundle bundle, String fhirJson, ConversionDiagnostics diagnostics) {
+    this.bundle = bundle;
+    this.fhirJson = fhirJson;
+    this.diagnostics = diagnostics;
+  }
+
+  public Bundle getBundle() {
+    return bundle;
+  }
+
+  public String getFhirJson() {
+    return fhirJson;
+  }
+
+  public ConversionDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+}
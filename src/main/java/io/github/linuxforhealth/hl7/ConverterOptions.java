@@ -9,6 +9,8 @@ package io.github.linuxforhealth.hl7;
 import org.hl7.fhir.r4.model.Bundle.BundleType;
 import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
+import io.github.linuxforhealth.hl7.parsing.ParseMode;
 
 /**
  * Converts HL7 message to FHIR bundle resource based on the customizable templates.
@@ -23,6 +25,8 @@ public class ConverterOptions {
   private BundleType bundleType;
   private boolean prettyPrint;
   private boolean validateResource;
+  private DiagnosticsVerbosity diagnosticsVerbosity;
+  private ParseMode parseMode;
 
 
   private ConverterOptions(Builder builder) {
@@ -33,6 +37,12 @@ public class ConverterOptions {
     }
     this.prettyPrint = builder.prettyPrint;
     this.validateResource = builder.validateResource;
+    this.diagnosticsVerbosity = builder.diagnosticsVerbosity;
+    if (builder.parseMode != null) {
+      this.parseMode = builder.parseMode;
+    } else {
+      this.parseMode = ParseMode.HAPI;
+    }
 
   }
 
@@ -40,6 +50,8 @@ public class ConverterOptions {
     private BundleType bundleType;
     private boolean prettyPrint;
     private boolean validateResource;
+    private DiagnosticsVerbosity diagnosticsVerbosity;
+    private ParseMode parseMode;
 
 
     public Builder withBundleType(BundleType bundleType) {
@@ -58,6 +70,32 @@ public class ConverterOptions {
       return this;
     }
 
+    /**
+     * Sets how much diagnostic detail is collected for each message, overriding the
+     * diagnostics.verbosity configuration property.
+     * 
+     * @param diagnosticsVerbosity {@link DiagnosticsVerbosity}
+     * @return this builder
+     */
+    public Builder withDiagnosticsVerbosity(DiagnosticsVerbosity diagnosticsVerbosity) {
+      Preconditions.checkArgument(diagnosticsVerbosity != null,
+          "Diagnostics verbosity cannot be null");
+      this.diagnosticsVerbosity = diagnosticsVerbosity;
+      return this;
+    }
+
+    /**
+     * Sets how the message text is read, defaults to {@link ParseMode#HAPI}.
+     * 
+     * @param parseMode {@link ParseMode}
+     * @return this builder
+     */
+    public Builder withParseMode(ParseMode parseMode) {
+      Preconditions.checkArgument(parseMode != null, "Parse mode cannot be null");
+      this.parseMode = parseMode;
+      return this;
+    }
+
 
 
 
@@ -81,6 +119,19 @@ public class ConverterOptions {
     return validateResource;
   }
 
+  /**
+   * Returns the diagnostics verbosity set on these options.
+   * 
+   * @return {@link DiagnosticsVerbosity}, null if the configured default should be used
+   */
+  public DiagnosticsVerbosity getDiagnosticsVerbosity() {
+    return diagnosticsVerbosity;
+  }
+
+  public ParseMode getParseMode() {
+    return parseMode;
+  }
+
 
 
 }
\ No newline at end of file
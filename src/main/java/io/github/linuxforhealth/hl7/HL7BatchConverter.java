@@ -0,0 +1,183 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.parsing.MappedMessageSplitter;
+import io.github.linuxforhealth.hl7.parsing.MessageSlice;
+
+/**
+ * Converts the messages of a multi-message input on a pool of worker threads and hands the results
+ * to a sink in input order. At most maxInFlight messages are converted or waiting for the sink at a
+ * time, so memory use does not depend on the size of the input.
+ *
+ * <p>
+ * The sink is called on the thread that called convert. Instances can be shared, the worker pool is
+ * released with {@link #close()}.
+ */
+public class HL7BatchConverter implements Closeable {
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final HL7ToFHIRConverter converter;
+    private final ConverterOptions options;
+    private final int maxInFlight;
+    private final ExecutorService workers;
+
+    /**
+     * Creates a batch converter with one worker per available processor.
+     *
+     * @param converter Converter to use for each message
+     * @param options Options for conversion
+     */
+    public HL7BatchConverter(HL7ToFHIRConverter converter, ConverterOptions options) {
+        this(converter, options, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch converter that keeps up to four messages per worker in flight.
+     *
+     * @param converter Converter to use for each message
+     * @param options Options for conversion
+     * @param threads Number of worker threads
+     */
+    public HL7BatchConverter(HL7ToFHIRConverter converter, ConverterOptions options, int threads) {
+        this(converter, options, threads, threads * 4);
+    }
+
+    /**
+     * Creates a batch converter.
+     *
+     * @param converter Converter to use for each message
+     * @param options Options for conversion
+     * @param threads Number of worker threads
+     * @param maxInFlight Maximum number of messages read from the input and not yet handed to the sink
+     */
+    public HL7BatchConverter(HL7ToFHIRConverter converter, ConverterOptions options, int threads,
+            int maxInFlight) {
+        Preconditions.checkArgument(converter != null, "converter cannot be null");
+        Preconditions.checkArgument(options != null, "options cannot be null");
+        Preconditions.checkArgument(threads > 0, "threads must be greater than 0");
+        Preconditions.checkArgument(maxInFlight >= threads, "maxInFlight must be at least threads");
+        this.converter = converter;
+        this.options = options;
+        this.maxInFlight = maxInFlight;
+        this.workers = Executors.newFixedThreadPool(threads, workerThreadFactory());
+    }
+
+    /**
+     * Splits the file with {@link MappedMessageSplitter} and converts its messages.
+     *
+     * @param file File with HL7 messages
+     * @param charset Character set of messages that do not name one in MSH-18
+     * @param sink Receives the result of each message in file order
+     * @return number of messages converted
+     * @throws IOException if the file cannot be read
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a result
+     */
+    public long convert(Path file, Charset charset, Consumer<MessageConversionResult> sink)
+            throws IOException, InterruptedException {
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file)) {
+            return convert(splitter, charset, sink);
+        }
+    }
+
+    /**
+     * Converts the messages. A message that fails to convert is handed to the sink with its
+     * exception, the following messages are still converted. An exception thrown by the sink stops
+     * the conversion and is rethrown.
+     *
+     * @param messages Messages to convert
+     * @param charset Character set of messages that do not name one in MSH-18
+     * @param sink Receives the result of each message in input order
+     * @return number of messages converted
+     * @throws InterruptedException if the calling thread is interrupted while waiting for a result
+     */
+    public long convert(Iterator<MessageSlice> messages, Charset charset, Consumer<MessageConversionResult> sink)
+            throws InterruptedException {
+        Preconditions.checkArgument(messages != null, "messages cannot be null");
+        Preconditions.checkArgument(charset != null, "charset cannot be null");
+        Preconditions.checkArgument(sink != null, "sink cannot be null");
+        Deque<Future<MessageConversionResult>> inFlight = new ArrayDeque<>(maxInFlight);
+        long count = 0;
+        try {
+            while (messages.hasNext()) {
+                if (inFlight.size() >= maxInFlight) {
+                    sink.accept(await(inFlight.poll()));
+                }
+                MessageSlice message = messages.next();
+                inFlight.add(workers.submit(() -> convert(message, charset)));
+                count++;
+            }
+            while (!inFlight.isEmpty()) {
+                sink.accept(await(inFlight.poll()));
+            }
+        } finally {
+            for (Future<MessageConversionResult> pending : inFlight) {
+                pending.cancel(true);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+    private MessageConversionResult convert(MessageSlice message, Charset charset) {
+        long start = System.nanoTime();
+        try {
+            String json = converter.convert(message.getBuffer(), charset, options);
+            return new MessageConversionResult(message.getIndex(), message.getOffset(), json, null,
+                    System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return new MessageConversionResult(message.getIndex(), message.getOffset(), null, e,
+                    System.nanoTime() - start);
+        }
+    }
+
+    private static MessageConversionResult await(Future<MessageConversionResult> result)
+            throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            // Only errors escape the conversion task, runtime exceptions are part of the result.
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        String prefix = "hl7-batch-" + POOL_NUMBER.incrementAndGet() + "-worker-";
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.parsing.HL7BatchReader;
+
+/**
+ * Converts the messages of an HL7 batch file (FHS, BHS, BTS, FTS) as a stream. Messages are read and
+ * converted one at a time on the calling thread, so only the message being converted is held in
+ * memory. A summary is handed to the batch sink at the end of each batch and a summary of the file is
+ * returned, both carry the counts read from the trailer segments so the envelope can be checked.
+ *
+ * <p>
+ * Files without an envelope are converted the same way. Instances can be shared between threads.
+ */
+public class HL7BatchFileConverter {
+
+    private final HL7ToFHIRConverter converter;
+    private final ConverterOptions options;
+
+    /**
+     * Creates a batch file converter.
+     *
+     * @param converter Converter to use for each message
+     * @param options Options for conversion
+     */
+    public HL7BatchFileConverter(HL7ToFHIRConverter converter, ConverterOptions options) {
+        Preconditions.checkArgument(converter != null, "converter cannot be null");
+        Preconditions.checkArgument(options != null, "options cannot be null");
+        this.converter = converter;
+        this.options = options;
+    }
+
+    /**
+     * Converts the messages of the file. The file is decoded with the given character set, MSH-18 is
+     * not read because a batch file has a single encoding.
+     *
+     * @param file HL7 batch file
+     * @param charset Character set of the file
+     * @param sink Receives the result of each message in file order
+     * @param batchSink Receives the summary of each batch once its last message was converted
+     * @return summary of the file
+     * @throws IOException if the file cannot be read
+     */
+    public BatchFileSummary convert(Path file, Charset charset, Consumer<MessageConversionResult> sink,
+            Consumer<BatchSummary> batchSink) throws IOException {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(charset != null, "charset cannot be null");
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), charset)) {
+            return convert(reader, sink, batchSink);
+        }
+    }
+
+    /**
+     * Converts the messages read from the input. A message that fails to convert is handed to the
+     * sink with its exception, the following messages are still converted. The input is not closed.
+     *
+     * @param input HL7 batch file or messages
+     * @param sink Receives the result of each message in input order
+     * @param batchSink Receives the summary of each batch once its last message was converted
+     * @return summary of the file
+     * @throws IOException if the input cannot be read
+     */
+    public BatchFileSummary convert(Reader input, Consumer<MessageConversionResult> sink,
+            Consumer<BatchSummary> batchSink) throws IOException {
+        Preconditions.checkArgument(input != null, "input cannot be null");
+        Preconditions.checkArgument(sink != null, "sink cannot be null");
+        Preconditions.checkArgument(batchSink != null, "batchSink cannot be null");
+        long start = System.nanoTime();
+        EnvelopeTracker envelope = new EnvelopeTracker(batchSink);
+        HL7BatchReader reader = new HL7BatchReader(input, envelope);
+        long index = 0;
+        long failedCount = 0;
+        String message;
+        while ((message = reader.nextMessage()) != null) {
+            MessageConversionResult result;
+            long messageStart = System.nanoTime();
+            try {
+                String json = converter.convert(message, options);
+                result = new MessageConversionResult(index, reader.getMessageOffset(), json, null,
+                        System.nanoTime() - messageStart);
+            } catch (RuntimeException e) {
+                result = new MessageConversionResult(index, reader.getMessageOffset(), null, e,
+                        System.nanoTime() - messageStart);
+                envelope.messageFailed();
+                failedCount++;
+            }
+            index++;
+            sink.accept(result);
+        }
+        return new BatchFileSummary(envelope.fileControlId, reader.getBatchCount(), envelope.expectedBatchCount,
+                reader.getMessageCount(), failedCount, System.nanoTime() - start);
+    }
+
+    /**
+     * Collects the statistics of the current batch from the envelope events.
+     */
+    private static class EnvelopeTracker implements HL7BatchReader.Listener {
+
+        private final Consumer<BatchSummary> batchSink;
+        private String fileControlId;
+        private Integer expectedBatchCount;
+        private String batchControlId;
+        private boolean batchOpen;
+        private int batchFailedCount;
+        private long batchStart;
+
+        EnvelopeTracker(Consumer<BatchSummary> batchSink) {
+            this.batchSink = batchSink;
+        }
+
+        @Override
+        public void fileStarted(String fileControlId) {
+            this.fileControlId = fileControlId;
+        }
+
+        @Override
+        public void batchStarted(int batchNumber, String batchControlId) {
+            this.batchControlId = batchControlId;
+            this.batchOpen = true;
+            this.batchFailedCount = 0;
+            this.batchStart = System.nanoTime();
+        }
+
+        @Override
+        public void batchEnded(int batchNumber, int messageCount, Integer expectedMessageCount) {
+            batchOpen = false;
+            batchSink.accept(new BatchSummary(batchNumber, batchControlId, messageCount, expectedMessageCount,
+                    batchFailedCount, System.nanoTime() - batchStart));
+        }
+
+        @Override
+        public void fileEnded(int batchCount, Integer expectedBatchCount) {
+            this.expectedBatchCount = expectedBatchCount;
+        }
+
+        void messageFailed() {
+            if (batchOpen) {
+                batchFailedCount++;
+            }
+        }
+
+    }
+
+}
@@ -9,9 +9,13 @@ package io.github.linuxforhealth.hl7;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -25,14 +29,25 @@ import com.google.common.base.Preconditions;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
 import io.github.linuxforhealth.core.terminology.TerminologyLookup;
-import io.github.linuxforhealth.core.terminology.UrlLookup;
 import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.message.ER7MessageData;
 import io.github.linuxforhealth.hl7.message.HL7MessageEngine;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.parsing.ER7MessageIndex;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+import io.github.linuxforhealth.hl7.parsing.HL7MessageDecoder;
+import io.github.linuxforhealth.hl7.parsing.MSHHeader;
+import io.github.linuxforhealth.hl7.parsing.ParseMode;
+import io.github.linuxforhealth.hl7.parsing.SegmentFilter;
+import io.github.linuxforhealth.hl7.resource.LazyMessageTemplates;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
+import io.github.linuxforhealth.hl7.resource.TemplateSet;
+import io.github.linuxforhealth.hl7.resource.TemplateSnapshot;
 
 /**
  * Converts HL7 message to FHIR bundle resource based on the customizable templates.
@@ -40,26 +55,62 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
  * @author pbhallam
  */
 public class HL7ToFHIRConverter {
-    private static HL7HapiParser hparser = new HL7HapiParser();
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7ToFHIRConverter.class);
-    private Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
+    // Replaced as a whole by reload(), each conversion uses the set it started with
+    private volatile TemplateSet templates;
 
     /**
      * Constructor initialized all the templates used for converting the HL7 to FHIR bundle resource.
+     * If template.snapshot.file is configured, the templates are read from that snapshot when it is
+     * current, see {@link TemplateSnapshot}. Otherwise, if template.loading.lazy is true, only the
+     * templates listed in template.warmup.messages are loaded here and every other template is loaded
+     * by the first message of its type, see {@link LazyMessageTemplates}.
      * 
      * @throws IllegalStateException - If any issues are encountered when loading the templates.
      */
     public HL7ToFHIRConverter() {
 
         try {
-            messagetemplates.putAll(ResourceReader.getInstance().getMessageTemplates());
+            templates = TemplateSet.load(ConverterConfiguration.getInstance(), ResourceReader.getInstance());
             TerminologyLookup.init();
-            UrlLookup.init();
         } catch (IllegalArgumentException e) {
             throw new IllegalStateException("Failure to initialize the templates for the converter.", e);
         }
     }
 
+    /**
+     * Reads config.properties again and loads the templates and concept maps it names into a new
+     * {@link TemplateSet}, while conversions continue with the current set. The new set replaces the
+     * current one only if it loads and has templates for at least one message type. Conversions that
+     * are running when the set is replaced finish with the set they started with.
+     * 
+     * <p>
+     * Only this converter uses the new set, the configuration and resource reader returned by
+     * {@link ConverterConfiguration#getInstance()} and {@link ResourceReader#getInstance()} outside
+     * of conversions are not changed. Reloads of one converter run one at a time.
+     * 
+     * @throws IllegalStateException - If the new templates cannot be loaded, the converter keeps the
+     *         current templates.
+     */
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        TemplateSet reloaded;
+        try {
+            ConverterConfiguration config = ConverterConfiguration.load();
+            reloaded = TemplateSet.load(config, new ResourceReader(config));
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IllegalStateException("Failure to reload the templates, the converter keeps the current templates.",
+                    e);
+        }
+        if (reloaded.getMessageTypes().isEmpty()) {
+            throw new IllegalStateException(
+                    "Reloaded configuration has no message templates, the converter keeps the current templates.");
+        }
+        templates = reloaded;
+        LOGGER.info("Reloaded templates of {} message types in {} ms", reloaded.getMessageTypes().size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
     /**
      * Converts the input HL7 file (.hl7) into FHIR bundle resource.
      * 
@@ -88,8 +139,66 @@ public class HL7ToFHIRConverter {
      */
     public String convert(File hl7MessageFile, ConverterOptions options) throws IOException {
         Preconditions.checkArgument(hl7MessageFile != null, "Input HL7 message file cannot be null.");
-        return convert(FileUtils.readFileToString(hl7MessageFile, StandardCharsets.UTF_8), options);
+        return convert(FileUtils.readFileToByteArray(hl7MessageFile), StandardCharsets.UTF_8, options);
+
+    }
 
+    /**
+     * Converts the input HL7 message bytes into FHIR bundle resource. The bytes are decoded once, with
+     * the character set named by a byte order mark or by MSH-18 if there is one, otherwise with the
+     * given character set.
+     * 
+     * @param hl7MessageData Bytes of the message to convert
+     * @param charset Character set to use when the message does not name a supported one
+     * @param options Options for conversion
+     * 
+     * @return JSON representation of FHIR {@link Bundle} resource.
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public String convert(byte[] hl7MessageData, Charset charset, ConverterOptions options) {
+        Preconditions.checkArgument(hl7MessageData != null, "Input HL7 message cannot be null.");
+        return convert(HL7MessageDecoder.decode(hl7MessageData, 0, hl7MessageData.length, charset), options);
+    }
+
+    /**
+     * Converts the remaining bytes of the buffer into FHIR bundle resource, see
+     * {@link #convert(byte[], Charset, ConverterOptions)}. The position of the buffer is not changed.
+     * 
+     * @param hl7MessageData Buffer holding the message to convert between its position and limit
+     * @param charset Character set to use when the message does not name a supported one
+     * @param options Options for conversion
+     * 
+     * @return JSON representation of FHIR {@link Bundle} resource.
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public String convert(ByteBuffer hl7MessageData, Charset charset, ConverterOptions options) {
+        Preconditions.checkArgument(hl7MessageData != null, "Input HL7 message cannot be null.");
+        if (hl7MessageData.hasArray()) {
+            return convert(HL7MessageDecoder.decode(hl7MessageData.array(),
+                    hl7MessageData.arrayOffset() + hl7MessageData.position(), hl7MessageData.remaining(), charset),
+                    options);
+        }
+        byte[] bytes = new byte[hl7MessageData.remaining()];
+        hl7MessageData.duplicate().get(bytes);
+        return convert(bytes, charset, options);
+    }
+
+    /**
+     * Reads the stream to its end and converts the message into FHIR bundle resource, see
+     * {@link #convert(byte[], Charset, ConverterOptions)}. The stream is not closed.
+     * 
+     * @param hl7MessageData Stream with the message to convert
+     * @param charset Character set to use when the message does not name a supported one
+     * @param options Options for conversion
+     * 
+     * @return JSON representation of FHIR {@link Bundle} resource.
+     * @throws IOException - if the stream cannot be read
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public String convert(InputStream hl7MessageData, Charset charset, ConverterOptions options)
+            throws IOException {
+        Preconditions.checkArgument(hl7MessageData != null, "Input HL7 message cannot be null.");
+        return convert(IOUtils.toByteArray(hl7MessageData), charset, options);
     }
 
     /**
@@ -122,6 +231,41 @@ public class HL7ToFHIRConverter {
         return engine.getFHIRContext().encodeResourceToString(bundle);
     }
 
+    /**
+     * Checks if there is a template for the message type. Together with
+     * {@link MSHHeader#peek(CharSequence)} this lets a router decide where a message goes without
+     * parsing it.
+     * 
+     * @param messageType Message type, example: ADT_A01
+     * @return true if messages of this type can be converted
+     */
+    public boolean isMessageTypeSupported(String messageType) {
+        return templates.isSupported(messageType);
+    }
+
+    /**
+     * Converts the input HL7 message (String data) into FHIR bundle resource and returns it
+     * together with the diagnostics collected for the message.
+     * 
+     * @param hl7MessageData Message to convert
+     * @param options Options for conversion
+     * 
+     * @return {@link ConversionResult} with the JSON representation of FHIR {@link Bundle} resource
+     *         and the {@link io.github.linuxforhealth.core.diagnostics.ConversionDiagnostics}
+     * @throws UnsupportedOperationException - if message type is not supported
+     */
+    public ConversionResult convertWithDiagnostics(String hl7MessageData, ConverterOptions options) {
+        HL7MessageEngine engine = getMessageEngine(options);
+        TemplateSet current = templates;
+        return current.call(() -> {
+            try (DiagnosticsCollector diagnostics = startDiagnostics(current, options, true)) {
+                Bundle bundle = convertToBundle(hl7MessageData, options.getParseMode(), engine, current);
+                return new ConversionResult(bundle, engine.getFHIRContext().encodeResourceToString(bundle),
+                        diagnostics.getDiagnostics());
+            }
+        });
+    }
+
     /**
      * Converts the input HL7 message (String data) into FHIR bundle resource.
      *
@@ -132,16 +276,44 @@ public class HL7ToFHIRConverter {
      * @throws UnsupportedOperationException - if message type is not supported
      */
     public Bundle convertToBundle(String hl7MessageData, ConverterOptions options, HL7MessageEngine engine) {
+        HL7MessageEngine messageEngine = engine != null ? engine : getMessageEngine(options);
+        ParseMode parseMode = options != null ? options.getParseMode() : ParseMode.HAPI;
+        TemplateSet current = templates;
+        return current.call(() -> {
+            // Only collects for logging, the diagnostics are not returned
+            DiagnosticsCollector diagnostics = startDiagnostics(current, options, false);
+            try {
+                return convertToBundle(hl7MessageData, parseMode, messageEngine, current);
+            } finally {
+                diagnostics.close();
+            }
+        });
+    }
+
+    // Called with the templates bound to the thread
+    private static Bundle convertToBundle(String hl7MessageData, ParseMode parseMode, HL7MessageEngine engine,
+            TemplateSet templates) {
         Preconditions.checkArgument(StringUtils.isNotBlank(hl7MessageData),
                 "Input HL7 message cannot be blank");
-        if(engine == null) {
-            engine = getMessageEngine(options);
+
+        // Reject unsupported message types before parsing, messages whose header cannot be read
+        // without parsing are left to the parser.
+        MSHHeader header = MSHHeader.peek(hl7MessageData);
+        if (header != null && !templates.isSupported(header.getMessageType())) {
+            throw new UnsupportedOperationException("Message type not yet supported " + header.getMessageType());
+        }
+
+        if (parseMode == ParseMode.REFERENCED_SEGMENTS) {
+            ER7MessageIndex index = getMessageIndex(hl7MessageData);
+            if (index != null) {
+                return convertToBundle(hl7MessageData, index, engine, templates);
+            }
         }
 
         Message hl7message = getHl7Message(hl7MessageData);
         if (hl7message != null) {
             String messageType = HL7DataExtractor.getMessageType(hl7message);
-            HL7MessageModel hl7MessageTemplateModel = messagetemplates.get(messageType);
+            HL7MessageModel hl7MessageTemplateModel = templates.get(messageType);
             if (hl7MessageTemplateModel != null) {
                 return hl7MessageTemplateModel.convert(hl7message, engine);
             } else {
@@ -152,6 +324,59 @@ public class HL7ToFHIRConverter {
         }
     }
 
+    private static Bundle convertToBundle(String hl7MessageData, ER7MessageIndex index, HL7MessageEngine engine,
+            TemplateSet templates) {
+        String messageType = index.getMessageType();
+        HL7MessageModel hl7MessageTemplateModel = templates.get(messageType);
+        if (hl7MessageTemplateModel == null) {
+            throw new UnsupportedOperationException("Message type not yet supported " + messageType);
+        }
+        String textToParse = hl7MessageData;
+        List<CharSequence> skippedSegments = Collections.emptyList();
+        SegmentFilter filter = SegmentFilter.filter(index, hl7MessageTemplateModel.getReferencedSegments());
+        if (filter.hasSkippedSegments()) {
+            textToParse = filter.getText();
+            skippedSegments = filter.getSkippedSegments();
+        }
+        Message hl7message = getHl7Message(textToParse);
+        if (hl7message == null) {
+            throw new IllegalArgumentException("Parsed HL7 message was null.");
+        }
+        return hl7MessageTemplateModel.convert(
+                new ER7MessageData(index, new HL7DataExtractor(hl7message), skippedSegments), engine);
+    }
+
+    /**
+     * Indexes the message text, returns null when the text cannot be indexed so that the message is
+     * handled by the HAPI parser, which reports the actual problem.
+     */
+    private static ER7MessageIndex getMessageIndex(String data) {
+        try {
+            return ER7MessageIndex.index(data);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Cannot index the message, falling back to HAPI parser", e);
+            return null;
+        }
+    }
+
+    /**
+     * Binds a diagnostics collector to the current thread for one conversion. When the caller does
+     * not receive the diagnostics only {@link DiagnosticsVerbosity#LOG} has an effect, so nothing is
+     * collected for the other levels.
+     */
+    private static DiagnosticsCollector startDiagnostics(TemplateSet templates, ConverterOptions options,
+            boolean returned) {
+        ConverterConfiguration config = templates.getConfiguration();
+        DiagnosticsVerbosity verbosity = options != null && options.getDiagnosticsVerbosity() != null
+                ? options.getDiagnosticsVerbosity()
+                : config.getDiagnosticsVerbosity();
+        if (!returned && verbosity != DiagnosticsVerbosity.LOG) {
+            verbosity = DiagnosticsVerbosity.OFF;
+        }
+        return DiagnosticsCollector.start(verbosity, config.getDiagnosticsSampleLimit(),
+                config.isEvaluationPathTracked());
+    }
+
     private HL7MessageEngine getMessageEngine(ConverterOptions options){
         Preconditions.checkArgument(options != null, "options cannot be null.");
         FHIRContext context = new FHIRContext(options.isPrettyPrint(), options.isValidateResource());
@@ -161,12 +386,12 @@ public class HL7ToFHIRConverter {
 
     private static Message getHl7Message(String data) {
         Message hl7message = null;
-        try (InputStream ins = IOUtils.toInputStream(data, StandardCharsets.UTF_8)) {
-            Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(ins);
+        try (Reader reader = new StringReader(data)) {
+            Hl7InputStreamMessageStringIterator iterator = new Hl7InputStreamMessageStringIterator(reader);
             // only supports single message conversion.
             if (iterator.hasNext()) {
 
-                hl7message = hparser.getParser().parse(iterator.next());
+                hl7message = HL7HapiParser.getThreadParser().getParser().parse(iterator.next());
             }
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Cannot parse the message.", e);
@@ -174,6 +399,11 @@ public class HL7ToFHIRConverter {
             throw new IllegalArgumentException("IOException encountered.", ioe);
         }
 
+        // Printing the structure walks the whole message, so it is only done when diagnostics are
+        // logged.
+        if (DiagnosticsCollector.currentVerbosity() != DiagnosticsVerbosity.LOG) {
+            return hl7message;
+        }
         try {
             if (hl7message != null) {
                 String messageStructureInfo = hl7message.printStructure();
@@ -197,14 +427,4 @@ public class HL7ToFHIRConverter {
         }
         return hl7message;
     }
-
-    private static void close(HL7HapiParser hparser) {
-        if (hparser != null) {
-            try {
-                hparser.getContext().close();
-            } catch (IOException e) {
-                throw new IllegalStateException("Failure to close HL7 parser.", e);
-            }
-        }
-    }
 }
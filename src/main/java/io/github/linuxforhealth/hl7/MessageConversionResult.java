@@ -0,0 +1,70 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7;
+
+/**
+ * Result of converting one message of a multi-message input: the position of the message in the
+ * input and either the FHIR JSON or the exception the conversion failed with.
+ */
+public class MessageConversionResult {
+
+    private final long index;
+    private final long offset;
+    private final String fhirJson;
+    private final RuntimeException error;
+    private final long elapsedNanos;
+
+    public MessageConversionResult(long index, long offset, String fhirJson, RuntimeException error,
+            long elapsedNanos) {
+        this.index = index;
+        this.offset = offset;
+        this.fhirJson = fhirJson;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns the zero based number of the message in the input.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the offset of the start of the message in the input, in bytes when the input was read
+     * as bytes and in characters when it was read as text.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the JSON representation of the FHIR bundle, null if the conversion failed.
+     */
+    public String getFhirJson() {
+        return fhirJson;
+    }
+
+    /**
+     * Returns the exception the conversion failed with, null if it succeeded.
+     */
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * Returns the time spent decoding and converting the message.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+}
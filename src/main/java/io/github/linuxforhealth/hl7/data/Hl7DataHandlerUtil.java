@@ -21,6 +21,8 @@ import ca.uhn.hl7v2.model.primitive.ID;
 import ca.uhn.hl7v2.model.primitive.IS;
 import ca.uhn.hl7v2.model.v26.datatype.CWE;
 import ca.uhn.hl7v2.model.v26.datatype.ST;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 
 public class Hl7DataHandlerUtil {
 
@@ -158,7 +160,8 @@ public class Hl7DataHandlerUtil {
                 try {
                     returnvalue = com.getComponent(0).toString();
                 } catch (DataTypeException e) {
-                    LOGGER.warn("Failure when extracting string value");
+                    DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                            "Failure when extracting string value");
                     LOGGER.debug("Failure when extracting string value for {}", local, e);
                     returnvalue = null;
                 }
@@ -26,6 +26,8 @@ import org.slf4j.LoggerFactory;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Segment;
 import ca.uhn.hl7v2.model.Type;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.hl7.data.date.DateUtil;
 
 public class Hl7RelatedGeneralUtils {
@@ -95,7 +97,8 @@ public class Hl7RelatedGeneralUtils {
     }
 
     public static String getEncounterStatus(Object var1, Object var2, Object var3) {
-        LOGGER.info("Generating encounter status");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Generating encounter status");
         LOGGER.debug("Generating encounter status from var1{}, var2 {}, var3 {}", var1, var2, var3);
         EncounterStatus status = EncounterStatus.UNKNOWN;
         if (var1 != null) {
@@ -127,7 +130,8 @@ public class Hl7RelatedGeneralUtils {
     // c) otherwise when there is no TXA create no DocRef
     // Observation creation is controlled by different code
     public static String getDocumentReferenceStatus(Object txa, Object txa19, Object orc, Object obr25, Object obx2) {
-        LOGGER.info("Generating DocumentReference status");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Generating DocumentReference status");
         LOGGER.debug("Generating DocumentReference status from txa{}, txa19 {}, orc {}, obr25 {}, obx2 {}, ", txa,
                 txa19, orc, obr25, obx2);
 
@@ -147,7 +151,8 @@ public class Hl7RelatedGeneralUtils {
     }
 
     public static String generateName(Object prefix, Object first, Object middle, Object family, Object suffix) {
-        LOGGER.info("Generating name");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Generating name");
         LOGGER.debug("Generating name from  from prefix {}, first {}, middle {}, family {} ,suffix {}", prefix, first,
                 middle, family, suffix);
         StringBuilder sb = new StringBuilder();
@@ -188,18 +193,21 @@ public class Hl7RelatedGeneralUtils {
      * @return Minutes in Long
      */
     public static Long diffDateMin(Object start, Object end) {
-        LOGGER.info("Generating time diff");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Generating time diff");
         LOGGER.debug("Generating time diff in min  from var1 {}, var2 {}", start, end);
         try {
             Temporal date1 = DateUtil.getTemporal(Hl7DataHandlerUtil.getStringValue(start));
             Temporal date2 = DateUtil.getTemporal(Hl7DataHandlerUtil.getStringValue(end));
-            LOGGER.info("computing temporal dates");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                    "computing temporal dates");
             LOGGER.debug("temporal dates start: {} , end: {} ", date1, date2);
             if (date1 != null && date2 != null) {
                 return ChronoUnit.MINUTES.between(date1, date2);
             }
         } catch (UnsupportedTemporalTypeException e) {
-            LOGGER.warn("Cannot evaluate time difference.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Cannot evaluate time difference.");
             LOGGER.debug("Cannot evaluate time difference for start: {} , end: {} ", start, end, e);
             return null;
         }
@@ -262,7 +270,8 @@ public class Hl7RelatedGeneralUtils {
     }
 
     public static String getAddressUse(String xad7Type, String xad16Temp, String xad17Bad) {
-        LOGGER.info("Calculating Address Use");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Calculating Address Use");
         LOGGER.debug("Calculating address Use from XAD.7 {}, XAD.16 {}, XAD.17 {}", xad7Type, xad16Temp, xad17Bad);
 
         String addressUse = "";
@@ -285,7 +294,8 @@ public class Hl7RelatedGeneralUtils {
     }
 
     public static String getAddressType(String xad7Type, String xad18Type) {
-        LOGGER.info("Calculating Address Type");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Calculating Address Type");
         LOGGER.debug("Calculating address Type from XAD.7 {}, XAD.18 {}", xad7Type, xad18Type);
 
         String addressType = "";
@@ -315,7 +325,8 @@ public class Hl7RelatedGeneralUtils {
      */
     public static String getAddressDistrict(String patientCountyPid12, String addressCountyParishPid119,
             Object patient) {
-        LOGGER.info("Calculating AddressCountyParish");
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                "Calculating AddressCountyParish");
         LOGGER.debug("getAddressCountyParish for {}", patient);
 
         String returnDistrict = addressCountyParishPid119;
@@ -54,6 +54,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.linuxforhealth.api.ResourceValue;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.terminology.Hl7v2Mapping;
 import io.github.linuxforhealth.core.terminology.SimpleCode;
 import io.github.linuxforhealth.core.terminology.TerminologyLookup;
@@ -113,14 +115,16 @@ public class SimpleDataValueResolver {
                 if (sdate1 != null && sdate2 != null) {
                     Temporal date1 = DateUtil.getTemporal(DateUtil.formatToDateTimeWithZone(sdate1));
                     Temporal date2 = DateUtil.getTemporal(DateUtil.formatToDateTimeWithZone(sdate2));
-                    LOGGER.info("computing temporal dates");
+                    DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                            "computing temporal dates");
                     LOGGER.debug("temporal dates start: {} , end: {} ", date1, date2);
                     if (date1 != null && date2 != null) {
                         return String.valueOf(ChronoUnit.MINUTES.between(date1, date2));
                     }
                 }
             } catch (UnsupportedTemporalTypeException e) {
-                LOGGER.warn("Cannot evaluate time difference.");
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                        "Cannot evaluate time difference.");
                 LOGGER.debug("Cannot evaluate time difference for start: {} , end: {} reason {} ", start, end,
                         e.getMessage());
                 return null;
@@ -138,7 +142,8 @@ public class SimpleDataValueResolver {
                 return null;
             }
         } catch (IllegalArgumentException | URISyntaxException e) {
-            LOGGER.warn("Value not valid URI, value: {}", value);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Value not valid URI");
             LOGGER.debug("Value not valid URI, value: {}", value, e);
             return null;
         }
@@ -294,9 +299,11 @@ public class SimpleDataValueResolver {
         ConditionClinical use = null;
         try {
             use = ConditionClinical.fromCode(val);
-            LOGGER.info("Found ConditionClinical code for '{}'.", val);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                    "Found ConditionClinical code for '{}'.", val);
         } catch (FHIRException e) {
-            LOGGER.warn("Could not find ConditionClinical code for '{}'.", val);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Could not find ConditionClinical code for '{}'.", val);
         }
 
         if (use != null) { // if it is then setup the simple code
@@ -313,9 +320,11 @@ public class SimpleDataValueResolver {
         ConditionVerStatus use = null;
         try {
             use = ConditionVerStatus.fromCode(val);
-            LOGGER.info("Found ConditionVerStatus code for '{}'.", val);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                    "Found ConditionVerStatus code for '{}'.", val);
         } catch (FHIRException e) {
-            LOGGER.warn("Could not find ConditionVerStatus code for '{}'.", val);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Could not find ConditionVerStatus code for '{}'.", val);
         }
         if (use != null) { // if it is then setup the simple code
             return new SimpleCode(val, use.getSystem(), use.getDisplay());
@@ -407,7 +416,8 @@ public class SimpleDataValueResolver {
         if (NumberUtils.isCreatable(val)) {
             return NumberUtils.createInteger(val);
         } else {
-            LOGGER.warn("Value {} for INTEGER is not a valid number so returning null.", value);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Value for INTEGER is not a valid number so returning null.");
             return null;
         }
     };
@@ -420,7 +430,8 @@ public class SimpleDataValueResolver {
         if (NumberUtils.isCreatable(val)) {
             return NumberUtils.createFloat(val);
         } else {
-            LOGGER.warn("Value {} for DECIMAL is not a valid number so returning null.", value);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Value for DECIMAL is not a valid number so returning null.");
             return null;
         }
     };
@@ -728,12 +739,14 @@ public class SimpleDataValueResolver {
             try {
                 return UUID.fromString(value);
             } catch (IllegalArgumentException e) {
-                LOGGER.warn("Value not valid UUID");
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                        "Value not valid UUID");
                 LOGGER.debug("Value not valid UUID, value: {}", value, e);
                 return null;
             }
         } else {
-            LOGGER.info("Value for UUID is null");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+                    "Value for UUID is null");
             LOGGER.debug("Value for UUID is null, value: {}", value);
             return null;
         }
@@ -744,7 +757,8 @@ public class SimpleDataValueResolver {
             UUID.fromString(val);
             return true;
         } catch (IllegalArgumentException e) {
-            LOGGER.warn("Could not extract valid UUID - not a valid UUID");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Could not extract valid UUID - not a valid UUID");
             LOGGER.debug("Not a valid UUID", e);
             return false;
         }
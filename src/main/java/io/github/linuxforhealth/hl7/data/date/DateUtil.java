@@ -22,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 
 public class DateUtil {
     private static final Logger LOGGER = LoggerFactory.getLogger(DateUtil.class);
@@ -42,7 +44,8 @@ public class DateUtil {
             LocalDate ldt = LocalDate.parse(input, DateFormats.getFormatterInstance());
             return ldt.format(format);
         } catch (DateTimeParseException e) {
-            LOGGER.warn("Input value cannot be formatted to LocalDate.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Input value cannot be formatted to LocalDate.");
             LOGGER.debug("Input value cannot be formatted to LocalDate {}", input, e);
             return null;
         }
@@ -69,12 +72,14 @@ public class DateUtil {
                 returnValue = ldt.atZone(zone).format(DateFormats.FHIR_ZONE_DATE_TIME_FORMAT);
                 return returnValue;
             } else {
-                LOGGER.warn("No default zone set, cannot convert LocalDateTime to ZonedDateTime");
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                        "No default zone set, cannot convert LocalDateTime to ZonedDateTime");
                 LOGGER.debug("No default zone set, cannot convert LocalDateTime to ZonedDateTime, input {} ", input);
                 return null;
             }
         } catch (DateTimeParseException e) {
-            LOGGER.warn("Date parsing failure for value.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Date parsing failure for value.");
             LOGGER.debug("Date parsing exception for value {}", input, e);
             return null;
         }
@@ -94,7 +99,8 @@ public class DateUtil {
                 LocalDate ldt = LocalDate.parse(input, DateFormats.getFormatterInstance());
                 return ldt.atStartOfDay().format(format);
             } catch (DateTimeParseException e) {
-                LOGGER.warn("Input value cannot be formatted to LocalDate");
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                        "Input value cannot be formatted to LocalDate");
                 LOGGER.debug("Input value cannot be formatted to LocalDate {} ", input, e);
                 return null;
             }
@@ -116,7 +122,8 @@ public class DateUtil {
                 ZonedDateTime zdt = ZonedDateTime.parse(input, DateFormats.getFormatterInstance());
                 return zdt.format(format);
             } catch (DateTimeParseException e) {
-                LOGGER.warn("Input value cannot be parsed to ZonedDateTime");
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                        "Input value cannot be parsed to ZonedDateTime");
                 LOGGER.debug("Input value cannot be parsed to ZonedDateTime {} ", input, e);
                 return null;
             }
@@ -161,7 +168,8 @@ public class DateUtil {
             }
         }
         if (temporal == null && !warnings.isEmpty()) {
-            LOGGER.warn("Attempt to parse input value to temporal failed.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE,
+                    "Attempt to parse input value to temporal failed.");
             LOGGER.debug("Attempt to parse input value {} to temporal failed ", dateString);
             for (Entry<String, DateTimeParseException> entry : warnings.entrySet()) {
                 LOGGER.debug("{} reason {}", entry.getKey(), entry.getValue().toString());
@@ -5,7 +5,9 @@
  */
 package io.github.linuxforhealth.hl7.expression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,7 +15,6 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
@@ -24,25 +25,33 @@ import io.github.linuxforhealth.api.Specification;
 import io.github.linuxforhealth.api.Variable;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.data.DataTypeUtil;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
-import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.VariableUtils;
 import io.github.linuxforhealth.hl7.expression.specification.SpecificationUtil;
 
-public abstract class AbstractExpression implements Expression {
-  private static final String RESOURCE = "Resource";
+public abstract class AbstractExpression implements Expression, Serializable {
 
+  private static final long serialVersionUID = 1L;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AbstractExpression.class);
 
 
   private ExpressionAttributes attr;
-  private String originalContext;
-  private boolean conditionSatisfiedState;
+  // Constants and the default value never change after load, so they are wrapped once here
+  // instead of on every evaluation.
+  private final Map<String, EvaluationResult> constantValues;
+  private final EvaluationResult defaultValue;
+
   public AbstractExpression(ExpressionAttributes attr) {
     this.attr = attr;
+    Map<String, EvaluationResult> localConstantValues = new HashMap<>();
+    this.attr.getConstants().forEach(
+        (k, v) -> localConstantValues.put(k, EvaluationResultFactory.getEvaluationResult(v)));
+    this.constantValues = Collections.unmodifiableMap(localConstantValues);
+    this.defaultValue = EvaluationResultFactory.getEvaluationResult(this.attr.getDefaultValue());
   }
 
 
@@ -67,7 +76,7 @@ public abstract class AbstractExpression implements Expression {
 
   @Override
   public EvaluationResult getDefaultValue() {
-    return EvaluationResultFactory.getEvaluationResult(this.attr.getDefaultValue());
+    return this.defaultValue;
   }
 
   public boolean isRequired() {
@@ -101,7 +110,7 @@ public abstract class AbstractExpression implements Expression {
     Preconditions.checkArgument(baseValue != null, "baseValue cannot be null");
     EvaluationResult result;
     try {
-      setLoggingContext();
+      DiagnosticsCollector.enter(this.attr.getName());
 
       LOGGER.debug("Started Evaluating with baseValue {} expression {} ", baseValue, this);
 
@@ -118,38 +127,18 @@ public abstract class AbstractExpression implements Expression {
 
 
       LOGGER.debug("Completed Evaluating returned value  {} ----  for  expression {} ", result, this);
-
-      if (this.conditionSatisfiedState && this.isRequired()
-          && (result == null || result.isEmpty())) {
-
-        String stringRep = this.toString();
-        throw new RequiredConstraintFailureException(
-            "Resource Constraint condition not satisfied for expression   :" + stringRep);
-
-      } else {
-        return result;
-      }
+      return result;
     } catch (DataExtractionException | IllegalArgumentException e) {
-      LOGGER.warn("Failure encountered during evaluation of expression {}", 
-          this.attr.getName());
+      DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EXPRESSION_FAILURE,
+          "Failure encountered during evaluation of expression {}", this.attr.getName());
       return null;
     } finally {
-      resetLoggingContext();
+      DiagnosticsCollector.exit();
     }
   }
 
 
 
-  private void setLoggingContext() {
-    originalContext = MDC.get(RESOURCE);
-    MDC.put(RESOURCE, originalContext + "-> Field:" + this.getExpressionAttr().getName());
-  }
-
-  private void resetLoggingContext() {
-    MDC.put(RESOURCE, originalContext);
-  }
-
-
   private EvaluationResult evaluateValueOfExpression(InputDataExtractor dataSource,
       Map<String, EvaluationResult> localContextValues, EvaluationResult baseinputValue) {
     /**
@@ -167,8 +156,7 @@ public abstract class AbstractExpression implements Expression {
      */
 
     // Add constants to the context map
-    this.attr.getConstants().entrySet().forEach(e -> localContextValues.put(e.getKey(),
-        EvaluationResultFactory.getEvaluationResult(e.getValue())));
+    localContextValues.putAll(this.constantValues);
 
     List<Object> result = new ArrayList<>();
     List<ResourceValue> additionalresourcesresult = new ArrayList<>();
@@ -176,28 +164,22 @@ public abstract class AbstractExpression implements Expression {
         getSpecValues(dataSource, localContextValues, baseinputValue, this.getspecs());
     LOGGER.debug("Base values evaluated {} -----  values {} ", this, baseSpecvalues);
 
-
-    if (!baseSpecvalues.isEmpty()) {
-      for (Object o : baseSpecvalues) {
-        EvaluationResult gen = generateValue(dataSource, localContextValues,  // BJCBJC SHould give me a value
-            EvaluationResultFactory.getEvaluationResult(o));
-
-        if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
-          if (gen.getValue() instanceof List) {
-            result.addAll(gen.getValue());
-          } else {
-            result.add(gen.getValue());
-          }
-          additionalresourcesresult.addAll(gen.getAdditionalResources());
-        }
-
-        if (!this.attr.isGenerateMultiple() && !result.isEmpty()) {
-          break;
-        }
-
+    // Tracked per evaluation: the same expression instance is shared by every message converted
+    // with the template.
+    boolean conditionSatisfied = false;
+    int valueCount = baseSpecvalues.isEmpty() ? 1 : baseSpecvalues.size();
+    for (int i = 0; i < valueCount; i++) {
+      EvaluationResult value = baseSpecvalues.isEmpty() ? baseinputValue
+          : EvaluationResultFactory.getEvaluationResult(baseSpecvalues.get(i));
+      Map<String, EvaluationResult> valueContextValues =
+          resolveValueContext(dataSource, localContextValues, value);
+      if (!this.isConditionSatisfied(valueContextValues)) {
+        continue;
       }
-    } else {
-      EvaluationResult gen = generateValue(dataSource, localContextValues, baseinputValue);
+      conditionSatisfied = true;
+      EvaluationResult gen =
+          evaluateExpression(dataSource, ImmutableMap.copyOf(valueContextValues), value);
+
       if (gen != null && gen.getValue() != null && !gen.isEmpty()) {
         if (gen.getValue() instanceof List) {
           result.addAll(gen.getValue());
@@ -205,15 +187,19 @@ public abstract class AbstractExpression implements Expression {
           result.add(gen.getValue());
         }
         additionalresourcesresult.addAll(gen.getAdditionalResources());
-
       }
 
+      if (!this.attr.isGenerateMultiple() && !result.isEmpty()) {
+        break;
+      }
     }
 
-
-    return getResult(result, additionalresourcesresult);
-
-
+    EvaluationResult evaluated = getResult(result, additionalresourcesresult);
+    if (conditionSatisfied && this.isRequired() && (evaluated == null || evaluated.isEmpty())) {
+      LOGGER.debug("Required constraint not satisfied for expression {}", this);
+      return EvaluationResultFactory.getRequiredConstraintFailureResult();
+    }
+    return evaluated;
   }
 
   private EvaluationResult getResult(List<Object> result,
@@ -255,7 +241,7 @@ public abstract class AbstractExpression implements Expression {
 
 
 
-  private EvaluationResult generateValue(InputDataExtractor dataSource,
+  private Map<String, EvaluationResult> resolveValueContext(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
 
     // resolve variables
@@ -265,13 +251,7 @@ public abstract class AbstractExpression implements Expression {
     }
     localContextValues.putAll(
         resolveVariables(this.getVariables(), ImmutableMap.copyOf(localContextValues), dataSource));
-
-    if (this.isConditionSatisfied(localContextValues)) {
-      conditionSatisfiedState = true;
-      return evaluateExpression(dataSource, ImmutableMap.copyOf(localContextValues), baseValue);
-
-    }
-    return null;
+    return localContextValues;
   }
 
 
@@ -292,10 +272,11 @@ public abstract class AbstractExpression implements Expression {
         } else {
           // enclose null in GenericParsingResult
           localVariables.put(VariableUtils.getVarName(var.getVariableName()),
-              new EmptyEvaluationResult());
+              EvaluationResultFactory.getEmptyEvaluationResult());
         }
       } catch (DataExtractionException e) {
-        LOGGER.error("Cannot extract value for variable {} ", var.getVariableName());
+        DiagnosticsCollector.withPathInMdc(
+            () -> LOGGER.error("Cannot extract value for variable {} ", var.getVariableName()));
         LOGGER.debug("Cannot extract value for variable {} ", var.getVariableName(), e);
       }
     }
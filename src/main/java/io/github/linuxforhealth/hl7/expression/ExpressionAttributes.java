@@ -6,7 +6,9 @@
 
 package io.github.linuxforhealth.hl7.expression;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,7 +24,6 @@ import org.apache.commons.text.matcher.StringMatcherFactory;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 
 import io.github.linuxforhealth.api.Condition;
 import io.github.linuxforhealth.api.Specification;
@@ -32,7 +33,9 @@ import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser
 import io.github.linuxforhealth.hl7.expression.variable.VariableGenerator;
 
 @JsonDeserialize(builder = ExpressionAttributes.Builder.class)
-public class ExpressionAttributes {
+public class ExpressionAttributes implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final String OBJECT_TYPE = Object.class.getSimpleName();
 
     // Basic properties of an expression
@@ -73,24 +76,29 @@ public class ExpressionAttributes {
 
         this.generateMultiple = exBuilder.generateList;
 
-        this.specs = getSpecList(exBuilder.rawSpecs, exBuilder.useGroup, this.generateMultiple);
+        this.specs = ImmutableList
+                .copyOf(getSpecList(exBuilder.rawSpecs, exBuilder.useGroup, this.generateMultiple));
         if (StringUtils.isNotBlank(exBuilder.rawCondition)) {
             this.condition = ConditionUtil.createCondition(exBuilder.rawCondition, exBuilder.useGroup);
         } else {
             this.condition = null;
         }
 
-        this.constants = new HashMap<>();
+        // Constants and variables are read on every evaluation, so they are made immutable once
+        // here and handed out without copying. Constant values may be null, hence no ImmutableMap.
+        Map<String, String> localConstants = new HashMap<>();
         if (exBuilder.constants != null && !exBuilder.constants.isEmpty()) {
-            this.constants.putAll(exBuilder.constants);
+            localConstants.putAll(exBuilder.constants);
         }
+        this.constants = Collections.unmodifiableMap(localConstants);
 
-        this.variables = new ArrayList<>();
+        List<Variable> localVariables = new ArrayList<>();
         if (exBuilder.rawVariables != null) {
             for (Entry<String, String> e : exBuilder.rawVariables.entrySet()) {
-                this.variables.add(VariableGenerator.parse(e.getKey(), e.getValue()));
+                localVariables.add(VariableGenerator.parse(e.getKey(), e.getValue()));
             }
         }
+        this.variables = ImmutableList.copyOf(localVariables);
 
         this.value = exBuilder.value;
         this.valueOf = exBuilder.valueOf;
@@ -137,11 +145,11 @@ public class ExpressionAttributes {
     }
 
     public List<Specification> getSpecs() {
-        return ImmutableList.copyOf(specs);
+        return specs;
     }
 
     public List<Variable> getVariables() {
-        return ImmutableList.copyOf(variables);
+        return variables;
     }
 
     public Condition getFilter() {
@@ -149,7 +157,7 @@ public class ExpressionAttributes {
     }
 
     public Map<String, String> getConstants() {
-        return ImmutableMap.copyOf(constants);
+        return constants;
     }
 
     public boolean isGenerateMultiple() {
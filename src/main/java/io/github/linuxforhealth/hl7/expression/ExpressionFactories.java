@@ -0,0 +1,72 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.ServiceLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.google.common.base.Preconditions;
+import io.github.linuxforhealth.api.Expression;
+
+/**
+ * Registry of the factories that create expressions by {@link ExpressionType}, so expressions are
+ * created without reflection. Holds the built in factories of the types, replaced by the factories
+ * of the {@link ExpressionFactoryProvider} services found when the class is loaded.
+ */
+public final class ExpressionFactories {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExpressionFactories.class);
+
+  private static final ExpressionFactories INSTANCE = new ExpressionFactories(
+      ServiceLoader.load(ExpressionFactoryProvider.class, ExpressionFactories.class.getClassLoader()));
+
+  private final Map<ExpressionType, ExpressionFactory> factories = new EnumMap<>(ExpressionType.class);
+
+  ExpressionFactories(Iterable<ExpressionFactoryProvider> providers) {
+    for (ExpressionType type : ExpressionType.values()) {
+      factories.put(type, type.getFactory());
+    }
+    for (ExpressionFactoryProvider provider : providers) {
+      for (Entry<ExpressionType, ExpressionFactory> entry : provider.getFactories().entrySet()) {
+        Preconditions.checkState(entry.getKey() != null && entry.getValue() != null,
+            "Expression factory provider %s has a null type or factory", provider.getClass().getName());
+        LOGGER.info("Expressions of type {} are created by {}", entry.getKey(), provider.getClass().getName());
+        factories.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  public static ExpressionFactories getInstance() {
+    return INSTANCE;
+  }
+
+  public ExpressionFactory getFactory(ExpressionType type) {
+    Preconditions.checkArgument(type != null, "type cannot be null");
+    return factories.get(type);
+  }
+
+  /**
+   * Creates the expression of the attributes with the factory of their expression type.
+   * 
+   * @param attr Attributes of the expression
+   * @return The expression, null if the attributes or their expression type are null
+   * @throws IllegalStateException if the factory fails to create the expression
+   */
+  public Expression create(ExpressionAttributes attr) {
+    if (attr == null || attr.getExpressionType() == null) {
+      return null;
+    }
+    try {
+      return factories.get(attr.getExpressionType()).create(attr);
+    } catch (RuntimeException e) {
+      throw new IllegalStateException("Error encountered while creating expression object.", e);
+    }
+  }
+
+}
@@ -0,0 +1,26 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import io.github.linuxforhealth.api.Expression;
+
+/**
+ * Creates the expressions of one {@link ExpressionType} from their attributes.
+ */
+@FunctionalInterface
+public interface ExpressionFactory {
+
+  /**
+   * Creates an expression.
+   * 
+   * @param attr Attributes of the expression
+   * @return The expression
+   * @throws IllegalArgumentException if the attributes are not valid for the expression
+   * @throws IllegalStateException if the expression cannot be created
+   */
+  Expression create(ExpressionAttributes attr);
+
+}
@@ -0,0 +1,25 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import java.util.Map;
+
+/**
+ * Service provider of expression factories, registered in
+ * META-INF/services/io.github.linuxforhealth.hl7.expression.ExpressionFactoryProvider. The
+ * factories of a provider replace the built in factories of their expression types, to use custom
+ * expression implementations.
+ */
+public interface ExpressionFactoryProvider {
+
+  /**
+   * Returns the factories of the provider.
+   * 
+   * @return Factories by expression type
+   */
+  Map<ExpressionType, ExpressionFactory> getFactories();
+
+}
@@ -9,24 +9,33 @@ import io.github.linuxforhealth.api.Expression;
 
 public enum ExpressionType {
 
-  HL7SPEC(Hl7Expression.class), //
-  RESOURCE(ResourceExpression.class), //
-  REFERENCE(ReferenceExpression.class), //
-  SIMPLE(SimpleExpression.class), //
-  NESTED(NestedExpression.class), //
-  JEXL(JEXLExpression.class);
+  HL7SPEC(Hl7Expression.class, Hl7Expression::new), //
+  RESOURCE(ResourceExpression.class, ResourceExpression::new), //
+  REFERENCE(ReferenceExpression.class, ReferenceExpression::new), //
+  SIMPLE(SimpleExpression.class, SimpleExpression::new), //
+  NESTED(NestedExpression.class, NestedExpression::new), //
+  JEXL(JEXLExpression.class, JEXLExpression::new);
 
 
   private Class<? extends Expression> evaluator;
+  private ExpressionFactory factory;
 
 
-  ExpressionType(Class<? extends Expression> evaluator) {
+  ExpressionType(Class<? extends Expression> evaluator, ExpressionFactory factory) {
     this.evaluator = evaluator;
-
+    this.factory = factory;
   }
 
   public Class<? extends Expression> getEvaluator() {
     return evaluator;
   }
 
+  /**
+   * Returns the built in factory of the expressions of this type, see {@link ExpressionFactories}
+   * for the factory in use.
+   */
+  public ExpressionFactory getFactory() {
+    return factory;
+  }
+
 }
@@ -14,11 +14,15 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Variable;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class JEXLExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(JEXLExpression.class);
 
   @JsonCreator
@@ -35,10 +39,11 @@ public class JEXLExpression extends AbstractExpression {
     Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
     for (Variable v : this.getVariables()) {
       if (!localContextValues.containsKey(v.getVariableName())) {
-        localContextValues.put(v.getVariableName(), new EmptyEvaluationResult());
+        localContextValues.put(v.getVariableName(), EvaluationResultFactory.getEmptyEvaluationResult());
       }
     }
-    LOGGER.info("Evaluating expression");
+    DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+        "Evaluating expression {}", this.getExpressionAttr().getName());
     LOGGER.debug("Evaluating value of {}", this.getExpressionAttr().getValueOf());
     return dataSource.evaluateJexlExpression(this.getExpressionAttr().getValueOf(), contextValues);
   }
@@ -7,6 +7,7 @@ package io.github.linuxforhealth.hl7.expression;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,9 +21,10 @@ import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.api.InputDataExtractor;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.hl7.resource.ResourceEvaluationResult;
-import io.github.linuxforhealth.hl7.resource.deserializer.HL7DataBasedResourceDeserializer;
 import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 
 /**
@@ -33,6 +35,8 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
  */
 
 public class NestedExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(NestedExpression.class);
 
   private Map<String, Expression> childexpressions;
@@ -44,7 +48,7 @@ public class NestedExpression extends AbstractExpression {
     if (attr.getExpressions() != null) {
       int index = 0;
       for (ExpressionAttributes nestedattrs : attr.getExpressions()) {
-        Expression e = HL7DataBasedResourceDeserializer.generateExpression(nestedattrs);
+        Expression e = ExpressionFactories.getInstance().create(nestedattrs);
         if (e != null) {
           this.childexpressions.put("key" + index, e);
           index++;
@@ -55,7 +59,7 @@ public class NestedExpression extends AbstractExpression {
     } else if (attr.getExpressionsMap() != null) {
 
       for (Entry<String, ExpressionAttributes> nestedattrs : attr.getExpressionsMap().entrySet()) {
-        Expression e = HL7DataBasedResourceDeserializer.generateExpression(nestedattrs.getValue());
+        Expression e = ExpressionFactories.getInstance().create(nestedattrs.getValue());
         if (e != null) {
           this.childexpressions.put(nestedattrs.getKey(), e);
 
@@ -70,7 +74,8 @@ public class NestedExpression extends AbstractExpression {
   @Override
   protected EvaluationResult evaluateExpression(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues, EvaluationResult baseValue) {
-    LOGGER.info("Evalutating expression");
+    DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EVALUATION_TRACE,
+        "Evaluating expression {}", this.getExpressionAttr().getName());
     LOGGER.debug("Evaluating child expressions {}", this.getExpressionAttr().getName());
     ResourceEvaluationResult result = ExpressionUtility.evaluate(dataSource, contextValues, baseValue,
         this.childexpressions);
@@ -97,4 +102,9 @@ public class NestedExpression extends AbstractExpression {
     }
   }
 
+
+  public Map<String, Expression> getChildExpressions() {
+    return Collections.unmodifiableMap(this.childexpressions);
+  }
+
 }
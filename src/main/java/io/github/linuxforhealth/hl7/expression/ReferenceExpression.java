@@ -33,6 +33,7 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ReferenceExpression extends AbstractExpression {
 
+  private static final long serialVersionUID = 1L;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceExpression.class);
 
@@ -112,4 +113,15 @@ public class ReferenceExpression extends AbstractExpression {
 
 
 
+  public HL7DataBasedResourceModel getData() {
+    return this.data;
+  }
+
+
+  public HL7DataBasedResourceModel getReferenceModel() {
+    return this.referenceModel;
+  }
+
+
+
 }
@@ -29,6 +29,7 @@ import io.github.linuxforhealth.hl7.resource.ResourceReader;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class ResourceExpression extends AbstractExpression {
 
+  private static final long serialVersionUID = 1L;
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ResourceExpression.class);
 
@@ -82,7 +83,7 @@ public class ResourceExpression extends AbstractExpression {
 
 
 
-  HL7DataBasedResourceModel getData() {
+  public HL7DataBasedResourceModel getData() {
     return this.data;
   }
 
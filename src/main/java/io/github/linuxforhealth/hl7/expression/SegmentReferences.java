@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.lang3.StringUtils;
+import com.google.common.collect.ImmutableSet;
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.ResourceModel;
+import io.github.linuxforhealth.api.Specification;
+import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
+import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser;
+import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
+
+/**
+ * Collects the names of the segments a resource model reads, following nested expressions and the
+ * resource and datatype models that expressions generate or reference. Only specs whose first token
+ * is a known segment name are parsed as segment references, see
+ * {@link io.github.linuxforhealth.hl7.message.util.SupportedSegments}, so the result covers every
+ * segment the model can read from a message.
+ */
+public final class SegmentReferences {
+
+  private final Set<String> segments = new TreeSet<>();
+  private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private SegmentReferences() {}
+
+  /**
+   * Returns the segments read by the resource model.
+   * 
+   * @param model {@link ResourceModel}
+   * @return Set of segment names
+   */
+  public static Set<String> collect(ResourceModel model) {
+    SegmentReferences references = new SegmentReferences();
+    references.addModel(model);
+    return ImmutableSet.copyOf(references.segments);
+  }
+
+  private void addModel(ResourceModel model) {
+    if (model instanceof HL7DataBasedResourceModel && visited.add(model)) {
+      addExpressions(((HL7DataBasedResourceModel) model).getEvaluatedExpressions());
+    }
+  }
+
+  private void addExpressions(Map<String, Expression> expressions) {
+    if (expressions != null) {
+      expressions.values().forEach(this::addExpression);
+    }
+  }
+
+  private void addExpression(Expression expression) {
+    if (expression == null || !visited.add(expression)) {
+      return;
+    }
+    for (Specification spec : expression.getspecs()) {
+      addSpecification(spec);
+    }
+    for (Variable variable : expression.getVariables()) {
+      for (String rawSpec : variable.getSpec()) {
+        addSpecification(SpecificationParser.parse(rawSpec, false, false));
+      }
+    }
+    if (expression instanceof NestedExpression) {
+      addExpressions(((NestedExpression) expression).getChildExpressions());
+    } else if (expression instanceof ResourceExpression) {
+      addModel(((ResourceExpression) expression).getData());
+    } else if (expression instanceof ReferenceExpression) {
+      addModel(((ReferenceExpression) expression).getData());
+      addModel(((ReferenceExpression) expression).getReferenceModel());
+    }
+  }
+
+  private void addSpecification(Specification spec) {
+    if (spec instanceof HL7Specification
+        && StringUtils.isNotBlank(((HL7Specification) spec).getSegment())) {
+      segments.add(((HL7Specification) spec).getSegment());
+    }
+  }
+
+}
@@ -28,6 +28,8 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class SimpleExpression extends AbstractExpression {
+  private static final long serialVersionUID = 1L;
+
   private static final Logger LOGGER = LoggerFactory.getLogger(SimpleExpression.class);
 
   private String value;
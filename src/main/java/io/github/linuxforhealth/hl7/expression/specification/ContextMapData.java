@@ -1,15 +1,17 @@
 package io.github.linuxforhealth.hl7.expression.specification;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
 import io.github.linuxforhealth.core.expression.ContextValueUtils;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 
-public class ContextMapData implements InputDataExtractor {
+public class ContextMapData implements InputDataExtractor, Serializable {
 
+  private static final long serialVersionUID = 1L;
 
 
 
@@ -36,7 +38,7 @@ public class ContextMapData implements InputDataExtractor {
     if (fetchedValue != null && !fetchedValue.isEmpty()) {
       return new SimpleEvaluationResult<>(ContextValueUtils.getSingleValue(fetchedValue.getValue()));
     } else {
-      return new EmptyEvaluationResult();
+      return EvaluationResultFactory.getEmptyEvaluationResult();
     }
   }
 
@@ -53,7 +55,7 @@ public class ContextMapData implements InputDataExtractor {
     if (res != null && !res.isEmpty()) {
       return res;
     } else {
-      return new EmptyEvaluationResult();
+      return EvaluationResultFactory.getEmptyEvaluationResult();
     }
 
   }
@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.expression.specification;
 
+import java.io.Serializable;
 import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
@@ -19,7 +20,9 @@ import io.github.linuxforhealth.hl7.message.HL7MessageData;
  * @author pbhallam
  */
 
-public class HL7Specification implements Specification {
+public class HL7Specification implements Specification, Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String segment;
   private String field;
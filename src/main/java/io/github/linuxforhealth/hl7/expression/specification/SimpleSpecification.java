@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.expression.specification;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
@@ -23,7 +24,14 @@ import io.github.linuxforhealth.core.expression.VariableUtils;
  * @author pbhallam
  */
 
-public class SimpleSpecification implements Specification {
+public class SimpleSpecification implements Specification, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final EvaluationResult USE_GROUP_TRUE =
+      EvaluationResultFactory.getEvaluationResult(true);
+  private static final EvaluationResult USE_GROUP_FALSE =
+      EvaluationResultFactory.getEvaluationResult(false);
 
   private String variableName;
   private boolean isExtractMultiple;
@@ -63,8 +71,7 @@ public class SimpleSpecification implements Specification {
   public EvaluationResult extractValueForSpec(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues) {
     Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
-    localContextValues.put(Constants.USE_GROUP,
-        EvaluationResultFactory.getEvaluationResult(useGroup));
+    localContextValues.put(Constants.USE_GROUP, useGroup ? USE_GROUP_TRUE : USE_GROUP_FALSE);
     return primaryDataSource.extractValueForSpec(this, localContextValues);
   }
 
@@ -73,8 +80,7 @@ public class SimpleSpecification implements Specification {
   public EvaluationResult extractMultipleValuesForSpec(InputDataExtractor dataSource,
       Map<String, EvaluationResult> contextValues) {
     Map<String, EvaluationResult> localContextValues = new HashMap<>(contextValues);
-    localContextValues.put(Constants.USE_GROUP,
-        EvaluationResultFactory.getEvaluationResult(useGroup));
+    localContextValues.put(Constants.USE_GROUP, useGroup ? USE_GROUP_TRUE : USE_GROUP_FALSE);
     return primaryDataSource.extractMultipleValuesForSpec(this, localContextValues);
   }
 
@@ -5,7 +5,7 @@ import java.util.Map;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 
 public class SpecificationUtil {
 
@@ -23,7 +23,7 @@ public class SpecificationUtil {
         }
 
     }
-    return new EmptyEvaluationResult();
+    return EvaluationResultFactory.getEmptyEvaluationResult();
 
 
   }
@@ -43,7 +43,7 @@ public class SpecificationUtil {
         }
 
     }
-    return new EmptyEvaluationResult();
+    return EvaluationResultFactory.getEmptyEvaluationResult();
 
   }
 }
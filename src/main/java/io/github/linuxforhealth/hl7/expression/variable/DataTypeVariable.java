@@ -5,6 +5,8 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -22,8 +24,11 @@ import io.github.linuxforhealth.hl7.data.ValueExtractor;
  */
 public class DataTypeVariable extends SimpleVariable {
 
+    private static final long serialVersionUID = 1L;
+
     private String valueType;
-    private ValueExtractor<Object, ?> resolver;
+    // The resolvers are lambdas, so they are looked up again when a template snapshot is read.
+    private transient ValueExtractor<Object, ?> resolver;
 
     /**
      * 
@@ -61,6 +66,11 @@ public class DataTypeVariable extends SimpleVariable {
 
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.resolver = SimpleDataTypeMapper.getValueResolver(this.valueType);
+    }
+
     public String getValueType() {
         return valueType;
     }
@@ -11,7 +11,7 @@ import java.util.Map;
 
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 
 /**
  * Defines Variable object that can be used during the expression evaluation.
@@ -21,6 +21,8 @@ import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
  */
 public class ExpressionVariable extends SimpleVariable {
 
+    private static final long serialVersionUID = 1L;
+
     private String expression;
 
     /**
@@ -52,7 +54,7 @@ public class ExpressionVariable extends SimpleVariable {
             result = getValueFromSpecs(contextValues, dataSource);
         }
         if (result == null) {
-            result = new EmptyEvaluationResult();
+            result = EvaluationResultFactory.getEmptyEvaluationResult();
         }
 
         if (this.expression != null) {
@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.expression.variable;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -25,7 +26,9 @@ import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser
  *
  * @author pbhallam
  */
-public class SimpleVariable implements Variable {
+public class SimpleVariable implements Variable, Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final String OBJECT_TYPE = Object.class.getSimpleName();
 
   private String name;
@@ -0,0 +1,92 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.api.Specification;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
+import io.github.linuxforhealth.hl7.parsing.ER7MessageIndex;
+import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
+
+/**
+ * {@link HL7MessageData} that answers message level lookups from the {@link ER7MessageIndex} of the
+ * message text: the message type, the message control id and MSH fields that are not read from a
+ * segment in the context. Everything else needs the message structure or typed values and is read
+ * from the HAPI model.
+ */
+public class ER7MessageData extends HL7MessageData {
+  private static final String MSH = "MSH";
+  private static final int MSH_SEGMENT = 0;
+
+  private ER7MessageIndex index;
+  private List<CharSequence> skippedSegments;
+
+  public ER7MessageData(ER7MessageIndex index, HL7DataExtractor hde) {
+    this(index, hde, ImmutableList.of());
+  }
+
+  public ER7MessageData(ER7MessageIndex index, HL7DataExtractor hde,
+      List<CharSequence> skippedSegments) {
+    super(hde);
+    Preconditions.checkArgument(index != null, "ER7MessageIndex cannot be null.");
+    Preconditions.checkArgument(skippedSegments != null, "skippedSegments cannot be null.");
+    this.index = index;
+    this.skippedSegments = skippedSegments;
+  }
+
+
+  @Override
+  public EvaluationResult extractMultipleValuesForSpec(Specification spec,
+      Map<String, EvaluationResult> contextValues) {
+    HL7Specification hl7spec = (HL7Specification) spec;
+    // Same value as the Terser lookup /MSH-n, which only reads the first repetition, component and
+    // subcomponent of the field.
+    if (MSH.equals(hl7spec.getSegment()) && !contextValues.containsKey(MSH)
+        && StringUtils.isNumeric(hl7spec.getField())) {
+      int field = NumberUtils.toInt(hl7spec.getField());
+      if (field > 0) {
+        return EvaluationResultFactory
+            .getEvaluationResult(index.getValue(MSH_SEGMENT, field, 0, 1, 1));
+      }
+    }
+    return super.extractMultipleValuesForSpec(spec, contextValues);
+  }
+
+
+  @Override
+  public String getName() {
+    return index.getMessageType();
+  }
+
+
+  @Override
+  public String getId() {
+    return index.getMessageControlId();
+  }
+
+
+  public ER7MessageIndex getIndex() {
+    return index;
+  }
+
+
+  /**
+   * Returns the raw text of the segments that were not given to the HAPI parser.
+   * 
+   * @return List of segments, empty if every segment was parsed
+   */
+  public List<CharSequence> getSkippedSegments() {
+    return skippedSegments;
+  }
+
+}
@@ -5,13 +5,16 @@
  */
 package io.github.linuxforhealth.hl7.message;
 
+import java.io.Serializable;
 import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.api.FHIRResourceTemplate;
 import io.github.linuxforhealth.api.ResourceModel;
 
 
 
-public class HL7FHIRResourceTemplate implements FHIRResourceTemplate {
+public class HL7FHIRResourceTemplate implements FHIRResourceTemplate, Serializable {
+  private static final long serialVersionUID = 1L;
+
   private HL7FHIRResourceTemplateAttributes attributes;// primary segment
 
 
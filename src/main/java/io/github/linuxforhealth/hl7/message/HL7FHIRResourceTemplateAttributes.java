@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.message;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
@@ -14,7 +15,9 @@ import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
 @JsonDeserialize(builder = HL7FHIRResourceTemplateAttributes.Builder.class)
-public class HL7FHIRResourceTemplateAttributes {
+public class HL7FHIRResourceTemplateAttributes implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private String resourceName;
   private boolean repeats;
@@ -49,6 +52,29 @@ public class HL7FHIRResourceTemplateAttributes {
     this.group = HL7Segment.parseGroup(builder.group);
   }
 
+  private HL7FHIRResourceTemplateAttributes(HL7FHIRResourceTemplateAttributes attributes,
+      ResourceModel resource) {
+    this.resourceName = attributes.resourceName;
+    this.resourcePath = attributes.resourcePath;
+    this.repeats = attributes.repeats;
+    this.isReferenced = attributes.isReferenced;
+    this.additionalSegments = attributes.additionalSegments;
+    this.segment = attributes.segment;
+    this.resource = resource;
+    this.group = attributes.group;
+  }
+
+  /**
+   * Returns a copy of these attributes with another resource model.
+   * 
+   * @param resource {@link ResourceModel}
+   * @return The copy
+   */
+  public HL7FHIRResourceTemplateAttributes withResource(ResourceModel resource) {
+    Preconditions.checkArgument(resource != null, "Resource model cannot be null");
+    return new HL7FHIRResourceTemplateAttributes(this, resource);
+  }
+
 
 
   public ResourceModel getResource() {
@@ -74,6 +100,11 @@ public class HL7FHIRResourceTemplateAttributes {
   }
 
 
+  public String getResourcePath() {
+    return resourcePath;
+  }
+
+
 
   public boolean isRepeats() {
     return repeats;
@@ -21,8 +21,9 @@ import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.Specification;
 import io.github.linuxforhealth.core.data.JexlEngineUtil;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.hl7.data.Hl7RelatedGeneralUtils;
@@ -96,7 +97,8 @@ public class HL7MessageData implements InputDataExtractor {
         res = extractSpecValues(hl7spec);
       }
     } catch (DataExtractionException e) {
-      LOGGER.warn("cannot extract value for variable {} ", hl7spec);
+      DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+          "cannot extract value for variable {} ", hl7spec);
       LOGGER.debug("cannot extract value for variable {} ", hl7spec, e);
     }
     if (res != null) {
@@ -121,7 +123,7 @@ public class HL7MessageData implements InputDataExtractor {
         return EvaluationResultFactory.getEvaluationResult(res.getValue());
       }
     }
-    return new EmptyEvaluationResult();
+    return EvaluationResultFactory.getEmptyEvaluationResult();
   }
 
 
@@ -202,7 +204,7 @@ public class HL7MessageData implements InputDataExtractor {
     if (fetchedValue != null && !fetchedValue.isEmpty()) {
       return EvaluationResultFactory.getEvaluationResult(getSingleValue(fetchedValue.getValue()));
     } else {
-      return new EmptyEvaluationResult();
+      return EvaluationResultFactory.getEmptyEvaluationResult();
     }
   }
 
@@ -37,6 +37,7 @@ import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.resource.ResourceResult;
@@ -56,7 +57,7 @@ import io.github.linuxforhealth.hl7.util.ExpressionUtility;
  */
 public class HL7MessageEngine implements MessageEngine {
 
-    private static final String RESOURCE = "Resource";
+    private static final String RESOURCE = DiagnosticsCollector.PATH_MDC_KEY;
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageEngine.class);
     private static final ObjectMapper OBJ_MAPPER = ObjectMapperUtil.getJSONInstance();
     private FHIRContext context;
@@ -104,6 +105,7 @@ public class HL7MessageEngine implements MessageEngine {
             List<ResourceResult> resourceResults = new ArrayList<>();
             try {
                 MDC.put(RESOURCE, rs.getName());
+                DiagnosticsCollector.enter(rs.getName());
                 List<ResourceResult> results = generateResources(hl7DataInput, hl7ResourceTemplate, localContextValues);
                 if (results != null) {
                     resourceResults.addAll(results);
@@ -129,11 +131,13 @@ public class HL7MessageEngine implements MessageEngine {
                 LOGGER.debug("Exception during resource {} generation", rs.getName(), e);
 
             } finally {
+                DiagnosticsCollector.exit();
                 MDC.remove(RESOURCE);
             }
         }
         for (ResourceResult r : resourceResultsWithEvalLater) {
             MDC.put(RESOURCE, "PendingExpressions");
+            DiagnosticsCollector.enter("PendingExpressions");
             try {
                 Map<String, EvaluationResult> primaryContextValues = new HashMap<>(localContextValues);
                 r.getPendingExpressions().getContextValues().entrySet()
@@ -157,6 +161,7 @@ public class HL7MessageEngine implements MessageEngine {
                 LOGGER.debug("Exception during resource PendingExpressions generation", e);
 
             } finally {
+                DiagnosticsCollector.exit();
                 MDC.remove(RESOURCE);
             }
         }
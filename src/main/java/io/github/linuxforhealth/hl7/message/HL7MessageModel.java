@@ -6,30 +6,38 @@
 package io.github.linuxforhealth.hl7.message;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
 import org.hl7.fhir.r4.model.Bundle;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
 import ca.uhn.hl7v2.HL7Exception;
 import ca.uhn.hl7v2.model.Message;
 import io.github.linuxforhealth.api.FHIRResourceTemplate;
 import io.github.linuxforhealth.api.MessageEngine;
 import io.github.linuxforhealth.api.MessageTemplate;
+import io.github.linuxforhealth.hl7.expression.SegmentReferences;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class HL7MessageModel implements MessageTemplate<Message> {
+public class HL7MessageModel implements MessageTemplate<Message>, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private List<FHIRResourceTemplate> resources;
     private String messageName;
+    private Set<String> referencedSegments;
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageModel.class);
 
     @JsonCreator
@@ -40,7 +48,20 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         if (resources != null && !resources.isEmpty()) {
             this.resources.addAll(resources);
         }
+        this.referencedSegments = collectReferencedSegments(this.resources);
+
+    }
 
+    private static Set<String> collectReferencedSegments(List<FHIRResourceTemplate> resources) {
+        Set<String> segments = new TreeSet<>();
+        segments.add("MSH");
+        for (FHIRResourceTemplate template : resources) {
+            HL7FHIRResourceTemplateAttributes attributes = ((HL7FHIRResourceTemplate) template).getAttributes();
+            segments.add(attributes.getSegment().getSegment());
+            attributes.getAdditionalSegments().forEach(s -> segments.add(s.getSegment()));
+            segments.addAll(SegmentReferences.collect(template.getResource()));
+        }
+        return ImmutableSet.copyOf(segments);
     }
 
     private void handleException(Exception e) {
@@ -54,23 +75,22 @@ public class HL7MessageModel implements MessageTemplate<Message> {
     }
 
 
+    /**
+     * Parses the message with the parser of the calling thread and converts it to a bundle.
+     *
+     * @throws IOException Not thrown since the parser of the calling thread is used, declared so
+     *         callers that catch it keep compiling
+     */
     public String convert(String message, MessageEngine engine) throws IOException {
         Preconditions.checkArgument(StringUtils.isNotBlank(message),
                 "Input Hl7 message cannot be blank");
-        HL7HapiParser hparser = null;
         try {
-            hparser = new HL7HapiParser();
-
-            Message hl7message = hparser.getParser().parse(message);
+            Message hl7message = HL7HapiParser.getThreadParser().getParser().parse(message);
             Bundle bundle = convert(hl7message, engine);
             return engine.getFHIRContext().encodeResourceToString(bundle);
 
         } catch (HL7Exception e) {
             throw new IllegalArgumentException("Cannot parse the message.", e);
-        } finally {
-            if (hparser != null) {
-                hparser.getContext().close();
-            }
         }
 
     }
@@ -82,7 +102,20 @@ public class HL7MessageModel implements MessageTemplate<Message> {
         Preconditions.checkArgument(engine != null, "MessageEngine cannot be null");
 
         HL7DataExtractor hl7DTE = new HL7DataExtractor(message);
-        HL7MessageData dataSource = new HL7MessageData(hl7DTE);
+        return convert(new HL7MessageData(hl7DTE), engine);
+    }
+
+
+    /**
+     * Converts the message behind the data source to FHIR bundle resource.
+     *
+     * @param dataSource {@link HL7MessageData} of the message
+     * @param engine {@link MessageEngine}
+     * @return {@link Bundle}
+     */
+    public Bundle convert(HL7MessageData dataSource, MessageEngine engine) {
+        Preconditions.checkArgument(dataSource != null, "Input Hl7 message data cannot be null");
+        Preconditions.checkArgument(engine != null, "MessageEngine cannot be null");
 
         Bundle bundle = null;
 
@@ -102,6 +135,17 @@ public class HL7MessageModel implements MessageTemplate<Message> {
     }
 
 
+    /**
+     * Returns the names of all segments the resource templates of this message read, computed when
+     * the templates are loaded.
+     *
+     * @return Set of segment names
+     */
+    public Set<String> getReferencedSegments() {
+        return referencedSegments;
+    }
+
+
     @Override
     public String getMessageName() {
         return messageName;
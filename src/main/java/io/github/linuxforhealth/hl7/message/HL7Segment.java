@@ -5,6 +5,7 @@
  */
 package io.github.linuxforhealth.hl7.message;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
@@ -20,7 +21,9 @@ import com.google.common.collect.ImmutableList;
  * @author pbhallam
  */
 
-public class HL7Segment {
+public class HL7Segment implements Serializable {
+
+  private static final long serialVersionUID = 1L;
 
   private static final String SEGMENT_CANNOT_BE_NULL_OR_EMPTY = "Segment cannot be null or empty";
   private static final String DEFAULT_GROUP = null;
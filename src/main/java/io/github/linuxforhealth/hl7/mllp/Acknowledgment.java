@@ -0,0 +1,76 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.mllp;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.linuxforhealth.hl7.parsing.ER7MessageIndex;
+
+/**
+ * Builds the original mode acknowledgment (ACK) of a message. The sending and receiving application
+ * and facility of the message are swapped, its version and processing id are kept and MSA-2 echoes
+ * its control id.
+ */
+final class Acknowledgment {
+
+    static final String ACCEPT = "AA";
+    static final String ERROR = "AE";
+    static final String REJECT = "AR";
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmssZ");
+    private static final String DEFAULT_VERSION = "2.6";
+    private static final String DEFAULT_PROCESSING_ID = "P";
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private Acknowledgment() {}
+
+    /**
+     * Builds the acknowledgment.
+     *
+     * @param message Index of the message, null if the message has no readable MSH segment
+     * @param code Acknowledgment code, MSA-1
+     * @param text Text message, MSA-3, must not contain delimiters or data from the message
+     * @return ER7 encoded acknowledgment with CR segment separators
+     */
+    static String build(ER7MessageIndex message, String code, String text) {
+        char fs = message != null ? message.getFieldSeparator() : '|';
+        String encodingCharacters = message != null ? field(message, 2) : "^~\\&";
+        String triggerEvent = message != null ? message.getValue(0, 9, 0, 2, 1) : null;
+        String processingId = message != null ? field(message, 11) : "";
+        String version = message != null ? field(message, 12) : "";
+
+        StringBuilder ack = new StringBuilder(160);
+        ack.append("MSH").append(fs).append(encodingCharacters)
+                .append(fs).append(message != null ? field(message, 5) : "")
+                .append(fs).append(message != null ? field(message, 6) : "")
+                .append(fs).append(message != null ? field(message, 3) : "")
+                .append(fs).append(message != null ? field(message, 4) : "")
+                .append(fs).append(ZonedDateTime.now().format(TIMESTAMP))
+                .append(fs)
+                .append(fs).append("ACK");
+        if (triggerEvent != null) {
+            ack.append(encodingCharacters.charAt(0)).append(triggerEvent);
+        }
+        ack.append(fs).append("ACK").append(SEQUENCE.incrementAndGet())
+                .append(fs).append(processingId.isEmpty() ? DEFAULT_PROCESSING_ID : processingId)
+                .append(fs).append(version.isEmpty() ? DEFAULT_VERSION : version)
+                .append('\r');
+        ack.append("MSA").append(fs).append(code)
+                .append(fs).append(message != null ? field(message, 10) : "");
+        if (text != null) {
+            ack.append(fs).append(text);
+        }
+        return ack.append('\r').toString();
+    }
+
+    private static String field(ER7MessageIndex message, int field) {
+        CharSequence value = message.getField(0, field);
+        return value != null ? value.toString() : "";
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.mllp;
+
+import org.hl7.fhir.r4.model.Bundle;
+
+/**
+ * Receives the bundles converted from the messages an {@link MLLPListener} receives.
+ */
+@FunctionalInterface
+public interface BundleSink {
+
+    /**
+     * Receives the bundle converted from a message. Called on a conversion worker thread, by several
+     * workers at the same time. The message is acknowledged with AA when this method returns and with
+     * AE when it throws, so a sink that stores the bundle should return only once it is stored.
+     *
+     * @param bundle Bundle converted from the message
+     * @param messageControlId MSH-10 of the message, null if not present
+     * @throws Exception if the bundle cannot be accepted
+     */
+    void accept(Bundle bundle, String messageControlId) throws Exception;
+
+}
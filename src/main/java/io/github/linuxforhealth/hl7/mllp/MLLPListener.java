@@ -0,0 +1,554 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.mllp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.parsing.ER7MessageIndex;
+import io.github.linuxforhealth.hl7.parsing.HL7MessageDecoder;
+
+/**
+ * Embedded MLLP listener that converts the messages it receives and hands the bundles to a
+ * {@link BundleSink}. Each message, framed as 0x0B message 0x1C 0x0D, is acknowledged on its
+ * connection once it was converted and the sink accepted the bundle: AA on success, AE when the
+ * conversion or the sink failed and AR when the message type is not supported or the message has no
+ * readable header. If processing a message throws an error, its connection is closed without an
+ * acknowledgment.
+ *
+ * <p>
+ * One selector thread reads and writes all connections and a bounded pool of workers converts.
+ * Messages of a connection are converted one at a time so that the acknowledgments keep the message
+ * order. When maxInFlight messages are being converted, a connection with a received message waits
+ * and is not read from, which pushes back on the sender through TCP flow control.
+ *
+ * <p>
+ * Listeners are created with {@link Builder}, started with {@link #start()} and stopped with
+ * {@link #close()}.
+ */
+public final class MLLPListener implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MLLPListener.class);
+
+    static final byte START_BLOCK = 0x0b;
+    static final byte END_BLOCK = 0x1c;
+    static final byte CARRIAGE_RETURN = 0x0d;
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final AtomicInteger LISTENER_NUMBER = new AtomicInteger();
+
+    private final HL7ToFHIRConverter converter;
+    private final ConverterOptions options;
+    private final BundleSink sink;
+    private final InetSocketAddress address;
+    private final int workers;
+    private final int maxInFlight;
+    private final int maxMessageSize;
+    private final Charset charset;
+
+    private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+    // Only used on the selector thread
+    private final Deque<Connection> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    private ServerSocketChannel server;
+    private Selector selector;
+    private ThreadPoolExecutor pool;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private boolean closed;
+
+    private MLLPListener(Builder builder) {
+        this.converter = builder.converter;
+        this.options = builder.options;
+        this.sink = builder.sink;
+        this.address = builder.address;
+        this.workers = builder.workers;
+        this.maxInFlight = builder.maxInFlight > 0 ? builder.maxInFlight : builder.workers * 2;
+        this.maxMessageSize = builder.maxMessageSize;
+        this.charset = builder.charset;
+    }
+
+    public static class Builder {
+        private HL7ToFHIRConverter converter;
+        private ConverterOptions options = ConverterOptions.SIMPLE_OPTIONS;
+        private BundleSink sink;
+        private InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        private int workers = Runtime.getRuntime().availableProcessors();
+        private int maxInFlight;
+        private int maxMessageSize = 16 * 1024 * 1024;
+        private Charset charset = StandardCharsets.UTF_8;
+
+        public Builder withConverter(HL7ToFHIRConverter converter) {
+            Preconditions.checkArgument(converter != null, "converter cannot be null");
+            this.converter = converter;
+            return this;
+        }
+
+        public Builder withOptions(ConverterOptions options) {
+            Preconditions.checkArgument(options != null, "options cannot be null");
+            this.options = options;
+            return this;
+        }
+
+        public Builder withSink(BundleSink sink) {
+            Preconditions.checkArgument(sink != null, "sink cannot be null");
+            this.sink = sink;
+            return this;
+        }
+
+        /**
+         * Sets the address to listen on, the default is an ephemeral port on the loopback address.
+         *
+         * @param address Address to bind, port 0 picks a free port
+         * @return this builder
+         */
+        public Builder withAddress(InetSocketAddress address) {
+            Preconditions.checkArgument(address != null, "address cannot be null");
+            this.address = address;
+            return this;
+        }
+
+        /**
+         * Sets the number of conversion worker threads, the default is one per available processor.
+         *
+         * @param workers Number of workers
+         * @return this builder
+         */
+        public Builder withWorkers(int workers) {
+            Preconditions.checkArgument(workers > 0, "workers must be greater than 0");
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Sets the number of messages converted or queued for conversion at a time, the default is
+         * twice the number of workers. Connections are not read from while the limit is reached.
+         *
+         * @param maxInFlight Maximum number of messages in flight
+         * @return this builder
+         */
+        public Builder withMaxInFlight(int maxInFlight) {
+            Preconditions.checkArgument(maxInFlight > 0, "maxInFlight must be greater than 0");
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Sets the size of the largest message accepted, a connection sending a larger message is
+         * closed. The default is 16 MB.
+         *
+         * @param maxMessageSize Maximum message size in bytes
+         * @return this builder
+         */
+        public Builder withMaxMessageSize(int maxMessageSize) {
+            Preconditions.checkArgument(maxMessageSize > 0, "maxMessageSize must be greater than 0");
+            this.maxMessageSize = maxMessageSize;
+            return this;
+        }
+
+        /**
+         * Sets the character set of messages that do not name one in MSH-18, the default is UTF-8.
+         * Acknowledgments are encoded with it.
+         *
+         * @param charset Character set
+         * @return this builder
+         */
+        public Builder withCharset(Charset charset) {
+            Preconditions.checkArgument(charset != null, "charset cannot be null");
+            this.charset = charset;
+            return this;
+        }
+
+        public MLLPListener build() {
+            Preconditions.checkState(converter != null, "converter is required");
+            Preconditions.checkState(sink != null, "sink is required");
+            return new MLLPListener(this);
+        }
+    }
+
+    /**
+     * Binds the address and starts the selector thread and the workers.
+     *
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        Preconditions.checkState(server == null, "listener was already started");
+        int number = LISTENER_NUMBER.incrementAndGet();
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        try {
+            server.bind(address);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            server.close();
+            selector.close();
+            throw e;
+        }
+        // maxInFlight bounds the tasks submitted, so the queue never rejects.
+        AtomicInteger workerNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight), runnable -> {
+                    Thread thread = new Thread(runnable,
+                            "mllp-" + number + "-worker-" + workerNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setUncaughtExceptionHandler(
+                            (t, e) -> LOGGER.error("Message processing failed, closing its connection", e));
+                    return thread;
+                });
+        running = true;
+        selectorThread = new Thread(this::run, "mllp-" + number + "-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        LOGGER.info("MLLP listener started on port {}", getPort());
+    }
+
+    /**
+     * Returns the port the listener is bound to.
+     */
+    public int getPort() {
+        Preconditions.checkState(server != null, "listener is not started");
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections, closes all connections and stops the workers. Messages being
+     * converted are not acknowledged.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server == null || closed) {
+            return;
+        }
+        closed = true;
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                processCompletions();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("MLLP listener stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+            running = false;
+        }
+    }
+
+    private void handle(SelectionKey key) throws IOException {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            SocketChannel channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                SelectionKey connectionKey = channel.register(selector, SelectionKey.OP_READ);
+                connectionKey.attach(new Connection(channel, connectionKey));
+            }
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(connection);
+            }
+            if (key.isValid() && key.isWritable()) {
+                write(connection);
+            }
+            if (connection.open) {
+                updateInterest(connection);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Closing MLLP connection after I/O error: {}", e.getMessage());
+            close(connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer input = connection.input;
+        if (!input.hasRemaining()) {
+            int capacity = input.capacity();
+            // Room for the largest message and its framing
+            int limit = maxMessageSize + 3;
+            if (capacity >= limit) {
+                LOGGER.warn("Closing MLLP connection, message is larger than {} bytes", maxMessageSize);
+                close(connection);
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate((int) Math.min((long) capacity * 2, limit));
+            input.flip();
+            larger.put(input);
+            connection.input = larger;
+            input = larger;
+        }
+        int read = connection.channel.read(input);
+        if (read < 0) {
+            close(connection);
+            return;
+        }
+        extractFrames(connection);
+        schedule(connection);
+    }
+
+    /**
+     * Moves the complete frames in the input buffer to the frames of the connection. Bytes outside of
+     * a frame are dropped.
+     */
+    private static void extractFrames(Connection connection) {
+        ByteBuffer input = connection.input;
+        byte[] bytes = input.array();
+        int limit = input.position();
+        int pos = 0;
+        while (pos < limit) {
+            int start = indexOf(bytes, START_BLOCK, pos, limit);
+            if (start < 0) {
+                pos = limit;
+                break;
+            }
+            int end = indexOf(bytes, END_BLOCK, start + 1, limit);
+            if (end < 0) {
+                pos = start;
+                break;
+            }
+            connection.frames.add(Arrays.copyOfRange(bytes, start + 1, end));
+            pos = end + 1;
+            if (pos < limit && bytes[pos] == CARRIAGE_RETURN) {
+                pos++;
+            }
+        }
+        input.position(pos).limit(limit);
+        input.compact();
+    }
+
+    private void write(Connection connection) throws IOException {
+        while (!connection.output.isEmpty()) {
+            ByteBuffer head = connection.output.peek();
+            connection.channel.write(head);
+            if (head.hasRemaining()) {
+                return;
+            }
+            connection.output.poll();
+        }
+    }
+
+    /**
+     * Reads from a connection only while none of its received messages waits for a worker, and
+     * writes while acknowledgments are pending.
+     */
+    private static void updateInterest(Connection connection) {
+        int ops = connection.frames.isEmpty() ? SelectionKey.OP_READ : 0;
+        if (!connection.output.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        connection.key.interestOps(ops);
+    }
+
+    private void schedule(Connection connection) {
+        if (!connection.open || connection.busy || connection.frames.isEmpty()) {
+            return;
+        }
+        if (inFlight >= maxInFlight) {
+            if (!connection.waiting) {
+                connection.waiting = true;
+                waiting.add(connection);
+            }
+            return;
+        }
+        byte[] frame = connection.frames.poll();
+        connection.busy = true;
+        inFlight++;
+        pool.execute(() -> {
+            byte[] ack = null;
+            try {
+                ack = process(frame);
+            } finally {
+                // Queued even when process throws, the connection is then closed without an
+                // acknowledgment and the sender resends on a new connection.
+                completions.add(new Completion(connection, ack));
+                selector.wakeup();
+            }
+        });
+    }
+
+    private void processCompletions() {
+        Completion completion;
+        while ((completion = completions.poll()) != null) {
+            Connection connection = completion.connection;
+            inFlight--;
+            connection.busy = false;
+            while (inFlight < maxInFlight && !waiting.isEmpty()) {
+                Connection next = waiting.poll();
+                next.waiting = false;
+                schedule(next);
+                if (next.open) {
+                    updateInterest(next);
+                }
+            }
+            if (!connection.open) {
+                continue;
+            }
+            if (completion.ack == null) {
+                close(connection);
+                continue;
+            }
+            connection.output.add(ByteBuffer.wrap(completion.ack));
+            try {
+                write(connection);
+                schedule(connection);
+                updateInterest(connection);
+            } catch (IOException e) {
+                LOGGER.warn("Closing MLLP connection after I/O error: {}", e.getMessage());
+                close(connection);
+            }
+        }
+    }
+
+    /**
+     * Converts a message and returns the framed acknowledgment. Runs on a worker thread.
+     */
+    private byte[] process(byte[] frame) {
+        String message = HL7MessageDecoder.decode(frame, 0, frame.length, charset);
+        ER7MessageIndex index;
+        try {
+            index = ER7MessageIndex.index(message);
+        } catch (IllegalArgumentException e) {
+            return frame(Acknowledgment.build(null, Acknowledgment.REJECT, "Message has no MSH segment"));
+        }
+        String code;
+        String text = null;
+        try {
+            Bundle bundle = converter.convertToBundle(message, options, null);
+            try {
+                sink.accept(bundle, index.getMessageControlId());
+                code = Acknowledgment.ACCEPT;
+            } catch (Exception e) {
+                LOGGER.warn("Bundle sink failed: {}", e.getClass().getSimpleName());
+                code = Acknowledgment.ERROR;
+                text = "Bundle not accepted";
+            }
+        } catch (UnsupportedOperationException e) {
+            code = Acknowledgment.REJECT;
+            text = "Unsupported message type";
+        } catch (RuntimeException e) {
+            LOGGER.warn("Message conversion failed: {}", e.getClass().getSimpleName());
+            code = Acknowledgment.ERROR;
+            text = "Conversion failed";
+        }
+        return frame(Acknowledgment.build(index, code, text));
+    }
+
+    private byte[] frame(String ack) {
+        byte[] content = ack.getBytes(charset);
+        byte[] framed = new byte[content.length + 3];
+        framed[0] = START_BLOCK;
+        System.arraycopy(content, 0, framed, 1, content.length);
+        framed[framed.length - 2] = END_BLOCK;
+        framed[framed.length - 1] = CARRIAGE_RETURN;
+        return framed;
+    }
+
+    private void close(Connection connection) {
+        connection.open = false;
+        connection.key.cancel();
+        closeQuietly(connection.channel);
+        if (connection.waiting) {
+            waiting.remove(connection);
+            connection.waiting = false;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            LOGGER.debug("Close failed", e);
+        }
+    }
+
+    private static final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Deque<byte[]> frames = new ArrayDeque<>();
+        private final Deque<ByteBuffer> output = new ArrayDeque<>();
+        private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private boolean open = true;
+        private boolean busy;
+        private boolean waiting;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private static final class Completion {
+        private final Connection connection;
+        private final byte[] ack;
+
+        Completion(Connection connection, byte[] ack) {
+            this.connection = connection;
+            this.ack = ack;
+        }
+    }
+
+}
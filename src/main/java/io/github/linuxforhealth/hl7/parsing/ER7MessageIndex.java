@@ -0,0 +1,435 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import ca.uhn.hl7v2.parser.DefaultEscaping;
+import ca.uhn.hl7v2.parser.EncodingCharacters;
+import ca.uhn.hl7v2.parser.Escaping;
+
+/**
+ * Lightweight index over the ER7 (pipe and hat) text of a single HL7 message, used to route a
+ * message, filter its segments and acknowledge it without the HAPI model. Indexing is a single pass
+ * over a char array that records where every segment starts and ends and where every field separator
+ * is. Repetitions, components and subcomponents are located on demand by scanning within the bounds
+ * of one field. {@link #index(String)} copies the text into the array once,
+ * {@link #index(char[], int, int)} reads the array of the caller.
+ *
+ * <p>
+ * The index is not a parser for the templates, it has no notion of message structures or data
+ * types. Segment groups, typed fields and everything else the templates evaluate are read from the
+ * HAPI model, see {@link HL7DataExtractor}.
+ *
+ * <p>
+ * Field numbers and component numbers start at 1 and repetitions start at 0, the same as the HAPI
+ * Terser. As in HL7, MSH-1 is the field separator itself and MSH-2 holds the encoding characters.
+ */
+public final class ER7MessageIndex {
+
+    private static final String MSH = "MSH";
+    private static final char MLLP_START_BLOCK = 0x0b;
+    private static final char MLLP_END_BLOCK = 0x1c;
+    private static final Escaping ESCAPING = new DefaultEscaping();
+
+    private final char[] buffer;
+    private final int start;
+    private final int end;
+    private final char fieldSeparator;
+    private final char componentSeparator;
+    private final char repetitionSeparator;
+    private final char escapeCharacter;
+    private final char subcomponentSeparator;
+    private final EncodingCharacters encodingCharacters;
+
+    private final int segmentCount;
+    private final int[] segmentStarts;
+    private final int[] segmentEnds;
+    // Positions of the field separators of all segments, firstSeparators[s] is the index of the first
+    // separator of segment s and firstSeparators[s + 1] is one past its last separator.
+    private final int[] separators;
+    private final int[] firstSeparators;
+
+    private ER7MessageIndex(char[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        int limit = offset + length;
+        int pos = offset;
+        while (pos < limit && (buffer[pos] == MLLP_START_BLOCK || Character.isWhitespace(buffer[pos]))) {
+            pos++;
+        }
+        Preconditions.checkArgument(limit - pos > 8 && regionMatches(pos, MSH),
+                "Message does not start with a MSH segment");
+        this.start = pos;
+        this.fieldSeparator = buffer[pos + 3];
+
+        int encodingEnd = pos + 4;
+        while (encodingEnd < limit && buffer[encodingEnd] != fieldSeparator
+                && !isSegmentTerminator(buffer[encodingEnd])) {
+            encodingEnd++;
+        }
+        String encoding = new String(buffer, pos + 4, encodingEnd - pos - 4);
+        Preconditions.checkArgument(encoding.length() >= 4, "MSH-2 does not define the encoding characters");
+        this.componentSeparator = encoding.charAt(0);
+        this.repetitionSeparator = encoding.charAt(1);
+        this.escapeCharacter = encoding.charAt(2);
+        this.subcomponentSeparator = encoding.charAt(3);
+        this.encodingCharacters = new EncodingCharacters(fieldSeparator, encoding.substring(0, 4));
+
+        int[] segStarts = new int[32];
+        int[] segEnds = new int[32];
+        int[] firstSeps = new int[33];
+        int[] seps = new int[256];
+        int segments = 0;
+        int separatorCount = 0;
+        int messageEnd = limit;
+        while (pos < limit) {
+            char c = buffer[pos];
+            if (isSegmentTerminator(c) || c == MLLP_END_BLOCK) {
+                pos++;
+                continue;
+            }
+            // Only the first message is indexed, a second MSH starts the next one.
+            if (segments > 0 && regionMatches(pos, MSH) && pos + 3 < limit && buffer[pos + 3] == fieldSeparator) {
+                messageEnd = pos;
+                break;
+            }
+            if (segments == segStarts.length) {
+                segStarts = Arrays.copyOf(segStarts, segments * 2);
+                segEnds = Arrays.copyOf(segEnds, segments * 2);
+                firstSeps = Arrays.copyOf(firstSeps, segments * 2 + 1);
+            }
+            segStarts[segments] = pos;
+            firstSeps[segments] = separatorCount;
+            while (pos < limit && !isSegmentTerminator(buffer[pos]) && buffer[pos] != MLLP_END_BLOCK) {
+                if (buffer[pos] == fieldSeparator) {
+                    if (separatorCount == seps.length) {
+                        seps = Arrays.copyOf(seps, separatorCount * 2);
+                    }
+                    seps[separatorCount++] = pos;
+                }
+                pos++;
+            }
+            segEnds[segments] = pos;
+            segments++;
+        }
+        firstSeps[segments] = separatorCount;
+
+        this.end = messageEnd;
+        this.segmentCount = segments;
+        this.segmentStarts = segStarts;
+        this.segmentEnds = segEnds;
+        this.firstSeparators = firstSeps;
+        this.separators = seps;
+    }
+
+    /**
+     * Indexes the first message in the text, which is copied into a new char array.
+     *
+     * @param message ER7 encoded HL7 message
+     * @return {@link ER7MessageIndex}
+     * @throws IllegalArgumentException if the text does not start with a MSH segment
+     */
+    public static ER7MessageIndex index(String message) {
+        Preconditions.checkArgument(message != null, "message cannot be null");
+        return index(message.toCharArray(), 0, message.length());
+    }
+
+    /**
+     * Indexes the first message in the given region of the buffer. The buffer is shared, not copied,
+     * and must not be modified while the index is in use.
+     *
+     * @param buffer Characters holding the ER7 encoded HL7 message
+     * @param offset Start of the message in the buffer
+     * @param length Number of characters available from the offset
+     * @return {@link ER7MessageIndex}
+     * @throws IllegalArgumentException if the region does not start with a MSH segment
+     */
+    public static ER7MessageIndex index(char[] buffer, int offset, int length) {
+        Preconditions.checkArgument(buffer != null, "buffer cannot be null");
+        Preconditions.checkPositionIndexes(offset, offset + length, buffer.length);
+        return new ER7MessageIndex(buffer, offset, length);
+    }
+
+    public char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    public EncodingCharacters getEncodingCharacters() {
+        return encodingCharacters;
+    }
+
+    /**
+     * Returns the offset of the first character of the message in the buffer.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the offset one past the last character of the message in the buffer. Anything after it
+     * belongs to the following messages.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the name of the segment at the given position in the message.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @return segment name, example: PID
+     */
+    public String getSegmentName(int segment) {
+        Preconditions.checkElementIndex(segment, segmentCount);
+        int segmentStart = segmentStarts[segment];
+        int nameEnd = firstSeparators[segment] < firstSeparators[segment + 1]
+                ? separators[firstSeparators[segment]]
+                : segmentEnds[segment];
+        return new String(buffer, segmentStart, nameEnd - segmentStart);
+    }
+
+    /**
+     * Checks the name of the segment at the given position without creating a String.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @param name Segment name, example: PID
+     * @return true if the segment has the given name
+     */
+    public boolean isSegment(int segment, String name) {
+        Preconditions.checkElementIndex(segment, segmentCount);
+        int segmentStart = segmentStarts[segment];
+        int nameEnd = segmentStart + name.length();
+        return nameEnd <= segmentEnds[segment] && regionMatches(segmentStart, name)
+                && (nameEnd == segmentEnds[segment] || buffer[nameEnd] == fieldSeparator);
+    }
+
+    /**
+     * Finds the next segment with the given name.
+     *
+     * @param name Segment name, example: OBX
+     * @param fromSegment Position to start searching from
+     * @return position of the segment or -1 if there is no such segment
+     */
+    public int indexOf(String name, int fromSegment) {
+        Preconditions.checkArgument(name != null, "name cannot be null");
+        for (int s = Math.max(fromSegment, 0); s < segmentCount; s++) {
+            if (isSegment(s, name)) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the raw text of the whole segment, without the segment terminator, as a view over the
+     * shared buffer.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @return read only view of the segment
+     */
+    public CharSequence getSegment(int segment) {
+        Preconditions.checkElementIndex(segment, segmentCount);
+        return view(range(segmentStarts[segment], segmentEnds[segment]));
+    }
+
+    /**
+     * Returns the number of fields present in the segment, trailing empty fields included.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @return number of fields
+     */
+    public int getFieldCount(int segment) {
+        Preconditions.checkElementIndex(segment, segmentCount);
+        int count = firstSeparators[segment + 1] - firstSeparators[segment];
+        return isMsh(segment) ? count + 1 : count;
+    }
+
+    /**
+     * Returns the raw text of the whole field, repetitions included, as a view over the shared buffer.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @param field Field number, starting at 1
+     * @return read only view of the field or null if the segment has no such field
+     */
+    public CharSequence getField(int segment, int field) {
+        long range = fieldRange(segment, field);
+        return range < 0 ? null : view(range);
+    }
+
+    /**
+     * Returns the raw, still escaped text of a subcomponent as a view over the shared buffer.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @param field Field number, starting at 1
+     * @param rep Repetition of the field, starting at 0
+     * @param component Component number, starting at 1
+     * @param subComponent Subcomponent number, starting at 1
+     * @return read only view of the value or null if the message has no such value
+     */
+    public CharSequence getRawValue(int segment, int field, int rep, int component, int subComponent) {
+        long range = valueRange(segment, field, rep, component, subComponent);
+        return range < 0 ? null : view(range);
+    }
+
+    /**
+     * Returns the unescaped value of a subcomponent, the same value the HAPI Terser returns for it.
+     *
+     * @param segment Position of the segment, starting at 0
+     * @param field Field number, starting at 1
+     * @param rep Repetition of the field, starting at 0
+     * @param component Component number, starting at 1
+     * @param subComponent Subcomponent number, starting at 1
+     * @return value, null if the message has no such value or it is empty
+     */
+    public String getValue(int segment, int field, int rep, int component, int subComponent) {
+        long range = valueRange(segment, field, rep, component, subComponent);
+        if (range < 0) {
+            return null;
+        }
+        int valueStart = rangeStart(range);
+        int valueEnd = rangeEnd(range);
+        if (valueStart == valueEnd) {
+            return null;
+        }
+        String value = new String(buffer, valueStart, valueEnd - valueStart);
+        if (value.indexOf(escapeCharacter) >= 0 && !isEncodingField(segment, field)) {
+            return ESCAPING.unescape(value, encodingCharacters);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the message type from MSH-9 in the form the templates are registered under, example:
+     * ADT_A01.
+     *
+     * @return message type
+     */
+    public String getMessageType() {
+        return getValue(0, 9, 0, 1, 1) + "_" + getValue(0, 9, 0, 2, 1);
+    }
+
+    /**
+     * Returns the message control id from MSH-10.
+     *
+     * @return message control id, null if not present
+     */
+    public String getMessageControlId() {
+        return getValue(0, 10, 0, 1, 1);
+    }
+
+    private long fieldRange(int segment, int field) {
+        Preconditions.checkElementIndex(segment, segmentCount);
+        Preconditions.checkArgument(field > 0, "field must be greater than 0");
+        int first = firstSeparators[segment];
+        int count = firstSeparators[segment + 1] - first;
+        int k = field;
+        if (isMsh(segment)) {
+            if (field == 1) {
+                return range(separators[first], separators[first] + 1);
+            }
+            k = field - 1;
+        }
+        if (k > count) {
+            return -1;
+        }
+        int fieldStart = separators[first + k - 1] + 1;
+        int fieldEnd = k < count ? separators[first + k] : segmentEnds[segment];
+        return range(fieldStart, fieldEnd);
+    }
+
+    private long valueRange(int segment, int field, int rep, int component, int subComponent) {
+        Preconditions.checkArgument(rep >= 0, "rep cannot be negative");
+        Preconditions.checkArgument(component > 0, "component must be greater than 0");
+        Preconditions.checkArgument(subComponent > 0, "subComponent must be greater than 0");
+        long range = fieldRange(segment, field);
+        if (range < 0) {
+            return -1;
+        }
+        // MSH-1 and MSH-2 hold the separators themselves and are never split.
+        if (isEncodingField(segment, field)) {
+            return rep == 0 && component == 1 && subComponent == 1 ? range : -1;
+        }
+        range = split(range, repetitionSeparator, rep);
+        if (range >= 0) {
+            range = split(range, componentSeparator, component - 1);
+        }
+        if (range >= 0) {
+            range = split(range, subcomponentSeparator, subComponent - 1);
+        }
+        return range;
+    }
+
+    /**
+     * Narrows the range to the part with the given position, parts being delimited by the separator.
+     */
+    private long split(long range, char separator, int part) {
+        int partStart = rangeStart(range);
+        int rangeEnd = rangeEnd(range);
+        for (int p = 0; p < part; p++) {
+            while (partStart < rangeEnd && buffer[partStart] != separator) {
+                partStart++;
+            }
+            if (partStart == rangeEnd) {
+                return -1;
+            }
+            partStart++;
+        }
+        int partEnd = partStart;
+        while (partEnd < rangeEnd && buffer[partEnd] != separator) {
+            partEnd++;
+        }
+        return range(partStart, partEnd);
+    }
+
+    private boolean isMsh(int segment) {
+        return segment == 0;
+    }
+
+    private boolean isEncodingField(int segment, int field) {
+        return isMsh(segment) && field <= 2;
+    }
+
+    private boolean regionMatches(int pos, String text) {
+        if (pos + text.length() > buffer.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[pos + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private CharSequence view(long range) {
+        int valueStart = rangeStart(range);
+        return CharBuffer.wrap(buffer, valueStart, rangeEnd(range) - valueStart).asReadOnlyBuffer();
+    }
+
+    private static boolean isSegmentTerminator(char c) {
+        return c == '\r' || c == '\n';
+    }
+
+    private static long range(int rangeStart, int rangeEnd) {
+        return ((long) rangeStart << 32) | rangeEnd;
+    }
+
+    private static int rangeStart(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int rangeEnd(long range) {
+        return (int) range;
+    }
+
+}
@@ -0,0 +1,307 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads the messages of an HL7 batch file one at a time. The file may be wrapped in a file header
+ * (FHS) and trailer (FTS) and hold batches wrapped in a batch header (BHS) and trailer (BTS), the
+ * envelopes are optional. Only the segments of the current message are held in memory.
+ *
+ * <p>
+ * The envelope is reported to a {@link Listener} while messages are read. The end of a batch is
+ * reported after its last message was returned, together with the number of messages read and the
+ * count from BTS-1, so that callers can check the count. A batch that is not closed by a BTS segment
+ * is ended when the next batch, the file trailer or the end of input is read, with no expected count.
+ *
+ * <p>
+ * Segments may be separated by CR, LF or CRLF, MLLP framing bytes are ignored. Instances are not
+ * thread safe.
+ */
+public final class HL7BatchReader implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HL7BatchReader.class);
+
+    private static final char MLLP_START_BLOCK = 0x0b;
+    private static final char MLLP_END_BLOCK = 0x1c;
+    private static final char SEGMENT_SEPARATOR = '\r';
+    private static final int CONTROL_ID_FIELD = 11;
+
+    /**
+     * Receives the envelope of the batch file. All methods are called on the thread that reads.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the file header (FHS) is read.
+         *
+         * @param fileControlId FHS-11, null if not present
+         */
+        default void fileStarted(String fileControlId) {}
+
+        /**
+         * Called when a batch header (BHS) is read.
+         *
+         * @param batchNumber One based number of the batch in the file
+         * @param batchControlId BHS-11, null if not present
+         */
+        default void batchStarted(int batchNumber, String batchControlId) {}
+
+        /**
+         * Called when a batch ends, after its last message was returned.
+         *
+         * @param batchNumber One based number of the batch in the file
+         * @param messageCount Number of messages read in the batch
+         * @param expectedMessageCount BTS-1, null if the batch has no trailer or BTS-1 is not a number
+         */
+        default void batchEnded(int batchNumber, int messageCount, Integer expectedMessageCount) {}
+
+        /**
+         * Called when the file trailer (FTS) is read.
+         *
+         * @param batchCount Number of batches read in the file
+         * @param expectedBatchCount FTS-1, null if it is not a number
+         */
+        default void fileEnded(int batchCount, Integer expectedBatchCount) {}
+
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {};
+
+    private final Reader reader;
+    private final Listener listener;
+    private final char[] buffer = new char[8192];
+    private int bufferPosition;
+    private int bufferLimit;
+    private final StringBuilder segment = new StringBuilder();
+    private String pendingSegment;
+    private long pendingSegmentOffset;
+    private long offset;
+    private long segmentOffset;
+    private long messageOffset = -1;
+    private char fieldSeparator = '|';
+    private boolean batchOpen;
+    private int batchCount;
+    private int batchMessageCount;
+    private long messageCount;
+
+    /**
+     * Creates a reader for the input.
+     *
+     * @param input HL7 batch file or messages
+     * @param listener Receives the envelope, can be null
+     */
+    public HL7BatchReader(Reader input, Listener listener) {
+        Preconditions.checkArgument(input != null, "input cannot be null");
+        this.reader = input;
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Returns the next message, its segments separated by CR.
+     *
+     * @return message, null at the end of input
+     * @throws IOException if the input cannot be read
+     */
+    public String nextMessage() throws IOException {
+        StringBuilder message = null;
+        while (true) {
+            String current = nextSegment();
+            if (current == null) {
+                if (message != null) {
+                    return endMessage(message);
+                }
+                if (batchOpen) {
+                    LOGGER.warn("Batch {} has no trailer segment", batchCount);
+                    endBatch(null);
+                }
+                return null;
+            }
+            String name = current.length() >= 3 ? current.substring(0, 3) : current;
+            boolean messageSegment = !"FHS".equals(name) && !"BHS".equals(name) && !"BTS".equals(name)
+                    && !"FTS".equals(name);
+            if (message != null && (!messageSegment || "MSH".equals(name))) {
+                pendingSegment = current;
+                pendingSegmentOffset = segmentOffset;
+                return endMessage(message);
+            }
+            if ("MSH".equals(name)) {
+                setFieldSeparator(current);
+                message = new StringBuilder(current.length() * 8);
+                message.append(current).append(SEGMENT_SEPARATOR);
+                messageOffset = segmentOffset;
+            } else if (message != null) {
+                message.append(current).append(SEGMENT_SEPARATOR);
+            } else if ("FHS".equals(name)) {
+                setFieldSeparator(current);
+                listener.fileStarted(getHeaderField(current, CONTROL_ID_FIELD));
+            } else if ("BHS".equals(name)) {
+                if (batchOpen) {
+                    LOGGER.warn("Batch {} has no trailer segment", batchCount);
+                    endBatch(null);
+                }
+                setFieldSeparator(current);
+                batchOpen = true;
+                batchCount++;
+                batchMessageCount = 0;
+                listener.batchStarted(batchCount, getHeaderField(current, CONTROL_ID_FIELD));
+            } else if ("BTS".equals(name)) {
+                if (batchOpen) {
+                    endBatch(getCount(current));
+                } else {
+                    LOGGER.warn("Batch trailer segment without batch header");
+                }
+            } else if ("FTS".equals(name)) {
+                if (batchOpen) {
+                    LOGGER.warn("Batch {} has no trailer segment", batchCount);
+                    endBatch(null);
+                }
+                listener.fileEnded(batchCount, getCount(current));
+            } else {
+                LOGGER.warn("Skipping {} segment outside of a message", name);
+            }
+        }
+    }
+
+    /**
+     * Returns the offset, in characters from the start of input, of the message last returned by
+     * {@link #nextMessage()}, -1 before the first message.
+     */
+    public long getMessageOffset() {
+        return messageOffset;
+    }
+
+    /**
+     * Returns the number of messages read.
+     */
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the number of batch headers read.
+     */
+    public int getBatchCount() {
+        return batchCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String endMessage(StringBuilder message) {
+        messageCount++;
+        if (batchOpen) {
+            batchMessageCount++;
+        }
+        return message.toString();
+    }
+
+    private void endBatch(Integer expectedMessageCount) {
+        batchOpen = false;
+        if (expectedMessageCount != null && expectedMessageCount != batchMessageCount) {
+            LOGGER.warn("Batch {} has {} messages, its trailer segment counts {}", batchCount, batchMessageCount,
+                    expectedMessageCount);
+        }
+        listener.batchEnded(batchCount, batchMessageCount, expectedMessageCount);
+    }
+
+    /**
+     * Reads the next non empty segment, null at the end of input.
+     */
+    private String nextSegment() throws IOException {
+        if (pendingSegment != null) {
+            String current = pendingSegment;
+            segmentOffset = pendingSegmentOffset;
+            pendingSegment = null;
+            return current;
+        }
+        segment.setLength(0);
+        while (bufferPosition < bufferLimit || fillBuffer()) {
+            char c = buffer[bufferPosition++];
+            offset++;
+            if (c == '\r' || c == '\n') {
+                if (segment.length() > 0) {
+                    return segment.toString();
+                }
+            } else if (segment.length() == 0 && (c == MLLP_START_BLOCK || c == MLLP_END_BLOCK
+                    || Character.isWhitespace(c))) {
+                // Framing and blank lines between messages
+            } else {
+                if (segment.length() == 0) {
+                    segmentOffset = offset - 1;
+                }
+                segment.append(c);
+            }
+        }
+        return segment.length() > 0 ? segment.toString() : null;
+    }
+
+    private boolean fillBuffer() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        bufferPosition = 0;
+        bufferLimit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    private void setFieldSeparator(String header) {
+        if (header.length() > 3) {
+            fieldSeparator = header.charAt(3);
+        }
+    }
+
+    /**
+     * Returns the field of a FHS or BHS segment, which are numbered like MSH: field 1 is the field
+     * separator.
+     */
+    private String getHeaderField(String header, int field) {
+        return getField(header, field - 1);
+    }
+
+    private Integer getCount(String trailer) {
+        String value = getField(trailer, 1);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Trailer segment count is not a number");
+            return null;
+        }
+    }
+
+    /**
+     * Returns the nth field of the segment, where the segment name is field 0, null if empty or not
+     * present.
+     */
+    private String getField(String segment, int n) {
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            start = segment.indexOf(fieldSeparator, start);
+            if (start < 0) {
+                return null;
+            }
+            start++;
+        }
+        int end = segment.indexOf(fieldSeparator, start);
+        String value = segment.substring(start, end < 0 ? segment.length() : end);
+        return value.isEmpty() ? null : value;
+    }
+
+}
@@ -17,6 +17,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
 import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.AbstractGroup;
 import ca.uhn.hl7v2.model.Composite;
 import ca.uhn.hl7v2.model.Group;
 import ca.uhn.hl7v2.model.Message;
@@ -28,6 +29,8 @@ import ca.uhn.hl7v2.model.Unmodifiable;
 import ca.uhn.hl7v2.model.Variable;
 import ca.uhn.hl7v2.model.v26.segment.MSH;
 import ca.uhn.hl7v2.util.Terser;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.hl7.parsing.result.Hl7ParsingStringResult;
 import io.github.linuxforhealth.hl7.parsing.result.Hl7ParsingStructureResult;
 import io.github.linuxforhealth.hl7.parsing.result.Hl7ParsingTypeResult;
@@ -48,6 +51,48 @@ public class HL7DataExtractor {
         this.message = message;
     }
 
+    /**
+     * Checks that the group defines a structure with the given name. Group.get and Group.getAll throw
+     * HL7Exception for names that are not part of the group, and templates routinely ask for
+     * segments that a message type does not have, so this is checked before calling them.
+     */
+    private static boolean isDefined(Group group, String name) {
+        for (String definedName : group.getNames()) {
+            if (definedName.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of repetitions of the named structure that are present in the group. The
+     * name must be defined in the group.
+     */
+    private static int currentReps(Group group, String name) throws HL7Exception {
+        if (group instanceof AbstractGroup) {
+            return ((AbstractGroup) group).currentReps(name);
+        }
+        return group.getAll(name).length;
+    }
+
+    /**
+     * Checks that the repetition of the named structure exists. Asking the group for the next
+     * repetition would create an empty one and asking beyond that throws HL7Exception.
+     */
+    private static boolean hasRep(Group group, String name, int rep) throws HL7Exception {
+        return isDefined(group, name) && rep < currentReps(group, name);
+    }
+
+    // Diagnostics only carry structure names, the string form of HAPI types includes message data.
+    private static String nameOf(Structure structure) {
+        return structure != null ? structure.getName() : null;
+    }
+
+    private static String nameOf(Type type) {
+        return type != null ? type.getName() : null;
+    }
+
     private static Predicate<Structure> isEmpty() {
         return (Structure p) -> {
             try {
@@ -71,8 +116,11 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(groupRep >= 0, "groupRep should be greater than or equal to 0");
             Preconditions.checkArgument(rep >= 0, "Segment rep cannot be less than 0");
 
+            if (!hasRep(message, group, groupRep)) {
+                return new Hl7ParsingStructureResult(new ArrayList<>());
+            }
             Structure groupStr = message.get(group, groupRep);
-            if (groupStr instanceof Group) {
+            if (groupStr instanceof Group && hasRep((Group) groupStr, segment, rep)) {
                 Group gp = (Group) groupStr;
                 Structure s = gp.get(segment, rep);
                 if (s != null && !s.isEmpty()) {
@@ -89,7 +137,8 @@ public class HL7DataExtractor {
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             String spec = group + " " + groupRep + " " + segment;
             LOGGER.debug(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep, e);
-            LOGGER.warn(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep);
             return new Hl7ParsingStructureResult(new ArrayList<>());
 
         }
@@ -105,8 +154,11 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(StringUtils.isNotBlank(segment), SEGMENT_CANNOT_BE_NULL_OR_EMPTY);
             Preconditions.checkArgument(groupRep >= 0, "groupRep should be greater than or equal to 0");
 
+            if (!hasRep(message, group, groupRep)) {
+                return new Hl7ParsingStructureResult(new ArrayList<>());
+            }
             Structure groupStr = message.get(group, groupRep);
-            if (groupStr instanceof Group) {
+            if (groupStr instanceof Group && isDefined((Group) groupStr, segment)) {
                 Group gp = (Group) groupStr;
                 Structure[] s = gp.getAll(segment);
                 List<Structure> list = Lists.newArrayList(s);
@@ -120,7 +172,8 @@ public class HL7DataExtractor {
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             String spec = group + " " + groupRep + " " + segment;
             LOGGER.debug("Cannot extract value for {} ", spec, e);
-            LOGGER.warn("Cannot extract value for {} ", spec);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for {} ", spec);
 
             return new Hl7ParsingStructureResult(new ArrayList<>());
 
@@ -132,13 +185,17 @@ public class HL7DataExtractor {
         try {
             Preconditions.checkArgument(StringUtils.isNotBlank(spec),
                     "Not a valid string to extract from Message");
+            if (!isDefined(message, spec)) {
+                return false;
+            }
             Message unmodifiableMessage = Unmodifiable.unmodifiableMessage(message);
             Structure s = unmodifiableMessage.get(spec);
             return s != null;
 
         } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for {} ", spec, e);
-            LOGGER.warn("Cannot extract value for {} ", spec);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for {} ", spec);
 
             return false;
         }
@@ -150,13 +207,17 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(StringUtils.isNotBlank(spec),
                     "Not a valid string to extract from Terser");
             Preconditions.checkArgument(rep >= 0, "Segment rep cannot be less than 0");
+            if (!hasRep(message, spec, rep)) {
+                return false;
+            }
             Message unmodifiableMessage = Unmodifiable.unmodifiableMessage(message);
             Structure s = unmodifiableMessage.get(spec, rep);
             return s != null;
 
         } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep, e);
-            LOGGER.warn(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    CANNOT_EXTRACT_VALUE_FOR_REP_REASON, spec, rep);
 
             return false;
 
@@ -179,7 +240,8 @@ public class HL7DataExtractor {
             return parsingResult;
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, structure, rep, e);
-            LOGGER.warn(CANNOT_EXTRACT_VALUE_FOR_REP_REASON, structure, rep);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    CANNOT_EXTRACT_VALUE_FOR_REP_REASON, structure, rep);
 
             return new Hl7ParsingStructureResult(new ArrayList<>());
         }
@@ -201,7 +263,8 @@ public class HL7DataExtractor {
             return parsingResult;
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for {} ", structure, e);
-            LOGGER.warn("Cannot extract value for {} ", structure);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for {} ", structure);
 
             return new Hl7ParsingStructureResult(new ArrayList<>());
 
@@ -215,12 +278,16 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(field >= 1, "field cannot be negative");
             Preconditions.checkArgument(rep >= 0, REP_CANNOT_BE_NEGATIVE);
             LOGGER.debug("fetching values for Segment {} field {} rep {}, ", segment, field, rep);
+            if (field > segment.numFields()) {
+                return new Hl7ParsingTypeResult(new ArrayList<>());
+            }
             return new Hl7ParsingTypeResult(segment.getField(field, rep));
 
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
 
             LOGGER.debug("Cannot extract value for {} rep {}  field {} ", segment, rep, field, e);
-            LOGGER.warn("Cannot extract value for {} rep {} field {} ", segment, rep, field);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for {} rep {} field {} ", nameOf(segment), rep, field);
 
             return new Hl7ParsingTypeResult(new ArrayList<>());
 
@@ -233,6 +300,9 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(field >= 1, "field cannot be negative");
 
             LOGGER.debug("fetching values for Segment {} field {}  ", segment, field);
+            if (field > segment.numFields()) {
+                return new Hl7ParsingTypeResult(new ArrayList<>());
+            }
             Type[] fields = segment.getField(field);
 
             return new Hl7ParsingTypeResult(Lists.newArrayList(fields));
@@ -240,7 +310,8 @@ public class HL7DataExtractor {
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
 
             LOGGER.debug("Cannot extract value for segment {} field {} ", segment, field, e);
-            LOGGER.warn("Cannot extract value for segment {} field {} ", segment, field);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for segment {} field {} ", nameOf(segment), field);
 
             return new Hl7ParsingTypeResult(new ArrayList<>());
         }
@@ -255,9 +326,12 @@ public class HL7DataExtractor {
                 type = ((Variable) inputType).getData();
             }
             if (type instanceof Composite) {
-                Type value = ((Composite) type).getComponent(component - 1);
+                Type[] components = ((Composite) type).getComponents();
+                Type value = component >= 1 && component <= components.length
+                        ? components[component - 1]
+                        : null;
                 if (value != null && !value.isEmpty()) {
-                    result = new Hl7ParsingTypeResult(((Composite) type).getComponent(component - 1));
+                    result = new Hl7ParsingTypeResult(value);
                 } else {
                     result = new Hl7ParsingTypeResult(new ArrayList<>());
                 }
@@ -268,7 +342,8 @@ public class HL7DataExtractor {
 
         } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for type {} component {} ", inputType, component, e);
-            LOGGER.warn("Cannot extract value for type {} component {} ", inputType, component);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for type {} component {} ", nameOf(inputType), component);
 
             return new Hl7ParsingTypeResult(new ArrayList<>());
 
@@ -293,8 +368,9 @@ public class HL7DataExtractor {
         } catch (IllegalArgumentException | HL7Exception | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for type {} component {} subComponent {}  ", inputType, component,
                     subComponent, e);
-            LOGGER.warn("Cannot extract value for type {} component {},subComponent {} ",
-                    inputType, component, subComponent);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for type {} component {},subComponent {} ",
+                    nameOf(inputType), component, subComponent);
 
             return new Hl7ParsingTypeResult(new ArrayList<>());
         }
@@ -337,7 +413,8 @@ public class HL7DataExtractor {
 
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for Segment {} field {}   ", segment, field, e);
-            LOGGER.warn("Cannot extract value for Segment {} field {}, reason {}", segment, field,
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for Segment {} field {}, reason {}", segment, field,
                     e.getMessage());
 
             return new Hl7ParsingStringResult(null);
@@ -348,7 +425,8 @@ public class HL7DataExtractor {
         try {
             return getTerser().get("/MSH-10");
         } catch (HL7Exception | IllegalArgumentException e) {
-            LOGGER.warn("Cannot extract message control id.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract message control id.");
             LOGGER.debug("Cannot extract message control id", e);
             return null;
         }
@@ -362,7 +440,7 @@ public class HL7DataExtractor {
             Preconditions.checkArgument(struct != null, "struct cannot be null ");
             Preconditions.checkArgument(StringUtils.isNotBlank(segment), SEGMENT_CANNOT_BE_NULL_OR_EMPTY);
 
-            if (struct instanceof Group) {
+            if (struct instanceof Group && isDefined((Group) struct, segment)) {
                 Group gp = (Group) struct;
 
                 Structure[] s = gp.getAll(segment);
@@ -376,7 +454,8 @@ public class HL7DataExtractor {
             return parsingResult;
         } catch (HL7Exception | IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
             LOGGER.debug("Cannot extract value for Structure {} Segment {} ", struct, segment, e);
-            LOGGER.warn("Cannot extract value for Structure {} Segment {} ", struct, segment);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA,
+                    "Cannot extract value for Structure {} Segment {} ", nameOf(struct), segment);
 
             return new Hl7ParsingStructureResult(new ArrayList<>());
         }
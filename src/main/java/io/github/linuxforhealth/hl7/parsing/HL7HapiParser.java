@@ -6,12 +6,23 @@
 package io.github.linuxforhealth.hl7.parsing;
 
 import ca.uhn.hl7v2.DefaultHapiContext;
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.GenericMessage;
+import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
 import ca.uhn.hl7v2.parser.GenericParser;
 
+/**
+ * HAPI context and parser configured for the converter. An instance is not thread-safe: HAPI
+ * parsers keep per-parse state, so an instance must only be used by one thread at a time.
+ * {@link #getThreadParser()} gives each thread its own instance, created once and reused for every
+ * message parsed on that thread.
+ */
 public class HL7HapiParser {
 
-  private static final String SUPPORTED_HL7_VERSION = "2.6";
+  static final String SUPPORTED_HL7_VERSION = "2.6";
+  private static final ThreadLocal<HL7HapiParser> THREAD_PARSER =
+      ThreadLocal.withInitial(HL7HapiParser::new);
   private DefaultHapiContext context;
   private GenericParser parser;
 
@@ -41,6 +52,17 @@ public class HL7HapiParser {
   }
 
 
+  /**
+   * Returns the parser of the current thread. The parser is reused for all messages parsed on the
+   * thread and lives as long as the thread, so it must not be closed or handed to other threads.
+   * 
+   * @return {@link HL7HapiParser}
+   */
+  public static HL7HapiParser getThreadParser() {
+    return THREAD_PARSER.get();
+  }
+
+
   public DefaultHapiContext getContext() {
     return context;
   }
@@ -49,6 +71,25 @@ public class HL7HapiParser {
     return parser;
   }
 
+  /**
+   * Returns an empty message with the message structure the parser uses for a message type.
+   *
+   * @param messageType Message type, for example ADT_A01
+   * @return {@link Message}, null if HAPI has no message structure for the message type
+   */
+  public Message newMessage(String messageType) {
+    try {
+      Class<? extends Message> messageClass = context.getModelClassFactory()
+          .getMessageClass(messageType, SUPPORTED_HL7_VERSION, false);
+      if (messageClass == null || GenericMessage.class.isAssignableFrom(messageClass)) {
+        return null;
+      }
+      return context.newMessage(messageClass);
+    } catch (HL7Exception e) {
+      return null;
+    }
+  }
+
 
 
 }
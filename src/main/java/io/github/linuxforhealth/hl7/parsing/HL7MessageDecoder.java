@@ -0,0 +1,141 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Decodes the bytes of an ER7 encoded HL7 message to text in a single pass. The character set is
+ * taken, in this order, from a byte order mark, from MSH-18 and from the default supplied by the
+ * caller. MSH-18 is read from the header bytes alone, which are ASCII in every character set that
+ * does not start with a byte order mark.
+ */
+public final class HL7MessageDecoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HL7MessageDecoder.class);
+
+    // HL7 table 0211, Alternate character sets
+    private static final Map<String, String> HL7_CHARSETS = new HashMap<>();
+
+    static {
+        HL7_CHARSETS.put("ASCII", "US-ASCII");
+        HL7_CHARSETS.put("8859/1", "ISO-8859-1");
+        HL7_CHARSETS.put("8859/2", "ISO-8859-2");
+        HL7_CHARSETS.put("8859/3", "ISO-8859-3");
+        HL7_CHARSETS.put("8859/4", "ISO-8859-4");
+        HL7_CHARSETS.put("8859/5", "ISO-8859-5");
+        HL7_CHARSETS.put("8859/6", "ISO-8859-6");
+        HL7_CHARSETS.put("8859/7", "ISO-8859-7");
+        HL7_CHARSETS.put("8859/8", "ISO-8859-8");
+        HL7_CHARSETS.put("8859/9", "ISO-8859-9");
+        HL7_CHARSETS.put("8859/15", "ISO-8859-15");
+        HL7_CHARSETS.put("ISO IR6", "US-ASCII");
+        HL7_CHARSETS.put("ISO IR14", "JIS_X0201");
+        HL7_CHARSETS.put("ISO IR87", "x-JIS0208");
+        HL7_CHARSETS.put("ISO IR159", "JIS_X0212-1990");
+        HL7_CHARSETS.put("GB 18030-2000", "GB18030");
+        HL7_CHARSETS.put("KS X 1001", "EUC-KR");
+        HL7_CHARSETS.put("CNS 11643-1992", "x-EUC-TW");
+        HL7_CHARSETS.put("BIG-5", "Big5");
+        HL7_CHARSETS.put("UNICODE", "UTF-8");
+        HL7_CHARSETS.put("UNICODE UTF-8", "UTF-8");
+        HL7_CHARSETS.put("UNICODE UTF-16", "UTF-16");
+        HL7_CHARSETS.put("UNICODE UTF-32", "UTF-32");
+    }
+
+    private HL7MessageDecoder() {}
+
+    /**
+     * Decodes the message.
+     *
+     * @param bytes Bytes of the message
+     * @param offset Start of the message in the array
+     * @param length Number of bytes of the message
+     * @param defaultCharset Character set to use when there is no byte order mark and MSH-18 does not
+     *        name a supported character set
+     * @return the message text
+     */
+    public static String decode(byte[] bytes, int offset, int length, Charset defaultCharset) {
+        Preconditions.checkArgument(bytes != null, "bytes cannot be null");
+        Preconditions.checkArgument(defaultCharset != null, "defaultCharset cannot be null");
+        Preconditions.checkPositionIndexes(offset, offset + length, bytes.length);
+        if (startsWith(bytes, offset, length, 0xEF, 0xBB, 0xBF)) {
+            return new String(bytes, offset + 3, length - 3, StandardCharsets.UTF_8);
+        }
+        if (startsWith(bytes, offset, length, 0xFE, 0xFF) || startsWith(bytes, offset, length, 0xFF, 0xFE)) {
+            // The UTF-16 decoder reads and drops the byte order mark.
+            return new String(bytes, offset, length, StandardCharsets.UTF_16);
+        }
+        return new String(bytes, offset, length, getCharset(bytes, offset, length, defaultCharset));
+    }
+
+    /**
+     * Finds the character set of a message without a byte order mark from MSH-18.
+     */
+    static Charset getCharset(byte[] bytes, int offset, int length, Charset defaultCharset) {
+        int end = offset + length;
+        int headerStart = offset;
+        while (headerStart < end && (bytes[headerStart] == 0x0b || Character.isWhitespace(bytes[headerStart]))) {
+            headerStart++;
+        }
+        int headerEnd = headerStart;
+        while (headerEnd < end && bytes[headerEnd] != '\r' && bytes[headerEnd] != '\n') {
+            headerEnd++;
+        }
+        // ISO-8859-1 maps each byte to one char, which is all that is needed to read the header.
+        MSHHeader header = MSHHeader
+                .peek(new String(bytes, headerStart, headerEnd - headerStart, StandardCharsets.ISO_8859_1));
+        if (header == null || header.getCharacterSet() == null) {
+            return defaultCharset;
+        }
+        Charset charset = toCharset(header.getCharacterSet());
+        if (charset == null) {
+            LOGGER.warn("Unsupported character set in MSH-18, decoding message as {}", defaultCharset);
+            return defaultCharset;
+        }
+        return charset;
+    }
+
+    /**
+     * Maps a character set name from HL7 table 0211 to a Java character set.
+     *
+     * @param hl7CharacterSet Value of MSH-18, example: 8859/1
+     * @return {@link Charset}, null if the name is unknown or the character set is not supported by
+     *         this Java runtime
+     */
+    public static Charset toCharset(String hl7CharacterSet) {
+        if (hl7CharacterSet == null) {
+            return null;
+        }
+        String javaName = HL7_CHARSETS.get(hl7CharacterSet.trim().toUpperCase(Locale.ROOT));
+        if (javaName == null || !Charset.isSupported(javaName)) {
+            return null;
+        }
+        return Charset.forName(javaName);
+    }
+
+    private static boolean startsWith(byte[] bytes, int offset, int length, int... prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if ((bytes[offset + i] & 0xFF) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
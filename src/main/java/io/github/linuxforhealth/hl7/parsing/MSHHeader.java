@@ -0,0 +1,197 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+/**
+ * Values read from the MSH segment of an ER7 (pipe and hat) message without parsing the message: the
+ * delimiters, the message type and structure from MSH-9, the message control id from MSH-10 and the
+ * character set from MSH-18. The scan stops at the end of the MSH segment, so it is cheap enough to
+ * route or reject every message of a feed before it is parsed.
+ *
+ * <p>
+ * {@link #peek(CharSequence)} returns null for anything it cannot read with certainty, callers are
+ * expected to fall back to a full parse in that case.
+ */
+public final class MSHHeader {
+
+    private static final String MSH = "MSH";
+    private static final char MLLP_START_BLOCK = 0x0b;
+    private static final int MESSAGE_TYPE_FIELD = 9;
+    private static final int MESSAGE_CONTROL_ID_FIELD = 10;
+    private static final int CHARACTER_SET_FIELD = 18;
+
+    private final char fieldSeparator;
+    private final String encodingCharacters;
+    private final String messageCode;
+    private final String triggerEvent;
+    private final String messageStructure;
+    private final String messageControlId;
+    private final String characterSet;
+
+    private MSHHeader(char fieldSeparator, String encodingCharacters, String[] messageType,
+            String messageControlId, String characterSet) {
+        this.fieldSeparator = fieldSeparator;
+        this.encodingCharacters = encodingCharacters;
+        this.messageCode = messageType[0];
+        this.triggerEvent = messageType[1];
+        this.messageStructure = messageType[2];
+        this.messageControlId = messageControlId;
+        this.characterSet = characterSet;
+    }
+
+    /**
+     * Reads the MSH segment at the start of the text.
+     *
+     * @param message ER7 encoded HL7 message, only the MSH segment is read
+     * @return {@link MSHHeader}, null if the text does not start with a MSH segment or its values
+     *         cannot be read without a full parse, for example because they contain escape sequences
+     */
+    public static MSHHeader peek(CharSequence message) {
+        if (message == null) {
+            return null;
+        }
+        int length = message.length();
+        int pos = 0;
+        while (pos < length && (message.charAt(pos) == MLLP_START_BLOCK
+                || Character.isWhitespace(message.charAt(pos)))) {
+            pos++;
+        }
+        if (length - pos < 8 || message.charAt(pos) != 'M' || message.charAt(pos + 1) != 'S'
+                || message.charAt(pos + 2) != 'H') {
+            return null;
+        }
+        char fieldSeparator = message.charAt(pos + 3);
+        pos += 4;
+
+        int encodingStart = pos;
+        while (pos < length && message.charAt(pos) != fieldSeparator && !isSegmentTerminator(message.charAt(pos))) {
+            pos++;
+        }
+        if (pos - encodingStart < 4) {
+            return null;
+        }
+        String encodingCharacters = message.subSequence(encodingStart, pos).toString();
+        char componentSeparator = encodingCharacters.charAt(0);
+        char repetitionSeparator = encodingCharacters.charAt(1);
+        char escapeCharacter = encodingCharacters.charAt(2);
+        char subcomponentSeparator = encodingCharacters.charAt(3);
+
+        String[] messageType = new String[3];
+        String messageControlId = null;
+        String characterSet = null;
+        // pos is at the separator that ends MSH-2
+        int field = 2;
+        while (pos < length && message.charAt(pos) == fieldSeparator && field < CHARACTER_SET_FIELD) {
+            pos++;
+            field++;
+            int fieldStart = pos;
+            while (pos < length && message.charAt(pos) != fieldSeparator
+                    && !isSegmentTerminator(message.charAt(pos))) {
+                pos++;
+            }
+            if (field != MESSAGE_TYPE_FIELD && field != MESSAGE_CONTROL_ID_FIELD && field != CHARACTER_SET_FIELD) {
+                continue;
+            }
+            int component = 0;
+            int valueStart = fieldStart;
+            boolean inValue = true;
+            for (int i = fieldStart; i <= pos; i++) {
+                char c = i < pos ? message.charAt(i) : repetitionSeparator;
+                if (c == escapeCharacter) {
+                    return null;
+                }
+                if (c == componentSeparator || c == subcomponentSeparator || c == repetitionSeparator) {
+                    if (inValue) {
+                        String value = valueStart < i ? message.subSequence(valueStart, i).toString() : null;
+                        if (field == MESSAGE_CONTROL_ID_FIELD) {
+                            messageControlId = value;
+                            break;
+                        } else if (field == CHARACTER_SET_FIELD) {
+                            characterSet = value;
+                            break;
+                        } else if (component < messageType.length) {
+                            messageType[component] = value;
+                        }
+                    }
+                    if (c == repetitionSeparator) {
+                        break;
+                    }
+                    // Only the first subcomponent of each component is read.
+                    inValue = c == componentSeparator;
+                    if (inValue) {
+                        component++;
+                        valueStart = i + 1;
+                    }
+                }
+            }
+        }
+        if (field < MESSAGE_TYPE_FIELD) {
+            return null;
+        }
+        return new MSHHeader(fieldSeparator, encodingCharacters, messageType, messageControlId, characterSet);
+    }
+
+    public char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    /**
+     * Returns MSH-2, example: ^~\&
+     */
+    public String getEncodingCharacters() {
+        return encodingCharacters;
+    }
+
+    /**
+     * Returns MSH-9.1, example: ADT
+     */
+    public String getMessageCode() {
+        return messageCode;
+    }
+
+    /**
+     * Returns MSH-9.2, example: A01
+     */
+    public String getTriggerEvent() {
+        return triggerEvent;
+    }
+
+    /**
+     * Returns MSH-9.3, example: ADT_A01, null if the message does not name its structure.
+     */
+    public String getMessageStructure() {
+        return messageStructure;
+    }
+
+    /**
+     * Returns the message type in the form the templates are registered under, example: ADT_A01.
+     *
+     * @return message type
+     */
+    public String getMessageType() {
+        return messageCode + "_" + triggerEvent;
+    }
+
+    /**
+     * Returns MSH-10, null if not present.
+     */
+    public String getMessageControlId() {
+        return messageControlId;
+    }
+
+    /**
+     * Returns the first repetition of MSH-18, the character set of the message, example: UNICODE UTF-8,
+     * null if not present.
+     */
+    public String getCharacterSet() {
+        return characterSet;
+    }
+
+    private static boolean isSegmentTerminator(char c) {
+        return c == '\r' || c == '\n';
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Splits a file holding many ER7 encoded HL7 messages into {@link MessageSlice}s without copying
+ * the message bytes. The file is memory mapped one window at a time, and a message starts at every
+ * MSH segment, which is a line starting with MSH at the start of the file or after a CR, LF or MLLP
+ * framing byte. Bytes before the first MSH segment are skipped.
+ *
+ * <p>
+ * Message boundaries are found in the raw bytes, so the file must be in a character set where MSH
+ * and the segment terminators are single ASCII bytes, which holds for ASCII, the ISO 8859 family and
+ * UTF-8, but not for UTF-16. A message larger than the window is mapped on its own, up to 2 GB.
+ *
+ * <p>
+ * A slice stays valid while the splitter is open. Instances are not thread safe, the slices they
+ * return can be read from any thread.
+ */
+public final class MappedMessageSplitter implements Iterator<MessageSlice>, Closeable {
+
+    public static final int DEFAULT_WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final long size;
+    private int windowSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+    private long index;
+
+    private MappedMessageSplitter(FileChannel channel, int windowSize, long position, long index)
+            throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.windowSize = windowSize;
+        this.index = index;
+        Preconditions.checkArgument(position <= size, "position %s is after the end of the file", position);
+        // The byte before position is mapped too, to check that a segment starts at position.
+        map(Math.max(position - 1, 0));
+        this.position = findMessageStart(position, false);
+    }
+
+    /**
+     * Opens the file with the default window size of 256 MB.
+     *
+     * @param file File with HL7 messages
+     * @return {@link MappedMessageSplitter}
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedMessageSplitter open(Path file) throws IOException {
+        return open(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Opens the file.
+     *
+     * @param file File with HL7 messages
+     * @param windowSize Number of bytes mapped at a time
+     * @return {@link MappedMessageSplitter}
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedMessageSplitter open(Path file, int windowSize) throws IOException {
+        return open(file, windowSize, 0, 0);
+    }
+
+    /**
+     * Opens the file and starts splitting at a byte offset, for example to resume at the offset
+     * {@link MessageSlice#getOffset()} returned for a message of an earlier run.
+     *
+     * @param file File with HL7 messages
+     * @param windowSize Number of bytes mapped at a time
+     * @param position Byte offset to start at, bytes up to the next MSH segment are skipped
+     * @param index Index of the first message returned
+     * @return {@link MappedMessageSplitter}
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedMessageSplitter open(Path file, int windowSize, long position, long index)
+            throws IOException {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(windowSize > 3, "windowSize must be greater than 3");
+        Preconditions.checkArgument(position >= 0 && index >= 0, "position and index cannot be negative");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new MappedMessageSplitter(channel, windowSize, position, index);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the byte offset of the next message, the file size once all messages were returned.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    /**
+     * Returns the next message.
+     *
+     * @throws UncheckedIOException if the file cannot be mapped
+     */
+    @Override
+    public MessageSlice next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            long start = position;
+            long end = findMessageStart(start + 3, true);
+            int from = (int) (start - windowStart);
+            int to = (int) (end - windowStart);
+            MessageSlice slice = new MessageSlice(index++, start, window.duplicate().position(from).limit(to).slice());
+            position = end;
+            return slice;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Returns the file offset of the first MSH segment at or after from, the file size if there is
+     * none. When a message is kept, the window is moved so that it holds the bytes from its start up
+     * to the returned offset.
+     */
+    private long findMessageStart(long from, boolean keepMessage) throws IOException {
+        while (true) {
+            long windowEnd = windowStart + window.limit();
+            for (long i = from; i + 3 <= windowEnd; i++) {
+                int p = (int) (i - windowStart);
+                if (window.get(p) == 'M' && window.get(p + 1) == 'S' && window.get(p + 2) == 'H'
+                        && (i == 0 || isSegmentStart(window.get(p - 1)))) {
+                    return i;
+                }
+            }
+            if (windowEnd >= size) {
+                return size;
+            }
+            // Continue with the last bytes of this window, including the byte before them so the
+            // segment start can be checked.
+            from = Math.max(from, windowEnd - 2);
+            if (!keepMessage) {
+                map(from - 1);
+            } else if (position == windowStart) {
+                // The message does not fit, map it with a larger window.
+                Preconditions.checkState(windowSize < MAX_WINDOW_SIZE, "HL7 message at offset %s is larger than 2 GB",
+                        position);
+                windowSize = (int) Math.min((long) windowSize * 2, MAX_WINDOW_SIZE);
+                map(position);
+            } else {
+                map(position);
+            }
+        }
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowSize, size - start));
+    }
+
+    private static boolean isSegmentStart(byte previous) {
+        return previous == '\r' || previous == '\n' || previous == 0x0b || previous == 0x1c;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The bytes of one HL7 message of a larger input, with the position of the message in that input.
+ * The buffer is a view of the input, it is not a copy.
+ */
+public final class MessageSlice {
+
+    private final long index;
+    private final long offset;
+    private final ByteBuffer buffer;
+
+    public MessageSlice(long index, long offset, ByteBuffer buffer) {
+        this.index = index;
+        this.offset = offset;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Returns the zero based number of the message in the input.
+     */
+    public long getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the byte offset of the start of the message in the input.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of bytes of the message.
+     */
+    public int getLength() {
+        return buffer.remaining();
+    }
+
+    /**
+     * Returns a read-only view of the message bytes, each call returns a new view with its own
+     * position.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+}
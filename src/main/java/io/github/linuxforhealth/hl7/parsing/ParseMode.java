@@ -0,0 +1,22 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+/**
+ * How the converter reads the text of an incoming HL7 message.
+ */
+public enum ParseMode {
+  /**
+   * The message is parsed with the HAPI GenericParser before anything else is looked at.
+   */
+  HAPI,
+  /**
+   * The message is first indexed with {@link ER7MessageIndex}, and segments that no template of the
+   * message type reads and that the message structure does not define, such as Z-segments, are left
+   * out of the HAPI parse. They stay available in raw form, see {@link SegmentFilter}.
+   */
+  REFERENCED_SEGMENTS;
+}
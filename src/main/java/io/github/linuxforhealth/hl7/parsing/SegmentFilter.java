@@ -0,0 +1,156 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Group;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.parser.CanonicalModelClassFactory;
+import ca.uhn.hl7v2.parser.ModelClassFactory;
+
+/**
+ * Removes segments that no template reads from the text handed to the HAPI parser, so that they are
+ * never decoded. The removed segments stay available in raw form as views over the indexed text.
+ *
+ * <p>
+ * Only segments that the HAPI structure of the message does not define, such as Z-segments, are
+ * removed. HAPI adds those as nonstandard segments at the current position, so leaving them out
+ * does not move any other segment. Segments that the structure defines are always kept, even when no
+ * template reads them, because the parser uses them to decide which group the following segments
+ * belong to.
+ */
+public final class SegmentFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentFilter.class);
+    private static final ModelClassFactory MODEL_CLASS_FACTORY =
+            new CanonicalModelClassFactory(HL7HapiParser.SUPPORTED_HL7_VERSION);
+    // Segment names defined by each message structure, empty if the structure is unknown.
+    private static final Map<String, Set<String>> STRUCTURE_SEGMENTS = new ConcurrentHashMap<>();
+    private static final char SEGMENT_TERMINATOR = '\r';
+
+    private final String text;
+    private final List<CharSequence> skippedSegments;
+
+    private SegmentFilter(String text, List<CharSequence> skippedSegments) {
+        this.text = text;
+        this.skippedSegments = skippedSegments;
+    }
+
+    /**
+     * Filters the indexed message down to the segments that are read by the templates or defined in
+     * the message structure.
+     *
+     * @param index {@link ER7MessageIndex} of the message
+     * @param referencedSegments Names of the segments the templates read
+     * @return {@link SegmentFilter}
+     */
+    public static SegmentFilter filter(ER7MessageIndex index, Set<String> referencedSegments) {
+        Preconditions.checkArgument(index != null, "index cannot be null");
+        Preconditions.checkArgument(referencedSegments != null, "referencedSegments cannot be null");
+        Set<String> structureSegments = getStructureSegments(index);
+        if (structureSegments.isEmpty()) {
+            return new SegmentFilter(null, ImmutableList.of());
+        }
+
+        StringBuilder kept = null;
+        List<CharSequence> skipped = new ArrayList<>();
+        for (int s = 0; s < index.getSegmentCount(); s++) {
+            String name = index.getSegmentName(s);
+            boolean skip = !referencedSegments.contains(name) && !structureSegments.contains(name);
+            if (skip && kept == null) {
+                kept = new StringBuilder(index.getEnd() - index.getStart());
+                for (int k = 0; k < s; k++) {
+                    kept.append(index.getSegment(k)).append(SEGMENT_TERMINATOR);
+                }
+            }
+            if (skip) {
+                skipped.add(index.getSegment(s));
+            } else if (kept != null) {
+                kept.append(index.getSegment(s)).append(SEGMENT_TERMINATOR);
+            }
+        }
+        return new SegmentFilter(kept != null ? kept.toString() : null, ImmutableList.copyOf(skipped));
+    }
+
+    /**
+     * Returns the text to parse.
+     *
+     * @return text without the skipped segments, null if no segment was skipped and the original text
+     *         should be parsed
+     */
+    public String getText() {
+        return text;
+    }
+
+    public boolean hasSkippedSegments() {
+        return !skippedSegments.isEmpty();
+    }
+
+    /**
+     * Returns the raw text of the skipped segments in message order.
+     *
+     * @return List of read only views of the skipped segments
+     */
+    public List<CharSequence> getSkippedSegments() {
+        return skippedSegments;
+    }
+
+    /**
+     * Finds the structure the same way the HAPI parser does: MSH-9.3 when it is present, otherwise the
+     * structure mapped to the message type and trigger event.
+     */
+    private static Set<String> getStructureSegments(ER7MessageIndex index) {
+        String structure = index.getValue(0, 9, 0, 3, 1);
+        boolean explicit = StringUtils.isNotBlank(structure);
+        String name = explicit ? structure : index.getMessageType();
+        return STRUCTURE_SEGMENTS.computeIfAbsent(explicit ? name : "event:" + name,
+                k -> loadStructureSegments(name, explicit));
+    }
+
+    private static Set<String> loadStructureSegments(String name, boolean explicit) {
+        try {
+            Class<? extends Message> messageClass = MODEL_CLASS_FACTORY.getMessageClass(name,
+                    HL7HapiParser.SUPPORTED_HL7_VERSION, explicit);
+            if (messageClass == null) {
+                return Collections.emptySet();
+            }
+            Message message = messageClass.getConstructor(ModelClassFactory.class).newInstance(MODEL_CLASS_FACTORY);
+            Set<String> segments = new HashSet<>();
+            addSegments(message, segments);
+            return ImmutableSet.copyOf(segments);
+        } catch (HL7Exception | ReflectiveOperationException e) {
+            LOGGER.debug("Cannot load message structure {}", name, e);
+            return Collections.emptySet();
+        }
+    }
+
+    private static void addSegments(Group group, Set<String> segments) throws HL7Exception {
+        for (String name : group.getNames()) {
+            if (Group.class.isAssignableFrom(group.getClass(name))) {
+                addSegments((Group) group.get(name), segments);
+            } else {
+                segments.add(group.get(name).getName());
+            }
+        }
+    }
+
+}
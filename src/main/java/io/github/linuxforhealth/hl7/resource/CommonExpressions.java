@@ -0,0 +1,54 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.api.Expression;
+
+/**
+ * The expressions of resource/Common.yml, which every FHIR resource model evaluates besides its own
+ * expressions. They are generated once per {@link ResourceReader} and the resource models refer to
+ * this single immutable instance instead of holding their own copy.
+ */
+public final class CommonExpressions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Expression> expressions;
+
+    /**
+     *
+     * @param expressions Expressions generated from Common.yml, in the order the resource models
+     *        evaluate them
+     */
+    public CommonExpressions(Map<String, Expression> expressions) {
+        Preconditions.checkArgument(expressions != null, "expressions cannot be null");
+        this.expressions = ImmutableMap.copyOf(expressions);
+    }
+
+    /**
+     * Returns the common expressions by name, the map cannot be modified.
+     */
+    public Map<String, Expression> getExpressions() {
+        return expressions;
+    }
+
+    public boolean contains(String name) {
+        return expressions.containsKey(name);
+    }
+
+    @Override
+    public String toString() {
+        return "CommonExpressions" + expressions.keySet();
+    }
+
+}
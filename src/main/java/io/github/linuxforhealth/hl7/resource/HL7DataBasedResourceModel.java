@@ -5,19 +5,25 @@
  */
 package io.github.linuxforhealth.hl7.resource;
 
-import java.util.HashMap;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.common.collect.ImmutableMap;
 
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
 import io.github.linuxforhealth.core.resource.ResourceResult;
@@ -26,11 +32,15 @@ import io.github.linuxforhealth.hl7.resource.deserializer.HL7DataBasedResourceDe
 import io.github.linuxforhealth.hl7.util.ExpressionUtility;
 
 @JsonDeserialize(using = HL7DataBasedResourceDeserializer.class)
-public class HL7DataBasedResourceModel implements ResourceModel {
+public class HL7DataBasedResourceModel implements ResourceModel, Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataBasedResourceModel.class);
 
-    private Map<String, Expression> expressions;
+    // Expressions of the model in evaluation order, the common expressions are evaluated after them
+    private final Map<String, Expression> expressions;
+    private final CommonExpressions commonExpressions;
     private String spec;
 
     private String name;
@@ -44,8 +54,23 @@ public class HL7DataBasedResourceModel implements ResourceModel {
 
     public HL7DataBasedResourceModel(String name, Map<String, Expression> expressions,
             String hl7spec) {
-        this.expressions = new HashMap<>();
-        this.expressions.putAll(expressions);
+        this(name, expressions, hl7spec, null);
+    }
+
+    /**
+     * Creates a model that evaluates its own expressions and then the shared common expressions. An
+     * expression of the model replaces the common expression with the same name. The model only
+     * holds its own expressions and a reference to the common expressions.
+     * 
+     * @param name Name of the model
+     * @param expressions Map of the expressions of the model
+     * @param hl7spec Which HL7 specification in use
+     * @param commonExpressions Common expressions of the model, null if the model has none
+     */
+    public HL7DataBasedResourceModel(String name, Map<String, Expression> expressions,
+            String hl7spec, CommonExpressions commonExpressions) {
+        this.expressions = ImmutableMap.copyOf(expressions);
+        this.commonExpressions = commonExpressions;
         this.spec = hl7spec;
 
         this.name = name;
@@ -56,11 +81,70 @@ public class HL7DataBasedResourceModel implements ResourceModel {
         this(name, expressions, null);
     }
 
+    /**
+     * Creates a model that evaluates the same expressions as another model, the models share their
+     * expressions.
+     * 
+     * @param model Model to copy
+     */
+    protected HL7DataBasedResourceModel(HL7DataBasedResourceModel model) {
+        this.expressions = model.expressions;
+        this.commonExpressions = model.commonExpressions;
+        this.spec = model.spec;
+        this.name = model.name;
+    }
+
+    /**
+     * Copies a model without some of its expressions, the other expressions are evaluated in the
+     * same order as in the model.
+     * 
+     * @param model Model to copy
+     * @param removedExpressions Names of the expressions left out
+     */
+    HL7DataBasedResourceModel(HL7DataBasedResourceModel model, Set<String> removedExpressions) {
+        ImmutableMap.Builder<String, Expression> kept = ImmutableMap.builder();
+        model.expressions.forEach((expressionName, expression) -> {
+            if (!removedExpressions.contains(expressionName)) {
+                kept.put(expressionName, expression);
+            }
+        });
+        this.expressions = kept.build();
+        this.commonExpressions = model.commonExpressions;
+        this.spec = model.spec;
+        this.name = model.name;
+    }
+
+    /**
+     * Returns the expressions of the model in the order they are evaluated, without the common
+     * expressions, see {@link #getEvaluatedExpressions()}. The map cannot be modified.
+     */
     @Override
     public Map<String, Expression> getExpressions() {
         return expressions;
     }
 
+    /**
+     * Returns every expression the model evaluates, its own expressions followed by the common
+     * expressions it does not replace. The map is built on each call and cannot be modified.
+     */
+    public Map<String, Expression> getEvaluatedExpressions() {
+        if (commonExpressions == null) {
+            return expressions;
+        }
+        Map<String, Expression> evaluated = new LinkedHashMap<>(expressions);
+        commonExpressions.getExpressions().forEach(evaluated::putIfAbsent);
+        return Collections.unmodifiableMap(evaluated);
+    }
+
+    /**
+     * Returns the common expressions the model shares with the other resource models.
+     * 
+     * @return {@link CommonExpressions}, null if the model has none
+     */
+    public CommonExpressions getCommonExpressions() {
+        return commonExpressions;
+    }
+
     @Override
     public ResourceResult evaluate(InputDataExtractor dataSource,
             Map<String, EvaluationResult> context, EvaluationResult baseValue) {
@@ -69,7 +153,8 @@ public class HL7DataBasedResourceModel implements ResourceModel {
         try {
 
             ResourceEvaluationResult result = ExpressionUtility.evaluate(dataSource, context, baseValue,
-                    this.expressions);
+                    this.expressions, commonExpressions != null ? commonExpressions.getExpressions()
+                            : Collections.emptyMap());
 
             if (result != null && !result.getResolveValues().isEmpty()) {
                 String groupId = getGroupId(context);
@@ -79,12 +164,14 @@ public class HL7DataBasedResourceModel implements ResourceModel {
             }
 
         } catch (RequiredConstraintFailureException e) {
-            LOGGER.warn("Resource Constraint condition not satisfied for {}.", this.name);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.REQUIRED_CONSTRAINT_FAILURE,
+                    "Resource Constraint condition not satisfied for {}.", this.name);
             LOGGER.debug("Resource Constraint condition not satisfied for {}, exception {}", this.name, e.toString());
             return null;
 
         } catch (IllegalArgumentException | IllegalStateException | DataExtractionException e) {
-            LOGGER.error("Exception during resource {} evaluation reason", this.name);
+            DiagnosticsCollector.withPathInMdc(
+                    () -> LOGGER.error("Exception during resource {} evaluation reason", this.name));
             LOGGER.debug("Exception during resource {} evaluation reason {}", this.name, e.toString());
             return null;
 
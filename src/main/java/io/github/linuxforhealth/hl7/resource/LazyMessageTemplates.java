@@ -0,0 +1,136 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+/**
+ * Message templates that are loaded the first time a message of their type is converted, so a
+ * converter that only sees a few message types does not load the templates of all others. The
+ * supported message types are known up front from the configuration.
+ *
+ * <p>
+ * When several threads ask for a template that is not loaded yet, one of them loads it and the
+ * others wait for it. A template that fails to load keeps failing with the same error.
+ */
+public class LazyMessageTemplates {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LazyMessageTemplates.class);
+
+    private final ResourceReader reader;
+    // Template name, as listed by the reader, by message type
+    private final Map<String, String> templateNames;
+    private final ConcurrentMap<String, CompletableFuture<HL7MessageModel>> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the templates of the message types listed by {@link ResourceReader#getMessageTemplateNames()}
+     * without loading any of them.
+     *
+     * @param reader Reader that loads the templates
+     */
+    public LazyMessageTemplates(ResourceReader reader) {
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        this.reader = reader;
+        Map<String, String> names = new HashMap<>();
+        for (String name : reader.getMessageTemplateNames()) {
+            names.put(com.google.common.io.Files.getNameWithoutExtension(name), name);
+        }
+        this.templateNames = Collections.unmodifiableMap(names);
+    }
+
+    /**
+     * Returns the supported message types, loaded or not.
+     */
+    public Set<String> getMessageTypes() {
+        return templateNames.keySet();
+    }
+
+    public boolean isSupported(String messageType) {
+        return templateNames.containsKey(messageType);
+    }
+
+    /**
+     * Returns true if the template of the message type has been loaded.
+     */
+    public boolean isLoaded(String messageType) {
+        CompletableFuture<HL7MessageModel> template = templates.get(messageType);
+        return template != null && template.isDone() && !template.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns the template of the message type, loading it if this is the first request for it.
+     *
+     * @param messageType Message type, example: ADT_A01
+     * @return The template, null if the message type is not supported
+     * @throws IllegalStateException if the template cannot be loaded
+     */
+    public HL7MessageModel get(String messageType) {
+        String templateName = messageType != null ? templateNames.get(messageType) : null;
+        if (templateName == null) {
+            return null;
+        }
+        CompletableFuture<HL7MessageModel> template = templates.get(messageType);
+        if (template == null) {
+            CompletableFuture<HL7MessageModel> created = new CompletableFuture<>();
+            template = templates.putIfAbsent(messageType, created);
+            if (template == null) {
+                template = created;
+                load(messageType, templateName, created);
+            }
+        }
+        try {
+            return template.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failure to initialize the template for " + messageType, e.getCause());
+        }
+    }
+
+    /**
+     * Loads the templates of the message types, so that the first messages of these types are not
+     * slowed down.
+     *
+     * @param messageTypes Message types to load, types that are not supported are logged and skipped
+     * @throws IllegalStateException if a template cannot be loaded
+     */
+    public void warmUp(Collection<String> messageTypes) {
+        Preconditions.checkArgument(messageTypes != null, "messageTypes cannot be null");
+        for (String messageType : messageTypes) {
+            if (!isSupported(messageType)) {
+                LOGGER.warn("Cannot warm up message type {}, it is not supported", messageType);
+                continue;
+            }
+            get(messageType);
+        }
+    }
+
+    private void load(String messageType, String templateName, CompletableFuture<HL7MessageModel> template) {
+        long start = System.nanoTime();
+        try {
+            template.complete(reader.getMessageTemplate(templateName));
+            LOGGER.info("Loaded template of message type {} in {} ms", messageType,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            template.completeExceptionally(e);
+        }
+    }
+
+}
@@ -11,9 +11,21 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -22,11 +34,13 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.InjectableValues;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.base.Preconditions;
 import io.github.linuxforhealth.api.ResourceModel;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
 import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.config.TemplateAnalysisMode;
 import io.github.linuxforhealth.hl7.message.HL7FHIRResourceTemplate;
 import io.github.linuxforhealth.hl7.message.HL7FHIRResourceTemplateAttributes;
 import io.github.linuxforhealth.hl7.message.HL7MessageModel;
@@ -43,9 +57,37 @@ public class ResourceReader {
 
   private final Logger LOGGER = LoggerFactory.getLogger(ResourceReader.class);
 
-  private static ResourceReader reader;
+  private static volatile ResourceReader reader;
+  // Reader loading templates on the thread, or reader of the templates a conversion uses
+  private static final ThreadLocal<ResourceReader> BOUND = new ThreadLocal<>();
 
-  private final ConverterConfiguration converterConfig = ConverterConfiguration.getInstance();
+  private final ConverterConfiguration converterConfig;
+
+  private final Set<String> resourcesRead = ConcurrentHashMap.newKeySet();
+  private final TemplateAnalyzer analyzer = new TemplateAnalyzer(this);
+
+  private static final ObjectReader RESOURCE_MODEL_READER =
+      ObjectMapperUtil.getYAMLInstance().readerFor(HL7DataBasedResourceModel.class);
+
+  // Resource models loaded or being loaded by the current call that loads message templates, by
+  // path. Models do not change once loaded, so all expressions that generate the same resource share
+  // one model, and threads that need a model another thread is loading wait for it.
+  private volatile ConcurrentMap<String, ModelLoad> loadedModels;
+
+  private ResourceReader() {
+    this(ConverterConfiguration.getInstance());
+  }
+
+  /**
+   * Creates a reader of the resources named by the configuration. Use {@link #getInstance()} for
+   * the reader of the current configuration.
+   * 
+   * @param converterConfig Configuration with the resource locations and supported messages
+   */
+  public ResourceReader(ConverterConfiguration converterConfig) {
+    Preconditions.checkArgument(converterConfig != null, "converterConfig cannot be null");
+    this.converterConfig = converterConfig;
+  }
 
   /**
    * Loads a file resource configuration, returning a String
@@ -81,7 +123,9 @@ public class ResourceReader {
    */
   public String getResource(String resourcePath) {
     Path resourceFolderFilePath = Paths.get(converterConfig.getResourceFolder(), resourcePath);
-    Path alternateResourceFolderFilePath = Paths.get(converterConfig.getAdditionalResourcesLocation(), resourcePath);
+    Path alternateResourceFolderFilePath = converterConfig.getAdditionalResourcesLocation() != null
+        ? Paths.get(converterConfig.getAdditionalResourcesLocation(), resourcePath)
+        : null;
     String resource = null;
 
     try {
@@ -98,6 +142,7 @@ public class ResourceReader {
       String msg = "Unable to load resource " + resourcePath;
       throw new IllegalArgumentException(msg, ioEx);
     }
+    resourcesRead.add(resourcePath);
     return resource;
   }
 
@@ -107,21 +152,122 @@ public class ResourceReader {
    * 
    * @return Map of messages, by message title.
    */
-  public Map<String, HL7MessageModel> getMessageTemplates() {
+  public synchronized Map<String, HL7MessageModel> getMessageTemplates() {
+    return loadMessageTemplates(getMessageTemplateNames());
+  }
+
+  /**
+   * Loads a single message template with its resource models, for example the first time a message
+   * of that type is converted.
+   * 
+   * @param templateName Name returned by {@link #getMessageTemplateNames()}
+   * @return The message template
+   */
+  public synchronized HL7MessageModel getMessageTemplate(String templateName) {
+    Preconditions.checkArgument(StringUtils.isNotBlank(templateName), "templateName cannot be blank");
+    return loadMessageTemplates(Collections.singletonList(templateName))
+        .get(com.google.common.io.Files.getNameWithoutExtension(templateName));
+  }
+
+  /**
+   * Loads the message templates. With more than one loading thread, the resource models of all
+   * templates are compiled concurrently first, then each message template is built from them.
+   */
+  private Map<String, HL7MessageModel> loadMessageTemplates(List<String> templateNames) {
     Map<String, HL7MessageModel> messagetemplates = new HashMap<>();
-    List<String> supportedMessageTemplates = ConverterConfiguration.getInstance().getSupportedMessageTemplates();
+    loadedModels = new ConcurrentHashMap<>();
+    int threads = converterConfig.getTemplateLoadingThreads();
+    ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, new LoaderThreadFactory()) : null;
+    ResourceReader previous = bind(this);
+    try {
+      if (executor != null) {
+        compileResourceModels(templateNames, executor);
+      }
+      for (String template : templateNames) {
+        HL7MessageModel rm = getMessageModel(template);
+        messagetemplates.put(com.google.common.io.Files.getNameWithoutExtension(template),
+            rm);
+      }
+    } finally {
+      bind(previous);
+      loadedModels = null;
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+    return messagetemplates;
+  }
+
+  /**
+   * Starts loading the resource models named by the resourcePath of the message templates. Errors
+   * are kept in {@link #loadedModels} and reported when the message template that needs the model
+   * is built.
+   */
+  private void compileResourceModels(List<String> templateNames, ExecutorService executor) {
+    Set<String> resourcePaths = new LinkedHashSet<>();
+    for (String template : templateNames) {
+      try {
+        JsonNode resourceNodes = readMessageTemplate(template).get("resources");
+        for (int i = 0; resourceNodes != null && i < resourceNodes.size(); i++) {
+          String resourcePath = resourceNodes.get(i).path("resourcePath").asText(null);
+          if (StringUtils.isNotBlank(resourcePath)) {
+            resourcePaths.add(resourcePath);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        // Reported by getMessageModel
+        LOGGER.debug("Cannot read resource paths of template {}", template, e);
+      }
+    }
+    for (String resourcePath : resourcePaths) {
+      executor.execute(() -> {
+        ResourceReader previous = bind(this);
+        try {
+          generateResourceModel(resourcePath);
+        } catch (RuntimeException e) {
+          // Reported by getMessageModel
+          LOGGER.debug("Cannot load resource model {}", resourcePath, e);
+        } finally {
+          bind(previous);
+        }
+      });
+    }
+  }
+
+  private JsonNode readMessageTemplate(String templateName) throws IOException {
+    // Allow for names that already have .yml extension
+    String yamlizedTemplateName = templateName.endsWith(".yml") ? templateName : templateName + ".yml";
+    String templateFileContent = getResourceInHl7Folder(Constants.MESSAGE_BASE_PATH + yamlizedTemplateName);
+    if (StringUtils.isBlank(templateFileContent)) {
+      throw new IllegalArgumentException("File not present:" + templateName);
+    }
+    return ObjectMapperUtil.getYAMLInstance().readTree(templateFileContent);
+  }
+
+  /**
+   * Returns the names of the message templates that {@link #getMessageTemplates()} loads, from
+   * config.properties or, for *, from the configured location(s).
+   * 
+   * @return List of template names
+   */
+  public List<String> getMessageTemplateNames() {
+    List<String> supportedMessageTemplates = converterConfig.getSupportedMessageTemplates();
     if (hasWildcard(supportedMessageTemplates)) {
       // Code currently assumes we do no use the list of supported messages, once we see an *.
       // In future if needed to merge, it would go here.
-      supportedMessageTemplates.clear();
-      supportedMessageTemplates = findAllMessageTemplateNames();
-    }
-    for (String template : supportedMessageTemplates) {
-      HL7MessageModel rm = getMessageModel(template);
-      messagetemplates.put(com.google.common.io.Files.getNameWithoutExtension(template),
-          rm);
+      return findAllMessageTemplateNames();
     }
-    return messagetemplates;
+    return new ArrayList<>(supportedMessageTemplates);
+  }
+
+  /**
+   * Returns the paths of the resources read so far by this reader, for example to check later
+   * whether templates built from them are still current.
+   * 
+   * @return Set of resource paths relative to the resource folder
+   */
+  public Set<String> getResourcesRead() {
+    return new TreeSet<>(resourcesRead);
   }
 
   private boolean hasWildcard(List<String> supportedMessageTemplates) {
@@ -162,48 +308,83 @@ public class ResourceReader {
   }
 
   private HL7MessageModel getMessageModel(String templateName) {
-    // Allow for names that already have .yml extension
-    String yamlizedTemplateName = templateName.endsWith(".yml") ? templateName : templateName + ".yml";
-    String templateFileContent = getResourceInHl7Folder(Constants.MESSAGE_BASE_PATH + yamlizedTemplateName);
-    if (StringUtils.isNotBlank(templateFileContent)) {
-      try {
+    try {
 
-        JsonNode parent = ObjectMapperUtil.getYAMLInstance().readTree(templateFileContent);
-        Preconditions.checkState(parent != null, "Parent node from template file cannot be null");
+      JsonNode parent = readMessageTemplate(templateName);
+      Preconditions.checkState(parent != null, "Parent node from template file cannot be null");
 
-        JsonNode resourceNodes = parent.get("resources");
-        Preconditions.checkState(resourceNodes != null && !resourceNodes.isEmpty(),
-            "List of resources from Parent node from template file cannot be null or empty");
-        List<HL7FHIRResourceTemplateAttributes> templateAttributes = ObjectMapperUtil.getYAMLInstance().convertValue(
-            resourceNodes,
-            new TypeReference<List<HL7FHIRResourceTemplateAttributes>>() {
-            });
+      JsonNode resourceNodes = parent.get("resources");
+      Preconditions.checkState(resourceNodes != null && !resourceNodes.isEmpty(),
+          "List of resources from Parent node from template file cannot be null or empty");
+      List<HL7FHIRResourceTemplateAttributes> templateAttributes = ObjectMapperUtil.getYAMLInstance().convertValue(
+          resourceNodes,
+          new TypeReference<List<HL7FHIRResourceTemplateAttributes>>() {
+          });
 
-        List<HL7FHIRResourceTemplate> templates = new ArrayList<>();
+      List<HL7FHIRResourceTemplate> templates = new ArrayList<>();
 
-        templateAttributes.forEach(t -> templates.add(new HL7FHIRResourceTemplate(t)));
-        Preconditions.checkState(templateAttributes != null && !templateAttributes.isEmpty(),
-            "TemplateAttributes generated from template file cannot be null or empty");
-        return new HL7MessageModel(templateName, templates);
+      templateAttributes.forEach(t -> templates.add(new HL7FHIRResourceTemplate(t)));
+      Preconditions.checkState(templateAttributes != null && !templateAttributes.isEmpty(),
+          "TemplateAttributes generated from template file cannot be null or empty");
+      return analyze(new HL7MessageModel(templateName, templates));
 
-      } catch (IOException e) {
-        throw new IllegalArgumentException(
-            "Error encountered in processing the template" + templateName, e);
-      }
-    } else {
-      throw new IllegalArgumentException("File not present:" + templateName);
+    } catch (IOException e) {
+      throw new IllegalArgumentException(
+          "Error encountered in processing the template" + templateName, e);
     }
 
   }
 
+  // Analyzes the template as configured by template.analysis, see TemplateAnalyzer.
+  private HL7MessageModel analyze(HL7MessageModel template) {
+    TemplateAnalysisMode mode = converterConfig.getTemplateAnalysisMode();
+    if (mode == TemplateAnalysisMode.OFF) {
+      return template;
+    }
+    TemplateAnalysis analysis = analyzer.analyze(template);
+    LOGGER.info("{}", analysis);
+    return mode == TemplateAnalysisMode.PRUNE ? analyzer.prune(template, analysis) : template;
+  }
+
+
   public ResourceModel generateResourceModel(String path) {
     Preconditions.checkArgument(StringUtils.isNotBlank(path), "Path for resource cannot be blank");
+    ConcurrentMap<String, ModelLoad> models = loadedModels;
+    if (models == null) {
+      return readResourceModel(path);
+    }
+    ModelLoad load = models.get(path);
+    if (load == null) {
+      ModelLoad created = new ModelLoad();
+      load = models.putIfAbsent(path, created);
+      if (load == null) {
+        try {
+          ResourceModel model = readResourceModel(path);
+          created.complete(model);
+          return model;
+        } catch (RuntimeException | Error e) {
+          created.completeExceptionally(e);
+          throw e;
+        }
+      }
+    }
+    if (load.loader == Thread.currentThread() && !load.isDone()) {
+      throw new IllegalArgumentException("Resource template " + path + " references itself");
+    }
+    try {
+      return load.join();
+    } catch (CompletionException e) {
+      throw new IllegalArgumentException("Error encountered in processing the template" + path, e.getCause());
+    }
+  }
+
+  private ResourceModel readResourceModel(String path) {
     String templateFileContent = getResourceInHl7Folder(path + ".yml");
 
     try {
+      // The reader holds its own injectable values, so models can be read by several threads at once.
       InjectableValues injValues = new InjectableValues.Std().addValue("resourceName", path);
-      return ObjectMapperUtil.getYAMLInstance().setInjectableValues(injValues)
-          .readValue(templateFileContent, HL7DataBasedResourceModel.class);
+      return RESOURCE_MODEL_READER.with(injValues).readValue(templateFileContent);
 
     } catch (IOException e) {
       throw new IllegalArgumentException("Error encountered in processing the template" + path, e);
@@ -211,13 +392,42 @@ public class ResourceReader {
 
   }
 
+  /**
+   * Returns the reader bound to the current thread by {@link #bind(ResourceReader)}, otherwise the
+   * reader of the current configuration. Templates reference other templates through this method,
+   * a reader that loads templates binds itself to the loading threads so that all of them are read
+   * from its resources.
+   * 
+   * @return The reader
+   */
   public static ResourceReader getInstance() {
+    ResourceReader bound = BOUND.get();
+    if (bound != null) {
+      return bound;
+    }
     if (reader == null) {
       reader = new ResourceReader();
     }
     return reader;
   }
 
+  /**
+   * Makes {@link #getInstance()} return the reader on the current thread, until this method is
+   * called again with the binding it returned.
+   * 
+   * @param resourceReader Reader to use, null to use the reader of the current configuration
+   * @return The reader bound before, null if none
+   */
+  public static ResourceReader bind(ResourceReader resourceReader) {
+    ResourceReader previous = BOUND.get();
+    if (resourceReader != null) {
+      BOUND.set(resourceReader);
+    } else {
+      BOUND.remove();
+    }
+    return previous;
+  }
+
   public static void reset() {
     reader = null;
   }
@@ -226,4 +436,22 @@ public class ResourceReader {
     return getResource(Constants.HL7_BASE_PATH + path);
   }
 
+  /**
+   * Load of a resource model, completed by the thread that started it.
+   */
+  private static final class ModelLoad extends CompletableFuture<ResourceModel> {
+    private final Thread loader = Thread.currentThread();
+  }
+
+  private static final class LoaderThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "hl7-template-loader-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
 }
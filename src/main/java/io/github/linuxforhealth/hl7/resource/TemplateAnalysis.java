@@ -0,0 +1,147 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+
+/**
+ * Analysis of one message template by {@link TemplateAnalyzer}. Expressions and variables are named
+ * <i>model</i>.<i>expression</i>, resources of the message template by their resource name.
+ */
+public final class TemplateAnalysis {
+
+    private final String messageName;
+    private final int resourceModelCount;
+    private final int expressionCount;
+    private final List<String> unreachableExpressions;
+    private final List<String> unusedVariables;
+    private final List<String> duplicatedCommonExpressions;
+    private final List<String> worstFanOut;
+    // Names of the unreachable expressions of each resource of the template
+    private final Map<FHIRResourceTemplate, Set<String>> prunableExpressions;
+
+    TemplateAnalysis(String messageName, int resourceModelCount, int expressionCount,
+            List<String> unreachableExpressions, List<String> unusedVariables,
+            List<String> duplicatedCommonExpressions, List<String> worstFanOut,
+            Map<FHIRResourceTemplate, Set<String>> prunableExpressions) {
+        this.messageName = messageName;
+        this.resourceModelCount = resourceModelCount;
+        this.expressionCount = expressionCount;
+        this.unreachableExpressions = ImmutableList.copyOf(unreachableExpressions);
+        this.unusedVariables = ImmutableList.copyOf(unusedVariables);
+        this.duplicatedCommonExpressions = ImmutableList.copyOf(duplicatedCommonExpressions);
+        this.worstFanOut = ImmutableList.copyOf(worstFanOut);
+        this.prunableExpressions = Collections.unmodifiableMap(new IdentityHashMap<>(prunableExpressions));
+    }
+
+    public String getMessageName() {
+        return messageName;
+    }
+
+    /**
+     * Returns the number of distinct resource models the template reaches, including the datatype
+     * and nested resource models.
+     */
+    public int getResourceModelCount() {
+        return resourceModelCount;
+    }
+
+    /**
+     * Returns the number of distinct expressions of the resource models the template reaches.
+     */
+    public int getExpressionCount() {
+        return expressionCount;
+    }
+
+    /**
+     * Returns the expressions of the resources of the template whose condition can never be
+     * satisfied, because it needs a variable read from a segment that is not in the segment group of
+     * the resource, with the segments. These expressions never produce a value.
+     *
+     * @return List of <i>resource</i>.<i>expression</i> descriptions
+     */
+    public List<String> getUnreachableExpressions() {
+        return unreachableExpressions;
+    }
+
+    /**
+     * Returns the variables that are extracted but never read by their expression.
+     *
+     * @return List of <i>model</i>.<i>expression</i> $<i>variable</i>
+     */
+    public List<String> getUnusedVariables() {
+        return unusedVariables;
+    }
+
+    /**
+     * Returns the expressions of the resource templates that Common.yml also defines. The Common.yml
+     * expression replaces the one of the resource template.
+     *
+     * @return List of <i>resource path</i>.<i>expression</i> descriptions
+     */
+    public List<String> getDuplicatedCommonExpressions() {
+        return duplicatedCommonExpressions;
+    }
+
+    /**
+     * Returns the number of nested levels of repeated values (repeating resources, generateList
+     * expressions and * specs) on the path of the template with the most of them. Each level
+     * multiplies the work by the number of repetitions in the message.
+     */
+    public int getWorstFanOutDepth() {
+        return worstFanOut.size();
+    }
+
+    /**
+     * Returns the repeated levels counted by {@link #getWorstFanOutDepth()}, outermost first.
+     */
+    public List<String> getWorstFanOut() {
+        return worstFanOut;
+    }
+
+    /**
+     * Returns the number of unreachable expressions that pruning removes from the resources.
+     */
+    public int getPrunableExpressionCount() {
+        return prunableExpressions.values().stream().mapToInt(Set::size).sum();
+    }
+
+    Set<String> getPrunableExpressions(FHIRResourceTemplate resource) {
+        return prunableExpressions.getOrDefault(resource, Collections.emptySet());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Template ").append(messageName).append(": ").append(resourceModelCount)
+                .append(" resource models, ").append(expressionCount).append(" expressions, worst fan-out depth ")
+                .append(getWorstFanOutDepth());
+        if (!worstFanOut.isEmpty()) {
+            report.append(' ').append(worstFanOut);
+        }
+        append(report, "Unreachable expressions", unreachableExpressions);
+        append(report, "Unused variables", unusedVariables);
+        append(report, "Expressions replaced by Common.yml", duplicatedCommonExpressions);
+        return report.toString();
+    }
+
+    private static void append(StringBuilder report, String title, List<String> entries) {
+        if (!entries.isEmpty()) {
+            report.append("\n  ").append(title).append(" (").append(entries.size()).append("):");
+            entries.forEach(e -> report.append("\n    ").append(e));
+        }
+    }
+
+}
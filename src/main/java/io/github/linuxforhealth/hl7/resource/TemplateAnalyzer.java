@@ -0,0 +1,496 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.model.Segment;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.api.Condition;
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.api.ResourceModel;
+import io.github.linuxforhealth.api.Specification;
+import io.github.linuxforhealth.api.Variable;
+import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.core.expression.VariableUtils;
+import io.github.linuxforhealth.core.expression.condition.CheckNotNull;
+import io.github.linuxforhealth.core.expression.condition.CheckNull;
+import io.github.linuxforhealth.core.expression.condition.CompoundAndCondition;
+import io.github.linuxforhealth.core.expression.condition.CompoundORCondition;
+import io.github.linuxforhealth.core.expression.condition.SimpleBiCondition;
+import io.github.linuxforhealth.hl7.expression.AbstractExpression;
+import io.github.linuxforhealth.hl7.expression.ExpressionAttributes;
+import io.github.linuxforhealth.hl7.expression.Hl7Expression;
+import io.github.linuxforhealth.hl7.expression.JEXLExpression;
+import io.github.linuxforhealth.hl7.expression.NestedExpression;
+import io.github.linuxforhealth.hl7.expression.ReferenceExpression;
+import io.github.linuxforhealth.hl7.expression.ResourceExpression;
+import io.github.linuxforhealth.hl7.expression.SimpleExpression;
+import io.github.linuxforhealth.hl7.expression.specification.HL7Specification;
+import io.github.linuxforhealth.hl7.expression.specification.SimpleSpecification;
+import io.github.linuxforhealth.hl7.expression.specification.SpecificationParser;
+import io.github.linuxforhealth.hl7.expression.variable.ExpressionVariable;
+import io.github.linuxforhealth.hl7.expression.variable.SimpleVariable;
+import io.github.linuxforhealth.hl7.message.HL7FHIRResourceTemplate;
+import io.github.linuxforhealth.hl7.message.HL7FHIRResourceTemplateAttributes;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+
+/**
+ * Checks the message templates once they are loaded, see {@link TemplateAnalysis} for what is
+ * reported. The checks only use what the templates declare, so the findings hold for every message.
+ *
+ * <p>
+ * A resource of a message template only reads the segments of its segment group, its segment, its
+ * additional segments and MSH, and the segments at the root of the message structure, which are read
+ * from the message when they are not in the group. An expression of the resource whose condition
+ * needs a variable read only from other segments never produces a value, {@link #prune(HL7MessageModel, TemplateAnalysis)}
+ * removes it from the resource. Expressions evaluated later, with a default value, or in models
+ * reached through other expressions are left as they are.
+ */
+public final class TemplateAnalyzer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateAnalyzer.class);
+
+    private static final String MSH = "MSH";
+
+    private final ResourceReader reader;
+    // Expressions of Common.yml, and duplicated Common.yml expressions by resource path
+    private volatile Map<String, JsonNode> commonExpressions;
+    private final Map<String, List<String>> duplicatedCommonExpressions = new ConcurrentHashMap<>();
+
+    public TemplateAnalyzer(ResourceReader reader) {
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        this.reader = reader;
+    }
+
+    /**
+     * Analyzes a message template.
+     *
+     * @param template {@link HL7MessageModel}
+     * @return {@link TemplateAnalysis}
+     */
+    public TemplateAnalysis analyze(HL7MessageModel template) {
+        Preconditions.checkArgument(template != null, "template cannot be null");
+        Walk walk = new Walk();
+        List<String> unreachable = new ArrayList<>();
+        Map<FHIRResourceTemplate, Set<String>> prunable = new IdentityHashMap<>();
+        Set<String> duplicated = new TreeSet<>();
+        List<String> worstFanOut = Collections.emptyList();
+        Set<String> rootSegments = getRootSegments(template.getMessageName());
+
+        for (FHIRResourceTemplate resource : template.getResources()) {
+            ResourceModel model = resource.getResource();
+            if (resource instanceof HL7FHIRResourceTemplate && model instanceof HL7DataBasedResourceModel) {
+                HL7FHIRResourceTemplateAttributes attributes = ((HL7FHIRResourceTemplate) resource).getAttributes();
+                if (rootSegments != null) {
+                    Set<String> segments = getSegmentGroup(attributes);
+                    Set<String> readable = new TreeSet<>(segments);
+                    readable.addAll(rootSegments);
+                    Set<String> dead = new TreeSet<>();
+                    for (Entry<String, Expression> entry : model.getExpressions().entrySet()) {
+                        Set<String> missing = getMissingSegments(entry.getValue(), readable);
+                        if (missing != null) {
+                            dead.add(entry.getKey());
+                            unreachable.add(resource.getResourceName() + "." + entry.getKey() + ": condition needs "
+                                    + missing + ", segment group is " + segments);
+                        }
+                    }
+                    if (!dead.isEmpty()) {
+                        prunable.put(resource, dead);
+                    }
+                }
+                if (attributes.getResourcePath() != null
+                        && ((HL7DataBasedResourceModel) model).getName().indexOf('/') == -1) {
+                    duplicated.addAll(getDuplicatedCommonExpressions(attributes.getResourcePath()));
+                }
+            }
+
+            List<String> fanOut = new ArrayList<>();
+            if (resource.isGenerateMultiple()) {
+                fanOut.add(resource.getResourceName() + " (repeats)");
+            }
+            fanOut.addAll(walk.fanOut(model));
+            if (fanOut.size() > worstFanOut.size()) {
+                worstFanOut = fanOut;
+            }
+        }
+
+        return new TemplateAnalysis(template.getMessageName(), walk.models.size(), walk.expressions.size(),
+                unreachable, new ArrayList<>(walk.unusedVariables), new ArrayList<>(duplicated), worstFanOut,
+                prunable);
+    }
+
+    /**
+     * Returns the template without the unreachable expressions found by the analysis. Resources
+     * without unreachable expressions keep their model.
+     *
+     * @param template {@link HL7MessageModel} that was analyzed
+     * @param analysis {@link TemplateAnalysis} of the template
+     * @return The pruned template, the template itself if nothing is pruned
+     */
+    public HL7MessageModel prune(HL7MessageModel template, TemplateAnalysis analysis) {
+        Preconditions.checkArgument(template != null, "template cannot be null");
+        Preconditions.checkArgument(analysis != null, "analysis cannot be null");
+        if (analysis.getPrunableExpressionCount() == 0) {
+            return template;
+        }
+        List<HL7FHIRResourceTemplate> resources = new ArrayList<>();
+        for (FHIRResourceTemplate resource : template.getResources()) {
+            HL7FHIRResourceTemplate hl7Resource = (HL7FHIRResourceTemplate) resource;
+            Set<String> dead = analysis.getPrunableExpressions(resource);
+            if (dead.isEmpty()) {
+                resources.add(hl7Resource);
+            } else {
+                HL7DataBasedResourceModel pruned =
+                        new HL7DataBasedResourceModel((HL7DataBasedResourceModel) resource.getResource(), dead);
+                resources.add(new HL7FHIRResourceTemplate(hl7Resource.getAttributes().withResource(pruned)));
+            }
+        }
+        LOGGER.debug("Pruned {} expressions from template {}", analysis.getPrunableExpressionCount(),
+                template.getMessageName());
+        return new HL7MessageModel(template.getMessageName(), resources);
+    }
+
+    // Segments in the context of the resource, MSH fields are read from the message when MSH is not.
+    private static Set<String> getSegmentGroup(HL7FHIRResourceTemplateAttributes attributes) {
+        Set<String> segments = new TreeSet<>();
+        segments.add(MSH);
+        segments.add(attributes.getSegment().getSegment());
+        attributes.getAdditionalSegments().forEach(s -> segments.add(s.getSegment()));
+        return segments;
+    }
+
+    // Segments at the root of the message structure, null if HAPI has no structure for the message:
+    // it then parses every segment at the root.
+    private static Set<String> getRootSegments(String messageName) {
+        Message message = HL7HapiParser.getThreadParser().newMessage(messageName);
+        if (message == null) {
+            return null;
+        }
+        Set<String> segments = new TreeSet<>();
+        for (String name : message.getNames()) {
+            if (Segment.class.isAssignableFrom(message.getClass(name))) {
+                segments.add(name);
+            }
+        }
+        return segments;
+    }
+
+    // Segments the condition of the expression needs and that cannot be read, null if the expression
+    // can produce a value.
+    private static Set<String> getMissingSegments(Expression expression, Set<String> segments) {
+        if (!(expression instanceof AbstractExpression) || expression.isEvaluateLater()) {
+            return null;
+        }
+        ExpressionAttributes attr = ((AbstractExpression) expression).getExpressionAttr();
+        if (attr.getFilter() == null || StringUtils.isNotEmpty(attr.getDefaultValue())) {
+            return null;
+        }
+        Map<String, Set<String>> emptyVariables = new HashMap<>();
+        for (Variable variable : expression.getVariables()) {
+            Set<String> missing = getMissingSegments(variable, segments);
+            if (missing != null) {
+                emptyVariables.put(variable.getVariableName(), missing);
+            }
+        }
+        return emptyVariables.isEmpty() ? null : getUnsatisfiedBy(attr.getFilter(), emptyVariables);
+    }
+
+    // Segments of a variable that is always empty, because all its specs read segments that cannot be
+    // read, null otherwise.
+    private static Set<String> getMissingSegments(Variable variable, Set<String> segments) {
+        if (variable.getClass() != SimpleVariable.class || variable.getSpec().isEmpty()) {
+            return null;
+        }
+        Set<String> missing = new TreeSet<>();
+        for (String rawSpec : variable.getSpec()) {
+            Specification spec = SpecificationParser.parse(rawSpec, false, false);
+            if (!(spec instanceof HL7Specification)) {
+                return null;
+            }
+            String segment = ((HL7Specification) spec).getSegment();
+            if (StringUtils.isBlank(segment) || segments.contains(segment)) {
+                return null;
+            }
+            missing.add(segment);
+        }
+        return missing;
+    }
+
+    // Segments that make the condition always false, null if it can be satisfied.
+    private static Set<String> getUnsatisfiedBy(Condition condition, Map<String, Set<String>> emptyVariables) {
+        if (condition instanceof CheckNotNull) {
+            return getEmptyVariable(((CheckNotNull) condition).getVar1(), emptyVariables);
+        } else if (condition instanceof SimpleBiCondition) {
+            SimpleBiCondition biCondition = (SimpleBiCondition) condition;
+            Set<String> missing = getEmptyVariable(biCondition.getVar1(), emptyVariables);
+            if (missing == null && biCondition.getVar2() instanceof String) {
+                missing = getEmptyVariable((String) biCondition.getVar2(), emptyVariables);
+            }
+            return missing;
+        } else if (condition instanceof CompoundAndCondition) {
+            for (Condition c : ((CompoundAndCondition) condition).getConditions()) {
+                Set<String> missing = getUnsatisfiedBy(c, emptyVariables);
+                if (missing != null) {
+                    return missing;
+                }
+            }
+            return null;
+        } else if (condition instanceof CompoundORCondition) {
+            Set<String> missing = new TreeSet<>();
+            for (Condition c : ((CompoundORCondition) condition).getConditions()) {
+                Set<String> conditionMissing = getUnsatisfiedBy(c, emptyVariables);
+                if (conditionMissing == null) {
+                    return null;
+                }
+                missing.addAll(conditionMissing);
+            }
+            return missing;
+        }
+        return null;
+    }
+
+    private static Set<String> getEmptyVariable(String var, Map<String, Set<String>> emptyVariables) {
+        if (!VariableUtils.isVar(var) || VariableUtils.isFuzzyMatch(var) || var.contains(":")) {
+            return null;
+        }
+        return emptyVariables.get(VariableUtils.getVarName(var));
+    }
+
+    private List<String> getDuplicatedCommonExpressions(String resourcePath) {
+        return duplicatedCommonExpressions.computeIfAbsent(resourcePath, path -> {
+            List<String> duplicated = new ArrayList<>();
+            Map<String, JsonNode> common = getCommonExpressions();
+            JsonNode node = readTree(path + ".yml");
+            Iterator<Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Entry<String, JsonNode> field = fields.next();
+                JsonNode commonNode = common.get(field.getKey());
+                if (commonNode != null) {
+                    duplicated.add(path + "." + field.getKey()
+                            + (commonNode.equals(field.getValue()) ? " (same as Common.yml)" : " (differs from Common.yml)"));
+                }
+            }
+            return duplicated;
+        });
+    }
+
+    private Map<String, JsonNode> getCommonExpressions() {
+        Map<String, JsonNode> common = commonExpressions;
+        if (common == null) {
+            common = new HashMap<>();
+            Iterator<Entry<String, JsonNode>> fields = readTree(Constants.COMMON_RESOURCE_PATH).fields();
+            while (fields.hasNext()) {
+                Entry<String, JsonNode> field = fields.next();
+                common.put(field.getKey(), field.getValue());
+            }
+            commonExpressions = common;
+        }
+        return common;
+    }
+
+    private JsonNode readTree(String path) {
+        try {
+            JsonNode node = ObjectMapperUtil.getYAMLInstance().readTree(reader.getResourceInHl7Folder(path));
+            if (node != null) {
+                return node;
+            }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            LOGGER.debug("Cannot read template {} for analysis", path, e);
+        }
+        return ObjectMapperUtil.getYAMLInstance().createObjectNode();
+    }
+
+    /**
+     * Visits the models and expressions reached from the resources of one message template.
+     */
+    private static final class Walk {
+        private final Set<Object> models = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<Object> expressions = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Set<String> unusedVariables = new TreeSet<>();
+        // Worst fan-out of each model, models being visited are mapped to an empty fan-out
+        private final Map<ResourceModel, List<String>> fanOuts = new IdentityHashMap<>();
+
+        private List<String> fanOut(ResourceModel model) {
+            if (!(model instanceof HL7DataBasedResourceModel)) {
+                return Collections.emptyList();
+            }
+            List<String> known = fanOuts.get(model);
+            if (known != null) {
+                return known;
+            }
+            fanOuts.put(model, Collections.emptyList());
+            models.add(model);
+            String name = ((HL7DataBasedResourceModel) model).getName();
+            List<String> worst = Collections.emptyList();
+            Map<String, Expression> evaluated = ((HL7DataBasedResourceModel) model).getEvaluatedExpressions();
+            for (Entry<String, Expression> entry : evaluated.entrySet()) {
+                List<String> fanOut = fanOut(name + "." + entry.getKey(), entry.getValue());
+                if (fanOut.size() > worst.size()) {
+                    worst = fanOut;
+                }
+            }
+            fanOuts.put(model, worst);
+            return worst;
+        }
+
+        private List<String> fanOut(String name, Expression expression) {
+            if (expression == null) {
+                return Collections.emptyList();
+            }
+            if (expressions.add(expression)) {
+                addUnusedVariables(name, expression);
+            }
+            List<String> worst = Collections.emptyList();
+            if (expression instanceof NestedExpression) {
+                for (Entry<String, Expression> child : ((NestedExpression) expression).getChildExpressions().entrySet()) {
+                    List<String> fanOut = fanOut(name + "." + child.getKey(), child.getValue());
+                    if (fanOut.size() > worst.size()) {
+                        worst = fanOut;
+                    }
+                }
+            } else if (expression instanceof ResourceExpression) {
+                worst = fanOut(((ResourceExpression) expression).getData());
+            } else if (expression instanceof ReferenceExpression) {
+                worst = fanOut(((ReferenceExpression) expression).getData());
+                List<String> reference = fanOut(((ReferenceExpression) expression).getReferenceModel());
+                if (reference.size() > worst.size()) {
+                    worst = reference;
+                }
+            }
+            if (!isMultiple(expression)) {
+                return worst;
+            }
+            List<String> fanOut = new ArrayList<>();
+            fanOut.add(name);
+            fanOut.addAll(worst);
+            return fanOut;
+        }
+
+        private static boolean isMultiple(Expression expression) {
+            if (expression instanceof AbstractExpression
+                    && ((AbstractExpression) expression).getExpressionAttr().isGenerateMultiple()) {
+                return true;
+            }
+            for (Specification spec : expression.getspecs()) {
+                if ((spec instanceof HL7Specification && ((HL7Specification) spec).isExtractMultiple())
+                        || (spec instanceof SimpleSpecification && ((SimpleSpecification) spec).isExtractMultiple())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Only expressions that do not hand their variables on to other expressions or models.
+        private void addUnusedVariables(String name, Expression expression) {
+            Class<?> type = expression.getClass();
+            if ((type != Hl7Expression.class && type != SimpleExpression.class && type != JEXLExpression.class)
+                    || expression.getVariables().isEmpty()) {
+                return;
+            }
+            ExpressionAttributes attr = ((AbstractExpression) expression).getExpressionAttr();
+            Set<String> conditionVariables = new TreeSet<>();
+            if (attr.getFilter() != null && !addConditionVariables(attr.getFilter(), conditionVariables)) {
+                return;
+            }
+            List<String> texts = new ArrayList<>();
+            texts.add(attr.getValueOf());
+            texts.add(attr.getValue());
+            for (Specification spec : expression.getspecs()) {
+                if (spec instanceof SimpleSpecification) {
+                    texts.add(((SimpleSpecification) spec).getVariable());
+                }
+            }
+            for (Variable variable : expression.getVariables()) {
+                texts.addAll(variable.getSpec());
+                if (variable instanceof ExpressionVariable) {
+                    texts.add(((ExpressionVariable) variable).getExpression());
+                }
+            }
+
+            for (Variable variable : expression.getVariables()) {
+                String variableName = variable.getVariableName();
+                if (!isConditionVariable(variableName, conditionVariables) && !isReferenced(variableName, texts)) {
+                    unusedVariables.add(name + " $" + variableName);
+                }
+            }
+        }
+
+        private static boolean addConditionVariables(Condition condition, Set<String> variables) {
+            if (condition instanceof CheckNotNull) {
+                variables.add(((CheckNotNull) condition).getVar1());
+            } else if (condition instanceof CheckNull) {
+                variables.add(((CheckNull) condition).getVar1());
+            } else if (condition instanceof SimpleBiCondition) {
+                variables.add(((SimpleBiCondition) condition).getVar1());
+                if (((SimpleBiCondition) condition).getVar2() instanceof String) {
+                    variables.add((String) ((SimpleBiCondition) condition).getVar2());
+                }
+            } else if (condition instanceof CompoundAndCondition) {
+                for (Condition c : ((CompoundAndCondition) condition).getConditions()) {
+                    if (!addConditionVariables(c, variables)) {
+                        return false;
+                    }
+                }
+            } else if (condition instanceof CompoundORCondition) {
+                for (Condition c : ((CompoundORCondition) condition).getConditions()) {
+                    if (!addConditionVariables(c, variables)) {
+                        return false;
+                    }
+                }
+            } else {
+                return false;
+            }
+            return true;
+        }
+
+        private static boolean isConditionVariable(String variableName, Set<String> conditionVariables) {
+            for (String var : conditionVariables) {
+                String conditionName = VariableUtils.getVarName(var);
+                if (variableName.equals(conditionName)
+                        || (VariableUtils.isFuzzyMatch(var) && variableName.startsWith(conditionName))
+                        || var.contains(":")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isReferenced(String variableName, List<String> texts) {
+            Pattern reference = Pattern.compile("(?<![A-Za-z0-9_])" + Pattern.quote(variableName) + "(?![A-Za-z0-9_])");
+            for (String text : texts) {
+                if (text != null && reference.matcher(text).find()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
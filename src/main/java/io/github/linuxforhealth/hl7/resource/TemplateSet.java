@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.terminology.UrlLookup;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+/**
+ * One version of what a conversion reads from the configuration and the template resources: the
+ * configuration, the message templates and the URL mappings of the concept maps. A set does not
+ * change once loaded, templates are reloaded by loading a new set and replacing the old one as a
+ * whole.
+ *
+ * <p>
+ * A conversion runs with the set it starts with bound to its thread, see {@link #call(Supplier)}. The configuration,
+ * the reader of lazily loaded templates and the URL lookups then come from that set until the
+ * conversion ends, even if the set is replaced meanwhile, so a message is never converted with a
+ * mix of template versions.
+ */
+public final class TemplateSet {
+
+    private final ConverterConfiguration configuration;
+    private final ResourceReader reader;
+    private final UrlLookup urlLookup;
+    // Message templates by message type, null with lazy template loading
+    private final Map<String, HL7MessageModel> messageTemplates;
+    private final LazyMessageTemplates lazyTemplates;
+
+    private TemplateSet(ConverterConfiguration configuration, ResourceReader reader, UrlLookup urlLookup,
+            Map<String, HL7MessageModel> messageTemplates, LazyMessageTemplates lazyTemplates) {
+        this.configuration = configuration;
+        this.reader = reader;
+        this.urlLookup = urlLookup;
+        this.messageTemplates = messageTemplates;
+        this.lazyTemplates = lazyTemplates;
+    }
+
+    /**
+     * Loads the templates of the configuration with the reader. If template.snapshot.file is
+     * configured, the templates are read from that snapshot when it is current, see
+     * {@link TemplateSnapshot}. Otherwise, if template.loading.lazy is true, only the templates listed
+     * in template.warmup.messages are loaded here, see {@link LazyMessageTemplates}.
+     *
+     * @param configuration Configuration of the templates
+     * @param reader Reader of the template resources
+     * @return The loaded set
+     * @throws IllegalArgumentException if a template or URL mapping cannot be read
+     * @throws IllegalStateException if a warm up template cannot be loaded
+     */
+    public static TemplateSet load(ConverterConfiguration configuration, ResourceReader reader) {
+        Preconditions.checkArgument(configuration != null, "configuration cannot be null");
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        ConverterConfiguration previous = ConverterConfiguration.bind(configuration);
+        try {
+            UrlLookup urlLookup = UrlLookup.load(reader, configuration);
+            String snapshotFile = configuration.getTemplateSnapshotFile();
+            if (snapshotFile != null) {
+                return new TemplateSet(configuration, reader, urlLookup, Collections.unmodifiableMap(
+                        TemplateSnapshot.getMessageTemplates(Paths.get(snapshotFile), reader)), null);
+            } else if (configuration.isTemplateLoadingLazy()) {
+                LazyMessageTemplates lazyTemplates = new LazyMessageTemplates(reader);
+                lazyTemplates.warmUp(configuration.getTemplateWarmupMessages());
+                return new TemplateSet(configuration, reader, urlLookup, null, lazyTemplates);
+            } else {
+                return new TemplateSet(configuration, reader, urlLookup,
+                        Collections.unmodifiableMap(reader.getMessageTemplates()), null);
+            }
+        } finally {
+            ConverterConfiguration.bind(previous);
+        }
+    }
+
+    public ConverterConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Returns the supported message types, with lazy template loading whether loaded or not.
+     */
+    public Set<String> getMessageTypes() {
+        return lazyTemplates != null ? lazyTemplates.getMessageTypes() : messageTemplates.keySet();
+    }
+
+    public boolean isSupported(String messageType) {
+        return lazyTemplates != null ? lazyTemplates.isSupported(messageType)
+                : messageTemplates.containsKey(messageType);
+    }
+
+    /**
+     * Returns the template of the message type, with lazy template loading loading it if needed.
+     *
+     * @param messageType Message type, example: ADT_A01
+     * @return The template, null if the message type is not supported
+     * @throws IllegalStateException if the template cannot be loaded
+     */
+    public HL7MessageModel get(String messageType) {
+        return lazyTemplates != null ? lazyTemplates.get(messageType) : messageTemplates.get(messageType);
+    }
+
+    /**
+     * Runs the action with the configuration, reader and URL mappings of this set bound to the
+     * current thread, the previous ones are bound again afterwards.
+     *
+     * @param action Action to run
+     * @return The result of the action
+     */
+    public <T> T call(Supplier<T> action) {
+        ConverterConfiguration previousConfiguration = ConverterConfiguration.bind(configuration);
+        ResourceReader previousReader = ResourceReader.bind(reader);
+        UrlLookup previousUrlLookup = UrlLookup.bind(urlLookup);
+        try {
+            return action.get();
+        } finally {
+            ConverterConfiguration.bind(previousConfiguration);
+            ResourceReader.bind(previousReader);
+            UrlLookup.bind(previousUrlLookup);
+        }
+    }
+
+}
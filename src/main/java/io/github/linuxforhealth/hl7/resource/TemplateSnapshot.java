@@ -0,0 +1,219 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.resource;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+/**
+ * Binary snapshot of the compiled message templates: message models, resource models and their
+ * expressions with parsed specifications, conditions and variables. Reading a snapshot skips the
+ * YAML parsing and the construction of the expressions, so a converter starts much faster.
+ *
+ * <p>
+ * The snapshot is written with Java serialization after a header with the format version, the
+ * names of the message templates and a SHA-256 checksum over the YAML resources the templates were
+ * built from. A snapshot is only used if the header matches the current configuration and
+ * resources, otherwise the templates are loaded from YAML. A snapshot written by a build whose
+ * template classes differ cannot be deserialized and is also ignored. The template classes declare
+ * their serialVersionUID so a recompile alone does not invalidate a snapshot, an incompatible change
+ * to their fields changes the UID or {@link #FORMAT_VERSION}.
+ */
+public class TemplateSnapshot {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplateSnapshot.class);
+
+    public static final int FORMAT_VERSION = 1;
+    private static final String MAGIC = "HL7-FHIR-TEMPLATES";
+    private static final String CHECKSUM_ALGORITHM = "SHA-256";
+    // Only the classes the template graph is made of can be read from a snapshot, the JDK
+    // collections and values the templates use by name. The limits are well above what the
+    // templates need, a snapshot of all the shipped templates nests 27 objects deep.
+    private static final ObjectInputFilter CLASS_FILTER = ObjectInputFilter.Config
+            .createFilter("maxdepth=100;maxrefs=1000000;maxbytes=67108864;maxarray=100000;"
+                    + "io.github.linuxforhealth.**;com.google.common.collect.*;org.apache.commons.lang3.tuple.*;"
+                    + "java.lang.Object;java.lang.String;java.lang.Enum;java.lang.Number;java.lang.Boolean;"
+                    + "java.lang.Integer;java.lang.Long;java.lang.Double;"
+                    + "java.util.ArrayList;java.util.Arrays$ArrayList;java.util.HashMap;java.util.LinkedHashMap;"
+                    + "java.util.TreeMap;java.util.HashSet;java.util.LinkedHashSet;java.util.TreeSet;"
+                    + "java.util.Map$Entry;java.util.Collections$EmptyList;java.util.Collections$EmptyMap;"
+                    + "java.util.Collections$EmptySet;java.util.Collections$SingletonList;"
+                    + "java.util.Collections$SingletonMap;java.util.Collections$SingletonSet;"
+                    + "java.util.Collections$UnmodifiableCollection;java.util.Collections$UnmodifiableList;"
+                    + "java.util.Collections$UnmodifiableRandomAccessList;java.util.Collections$UnmodifiableSet;"
+                    + "java.util.Collections$UnmodifiableMap;!*");
+
+    private TemplateSnapshot() {}
+
+    /**
+     * Returns the message templates from the snapshot file if it is current. Otherwise loads them
+     * from YAML through {@link ResourceReader#getMessageTemplates()} and writes a new snapshot, a
+     * failure to write it is logged.
+     *
+     * @param file Snapshot file
+     * @return Map of messages, by message title
+     */
+    public static Map<String, HL7MessageModel> getMessageTemplates(Path file) {
+        return getMessageTemplates(file, ResourceReader.getInstance());
+    }
+
+    /**
+     * Returns the message templates from the snapshot file if it is current for the resources of the
+     * reader, otherwise loads them with the reader and writes a new snapshot, see
+     * {@link #getMessageTemplates(Path)}.
+     *
+     * @param file Snapshot file
+     * @param reader Reader of the templates
+     * @return Map of messages, by message title
+     */
+    public static Map<String, HL7MessageModel> getMessageTemplates(Path file, ResourceReader reader) {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        long start = System.nanoTime();
+        Map<String, HL7MessageModel> templates = read(file, reader);
+        if (templates != null) {
+            LOGGER.info("Read {} message templates from snapshot {} in {} ms", templates.size(), file,
+                    (System.nanoTime() - start) / 1_000_000);
+            return templates;
+        }
+        templates = reader.getMessageTemplates();
+        try {
+            write(file, templates, reader);
+            LOGGER.info("Wrote snapshot {} of {} message templates", file, templates.size());
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write template snapshot {}: {}", file, e.toString());
+            LOGGER.debug("Cannot write template snapshot " + file, e);
+        }
+        return templates;
+    }
+
+    /**
+     * Reads the message templates from a snapshot file.
+     *
+     * @param file Snapshot file
+     * @param reader Reader of the resources the snapshot is checked against
+     * @return Map of messages, by message title, null if the file does not exist, cannot be read or
+     *         does not match the current templates
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, HL7MessageModel> read(Path file, ResourceReader reader) {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            in.setObjectInputFilter(CLASS_FILTER);
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION) {
+                LOGGER.info("Template snapshot {} has another format, it is replaced", file);
+                return null;
+            }
+            List<String> names = (List<String>) in.readObject();
+            if (!names.equals(new ArrayList<>(new TreeSet<>(reader.getMessageTemplateNames())))) {
+                LOGGER.info("Message templates changed since snapshot {}, it is replaced", file);
+                return null;
+            }
+            List<String> sources = (List<String>) in.readObject();
+            byte[] checksum = (byte[]) in.readObject();
+            if (!Arrays.equals(checksum, checksum(reader, sources))) {
+                LOGGER.info("Template resources changed since snapshot {}, it is replaced", file);
+                return null;
+            }
+            return (Map<String, HL7MessageModel>) in.readObject();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | ClassNotFoundException | ClassCastException | IllegalArgumentException e) {
+            // IllegalArgumentException: a resource of the snapshot no longer exists
+            LOGGER.info("Cannot use template snapshot {}, it is replaced: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot of the message templates. The templates must have been loaded by the reader,
+     * the resources it read are the sources checked by {@link #read(Path, ResourceReader)}. The
+     * snapshot is written to a temporary file that is renamed over the snapshot file, so readers
+     * never see a partial snapshot.
+     *
+     * @param file Snapshot file
+     * @param templates Templates returned by {@link ResourceReader#getMessageTemplates()}
+     * @param reader Reader that loaded the templates
+     * @throws IOException if the file cannot be written, or a template cannot be serialized
+     */
+    public static void write(Path file, Map<String, HL7MessageModel> templates, ResourceReader reader)
+            throws IOException {
+        Preconditions.checkArgument(file != null, "file cannot be null");
+        Preconditions.checkArgument(templates != null, "templates cannot be null");
+        Preconditions.checkArgument(reader != null, "reader cannot be null");
+        Set<String> sources = new TreeSet<>();
+        for (String resource : reader.getResourcesRead()) {
+            if (resource.startsWith(Constants.HL7_BASE_PATH)) {
+                sources.add(resource);
+            }
+        }
+        // Common.yml is only read by a reader that loads a resource model with common expressions.
+        sources.add(Constants.HL7_BASE_PATH + Constants.COMMON_RESOURCE_PATH);
+        List<String> sourceList = new ArrayList<>(sources);
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeUTF(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeObject(new ArrayList<>(new TreeSet<>(reader.getMessageTemplateNames())));
+                out.writeObject(sourceList);
+                out.writeObject(checksum(reader, sourceList));
+                out.writeObject(new HashMap<>(templates));
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static byte[] checksum(ResourceReader reader, List<String> sources) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(CHECKSUM_ALGORITHM + " is not supported", e);
+        }
+        for (String source : sources) {
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(reader.getResource(source).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return digest.digest();
+    }
+
+}
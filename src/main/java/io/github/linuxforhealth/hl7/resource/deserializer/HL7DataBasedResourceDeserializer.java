@@ -6,12 +6,11 @@
 package io.github.linuxforhealth.hl7.resource.deserializer;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.WeakHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.core.JsonParser;
@@ -25,6 +24,8 @@ import io.github.linuxforhealth.api.Expression;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
 import io.github.linuxforhealth.hl7.expression.ExpressionAttributes;
+import io.github.linuxforhealth.hl7.expression.ExpressionFactories;
+import io.github.linuxforhealth.hl7.resource.CommonExpressions;
 import io.github.linuxforhealth.hl7.resource.HL7DataBasedResourceModel;
 import io.github.linuxforhealth.hl7.resource.ResourceReader;
 
@@ -32,23 +33,35 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
 
   private static final String RESOURCE_TYPE_FIELD_NAME = "resourceType";
   private static final String SPEC = "specs";
-  private static Map<String, Expression> commonExpressions;
+  // Common expressions by the reader of the Common YAML file, so a reader created for reloaded
+  // templates reads the file again. The resource models of a reader share the one instance.
+  private static final Map<ResourceReader, CommonExpressions> COMMON_EXPRESSIONS = new WeakHashMap<>();
 
   private static final ObjectMapper MAPPER = ObjectMapperUtil.getYAMLInstance();
   private static final Logger LOGGER = LoggerFactory.getLogger(HL7DataBasedResourceDeserializer.class);
 
-  // Reads the resource/Common.yml and generates expressions from it.
-  private static synchronized Map<String, Expression> getCommonExpressions() throws JsonProcessingException {
+  // Reads the resource/Common.yml and generates expressions from it. The expressions are generated
+  // without holding the lock, they can load resource models that other threads are loading. When
+  // two threads generate them, the expressions of the first one are kept.
+  private static CommonExpressions getCommonExpressions() throws JsonProcessingException {
 
+      ResourceReader reader = ResourceReader.getInstance();
+      CommonExpressions commonExpressions;
+      synchronized (COMMON_EXPRESSIONS) {
+        commonExpressions = COMMON_EXPRESSIONS.get(reader);
+      }
       if (commonExpressions == null) {
 
         // generate the common expressions from the Common YAML file.
-        commonExpressions = new HashMap<>();
-        String path = ResourceReader.getInstance().getResource(Constants.HL7_BASE_PATH + Constants.COMMON_RESOURCE_PATH);
+        Map<String, Expression> expressions = new HashMap<>();
+        String path = reader.getResource(Constants.HL7_BASE_PATH + Constants.COMMON_RESOURCE_PATH);
         JsonNode node = ObjectMapperUtil.getYAMLInstance().readTree(path);
-        Map<String, Expression> expressions = generateExpressions(node);
+        expressions.putAll(generateExpressions(node));
 
-        commonExpressions.putAll(expressions);
+        CommonExpressions generated = new CommonExpressions(expressions);
+        synchronized (COMMON_EXPRESSIONS) {
+          commonExpressions = COMMON_EXPRESSIONS.computeIfAbsent(reader, r -> generated);
+        }
       }
 
     return commonExpressions;
@@ -75,15 +88,16 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
       name = namenode.textValue();
     }
 
-    // Add the common expresions to the list of expressions if this resources has expressions
+    // Share the common expresions with the resource if this resources has expressions
     // And is base FHIR resource like Patient and Organization. Not a datatype/? or reference/? etc.
+    CommonExpressions commonExpressions = null;
     if (!expressions.isEmpty() && name.indexOf('/') == -1) {
       LOGGER.debug("Adding common expressions to the list of expressions for {}",name);
-      expressions.putAll(getCommonExpressions());
+      commonExpressions = getCommonExpressions();
     }
 
 
-    return new HL7DataBasedResourceModel(name, expressions, hl7Prefix);
+    return new HL7DataBasedResourceModel(name, expressions, hl7Prefix, commonExpressions);
   }
 
   private static Map<String, Expression> generateExpressions(JsonNode node) {
@@ -121,19 +135,7 @@ public class HL7DataBasedResourceDeserializer extends JsonDeserializer<HL7DataBa
   }
 
   public static Expression generateExpression(ExpressionAttributes expAttr) {
-
-    if (expAttr != null && expAttr.getExpressionType() != null) {
-
-      try {
-        Constructor<?> ctor = expAttr.getExpressionType().getEvaluator().getConstructor(ExpressionAttributes.class);
-        return (Expression) ctor.newInstance(expAttr);
-      } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | IllegalArgumentException
-          | InvocationTargetException | SecurityException e1) {
-        throw new IllegalStateException("Error encountered while creating expression object.", e1);
-      }
-
-    }
-    return null;
+    return ExpressionFactories.getInstance().create(expAttr);
   }
 
 }
@@ -6,6 +6,7 @@
 package io.github.linuxforhealth.hl7.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -23,9 +24,10 @@ import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.api.ResourceValue;
 import io.github.linuxforhealth.core.Constants;
 import io.github.linuxforhealth.core.ObjectMapperUtil;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticEventType;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
 import io.github.linuxforhealth.core.exception.DataExtractionException;
 import io.github.linuxforhealth.core.exception.RequiredConstraintFailureException;
-import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
 import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.hl7.message.HL7MessageData;
 import io.github.linuxforhealth.hl7.resource.PendingExpressionState;
@@ -54,24 +56,42 @@ public class ExpressionUtility {
     public static ResourceEvaluationResult evaluate(InputDataExtractor dataSource,
             Map<String, EvaluationResult> context, EvaluationResult baseValue,
             Map<String, Expression> expressionMap) {
+        return evaluate(dataSource, context, baseValue, expressionMap, Collections.emptyMap());
+    }
+
+    /**
+     * Evaluates the expressions of a resource, then the shared expressions whose name is not in
+     * expressionMap, into one ResourceEvaluationResult.
+     * 
+     * @param dataSource The data extractor to be used
+     * @param context The context in use
+     * @param baseValue The value to evaluate
+     * @param expressionMap Map of expressions of the resource
+     * @param sharedExpressions Map of expressions shared with other resources
+     * @return {@link ResourceEvaluationResult}
+     */
+    public static ResourceEvaluationResult evaluate(InputDataExtractor dataSource,
+            Map<String, EvaluationResult> context, EvaluationResult baseValue,
+            Map<String, Expression> expressionMap, Map<String, Expression> sharedExpressions) {
 
         try {
             Map<String, Expression> expressionsToEvaluateLater = new HashMap<>();
             Map<String, EvaluationResult> localContext = new HashMap<>(context);
-            localContext.put(Constants.NULL_VAR_NAME, new EmptyEvaluationResult());
+            localContext.put(Constants.NULL_VAR_NAME, EvaluationResultFactory.getEmptyEvaluationResult());
             // initialize the map and list to collect values
             List<ResourceValue> additionalResolveValues = new ArrayList<>();
             Map<String, Object> resolveValues = new HashMap<>();
 
             for (Entry<String, Expression> entry : expressionMap.entrySet()) {
-
-                Expression exp = entry.getValue();
-                LOGGER.debug(EVALUATING, entry.getKey(), entry.getValue());
-                if (exp.isEvaluateLater()) {
-                    expressionsToEvaluateLater.put(entry.getKey(), entry.getValue());
-                } else {
-                    processExpression(dataSource, baseValue, localContext, additionalResolveValues,
-                            resolveValues, entry);
+                if (!evaluateOrDefer(dataSource, baseValue, localContext, additionalResolveValues,
+                        resolveValues, expressionsToEvaluateLater, entry)) {
+                    return constraintFailure();
+                }
+            }
+            for (Entry<String, Expression> entry : sharedExpressions.entrySet()) {
+                if (!expressionMap.containsKey(entry.getKey()) && !evaluateOrDefer(dataSource, baseValue,
+                        localContext, additionalResolveValues, resolveValues, expressionsToEvaluateLater, entry)) {
+                    return constraintFailure();
                 }
             }
             resolveValues.values().removeIf(Objects::isNull);
@@ -79,12 +99,13 @@ public class ExpressionUtility {
                     new PendingExpressionState(expressionsToEvaluateLater, context));
 
         } catch (RequiredConstraintFailureException e) {
-            LOGGER.warn("Resource Constraint condition not satisfied.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.REQUIRED_CONSTRAINT_FAILURE,
+                    "Resource Constraint condition not satisfied.");
             LOGGER.debug("Resource Constraint condition not satisfied, exception", e);
             return null;
 
         } catch (IllegalArgumentException | IllegalStateException | DataExtractionException e) {
-            LOGGER.error("Exception during resource evaluation");
+            DiagnosticsCollector.withPathInMdc(() -> LOGGER.error("Exception during resource evaluation"));
             LOGGER.debug("Exception during resource evaluation reason ", e);
             return null;
 
@@ -92,11 +113,37 @@ public class ExpressionUtility {
 
     }
 
-    private static void processExpression(InputDataExtractor dataSource, EvaluationResult baseValue,
+    /**
+     * Evaluates an expression, or keeps it for later, and collects its value.
+     * 
+     * @return false if a required expression did not produce a value, true otherwise
+     */
+    private static boolean evaluateOrDefer(InputDataExtractor dataSource, EvaluationResult baseValue,
+            Map<String, EvaluationResult> localContext, List<ResourceValue> additionalResolveValues,
+            Map<String, Object> resolveValues, Map<String, Expression> expressionsToEvaluateLater,
+            Entry<String, Expression> entry) {
+        LOGGER.debug(EVALUATING, entry.getKey(), entry.getValue());
+        if (entry.getValue().isEvaluateLater()) {
+            expressionsToEvaluateLater.put(entry.getKey(), entry.getValue());
+            return true;
+        }
+        return processExpression(dataSource, baseValue, localContext, additionalResolveValues, resolveValues,
+                entry);
+    }
+
+    /**
+     * Evaluates a single expression and collects its value.
+     * 
+     * @return false if a required expression did not produce a value, true otherwise
+     */
+    private static boolean processExpression(InputDataExtractor dataSource, EvaluationResult baseValue,
             Map<String, EvaluationResult> localContext, List<ResourceValue> additionalResolveValues,
             Map<String, Object> resolveValues, Entry<String, Expression> entry) {
         EvaluationResult obj = entry.getValue().evaluate(dataSource, localContext, baseValue);
         LOGGER.debug("Evaluated {} {} value returned {} ", entry.getKey(), entry.getValue(), obj);
+        if (EvaluationResultFactory.isRequiredConstraintFailure(obj)) {
+            return false;
+        }
 
         if (obj != null && !obj.isEmpty()) {
             String keyNameSuffix = getKeyNameSuffix(localContext);
@@ -119,6 +166,13 @@ public class ExpressionUtility {
                 additionalResolveValues.addAll(obj.getAdditionalResources());
             }
         }
+        return true;
+    }
+
+    private static ResourceEvaluationResult constraintFailure() {
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.REQUIRED_CONSTRAINT_FAILURE,
+                "Resource Constraint condition not satisfied.");
+        return null;
     }
 
     private static String getKeyName(String key, String suffix) {
@@ -153,7 +207,7 @@ public class ExpressionUtility {
                     Map.class);
             return EvaluationResultFactory.getEvaluationResult(resourceMap.get(fetch.getValue()));
         } else {
-            return new EmptyEvaluationResult();
+            return EvaluationResultFactory.getEmptyEvaluationResult();
         }
     }
 
@@ -168,9 +222,10 @@ public class ExpressionUtility {
 
                 LOGGER.debug(EVALUATING, entry.getKey(), entry.getValue());
 
-                processExpression(dataSource, new EmptyEvaluationResult(), localContext,
-                        additionalResolveValues,
-                        resolveValues, entry);
+                if (!processExpression(dataSource, EvaluationResultFactory.getEmptyEvaluationResult(),
+                        localContext, additionalResolveValues, resolveValues, entry)) {
+                    return constraintFailure();
+                }
 
             }
             resolveValues.values().removeIf(Objects::isNull);
@@ -178,12 +233,13 @@ public class ExpressionUtility {
             return new ResourceEvaluationResult(resolveValues, additionalResolveValues);
 
         } catch (RequiredConstraintFailureException e) {
-            LOGGER.warn("Resource Constraint condition not satisfied.");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.REQUIRED_CONSTRAINT_FAILURE,
+                    "Resource Constraint condition not satisfied.");
             LOGGER.debug("Resource Constraint condition not satisfied, exception", e);
             return null;
 
         } catch (IllegalArgumentException | IllegalStateException | DataExtractionException e) {
-            LOGGER.error("Exception during resource evaluation.");
+            DiagnosticsCollector.withPathInMdc(() -> LOGGER.error("Exception during resource evaluation."));
             LOGGER.debug("Exception during resource evaluation reason ", e);
             return null;
 
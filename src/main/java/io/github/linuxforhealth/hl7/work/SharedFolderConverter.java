@@ -0,0 +1,226 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.work;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
+import io.github.linuxforhealth.hl7.MessageConversionResult;
+import io.github.linuxforhealth.hl7.parsing.MappedMessageSplitter;
+import io.github.linuxforhealth.hl7.parsing.MessageSlice;
+import io.github.linuxforhealth.hl7.work.SharedFolderCoordinator.Lease;
+
+/**
+ * Converts the units of a {@link SharedFolderCoordinator} until no work is left. Input files larger
+ * than maxUnitBytes are split into byte ranges that start at an MSH segment, so the nodes share the
+ * messages of a large file.
+ *
+ * <p>
+ * The bundles of a unit are written to one output file, one per line, under the folder structure of
+ * the input: name_start.ndjson for the unit starting at byte start of the input file, name_0.ndjson
+ * for a file converted as one unit. The name only depends on the unit, whose range is fixed when the
+ * file is registered. The file is written under a temporary name and renamed once the unit is
+ * converted. All nodes must use the same maxUnitBytes.
+ */
+public class SharedFolderConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedFolderConverter.class);
+
+    public static final String OUTPUT_EXTENSION = ".ndjson";
+    private static final int PROBE_WINDOW_SIZE = 64 * 1024;
+
+    private final SharedFolderCoordinator coordinator;
+    private final HL7BatchConverter batchConverter;
+    private final Path outputFolder;
+    private final long maxUnitBytes;
+
+    /**
+     * Creates a converter.
+     *
+     * @param coordinator Coordinator of this node
+     * @param batchConverter Converter for the messages of a unit
+     * @param outputFolder Folder for the output files, shared by all nodes
+     * @param maxUnitBytes Size above which an input file is split
+     */
+    public SharedFolderConverter(SharedFolderCoordinator coordinator, HL7BatchConverter batchConverter,
+            Path outputFolder, long maxUnitBytes) {
+        Preconditions.checkArgument(coordinator != null, "coordinator cannot be null");
+        Preconditions.checkArgument(batchConverter != null, "batchConverter cannot be null");
+        Preconditions.checkArgument(outputFolder != null, "outputFolder cannot be null");
+        Preconditions.checkArgument(maxUnitBytes > 0, "maxUnitBytes must be greater than 0");
+        this.coordinator = coordinator;
+        this.batchConverter = batchConverter;
+        this.outputFolder = outputFolder;
+        this.maxUnitBytes = maxUnitBytes;
+    }
+
+    /**
+     * Claims and converts units until no unit is pending or claimed by any node. While other nodes
+     * hold units, polls so that units of nodes that stopped are taken over once their lease expires.
+     *
+     * @param charset Character set of messages that do not name one in MSH-18
+     * @param pollInterval Time to wait when units are claimed by other nodes
+     * @param failures Receives the messages that failed to convert
+     * @return number of messages converted by this node
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public long run(Charset charset, Duration pollInterval, Consumer<MessageConversionResult> failures)
+            throws IOException, InterruptedException {
+        Preconditions.checkArgument(charset != null, "charset cannot be null");
+        Preconditions.checkArgument(pollInterval != null, "pollInterval cannot be null");
+        Preconditions.checkArgument(failures != null, "failures cannot be null");
+        long converted = 0;
+        while (true) {
+            coordinator.scan();
+            Lease lease = coordinator.claim();
+            if (lease != null) {
+                converted += process(lease, charset, failures);
+            } else if (coordinator.isIdle()) {
+                return converted;
+            } else {
+                Thread.sleep(pollInterval.toMillis());
+            }
+        }
+    }
+
+    private long process(Lease lease, Charset charset, Consumer<MessageConversionResult> failures)
+            throws IOException, InterruptedException {
+        WorkUnit unit = lease.getUnit();
+        Path input = coordinator.getInputFolder().resolve(unit.getPath());
+        try {
+            if (unit.getLength() > maxUnitBytes) {
+                List<WorkUnit> parts = split(input, unit);
+                if (parts.size() > 1) {
+                    LOGGER.info("Node {} split {} into {} units", coordinator.getNodeId(), unit, parts.size());
+                    lease.split(parts);
+                    return 0;
+                }
+            }
+            return convert(lease, input, charset, failures);
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            lease.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Splits the unit at the first MSH segment after every maxUnitBytes bytes.
+     */
+    List<WorkUnit> split(Path input, WorkUnit unit) throws IOException {
+        List<WorkUnit> parts = new ArrayList<>();
+        long partStart = unit.getStart();
+        for (long candidate = partStart + maxUnitBytes; candidate < unit.getEnd(); candidate += maxUnitBytes) {
+            long boundary;
+            try (MappedMessageSplitter splitter = MappedMessageSplitter.open(input, PROBE_WINDOW_SIZE, candidate,
+                    0)) {
+                boundary = splitter.getPosition();
+            }
+            if (boundary >= unit.getEnd()) {
+                break;
+            }
+            parts.add(new WorkUnit(unit.getPath(), partStart, boundary));
+            partStart = boundary;
+            candidate = boundary;
+        }
+        parts.add(new WorkUnit(unit.getPath(), partStart, unit.getEnd()));
+        return parts;
+    }
+
+    private long convert(Lease lease, Path input, Charset charset, Consumer<MessageConversionResult> failures)
+            throws IOException, InterruptedException {
+        WorkUnit unit = lease.getUnit();
+        Path output = getOutputFile(unit);
+        Files.createDirectories(output.getParent());
+        Path temp = output.resolveSibling("." + output.getFileName() + "." + coordinator.getNodeId() + ".tmp");
+        long count;
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(input,
+                MappedMessageSplitter.DEFAULT_WINDOW_SIZE, unit.getStart(), 0);
+                BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            count = batchConverter.convert(new RangeMessages(splitter, unit.getEnd()), charset, result -> {
+                if (!result.isSuccess()) {
+                    failures.accept(result);
+                    return;
+                }
+                try {
+                    writer.write(result.getFhirJson());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (IOException | RuntimeException | InterruptedException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        if (lease.isLost()) {
+            // Another node converts the unit again and writes the same output file.
+            LOGGER.warn("Node {} lost the lease of {}, its output is discarded", coordinator.getNodeId(), unit);
+            Files.deleteIfExists(temp);
+            return 0;
+        }
+        Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lease.complete();
+        return count;
+    }
+
+    private Path getOutputFile(WorkUnit unit) {
+        String path = unit.getPath();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        String baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return outputFolder.resolve(path).resolveSibling(baseName + "_" + unit.getStart() + OUTPUT_EXTENSION);
+    }
+
+    /**
+     * The messages of the splitter that start before end.
+     */
+    private static class RangeMessages implements Iterator<MessageSlice> {
+        private final MappedMessageSplitter splitter;
+        private final long end;
+
+        RangeMessages(MappedMessageSplitter splitter, long end) {
+            this.splitter = splitter;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return splitter.getPosition() < end && splitter.hasNext();
+        }
+
+        @Override
+        public MessageSlice next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return splitter.next();
+        }
+    }
+
+}
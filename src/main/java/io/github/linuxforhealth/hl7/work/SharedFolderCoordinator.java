@@ -0,0 +1,398 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.work;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Shares the conversion of the .hl7 files of an input folder between nodes through a work folder
+ * that all nodes can access, for example on NFS, without any other service. Each node uses its own
+ * coordinator.
+ *
+ * <p>
+ * The work folder holds an empty file per {@link WorkUnit}, named by its id, in one of the
+ * subfolders pending, claimed and done. A node claims a pending unit by renaming it to claimed, the
+ * rename is atomic so only one node gets it. The claimed file is the lease: its modification time is
+ * refreshed by a heartbeat thread while the node works on the unit, and a lease that was not
+ * refreshed for the lease duration is moved back to pending by the next node that scans. Node clocks
+ * must agree to well within the lease duration. A finished unit is renamed to done.
+ *
+ * <p>
+ * The unit of an input file covers the bytes the file has when a node first finds it, later nodes
+ * read that range from the marker of the file, so a file is registered once. Bytes added to a file
+ * afterwards are not converted: files must be complete when they get the .hl7 extension. Markers are
+ * never removed, so a file that is later replaced by another file with the same path is not
+ * converted again; new files must get new names, or a new work folder must be used.
+ *
+ * <p>
+ * A node that lost its lease may still finish the unit, so a unit can be converted twice. Units must
+ * therefore be idempotent: the output of a unit is written under a temporary name and renamed to a
+ * name that depends only on the unit, and a second conversion replaces the output of the first.
+ * Every message ends up in exactly one output file.
+ */
+public class SharedFolderCoordinator implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedFolderCoordinator.class);
+
+    private static final String INPUT_EXTENSION = ".hl7";
+    private static final String FILES_FOLDER = "files";
+    private static final String PENDING_FOLDER = "pending";
+    private static final String CLAIMED_FOLDER = "claimed";
+    private static final String DONE_FOLDER = "done";
+
+    private final Path inputFolder;
+    private final Path filesFolder;
+    private final Path pendingFolder;
+    private final Path claimedFolder;
+    private final Path doneFolder;
+    private final String nodeId;
+    private final long leaseMillis;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final Set<String> registered = new HashSet<>();
+    // Files of the last scan with a marker but no unit yet, their unit is added by another node, or
+    // by this node once the marker expires.
+    private final Set<String> unregistered = new HashSet<>();
+    private final ScheduledExecutorService heartbeat;
+
+    /**
+     * Creates a coordinator and starts its heartbeat thread.
+     *
+     * @param inputFolder Folder with the input files, shared by all nodes
+     * @param workFolder Folder for the unit files, shared by all nodes
+     * @param nodeId Name of the node, used in logs
+     * @param leaseDuration Time after which the unit of a node that stopped is given to another node
+     * @throws IOException if the work folder cannot be created
+     */
+    public SharedFolderCoordinator(Path inputFolder, Path workFolder, String nodeId, Duration leaseDuration)
+            throws IOException {
+        Preconditions.checkArgument(inputFolder != null, "inputFolder cannot be null");
+        Preconditions.checkArgument(workFolder != null, "workFolder cannot be null");
+        Preconditions.checkArgument(nodeId != null, "nodeId cannot be null");
+        Preconditions.checkArgument(leaseDuration != null && leaseDuration.toMillis() >= 3,
+                "leaseDuration must be at least 3 ms");
+        this.inputFolder = inputFolder;
+        this.filesFolder = Files.createDirectories(workFolder.resolve(FILES_FOLDER));
+        this.pendingFolder = Files.createDirectories(workFolder.resolve(PENDING_FOLDER));
+        this.claimedFolder = Files.createDirectories(workFolder.resolve(CLAIMED_FOLDER));
+        this.doneFolder = Files.createDirectories(workFolder.resolve(DONE_FOLDER));
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseDuration.toMillis();
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hl7-work-heartbeat-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = leaseMillis / 3;
+        heartbeat.scheduleAtFixedRate(this::renewLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Path getInputFolder() {
+        return inputFolder;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Adds a unit for each new input file and moves expired leases back to pending.
+     *
+     * @throws IOException if a folder cannot be read
+     */
+    public void scan() throws IOException {
+        List<Path> inputs;
+        try (Stream<Path> files = Files.walk(inputFolder)) {
+            inputs = files.filter(file -> file.getFileName().toString().endsWith(INPUT_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .collect(Collectors.toList());
+        }
+        unregistered.clear();
+        for (Path input : inputs) {
+            register(input);
+        }
+        reclaimExpired();
+    }
+
+    /**
+     * Claims a pending unit.
+     *
+     * @return the lease of the unit, null if no unit is pending
+     * @throws IOException if the work folder cannot be read
+     */
+    public Lease claim() throws IOException {
+        List<Path> pending = list(pendingFolder);
+        // Nodes that scan at the same time start with different units.
+        Collections.shuffle(pending);
+        for (Path file : pending) {
+            WorkUnit unit = WorkUnit.fromId(file.getFileName().toString());
+            if (unit == null) {
+                continue;
+            }
+            Path claimed = claimedFolder.resolve(file.getFileName());
+            try {
+                // The rename keeps the modification time, it is set first so the new lease is not expired.
+                Files.setLastModifiedTime(file, now());
+                Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                // Claimed by another node
+                continue;
+            }
+            Lease lease = new Lease(unit, claimed);
+            leases.add(lease);
+            LOGGER.info("Node {} claimed {}", nodeId, unit);
+            return lease;
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if no unit is pending or claimed by any node, and every file found by the last scan
+     * has its unit. A file whose unit is not added yet is work left, so nodes wait for the node that
+     * registers it, or for its marker to expire.
+     *
+     * @throws IOException if the work folder cannot be read
+     */
+    public boolean isIdle() throws IOException {
+        return unregistered.isEmpty() && list(pendingFolder).isEmpty() && list(claimedFolder).isEmpty();
+    }
+
+    /**
+     * Stops the heartbeat. Units still claimed by this node are given to other nodes once their lease
+     * expires.
+     */
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+
+    /**
+     * Adds the unit of the whole input file. The node that creates the marker of the file in the files
+     * folder adds the unit, the marker holds the unit id so every node uses the same range. If that
+     * node stopped before adding it, the unit is added by the first node that finds a marker older
+     * than the lease duration without a unit.
+     */
+    private void register(Path input) throws IOException {
+        String path = inputFolder.relativize(input).toString().replace(input.getFileSystem().getSeparator(), "/");
+        if (registered.contains(path)) {
+            return;
+        }
+        WorkUnit unit = new WorkUnit(path, 0, Files.size(input));
+        Path marker = filesFolder.resolve(unit.getFileId());
+        if (createMarker(marker, unit)) {
+            add(unit);
+            registered.add(path);
+            return;
+        }
+        WorkUnit registeredUnit = readMarker(marker);
+        if (registeredUnit == null) {
+            return;
+        }
+        if (registeredUnit.getEnd() != unit.getEnd()) {
+            LOGGER.warn("Node {} found {} with {} bytes, only the {} bytes it had when it was registered are converted",
+                    nodeId, path, unit.getEnd(), registeredUnit.getEnd());
+        }
+        if (exists(registeredUnit)) {
+            registered.add(path);
+        } else if (isExpired(marker)) {
+            LOGGER.info("Node {} adds {}, the node that found it stopped", nodeId, registeredUnit);
+            add(registeredUnit);
+            registered.add(path);
+        } else {
+            unregistered.add(path);
+        }
+    }
+
+    // The unit id is written to a temporary file that is then linked to the marker, so the marker is
+    // created with its content and a marker that exists is never replaced.
+    private boolean createMarker(Path marker, WorkUnit unit) throws IOException {
+        Path temp = filesFolder.resolve("." + UUID.randomUUID() + ".tmp");
+        Files.write(temp, unit.getId().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.createLink(marker, temp);
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static WorkUnit readMarker(Path marker) throws IOException {
+        try {
+            return WorkUnit.fromId(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void add(WorkUnit unit) throws IOException {
+        try {
+            Files.createFile(pendingFolder.resolve(unit.getId()));
+        } catch (FileAlreadyExistsException e) {
+            // Already pending
+        }
+    }
+
+    private boolean exists(WorkUnit unit) {
+        String id = unit.getId();
+        // In the order a unit moves through the folders, so a unit that moves is not missed.
+        return Files.exists(pendingFolder.resolve(id)) || Files.exists(claimedFolder.resolve(id))
+                || Files.exists(doneFolder.resolve(id));
+    }
+
+    private void reclaimExpired() throws IOException {
+        for (Path claimed : list(claimedFolder)) {
+            if (isOwn(claimed) || !isExpired(claimed)) {
+                continue;
+            }
+            try {
+                Files.move(claimed, pendingFolder.resolve(claimed.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Node {} moved expired lease {} back to pending", nodeId, claimed.getFileName());
+            } catch (NoSuchFileException e) {
+                // Finished, or reclaimed by another node
+            }
+        }
+    }
+
+    private boolean isOwn(Path claimed) {
+        return leases.stream().anyMatch(lease -> lease.file.equals(claimed));
+    }
+
+    private boolean isExpired(Path file) throws IOException {
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis() > leaseMillis;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private void renewLeases() {
+        for (Lease lease : leases) {
+            try {
+                Files.setLastModifiedTime(lease.file, now());
+            } catch (NoSuchFileException e) {
+                LOGGER.warn("Node {} lost the lease of {}", nodeId, lease.unit);
+                lease.lost = true;
+                leases.remove(lease);
+            } catch (IOException e) {
+                LOGGER.warn("Node {} failed to renew the lease of {}: {}", nodeId, lease.unit, e.toString());
+            }
+        }
+    }
+
+    private static FileTime now() {
+        return FileTime.fromMillis(System.currentTimeMillis());
+    }
+
+    private static List<Path> list(Path folder) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * A claimed unit. The lease is renewed until it is completed or released.
+     */
+    public class Lease {
+        private final WorkUnit unit;
+        private final Path file;
+        private volatile boolean lost;
+
+        private Lease(WorkUnit unit, Path file) {
+            this.unit = unit;
+            this.file = file;
+        }
+
+        public WorkUnit getUnit() {
+            return unit;
+        }
+
+        /**
+         * Returns true if the lease expired and the unit was given to another node.
+         */
+        public boolean isLost() {
+            return lost;
+        }
+
+        /**
+         * Adds units that replace this unit, then marks it done. Used to split a large unit into
+         * smaller ones that other nodes can claim.
+         *
+         * @param parts Units to add
+         * @return false if the lease was lost, the parts are added anyway
+         * @throws IOException if a unit file cannot be created
+         */
+        public boolean split(List<WorkUnit> parts) throws IOException {
+            for (WorkUnit part : parts) {
+                add(part);
+            }
+            return complete();
+        }
+
+        /**
+         * Marks the unit done.
+         *
+         * @return false if the lease was lost, another node converts the unit again
+         * @throws IOException if the unit file cannot be moved
+         */
+        public boolean complete() throws IOException {
+            leases.remove(this);
+            try {
+                Files.move(file, doneFolder.resolve(file.getFileName()), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                return true;
+            } catch (NoSuchFileException e) {
+                lost = true;
+                return false;
+            }
+        }
+
+        /**
+         * Gives the unit back, for example after a failure, so it can be claimed again.
+         *
+         * @throws IOException if the unit file cannot be moved
+         */
+        public void release() throws IOException {
+            leases.remove(this);
+            try {
+                Files.move(file, pendingFolder.resolve(file.getFileName()), StandardCopyOption.ATOMIC_MOVE);
+            } catch (NoSuchFileException e) {
+                lost = true;
+            }
+        }
+    }
+
+}
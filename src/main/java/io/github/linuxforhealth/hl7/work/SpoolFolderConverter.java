@@ -0,0 +1,278 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.work;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+import io.github.linuxforhealth.hl7.BatchFileSummary;
+import io.github.linuxforhealth.hl7.HL7BatchFileConverter;
+
+/**
+ * Converts the HL7 files that land in a spool folder. Files with the .hl7 extension are picked up, so
+ * writers should write under another name and rename the file to .hl7 once it is complete.
+ *
+ * <p>
+ * A worker claims a file by moving it to the .processing subfolder of the spool folder under a name
+ * prefixed with a random id, an atomic rename, so a file is converted once even if it is seen several
+ * times and a claimed file is never replaced by a later file with the same name. Every message of the
+ * file is converted, batch envelopes included. The JSON files are written under temporary names unique
+ * to the conversion and renamed once the whole input file was converted: name.json for a file with one
+ * message, name_1.json, name_2.json and so on for a file with several, replacing the outputs of an
+ * earlier file with the same name. The input is then moved to the done subfolder, or to the error
+ * subfolder if a message failed to convert. It keeps its name there unless an earlier file has it, in
+ * which case it keeps its claimed name, files in done and error are never replaced.
+ */
+public class SpoolFolderConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolFolderConverter.class);
+
+    public static final String INPUT_EXTENSION = ".hl7";
+    public static final String PROCESSING_FOLDER = ".processing";
+    public static final String DONE_FOLDER = "done";
+    public static final String ERROR_FOLDER = "error";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int CLAIM_ID_LENGTH = 36;
+
+    private final Path spoolFolder;
+    private final Path processingFolder;
+    private final Path doneFolder;
+    private final Path errorFolder;
+    private final Path outputFolder;
+    private final HL7BatchFileConverter converter;
+    private final Charset charset;
+
+    /**
+     * Creates a converter and the processing, done and error subfolders of the spool folder.
+     *
+     * @param spoolFolder Folder the HL7 files land in
+     * @param outputFolder Folder for the JSON files, must exist
+     * @param converter Converter for the messages of a file
+     * @param charset Charset of the HL7 files, the JSON files are written in UTF-8
+     * @throws IOException if a subfolder cannot be created
+     */
+    public SpoolFolderConverter(Path spoolFolder, Path outputFolder, HL7BatchFileConverter converter,
+            Charset charset) throws IOException {
+        Preconditions.checkArgument(spoolFolder != null, "spoolFolder cannot be null");
+        Preconditions.checkArgument(outputFolder != null, "outputFolder cannot be null");
+        Preconditions.checkArgument(converter != null, "converter cannot be null");
+        Preconditions.checkArgument(charset != null, "charset cannot be null");
+        this.spoolFolder = spoolFolder;
+        this.processingFolder = Files.createDirectories(spoolFolder.resolve(PROCESSING_FOLDER));
+        this.doneFolder = Files.createDirectories(spoolFolder.resolve(DONE_FOLDER));
+        this.errorFolder = Files.createDirectories(spoolFolder.resolve(ERROR_FOLDER));
+        this.outputFolder = outputFolder;
+        this.converter = converter;
+        this.charset = charset;
+    }
+
+    /**
+     * Converts the files left in the processing folder by a stopped run and the files already in the
+     * spool folder, then the files that land in it until the watch service is closed or the thread is
+     * interrupted. Returns early if the spool folder is no longer accessible.
+     *
+     * @param watchService Watch service of the file system of the spool folder
+     * @param workers Executor the files are converted on
+     * @throws IOException if the spool folder cannot be watched or listed
+     */
+    public void watch(WatchService watchService, Executor workers) throws IOException {
+        // A rename into the folder is reported as a create.
+        spoolFolder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        convertUnfinished(workers);
+        convertExisting(workers);
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        convertExisting(workers);
+                    } else {
+                        submit(spoolFolder.resolve((Path) event.context()), workers);
+                    }
+                }
+                if (!key.reset()) {
+                    LOGGER.warn("Spool folder {} is no longer accessible", spoolFolder);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Submits the conversion of the files left in the processing folder by a stopped run, they are
+     * already claimed.
+     */
+    public void convertUnfinished(Executor workers) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(processingFolder, "*" + INPUT_EXTENSION)) {
+            for (Path file : files) {
+                LOGGER.info("Converting {} again, its conversion did not finish", getOriginalName(file));
+                workers.execute(() -> convert(file));
+            }
+        }
+    }
+
+    /**
+     * Submits the conversion of the files in the spool folder.
+     */
+    public void convertExisting(Executor workers) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolFolder, "*" + INPUT_EXTENSION)) {
+            for (Path file : files) {
+                submit(file, workers);
+            }
+        }
+    }
+
+    private void submit(Path file, Executor workers) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(INPUT_EXTENSION) && !name.startsWith(".")) {
+            workers.execute(() -> {
+                Path claimed = claim(file);
+                if (claimed != null) {
+                    convert(claimed);
+                }
+            });
+        }
+    }
+
+    /**
+     * Claims a file of the spool folder by moving it to the processing folder under a unique name.
+     *
+     * @return The claimed file, null if it was claimed by another worker, is gone or cannot be moved
+     */
+    public Path claim(Path file) {
+        Path claimed = processingFolder.resolve(UUID.randomUUID() + "_" + file.getFileName());
+        try {
+            return Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (AtomicMoveNotSupportedException e) {
+            LOGGER.error("Spool folder must be on a file system that supports atomic renames");
+            return null;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to claim {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Converts a claimed file, publishes its JSON files and moves it to the done or error folder.
+     *
+     * @param claimed File returned by {@link #claim(Path)} or left in the processing folder
+     * @return true if every message of the file was converted
+     */
+    public boolean convert(Path claimed) {
+        long start = System.nanoTime();
+        String fileName = getOriginalName(claimed);
+        String baseName = fileName.substring(0, fileName.length() - INPUT_EXTENSION.length());
+        String tempPrefix = "." + UUID.randomUUID() + "_";
+        Map<Path, Long> outputs = new LinkedHashMap<>();
+        boolean failed;
+        try {
+            BatchFileSummary summary = converter.convert(claimed, charset, result -> {
+                if (!result.isSuccess()) {
+                    LOGGER.warn("Failed to convert message {} of {}: {}", result.getIndex() + 1, fileName,
+                            result.getError());
+                    return;
+                }
+                Path output = outputFolder.resolve(tempPrefix + (result.getIndex() + 1) + TEMP_EXTENSION);
+                outputs.put(output, result.getIndex() + 1);
+                try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                    writer.write(result.getFhirJson());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, batch -> {});
+            failed = summary.getFailedCount() > 0;
+            publish(baseName, outputs, summary.getMessageCount() > 1);
+            LOGGER.info("Converted {}: {} of {} messages in {} ms", fileName, summary.getConvertedCount(),
+                    summary.getMessageCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Failed to convert {}", fileName, e);
+            failed = true;
+            for (Path output : outputs.keySet()) {
+                deleteQuietly(output);
+            }
+        }
+        try {
+            finish(claimed, fileName, failed ? errorFolder : doneFolder);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to move {} out of {}", claimed.getFileName(), processingFolder, e);
+        }
+        return !failed;
+    }
+
+    /**
+     * Renames the temporary outputs to their final names.
+     */
+    private void publish(String baseName, Map<Path, Long> outputs, boolean numbered) throws IOException {
+        for (Map.Entry<Path, Long> output : outputs.entrySet()) {
+            String name = numbered ? baseName + "_" + output.getValue() + ".json" : baseName + ".json";
+            Files.move(output.getKey(), outputFolder.resolve(name), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Moves the claimed file to the folder under its original name, or under its claimed name if a file
+     * has the original name. The link fails instead of replacing a file that exists.
+     */
+    private static void finish(Path claimed, String fileName, Path folder) throws IOException {
+        try {
+            Files.createLink(folder.resolve(fileName), claimed);
+            Files.delete(claimed);
+        } catch (FileAlreadyExistsException e) {
+            Files.move(claimed, folder.resolve(claimed.getFileName()));
+        }
+    }
+
+    /**
+     * Returns the name the claimed file had in the spool folder.
+     */
+    static String getOriginalName(Path claimed) {
+        String name = claimed.getFileName().toString();
+        if (name.length() > CLAIM_ID_LENGTH + 1 && name.charAt(CLAIM_ID_LENGTH) == '_') {
+            return name.substring(CLAIM_ID_LENGTH + 1);
+        }
+        return name;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete {}", file, e);
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.work;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A byte range of an input file, from start to end, converted by one node. The id of the unit is
+ * used as a file name in the work folder and holds the relative path of the input file and the
+ * range, so the unit files have no content.
+ */
+public class WorkUnit {
+
+    private final String path;
+    private final long start;
+    private final long end;
+
+    /**
+     * Creates a unit.
+     *
+     * @param path Path of the input file relative to the input folder, with / as separator
+     * @param start Offset of the first byte of the range
+     * @param end Offset after the last byte of the range
+     */
+    public WorkUnit(String path, long start, long end) {
+        Preconditions.checkArgument(path != null && !path.isEmpty(), "path cannot be null or empty");
+        Preconditions.checkArgument(start >= 0 && start <= end, "start must be between 0 and end");
+        this.path = path;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Returns the path of the input file relative to the input folder, with / as separator.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start;
+    }
+
+    /**
+     * Returns the id of the unit, a valid file name.
+     */
+    public String getId() {
+        return getFileId() + "@" + start + "-" + end;
+    }
+
+    /**
+     * Returns the id of the input file of the unit, a valid file name shared by all units of the file.
+     */
+    public String getFileId() {
+        return encode(path);
+    }
+
+    /**
+     * Parses a unit id.
+     *
+     * @param id Id returned by {@link #getId()}
+     * @return the unit, null if id is not a unit id
+     */
+    public static WorkUnit fromId(String id) {
+        int at = id.lastIndexOf('@');
+        int dash = id.indexOf('-', at + 1);
+        if (at <= 0 || dash < 0) {
+            return null;
+        }
+        try {
+            return new WorkUnit(decode(id.substring(0, at)), Long.parseLong(id.substring(at + 1, dash)),
+                    Long.parseLong(id.substring(dash + 1)));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String encode(String path) {
+        return URLEncoder.encode(path, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String encoded) {
+        return URLDecoder.decode(encoded, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WorkUnit)) {
+            return false;
+        }
+        WorkUnit other = (WorkUnit) o;
+        return start == other.start && end == other.end && path.equals(other.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, start, end);
+    }
+
+    @Override
+    public String toString() {
+        return path + "[" + start + ", " + end + ")";
+    }
+
+}
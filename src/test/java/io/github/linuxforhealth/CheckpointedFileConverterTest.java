@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.CheckpointedFileConverter;
+import io.github.linuxforhealth.hl7.ConversionCheckpoint;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.MessageConversionResult;
+
+class CheckpointedFileConverterTest {
+
+    private static final HL7ToFHIRConverter CONVERTER = new HL7ToFHIRConverter();
+    private static final String UNSUPPORTED = "MSH|^~\\&|A|B|||20200101||ACK^A01|1|P|2.6\rMSA|AA|1\r";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void converts_file_and_records_final_checkpoint() throws IOException, InterruptedException {
+        Path input = writeMessages(25, -1);
+        Path output = folder.resolve("messages.ndjson");
+
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 4)) {
+            CheckpointedFileConverter converter = new CheckpointedFileConverter(batch, 10, Duration.ofMinutes(1));
+            assertThat(converter.convert(input, StandardCharsets.UTF_8, output, result -> {})).isEqualTo(25);
+            // A finished conversion is not repeated
+            assertThat(converter.convert(input, StandardCharsets.UTF_8, output, result -> {})).isZero();
+        }
+
+        assertMrns(output, 25, -1);
+        ConversionCheckpoint checkpoint = ConversionCheckpoint.read(CheckpointedFileConverter.getCheckpointFile(output));
+        assertThat(checkpoint.getInputOffset()).isEqualTo(Files.size(input));
+        assertThat(checkpoint.getMessageIndex()).isEqualTo(25);
+        assertThat(checkpoint.getOutputLength()).isEqualTo(Files.size(output));
+    }
+
+    @Test
+    void resumes_stopped_conversion_without_duplicates() throws IOException, InterruptedException {
+        int unsupported = 17;
+        Path input = writeMessages(30, unsupported);
+        Path output = folder.resolve("messages.ndjson");
+
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 4)) {
+            CheckpointedFileConverter converter = new CheckpointedFileConverter(batch, 5, Duration.ofMinutes(1));
+            // Stop the first run at the unsupported message, after the checkpoint at message 15
+            assertThrows(IllegalStateException.class, () -> converter.convert(input, StandardCharsets.UTF_8, output,
+                    result -> {
+                        throw new IllegalStateException("stopped");
+                    }));
+            ConversionCheckpoint checkpoint = ConversionCheckpoint
+                    .read(CheckpointedFileConverter.getCheckpointFile(output));
+            assertThat(checkpoint.getMessageIndex()).isEqualTo(15);
+            // A torn write after the checkpoint
+            Files.write(output, "{\"resourceType\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+            List<MessageConversionResult> failures = new ArrayList<>();
+            long count = converter.convert(input, StandardCharsets.UTF_8, output, failures::add);
+
+            assertThat(count).isEqualTo(15);
+            assertThat(failures).extracting(MessageConversionResult::getIndex).containsExactly((long) unsupported);
+        }
+
+        assertMrns(output, 30, unsupported);
+    }
+
+    @Test
+    void refuses_to_resume_when_input_changed() throws IOException, InterruptedException {
+        Path input = writeMessages(3, -1);
+        Path output = folder.resolve("messages.ndjson");
+        new ConversionCheckpoint(Files.size(input) + 1, 0, 0, 0)
+                .write(CheckpointedFileConverter.getCheckpointFile(output));
+
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 2)) {
+            CheckpointedFileConverter converter = new CheckpointedFileConverter(batch);
+            assertThrows(IllegalStateException.class,
+                    () -> converter.convert(input, StandardCharsets.UTF_8, output, result -> {}));
+        }
+    }
+
+    private Path writeMessages(int count, int unsupported) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            content.append(i == unsupported ? UNSUPPORTED : message(i));
+        }
+        Path file = folder.resolve("messages.hl7");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void assertMrns(Path output, int count, int unsupported) throws IOException {
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        List<Integer> mrns = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i != unsupported) {
+                mrns.add(i);
+            }
+        }
+        assertThat(lines).hasSameSizeAs(mrns);
+        for (int i = 0; i < lines.size(); i++) {
+            assertThat(lines.get(i)).startsWith("{").endsWith("}").contains("\"MRN" + mrns.get(i) + "\"");
+        }
+    }
+
+    private static String message(int i) {
+        return "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG" + i + "|P|2.6\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||MRN" + i + "^^^^MR||Doe^Jane||19700101|F\r";
+    }
+
+}
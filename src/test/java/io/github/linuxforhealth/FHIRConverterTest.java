@@ -7,10 +7,12 @@ package io.github.linuxforhealth;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -37,12 +39,16 @@ import org.slf4j.LoggerFactory;
 import ca.uhn.hl7v2.model.Message;
 import ca.uhn.hl7v2.util.Hl7InputStreamMessageStringIterator;
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.diagnostics.ConversionDiagnostics;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
 import io.github.linuxforhealth.fhir.FHIRContext;
+import io.github.linuxforhealth.hl7.ConversionResult;
 import io.github.linuxforhealth.hl7.ConverterOptions;
 import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
 import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
 import io.github.linuxforhealth.hl7.parsing.HL7DataExtractor;
 import io.github.linuxforhealth.hl7.parsing.HL7HapiParser;
+import io.github.linuxforhealth.hl7.parsing.ParseMode;
 
 class FHIRConverterTest {
     private static final String HL7_FILE_UNIX_NEWLINE = "src/test/resources/sample_unix.hl7";
@@ -69,6 +75,71 @@ class FHIRConverterTest {
 
     }
 
+    @Test
+    void test_convert_with_diagnostics() {
+        String hl7message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+                + "EVN|A01|20130617154644|\r"
+                + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+                + "PV1|1|I|\r";
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        ConversionResult sampled = ftv.convertWithDiagnostics(hl7message,
+                new Builder().withDiagnosticsVerbosity(DiagnosticsVerbosity.SAMPLE).build());
+        assertThat(sampled.getBundle().getEntry()).isNotEmpty();
+        assertThat(sampled.getFhirJson()).contains("\"resourceType\":\"Bundle\"");
+        ConversionDiagnostics diagnostics = sampled.getDiagnostics();
+        assertThat(diagnostics.getVerbosity()).isEqualTo(DiagnosticsVerbosity.SAMPLE);
+        assertThat(diagnostics.getTotalCount()).isPositive();
+        assertThat(diagnostics.getSamples()).isNotEmpty();
+        // Samples only carry structure names and positions, never message content.
+        assertThat(diagnostics.getSamples()).noneMatch(e -> e.getMessage().contains("DOE"));
+        assertThat(diagnostics.getSamples()).allMatch(e -> e.getPath() != null);
+
+        ConversionResult counted = ftv.convertWithDiagnostics(hl7message,
+                new Builder().withDiagnosticsVerbosity(DiagnosticsVerbosity.COUNT).build());
+        assertThat(counted.getDiagnostics().getCounts()).isEqualTo(diagnostics.getCounts());
+        assertThat(counted.getDiagnostics().getSamples()).isEmpty();
+
+        ConversionResult off = ftv.convertWithDiagnostics(hl7message,
+                new Builder().withDiagnosticsVerbosity(DiagnosticsVerbosity.OFF).build());
+        assertThat(off.getDiagnostics().getTotalCount()).isZero();
+        assertThat(off.getFhirJson()).isNotEmpty();
+    }
+
+    @Test
+    void test_referenced_segments_parse_mode_skips_custom_segments() {
+        String hl7message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+                + "EVN|A01|20130617154644|\r"
+                + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+                + "ZPD|1|custom^data|\r"
+                + "PV1|1|I|\r"
+                + "ZPV|1|more custom data|\r"
+                + "AL1|1||^PENICILLIN|\r";
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        Bundle hapi = ftv.convertToBundle(hl7message, OPTIONS, null);
+        Bundle referenced = ftv.convertToBundle(hl7message,
+                new Builder().withValidateResource().withParseMode(ParseMode.REFERENCED_SEGMENTS).build(), null);
+
+        assertThat(referenced.getEntry().stream().map(e -> e.getResource().getResourceType()))
+                .containsExactlyElementsOf(hapi.getEntry().stream().map(e -> e.getResource().getResourceType())
+                        .collect(Collectors.toList()));
+    }
+
+    @Test
+    void test_referenced_segments_parse_mode_rejects_unsupported_and_invalid_messages() {
+        ConverterOptions indexed = new Builder().withParseMode(ParseMode.REFERENCED_SEGMENTS).build();
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
+            ftv.convert("MSH|^~\\&|MESA_ADT|XYZ_ADMITTING|||201612291501||ADT^A18^ADT_A18|101166|P|2.3.1\n"
+                    + "EVN|A18|201604211000\n", indexed);
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+            ftv.convert("some text", indexed);
+        });
+    }
+
     @Test
     void test_patient_encounter() throws IOException {
 
@@ -137,6 +208,54 @@ class FHIRConverterTest {
         });
     }
 
+    @Test
+    void test_unsupported_message_rejected_before_parse() {
+        // The segments after MSH cannot be parsed, the message type alone decides.
+        String hl7message = "MSH|^~\\&|MESA_ADT|XYZ_ADMITTING|||201612291501||ACK^A01|101166|P|2.6\r"
+                + "MSA\r"
+                + "~~~not a segment";
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        assertThat(ftv.isMessageTypeSupported("ACK_A01")).isFalse();
+        assertThat(ftv.isMessageTypeSupported("ADT_A01")).isTrue();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> {
+            ftv.convert(hl7message);
+        });
+    }
+
+    @Test
+    void test_convert_bytes_with_msh_18_character_set() throws IOException {
+        String hl7message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.6||||||8859/1\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||1234^^^^MR||M\u00fcller^J\u00f6rg||19700101|M\r";
+        byte[] latin1 = hl7message.getBytes(StandardCharsets.ISO_8859_1);
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        // MSH-18 takes precedence over the charset argument
+        String json = ftv.convert(latin1, StandardCharsets.UTF_8, OPTIONS);
+        assertThat(json).contains("M\u00fcller", "J\u00f6rg");
+        assertThat(ftv.convert(ByteBuffer.wrap(latin1), StandardCharsets.UTF_8, OPTIONS)).contains("M\u00fcller", "J\u00f6rg");
+        ByteBuffer direct = ByteBuffer.allocateDirect(latin1.length);
+        direct.put(latin1).flip();
+        assertThat(ftv.convert(direct, StandardCharsets.UTF_8, OPTIONS)).contains("M\u00fcller", "J\u00f6rg");
+        assertThat(direct.remaining()).isEqualTo(latin1.length);
+        assertThat(ftv.convert(new ByteArrayInputStream(latin1), StandardCharsets.UTF_8, OPTIONS))
+                .contains("M\u00fcller", "J\u00f6rg");
+    }
+
+    @Test
+    void test_convert_bytes_with_default_character_set() {
+        String hl7message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.6|\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||1234^^^^MR||M\u00fcller^J\u00f6rg||19700101|M\r";
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        assertThat(ftv.convert(hl7message.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1, OPTIONS))
+                .contains("M\u00fcller", "J\u00f6rg");
+        assertThat(ftv.convert(hl7message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, OPTIONS))
+                .contains("M\u00fcller", "J\u00f6rg");
+    }
+
     @Test
     void test_dosage_output() throws IOException {
         String hl7message = "MSH|^~\\&|MyEMR|DE-000001| |CAIRLO|20160701123030-0700||VXU^V04^VXU_V04|CA0001|P|2.6|||ER|AL|||||Z22^CDCPHINVS|DE-000001\r"
@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.MessageConversionResult;
+import io.github.linuxforhealth.hl7.parsing.MessageSlice;
+
+class HL7BatchConverterTest {
+
+    private static final HL7ToFHIRConverter CONVERTER = new HL7ToFHIRConverter();
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void converts_file_in_parallel_and_keeps_order() throws IOException, InterruptedException {
+        StringBuilder content = new StringBuilder();
+        int messageCount = 40;
+        for (int i = 0; i < messageCount; i++) {
+            content.append(message(i));
+        }
+        Path file = folder.resolve("messages.hl7");
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<MessageConversionResult> results = new ArrayList<>();
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 4, 6)) {
+            long count = batch.convert(file, StandardCharsets.UTF_8, results::add);
+            assertThat(count).isEqualTo(messageCount);
+        }
+
+        assertThat(results).hasSize(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            MessageConversionResult result = results.get(i);
+            assertThat(result.getIndex()).isEqualTo(i);
+            assertThat(result.isSuccess()).isTrue();
+            assertThat(result.getFhirJson()).contains("MRN" + i);
+        }
+    }
+
+    @Test
+    void failed_messages_are_reported_in_order() throws InterruptedException {
+        List<MessageSlice> messages = new ArrayList<>();
+        messages.add(slice(0, message(0)));
+        messages.add(slice(1, "MSH|^~\\&|A|B|||20200101||ACK^A01|1|P|2.6\rMSA|AA|1\r"));
+        messages.add(slice(2, message(2)));
+
+        List<MessageConversionResult> results = new ArrayList<>();
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 2)) {
+            batch.convert(messages.iterator(), StandardCharsets.UTF_8, results::add);
+        }
+
+        assertThat(results).extracting(MessageConversionResult::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(1).getError()).isInstanceOf(UnsupportedOperationException.class);
+        assertThat(results.get(1).getFhirJson()).isNull();
+        assertThat(results.get(2).getFhirJson()).contains("MRN2");
+    }
+
+    @Test
+    void reads_no_more_than_max_in_flight_ahead_of_the_sink() throws InterruptedException {
+        AtomicInteger read = new AtomicInteger();
+        Iterator<MessageSlice> messages = new Iterator<MessageSlice>() {
+            @Override
+            public boolean hasNext() {
+                return read.get() < 20;
+            }
+
+            @Override
+            public MessageSlice next() {
+                int i = read.getAndIncrement();
+                return slice(i, message(i));
+            }
+        };
+
+        List<Integer> readAhead = new ArrayList<>();
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 2, 3)) {
+            batch.convert(messages, StandardCharsets.UTF_8,
+                    result -> readAhead.add(read.get() - (int) result.getIndex()));
+        }
+
+        assertThat(readAhead).hasSize(20).allMatch(ahead -> ahead <= 3);
+    }
+
+    @Test
+    void sink_exception_stops_conversion() {
+        List<MessageSlice> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(slice(i, message(i)));
+        }
+
+        try (HL7BatchConverter batch = new HL7BatchConverter(CONVERTER, ConverterOptions.SIMPLE_OPTIONS, 2)) {
+            assertThrows(IllegalStateException.class, () -> batch.convert(messages.iterator(),
+                    StandardCharsets.UTF_8, result -> {
+                        throw new IllegalStateException("sink failed");
+                    }));
+        }
+    }
+
+    private static String message(int i) {
+        return "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG" + i + "|P|2.6\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||MRN" + i + "^^^^MR||Doe^Jane||19700101|F\r";
+    }
+
+    private static MessageSlice slice(long index, String message) {
+        return new MessageSlice(index, 0, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.BatchFileSummary;
+import io.github.linuxforhealth.hl7.BatchSummary;
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchFileConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.MessageConversionResult;
+
+class HL7BatchFileConverterTest {
+
+    private static final HL7BatchFileConverter CONVERTER = new HL7BatchFileConverter(new HL7ToFHIRConverter(),
+            ConverterOptions.SIMPLE_OPTIONS);
+    private static final String UNSUPPORTED_MESSAGE = "MSH|^~\\&|LAB|FAC|||20200101||ACK^A01|X|P|2.6\rMSA|AA|1\r";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void converts_batches_and_reports_summaries() throws IOException {
+        String file = "FHS|^~\\&|LAB|FAC|||20200101||||FILE1\r"
+                + "BHS|^~\\&|LAB|FAC|||20200101||||BATCH1\r"
+                + message(1) + message(2)
+                + "BTS|2\r"
+                + "BHS|^~\\&|LAB|FAC|||20200101||||BATCH2\r"
+                + message(3) + UNSUPPORTED_MESSAGE
+                + "BTS|3\r"
+                + "FTS|2\r";
+        Path path = folder.resolve("batch.hl7");
+        Files.write(path, file.getBytes(StandardCharsets.UTF_8));
+        List<MessageConversionResult> results = new ArrayList<>();
+        List<BatchSummary> batches = new ArrayList<>();
+
+        BatchFileSummary summary = CONVERTER.convert(path, StandardCharsets.UTF_8, results::add, batches::add);
+
+        assertThat(results).hasSize(4);
+        assertThat(results).extracting(MessageConversionResult::getIndex).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(results).extracting(MessageConversionResult::isSuccess).containsExactly(true, true, true, false);
+        assertThat(results.get(2).getFhirJson()).contains("MRN3");
+
+        assertThat(batches).hasSize(2);
+        BatchSummary first = batches.get(0);
+        assertThat(first.getBatchNumber()).isEqualTo(1);
+        assertThat(first.getBatchControlId()).isEqualTo("BATCH1");
+        assertThat(first.getMessageCount()).isEqualTo(2);
+        assertThat(first.getConvertedCount()).isEqualTo(2);
+        assertThat(first.isCountValid()).isTrue();
+        BatchSummary second = batches.get(1);
+        assertThat(second.getBatchControlId()).isEqualTo("BATCH2");
+        assertThat(second.getMessageCount()).isEqualTo(2);
+        assertThat(second.getExpectedMessageCount()).isEqualTo(3);
+        assertThat(second.getFailedCount()).isEqualTo(1);
+        assertThat(second.isCountValid()).isFalse();
+
+        assertThat(summary.getFileControlId()).isEqualTo("FILE1");
+        assertThat(summary.getBatchCount()).isEqualTo(2);
+        assertThat(summary.isCountValid()).isTrue();
+        assertThat(summary.getMessageCount()).isEqualTo(4);
+        assertThat(summary.getConvertedCount()).isEqualTo(3);
+        assertThat(summary.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void converts_messages_without_envelope() throws IOException {
+        List<MessageConversionResult> results = new ArrayList<>();
+        List<BatchSummary> batches = new ArrayList<>();
+
+        BatchFileSummary summary = CONVERTER.convert(new StringReader(message(1) + message(2)), results::add,
+                batches::add);
+
+        assertThat(results).extracting(MessageConversionResult::isSuccess).containsExactly(true, true);
+        assertThat(batches).isEmpty();
+        assertThat(summary.getMessageCount()).isEqualTo(2);
+        assertThat(summary.getExpectedBatchCount()).isNull();
+        assertThat(summary.isCountValid()).isFalse();
+    }
+
+    private static String message(int i) {
+        return "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG" + i + "|P|2.6\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||MRN" + i + "^^^^MR||Doe^Jane||19700101|F\r";
+    }
+
+}
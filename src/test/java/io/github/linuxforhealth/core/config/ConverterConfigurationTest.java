@@ -20,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import io.github.linuxforhealth.core.Constants;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
 import io.github.linuxforhealth.core.terminology.UrlLookup;
 
 class ConverterConfigurationTest {
@@ -80,6 +81,9 @@ class ConverterConfigurationTest {
         assertThat(theConvConfig.getAdditionalConceptmapFile())
                 .isEqualTo("src/test/resources/additional_conceptmap.yml");
         assertThat(theConvConfig.getAdditionalResourcesLocation()).isEqualTo("src/test/resources/additional_resources");
+        assertThat(theConvConfig.getDiagnosticsVerbosity()).isEqualTo(DiagnosticsVerbosity.SAMPLE);
+        assertThat(theConvConfig.getDiagnosticsSampleLimit()).isEqualTo(5);
+        assertThat(theConvConfig.isEvaluationPathTracked()).isFalse();
     }
 
     private void writeProperties(File configFile) throws FileNotFoundException, IOException {
@@ -89,6 +93,9 @@ class ConverterConfigurationTest {
         prop.put("default.zoneid", "+08:00");
         prop.put("additional.conceptmap.file", "src/test/resources/additional_conceptmap.yml");
         prop.put("additional.resources.location", "src/test/resources/additional_resources");
+        prop.put("diagnostics.verbosity", "sample");
+        prop.put("diagnostics.sample.limit", "5");
+        prop.put("diagnostics.evaluation.path", "false");
         prop.store(new FileOutputStream(configFile), null);
     }
  
@@ -104,6 +111,9 @@ class ConverterConfigurationTest {
         assertThat(theConvConfig.getSupportedMessageTemplates().get(0)).contains("*"); // * indicates search for templates.
         assertThat(theConvConfig.getAdditionalConceptmapFile()).isNull();
         assertThat(theConvConfig.getAdditionalResourcesLocation()).isNull();
+        assertThat(theConvConfig.getDiagnosticsVerbosity()).isEqualTo(DiagnosticsVerbosity.COUNT);
+        assertThat(theConvConfig.getDiagnosticsSampleLimit()).isEqualTo(20);
+        assertThat(theConvConfig.isEvaluationPathTracked()).isTrue();
     }
 
     private void writePropertiesDefaultMessages(File configFile) throws FileNotFoundException, IOException {
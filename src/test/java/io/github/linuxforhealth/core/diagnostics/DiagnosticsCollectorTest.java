@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.diagnostics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+class DiagnosticsCollectorTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DiagnosticsCollectorTest.class);
+
+    @Test
+    void events_are_ignored_when_no_collector_is_started() {
+        DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {}", "PID");
+        assertThat(DiagnosticsCollector.currentVerbosity()).isEqualTo(DiagnosticsVerbosity.OFF);
+    }
+
+    @Test
+    void count_verbosity_counts_without_sampling() {
+        ConversionDiagnostics diagnostics;
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.COUNT, 5)) {
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {}", "PID");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {} field {}", "PID", 3);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.EXPRESSION_FAILURE, "expression");
+            diagnostics = collector.getDiagnostics();
+        }
+        assertThat(diagnostics.getCount(DiagnosticEventType.MISSING_DATA)).isEqualTo(2);
+        assertThat(diagnostics.getCount(DiagnosticEventType.EXPRESSION_FAILURE)).isEqualTo(1);
+        assertThat(diagnostics.getCount(DiagnosticEventType.INVALID_VALUE)).isZero();
+        assertThat(diagnostics.getCounts()).doesNotContainKey(DiagnosticEventType.INVALID_VALUE);
+        assertThat(diagnostics.getTotalCount()).isEqualTo(3);
+        assertThat(diagnostics.getSamples()).isEmpty();
+    }
+
+    @Test
+    void sample_verbosity_keeps_formatted_events_up_to_the_limit() {
+        ConversionDiagnostics diagnostics;
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.SAMPLE, 2)) {
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {} field {}", "PID", 3);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {} field {} rep {}", "PV1",
+                    2, 1);
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.INVALID_VALUE, "date");
+            diagnostics = collector.getDiagnostics();
+        }
+        assertThat(diagnostics.getTotalCount()).isEqualTo(3);
+        assertThat(diagnostics.getSamples()).hasSize(2);
+        assertThat(diagnostics.getDroppedSamples()).isEqualTo(1);
+        DiagnosticEvent first = diagnostics.getSamples().get(0);
+        assertThat(first.getType()).isEqualTo(DiagnosticEventType.MISSING_DATA);
+        assertThat(first.getSource()).isEqualTo(DiagnosticsCollectorTest.class.getName());
+        assertThat(first.getMessage()).isEqualTo("segment PID field 3");
+        assertThat(diagnostics.getSamples().get(1).getMessage()).isEqualTo("segment PV1 field 2 rep 1");
+    }
+
+    @Test
+    void closing_a_collector_restores_the_previous_one() {
+        try (DiagnosticsCollector outer = DiagnosticsCollector.start(DiagnosticsVerbosity.COUNT, 0)) {
+            try (DiagnosticsCollector inner = DiagnosticsCollector.start(DiagnosticsVerbosity.OFF, 0)) {
+                DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "inner");
+                assertThat(inner.getDiagnostics().getTotalCount()).isZero();
+            }
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "outer");
+            assertThat(outer.getDiagnostics().getTotalCount()).isEqualTo(1);
+            assertThat(DiagnosticsCollector.currentVerbosity()).isEqualTo(DiagnosticsVerbosity.COUNT);
+        }
+        assertThat(DiagnosticsCollector.currentVerbosity()).isEqualTo(DiagnosticsVerbosity.OFF);
+    }
+
+    @Test
+    void evaluation_path_is_rendered_for_samples() {
+        ConversionDiagnostics diagnostics;
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.SAMPLE, 5)) {
+            DiagnosticsCollector.enter("Patient");
+            DiagnosticsCollector.enter("identifier");
+            DiagnosticsCollector.enter("system");
+            assertThat(DiagnosticsCollector.currentPath()).isEqualTo("Patient-> Field:identifier-> Field:system");
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {}", "PID");
+            DiagnosticsCollector.exit();
+            DiagnosticsCollector.exit();
+            assertThat(DiagnosticsCollector.currentPath()).isEqualTo("Patient");
+            DiagnosticsCollector.exit();
+            assertThat(DiagnosticsCollector.currentPath()).isNull();
+            diagnostics = collector.getDiagnostics();
+        }
+        assertThat(diagnostics.getSamples().get(0).getPath())
+                .isEqualTo("Patient-> Field:identifier-> Field:system");
+    }
+
+    @Test
+    void evaluation_path_can_be_switched_off() {
+        ConversionDiagnostics diagnostics;
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.SAMPLE, 5, false)) {
+            DiagnosticsCollector.enter("Patient");
+            assertThat(DiagnosticsCollector.currentPath()).isNull();
+            DiagnosticsCollector.record(LOGGER, DiagnosticEventType.MISSING_DATA, "segment {}", "PID");
+            DiagnosticsCollector.exit();
+            diagnostics = collector.getDiagnostics();
+        }
+        assertThat(diagnostics.getSamples().get(0).getPath()).isNull();
+    }
+
+    @Test
+    void evaluation_path_is_published_to_mdc_only_while_the_action_runs() {
+        MDC.put(DiagnosticsCollector.PATH_MDC_KEY, "Patient");
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.OFF, 0)) {
+            assertThat(collector.getVerbosity()).isEqualTo(DiagnosticsVerbosity.OFF);
+            DiagnosticsCollector.enter("Patient");
+            DiagnosticsCollector.enter("name");
+            List<String> published = new ArrayList<>();
+            DiagnosticsCollector.withPathInMdc(() -> published.add(MDC.get(DiagnosticsCollector.PATH_MDC_KEY)));
+            assertThat(published).containsExactly("Patient-> Field:name");
+            assertThat(MDC.get(DiagnosticsCollector.PATH_MDC_KEY)).isEqualTo("Patient");
+            DiagnosticsCollector.exit();
+            DiagnosticsCollector.exit();
+        } finally {
+            MDC.remove(DiagnosticsCollector.PATH_MDC_KEY);
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.core.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.api.ResourceValue;
+import io.github.linuxforhealth.core.resource.SimpleResourceValue;
+
+class EvaluationResultFactoryTest {
+
+    @Test
+    void null_values_share_the_empty_result() {
+        EvaluationResult first = EvaluationResultFactory.getEvaluationResult(null);
+        EvaluationResult second = EvaluationResultFactory.getEvaluationResult(null, new ArrayList<>());
+        assertThat(first).isSameAs(second).isSameAs(EvaluationResultFactory.getEmptyEvaluationResult());
+        assertThat(first.isEmpty()).isTrue();
+        assertThat(first.getAdditionalResources()).isEmpty();
+    }
+
+    @Test
+    void identifier_is_resolved_from_the_value() {
+        EvaluationResult result = EvaluationResultFactory.getEvaluationResult("abc");
+        assertThat(result.getIdentifier()).isEqualTo("String");
+        assertThat(result.getValueType()).isEqualTo(String.class);
+    }
+
+    @Test
+    void additional_resources_are_not_affected_by_later_changes_to_the_input() {
+        List<ResourceValue> additionalResources = new ArrayList<>();
+        additionalResources.add(new SimpleResourceValue(ImmutableMap.of("id", "1"), "Patient"));
+        EvaluationResult result = EvaluationResultFactory.getEvaluationResult("abc", additionalResources);
+        additionalResources.clear();
+        assertThat(result.getAdditionalResources()).hasSize(1);
+        assertThat(result.getAdditionalResources()).isSameAs(result.getAdditionalResources());
+    }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.expression;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.util.Collections;
+import java.util.HashMap;
+import org.junit.jupiter.api.Test;
+import com.google.common.collect.ImmutableMap;
+import io.github.linuxforhealth.api.EvaluationResult;
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.hl7.expression.util.TestBlankInputData;
+
+class ExpressionFactoriesTest {
+
+  @Test
+  void built_in_factories_create_the_expressions_of_each_type() {
+    ExpressionFactories factories = new ExpressionFactories(Collections.emptyList());
+    for (ExpressionType type : ExpressionType.values()) {
+      assertThat(factories.getFactory(type)).isSameAs(type.getFactory());
+    }
+
+    Expression simple = factories.create(new ExpressionAttributes.Builder().withValue("SOME_VALUE").build());
+    assertThat(simple).isInstanceOf(SimpleExpression.class);
+    Expression spec = factories.create(new ExpressionAttributes.Builder().withSpecs("PID.3").build());
+    assertThat(spec).isInstanceOf(Hl7Expression.class);
+    Expression jexl = factories.create(new ExpressionAttributes.Builder().withExpressionType("JEXL")
+        .withValueOf("String.join(\" \", 'a', 'b')").build());
+    assertThat(jexl).isInstanceOf(JEXLExpression.class);
+    Expression nested = factories.create(new ExpressionAttributes.Builder().withExpressionType("nested")
+        .withExpressionsMap(ImmutableMap.of("text", new ExpressionAttributes.Builder().withValue("x").build()))
+        .build());
+    assertThat(nested).isInstanceOf(NestedExpression.class);
+    assertThat(factories.create(null)).isNull();
+  }
+
+  @Test
+  void provider_factories_replace_the_built_in_factories() {
+    ExpressionFactory constant = attr -> new SimpleExpression(
+        new ExpressionAttributes.Builder().withValue("FROM_PROVIDER").build());
+    ExpressionFactoryProvider provider = () -> ImmutableMap.of(ExpressionType.SIMPLE, constant);
+    ExpressionFactories factories = new ExpressionFactories(Collections.singletonList(provider));
+
+    assertThat(factories.getFactory(ExpressionType.SIMPLE)).isSameAs(constant);
+    assertThat(factories.getFactory(ExpressionType.JEXL)).isSameAs(ExpressionType.JEXL.getFactory());
+    Expression e = factories.create(new ExpressionAttributes.Builder().withValue("SOME_VALUE").build());
+    EvaluationResult value = e.evaluate(new TestBlankInputData(), new HashMap<>(), new EmptyEvaluationResult());
+    assertThat((String) value.getValue()).isEqualTo("FROM_PROVIDER");
+  }
+
+  @Test
+  void factory_failure_is_reported_as_illegal_state() {
+    ExpressionFactoryProvider provider = () -> ImmutableMap.of(ExpressionType.SIMPLE, attr -> {
+      throw new IllegalArgumentException("invalid");
+    });
+    ExpressionFactories factories = new ExpressionFactories(Collections.singletonList(provider));
+
+    assertThatThrownBy(() -> factories.create(new ExpressionAttributes.Builder().withValue("SOME_VALUE").build()))
+        .isInstanceOf(IllegalStateException.class).hasRootCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+}
@@ -13,6 +13,7 @@ import com.google.common.collect.ImmutableMap;
 import io.github.linuxforhealth.api.EvaluationResult;
 import io.github.linuxforhealth.api.InputDataExtractor;
 import io.github.linuxforhealth.core.expression.EmptyEvaluationResult;
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
 import io.github.linuxforhealth.core.expression.SimpleEvaluationResult;
 import io.github.linuxforhealth.hl7.expression.util.TestBlankInputData;
 
@@ -86,4 +87,34 @@ class SimpleExpressionTest {
     assertThat(value).isNull();
   }
 
+  @Test
+  void test_required_value_missing_returns_constraint_failure() {
+    ExpressionAttributes attr =
+        new ExpressionAttributes.Builder().withValueOf("$var1").withRequired(true).build();
+    SimpleExpression exp = new SimpleExpression(attr);
+    Map<String, EvaluationResult> context = new HashMap<>();
+
+    EvaluationResult value =
+        exp.evaluate(data, ImmutableMap.copyOf(context), new EmptyEvaluationResult());
+    assertThat(EvaluationResultFactory.isRequiredConstraintFailure(value)).isTrue();
+    assertThat(value.isEmpty()).isTrue();
+  }
+
+  @Test
+  void test_required_constraint_only_applies_when_condition_satisfied_in_same_evaluation() {
+    ExpressionAttributes attr = new ExpressionAttributes.Builder().withValueOf("$var1")
+        .withRequired(true).withCondition("$var2 NOT_NULL").build();
+    SimpleExpression exp = new SimpleExpression(attr);
+    Map<String, EvaluationResult> context = new HashMap<>();
+    context.put("var1", new SimpleEvaluationResult<>(SOME_VALUE));
+    context.put("var2", new SimpleEvaluationResult<>(SOME_VALUE));
+
+    EvaluationResult value =
+        exp.evaluate(data, ImmutableMap.copyOf(context), new EmptyEvaluationResult());
+    assertThat((String) value.getValue()).isEqualTo(SOME_VALUE);
+
+    value = exp.evaluate(data, ImmutableMap.of(), new EmptyEvaluationResult());
+    assertThat(value).isNull();
+  }
+
 }
@@ -0,0 +1,236 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.mllp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hl7.fhir.r4.model.Bundle;
+import org.hl7.fhir.r4.model.ResourceType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+class MLLPListenerTest {
+
+    private static final HL7ToFHIRConverter CONVERTER = new HL7ToFHIRConverter();
+
+    private MLLPListener listener;
+
+    @AfterEach
+    void stop() throws IOException {
+        if (listener != null) {
+            listener.close();
+        }
+    }
+
+    @Test
+    void acknowledges_converted_message() throws IOException {
+        Map<String, Bundle> bundles = new ConcurrentHashMap<>();
+        start(new MLLPListener.Builder().withWorkers(2).withSink((bundle, id) -> bundles.put(id, bundle)));
+
+        try (Socket socket = connect()) {
+            send(socket, message("MSG1"));
+            String ack = readAck(socket);
+
+            assertThat(ack).startsWith("MSH|^~\\&|RECEIVER|RFAC|SENDER|SFAC|");
+            assertThat(ack).contains("|ACK^A01|", "|P|2.6\rMSA|AA|MSG1\r");
+        }
+        assertThat(bundles).containsKey("MSG1");
+        assertThat(bundles.get("MSG1").getEntry())
+                .anyMatch(e -> e.getResource().getResourceType() == ResourceType.Patient);
+    }
+
+    @Test
+    void acknowledges_messages_of_a_connection_in_order() throws IOException {
+        start(new MLLPListener.Builder().withWorkers(4).withSink((bundle, id) -> {}));
+
+        try (Socket socket = connect()) {
+            // Three frames in one write, then one frame split over two writes
+            String frames = frame(message("M1")) + frame(message("M2")) + frame(message("M3"));
+            socket.getOutputStream().write(frames.getBytes(StandardCharsets.UTF_8));
+            String last = frame(message("M4"));
+            socket.getOutputStream().write(last.substring(0, 20).getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+            socket.getOutputStream().write(last.substring(20).getBytes(StandardCharsets.UTF_8));
+
+            List<String> acks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                acks.add(readAck(socket));
+            }
+            assertThat(acks).extracting(MLLPListenerTest::msa).containsExactly("MSA|AA|M1", "MSA|AA|M2",
+                    "MSA|AA|M3", "MSA|AA|M4");
+        }
+    }
+
+    @Test
+    void rejects_unsupported_and_invalid_messages() throws IOException {
+        start(new MLLPListener.Builder().withWorkers(1).withSink((bundle, id) -> {
+            if ("FAIL".equals(id)) {
+                throw new IOException("store unavailable");
+            }
+        }));
+
+        try (Socket socket = connect()) {
+            send(socket, "MSH|^~\\&|SENDER|SFAC|RECEIVER|RFAC|20200101||ACK^A01|U1|P|2.6\rMSA|AA|1\r");
+            assertThat(msa(readAck(socket))).isEqualTo("MSA|AR|U1|Unsupported message type");
+
+            send(socket, "not an HL7 message");
+            assertThat(msa(readAck(socket))).isEqualTo("MSA|AR||Message has no MSH segment");
+
+            send(socket, message("FAIL"));
+            assertThat(msa(readAck(socket))).isEqualTo("MSA|AE|FAIL|Bundle not accepted");
+        }
+    }
+
+    @Test
+    void limits_messages_in_flight() throws Exception {
+        int connections = 6;
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstCall = new CountDownLatch(1);
+        start(new MLLPListener.Builder().withWorkers(2).withMaxInFlight(2).withSink((bundle, id) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            firstCall.countDown();
+            release.await(30, TimeUnit.SECONDS);
+            active.decrementAndGet();
+        }));
+
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            for (int i = 0; i < connections; i++) {
+                Socket socket = connect();
+                sockets.add(socket);
+                send(socket, message("C" + i));
+            }
+            assertThat(firstCall.await(30, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(500);
+            assertThat(active.get()).isLessThanOrEqualTo(2);
+            release.countDown();
+
+            for (int i = 0; i < connections; i++) {
+                assertThat(msa(readAck(sockets.get(i)))).isEqualTo("MSA|AA|C" + i);
+            }
+            assertThat(maxActive.get()).isLessThanOrEqualTo(2);
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    void closes_connection_when_processing_throws_an_error() throws IOException {
+        start(new MLLPListener.Builder().withWorkers(1).withMaxInFlight(1).withSink((bundle, id) -> {
+            if (id.startsWith("ERR")) {
+                throw new StackOverflowError();
+            }
+        }));
+
+        // More failures than messages in flight, each must release its slot
+        for (int i = 0; i < 3; i++) {
+            try (Socket socket = connect()) {
+                send(socket, message("ERR" + i));
+                assertThat(readOrReset(socket)).isEqualTo(-1);
+            }
+        }
+        try (Socket socket = connect()) {
+            send(socket, message("OK"));
+            assertThat(msa(readAck(socket))).isEqualTo("MSA|AA|OK");
+        }
+    }
+
+    @Test
+    void closes_connection_sending_oversized_message() throws IOException {
+        start(new MLLPListener.Builder().withWorkers(1).withMaxMessageSize(100).withSink((bundle, id) -> {}));
+
+        try (Socket socket = connect()) {
+            int read;
+            try {
+                send(socket, message("BIG") + "NTE|1||" + "x".repeat(200000) + "\r");
+                read = readOrReset(socket);
+            } catch (IOException e) {
+                // Connection reset by the listener
+                read = -1;
+            }
+            assertThat(read).isEqualTo(-1);
+        }
+    }
+
+    private void start(MLLPListener.Builder builder) throws IOException {
+        listener = builder.withConverter(CONVERTER).build();
+        listener.start();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), listener.getPort());
+        socket.setSoTimeout(30000);
+        return socket;
+    }
+
+    private static String message(String controlId) {
+        return "MSH|^~\\&|SENDER|SFAC|RECEIVER|RFAC|20200101||ADT^A01|" + controlId + "|P|2.6\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||MRN1^^^^MR||Doe^Jane||19700101|F\r";
+    }
+
+    private static String frame(String message) {
+        return "\u000b" + message + "\u001c\r";
+    }
+
+    private static void send(Socket socket, String message) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(frame(message).getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static String readAck(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream ack = new ByteArrayOutputStream();
+        int b = in.read();
+        assertThat(b).isEqualTo(MLLPListener.START_BLOCK);
+        while ((b = in.read()) != MLLPListener.END_BLOCK) {
+            assertThat(b).isNotEqualTo(-1);
+            ack.write(b);
+        }
+        assertThat(in.read()).isEqualTo(MLLPListener.CARRIAGE_RETURN);
+        return new String(ack.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads one byte, -1 when the listener closed or reset the connection.
+     */
+    private static int readOrReset(Socket socket) throws IOException {
+        try {
+            return socket.getInputStream().read();
+        } catch (SocketException e) {
+            return -1;
+        }
+    }
+
+    private static String msa(String ack) {
+        String msa = ack.substring(ack.indexOf("\rMSA|") + 1);
+        return msa.substring(0, msa.indexOf('\r'));
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+class ER7MessageIndexTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||20130617154644||ADT^A01|MSG00001|P|2.6|\r"
+            + "EVN|A01|20130617154644\r"
+            + "PID|1||000010016^^^MR~000010017^^^MR||Wood^Patrick\\T\\Jr^^^MR||19700101|female|||High Street^^Oxford&Town^^Ox1 4DP|||||||\r"
+            + "NK1|1|Wood^John^^^MR|Father||999-9999\r"
+            + "NK1|2|Wood^Ellen^^^MR|Mother||999-9998\r";
+
+    @Test
+    void indexes_segments_and_fields() {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+
+        assertThat(index.getSegmentCount()).isEqualTo(5);
+        assertThat(index.getSegmentName(0)).isEqualTo("MSH");
+        assertThat(index.getSegmentName(2)).isEqualTo("PID");
+        assertThat(index.isSegment(3, "NK1")).isTrue();
+        assertThat(index.isSegment(3, "NK")).isFalse();
+        assertThat(index.indexOf("NK1", 0)).isEqualTo(3);
+        assertThat(index.indexOf("NK1", 4)).isEqualTo(4);
+        assertThat(index.indexOf("OBX", 0)).isEqualTo(-1);
+        assertThat(index.getFieldCount(1)).isEqualTo(2);
+        assertThat(index.getFieldCount(0)).isEqualTo(13);
+        assertThat(index.getField(2, 3)).hasToString("000010016^^^MR~000010017^^^MR");
+        assertThat(index.getField(1, 3)).isNull();
+    }
+
+    @Test
+    void msh_field_numbering_includes_the_field_separator() {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+
+        assertThat(index.getValue(0, 1, 0, 1, 1)).isEqualTo("|");
+        assertThat(index.getValue(0, 2, 0, 1, 1)).isEqualTo("^~\\&");
+        assertThat(index.getValue(0, 3, 0, 1, 1)).isEqualTo("hl7Integration");
+        assertThat(index.getMessageType()).isEqualTo("ADT_A01");
+        assertThat(index.getMessageControlId()).isEqualTo("MSG00001");
+    }
+
+    @Test
+    void values_match_hapi_terser() throws HL7Exception {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+        Terser terser = new Terser(parse(MESSAGE));
+
+        assertThat(index.getValue(0, 7, 0, 1, 1)).isEqualTo(terser.get("/MSH-7"));
+        assertThat(index.getValue(0, 12, 0, 1, 1)).isEqualTo(terser.get("/MSH-12"));
+        assertThat(index.getValue(2, 3, 1, 1, 1)).isEqualTo(terser.get("/PID-3(1)-1"));
+        assertThat(index.getValue(2, 3, 1, 4, 1)).isEqualTo(terser.get("/PID-3(1)-4"));
+        // Escape sequences are resolved the same way as the HAPI parser does.
+        assertThat(index.getValue(2, 5, 0, 2, 1)).isEqualTo(terser.get("/PID-5-2")).isEqualTo("Patrick&Jr");
+        assertThat(index.getValue(2, 11, 0, 3, 2)).isEqualTo(terser.get("/PID-11-3-2")).isEqualTo("Town");
+        assertThat(index.getValue(2, 8, 0, 1, 1)).isEqualTo(terser.get("/PID-8"));
+    }
+
+    @Test
+    void absent_values_are_null() {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+
+        assertThat(index.getValue(2, 2, 0, 1, 1)).isNull();
+        assertThat(index.getValue(2, 3, 2, 1, 1)).isNull();
+        assertThat(index.getValue(2, 5, 0, 9, 1)).isNull();
+        assertThat(index.getValue(1, 30, 0, 1, 1)).isNull();
+        assertThat(index.getRawValue(2, 5, 0, 2, 1)).hasToString("Patrick\\T\\Jr");
+    }
+
+    @Test
+    void indexes_only_the_first_message_with_any_line_ending() {
+        String messages = "\u000bMSH|^~\\&|A|B|||||ADT^A01|1|P|2.6\r\nPID|1||123\n\nMSH|^~\\&|A|B|||||ADT^A02|2|P|2.6\rPID|1||456\r";
+        ER7MessageIndex index = ER7MessageIndex.index(messages);
+
+        assertThat(index.getSegmentCount()).isEqualTo(2);
+        assertThat(index.getValue(1, 3, 0, 1, 1)).isEqualTo("123");
+        assertThat(index.getMessageControlId()).isEqualTo("1");
+        assertThat(index.getStart()).isEqualTo(1);
+        assertThat(messages.substring(index.getEnd())).startsWith("MSH|^~\\&|A|B|||||ADT^A02");
+    }
+
+    @Test
+    void indexes_a_region_of_a_shared_buffer() {
+        char[] buffer = ("xxxx" + MESSAGE + "yyyy").toCharArray();
+        ER7MessageIndex index = ER7MessageIndex.index(buffer, 4, MESSAGE.length());
+
+        assertThat(index.getSegmentCount()).isEqualTo(5);
+        assertThat(index.getValue(4, 2, 0, 2, 1)).isEqualTo("Ellen");
+        assertThat(index.getEnd()).isEqualTo(4 + MESSAGE.length());
+    }
+
+    @Test
+    void rejects_text_without_msh_header() {
+        assertThrows(IllegalArgumentException.class, () -> ER7MessageIndex.index("some text"));
+        assertThrows(IllegalArgumentException.class, () -> ER7MessageIndex.index("PID|1||123\r"));
+    }
+
+    private static Message parse(String message) throws HL7Exception {
+        return new HL7HapiParser().getParser().parse(message);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HL7BatchReaderTest {
+
+    private static final String MESSAGE_1 = "MSH|^~\\&|A|B|||20200101||ADT^A01|1|P|2.6\rPID|1||123\r";
+    private static final String MESSAGE_2 = "MSH|^~\\&|A|B|||20200101||ADT^A01|2|P|2.6\rPID|1||456\r";
+    private static final String MESSAGE_3 = "MSH|^~\\&|A|B|||20200101||ADT^A01|3|P|2.6\rPID|1||789\r";
+
+    @Test
+    void reads_messages_and_envelope() throws IOException {
+        String file = "FHS|^~\\&|LAB|FAC|||20200101||||FILE1\n"
+                + "BHS|^~\\&|LAB|FAC|||20200101||||BATCH1\n"
+                + MESSAGE_1.replace('\r', '\n')
+                + MESSAGE_2.replace("\r", "\r\n")
+                + "BTS|2\n"
+                + "BHS|^~\\&|LAB|FAC|||20200101||||BATCH2\r"
+                + MESSAGE_3
+                + "BTS|1\r"
+                + "FTS|2\r";
+        List<String> events = new ArrayList<>();
+
+        List<String> messages = readAll(file, events);
+
+        assertThat(messages).containsExactly(MESSAGE_1, MESSAGE_2, MESSAGE_3);
+        assertThat(events).containsExactly("file FILE1", "batch 1 BATCH1", "message 1", "message 2",
+                "batch 1 ended 2/2", "batch 2 BATCH2", "message 3", "batch 2 ended 1/1", "file ended 2/2");
+    }
+
+    @Test
+    void reports_counts_that_do_not_match() throws IOException {
+        String file = "BHS|^~\\&\r" + MESSAGE_1 + MESSAGE_2 + "BTS|3\rBHS|^~\\&\r" + MESSAGE_3 + "BTS|x\rFTS|1\r";
+        List<String> events = new ArrayList<>();
+
+        readAll(file, events);
+
+        assertThat(events).contains("batch 1 ended 2/3", "batch 2 ended 1/null", "file ended 2/1");
+    }
+
+    @Test
+    void ends_batches_without_trailer() throws IOException {
+        String file = "BHS|^~\\&\r" + MESSAGE_1 + "BHS|^~\\&\r" + MESSAGE_2 + MESSAGE_3;
+        List<String> events = new ArrayList<>();
+
+        List<String> messages = readAll(file, events);
+
+        assertThat(messages).hasSize(3);
+        assertThat(events).containsExactly("batch 1 null", "message 1", "batch 1 ended 1/null", "batch 2 null",
+                "message 2", "message 3", "batch 2 ended 2/null");
+    }
+
+    @Test
+    void reads_messages_without_envelope_and_mllp_framing() throws IOException {
+        String file = "\u000b" + MESSAGE_1 + "\u001c\r\u000b" + MESSAGE_2 + "\u001c\r\n\n";
+        List<String> events = new ArrayList<>();
+
+        try (HL7BatchReader reader = new HL7BatchReader(new StringReader(file), null)) {
+            assertThat(reader.nextMessage()).isEqualTo(MESSAGE_1);
+            assertThat(reader.getMessageOffset()).isEqualTo(1);
+            assertThat(reader.nextMessage()).isEqualTo(MESSAGE_2);
+            assertThat(reader.getMessageOffset()).isEqualTo(MESSAGE_1.length() + 4);
+            assertThat(reader.nextMessage()).isNull();
+            assertThat(reader.getMessageCount()).isEqualTo(2);
+            assertThat(reader.getBatchCount()).isZero();
+        }
+        assertThat(events).isEmpty();
+    }
+
+    private static List<String> readAll(String file, List<String> events) throws IOException {
+        List<String> messages = new ArrayList<>();
+        HL7BatchReader.Listener listener = new HL7BatchReader.Listener() {
+            @Override
+            public void fileStarted(String fileControlId) {
+                events.add("file " + fileControlId);
+            }
+
+            @Override
+            public void batchStarted(int batchNumber, String batchControlId) {
+                events.add("batch " + batchNumber + " " + batchControlId);
+            }
+
+            @Override
+            public void batchEnded(int batchNumber, int messageCount, Integer expectedMessageCount) {
+                events.add("batch " + batchNumber + " ended " + messageCount + "/" + expectedMessageCount);
+            }
+
+            @Override
+            public void fileEnded(int batchCount, Integer expectedBatchCount) {
+                events.add("file ended " + batchCount + "/" + expectedBatchCount);
+            }
+        };
+        try (HL7BatchReader reader = new HL7BatchReader(new StringReader(file), listener)) {
+            String message;
+            while ((message = reader.nextMessage()) != null) {
+                messages.add(message);
+                events.add("message " + reader.getMessageCount());
+            }
+        }
+        return messages;
+    }
+
+}
@@ -24,6 +24,10 @@ import ca.uhn.hl7v2.model.v26.datatype.CX;
 import ca.uhn.hl7v2.model.v26.datatype.ST;
 import ca.uhn.hl7v2.model.v26.segment.AL1;
 
+import io.github.linuxforhealth.core.diagnostics.ConversionDiagnostics;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsCollector;
+import io.github.linuxforhealth.core.diagnostics.DiagnosticsVerbosity;
+
 class HL7DataExtractorTest {
 
     @Test
@@ -419,6 +423,66 @@ class HL7DataExtractorTest {
 
     }
 
+    @Test
+    void missing_group_repetition_returns_empty_without_adding_repetitions() throws IOException, HL7Exception {
+        String message = "MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6||||||ASCII||\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson||19600614|M||C|99 Oakland #106^^qwerty^OH^44889||^^^^^626^5641111|^^^^^626^5647654|||||343132266|||N\r"
+                + "PRB|AD|200603150625|aortic stenosis|53692||2||200603150625\r";
+
+        Message hl7message = getMessage(message);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        assertThat(hl7DTE.getStructure("PROBLEM", 1, "PRB", 0).isEmpty()).isTrue();
+        assertThat(hl7DTE.getStructure("PROBLEM", 5, "PRB", 0).isEmpty()).isTrue();
+        assertThat(hl7DTE.getStructure("PROBLEM", 0, "PRB", 3).isEmpty()).isTrue();
+        assertThat(hl7DTE.getStructure("NOTAGROUP", 0, "PRB", 0).isEmpty()).isTrue();
+        assertThat(hl7DTE.getAllStructures("PROBLEM", 2, "PRB").isEmpty()).isTrue();
+        assertThat(hl7message.getAll("PROBLEM")).hasSize(1);
+        assertThat(hl7DTE.getStructure("PROBLEM", 0, "PRB", 0).getValue().getName()).isEqualTo("PRB");
+    }
+
+    @Test
+    void missing_field_and_component_return_empty() throws IOException {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.3|\r"
+                + "PID|1|465 306 5961|000010016^^^MR|407623|Wood^Patrick\r";
+
+        Message hl7message = getMessage(message);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        Segment pid = (Segment) hl7DTE.getStructure("PID", 0).getValue();
+        assertThat(hl7DTE.getTypes(pid, 200).isEmpty()).isTrue();
+        assertThat(hl7DTE.getType(pid, 200, 0).isEmpty()).isTrue();
+
+        Type cx = hl7DTE.getType(pid, 3, 0).getValue();
+        assertThat(hl7DTE.getComponent(cx, 1).getValue()).isNotNull();
+        assertThat(hl7DTE.getComponent(cx, 50).isEmpty()).isTrue();
+        assertThat(hl7DTE.getComponent(cx, 0).isEmpty()).isTrue();
+        assertThat(hl7DTE.doesSegmentExists("ZZZ")).isFalse();
+        assertThat(hl7DTE.doesSegmentExists("PID", 4)).isFalse();
+    }
+
+    @Test
+    void segment_rep_equal_to_the_rep_count_does_not_exist() throws IOException, HL7Exception {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|||2.3|\r"
+                + "PID|1|465 306 5961|000010016^^^MR|407623|Wood^Patrick\r"
+                + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r"
+                + "AL1|2|DRUG|00001433^TRAMADOL||SEIZURES\r";
+
+        Message hl7message = getMessage(message);
+        HL7DataExtractor hl7DTE = new HL7DataExtractor(hl7message);
+
+        ConversionDiagnostics diagnostics;
+        try (DiagnosticsCollector collector = DiagnosticsCollector.start(DiagnosticsVerbosity.COUNT, 0)) {
+            assertThat(hl7DTE.doesSegmentExists("AL1", 1)).isTrue();
+            assertThat(hl7DTE.doesSegmentExists("AL1", 2)).isFalse();
+            assertThat(hl7DTE.getStructure("AL1", 2).isEmpty()).isTrue();
+            diagnostics = collector.getDiagnostics();
+        }
+        // The missing repetition is not a failed extraction
+        assertThat(diagnostics.getTotalCount()).isZero();
+        assertThat(hl7message.getAll("AL1")).hasSize(2);
+    }
+
     private static Message getMessage(String message) throws IOException {
         HL7HapiParser hparser = null;
 
@@ -0,0 +1,40 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+
+class HL7HapiParserTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00001|P|2.6|\r"
+            + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r";
+
+    @Test
+    void thread_parser_is_reused_within_a_thread() throws HL7Exception {
+        HL7HapiParser parser = HL7HapiParser.getThreadParser();
+
+        assertThat(HL7HapiParser.getThreadParser()).isSameAs(parser);
+        Message message = parser.getParser().parse(MESSAGE);
+        assertThat(HL7DataExtractor.getMessageType(message)).isEqualTo("ADT_A01");
+        assertThat(HL7HapiParser.getThreadParser()).isSameAs(parser);
+    }
+
+    @Test
+    void thread_parser_is_not_shared_between_threads() {
+        HL7HapiParser parser = HL7HapiParser.getThreadParser();
+        HL7HapiParser otherThreadParser = CompletableFuture.supplyAsync(HL7HapiParser::getThreadParser).join();
+
+        assertThat(otherThreadParser).isNotNull().isNotSameAs(parser);
+    }
+
+}
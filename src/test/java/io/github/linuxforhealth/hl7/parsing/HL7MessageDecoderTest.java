@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class HL7MessageDecoderTest {
+
+    private static final String HEADER = "MSH|^~\\&|A|B|C|D|20200101||ADT^A01|1|P|2.6||||||";
+    private static final String BODY = "\rPID|||1||M\u00fcller^J\u00f6rg\r";
+
+    @Test
+    void uses_default_charset_without_msh_18() {
+        String message = "MSH|^~\\&|A|B|C|D|20200101||ADT^A01|1|P|2.6" + BODY;
+
+        assertThat(decode(message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)).isEqualTo(message);
+        assertThat(decode(message.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1))
+                .isEqualTo(message);
+    }
+
+    @Test
+    void msh_18_overrides_default_charset() {
+        String message = HEADER + "8859/1" + BODY;
+        byte[] bytes = message.getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(decode(bytes, StandardCharsets.UTF_8)).isEqualTo(message);
+        assertThat(HL7MessageDecoder.getCharset(bytes, 0, bytes.length, StandardCharsets.UTF_8))
+                .isEqualTo(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void reads_msh_18_after_mllp_framing() {
+        String message = "\u000b" + HEADER + "UNICODE UTF-8" + BODY;
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(decode(bytes, StandardCharsets.ISO_8859_1)).isEqualTo(message);
+    }
+
+    @Test
+    void unknown_msh_18_uses_default_charset() {
+        String message = HEADER + "EBCDIC" + BODY;
+
+        assertThat(decode(message.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)).isEqualTo(message);
+    }
+
+    @Test
+    void byte_order_mark_overrides_msh_18() {
+        String message = HEADER + "8859/1" + BODY;
+        byte[] utf8 = message.getBytes(StandardCharsets.UTF_8);
+        byte[] withBom = new byte[utf8.length + 3];
+        withBom[0] = (byte) 0xEF;
+        withBom[1] = (byte) 0xBB;
+        withBom[2] = (byte) 0xBF;
+        System.arraycopy(utf8, 0, withBom, 3, utf8.length);
+
+        assertThat(decode(withBom, StandardCharsets.ISO_8859_1)).isEqualTo(message);
+        // UTF_16 writes a big endian byte order mark
+        assertThat(decode(message.getBytes(StandardCharsets.UTF_16), StandardCharsets.ISO_8859_1))
+                .isEqualTo(message);
+    }
+
+    @Test
+    void decodes_a_region_of_the_array() {
+        String message = HEADER + "8859/1" + BODY;
+        byte[] bytes = ("xx" + message + "yy").getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(HL7MessageDecoder.decode(bytes, 2, bytes.length - 4, StandardCharsets.UTF_8))
+                .isEqualTo(message);
+    }
+
+    @Test
+    void maps_hl7_character_sets() {
+        assertThat(HL7MessageDecoder.toCharset("ASCII")).isEqualTo(StandardCharsets.US_ASCII);
+        assertThat(HL7MessageDecoder.toCharset("8859/15")).isEqualTo(Charset.forName("ISO-8859-15"));
+        assertThat(HL7MessageDecoder.toCharset("UNICODE UTF-8")).isEqualTo(StandardCharsets.UTF_8);
+        assertThat(HL7MessageDecoder.toCharset("unicode utf-8")).isEqualTo(StandardCharsets.UTF_8);
+        assertThat(HL7MessageDecoder.toCharset("EBCDIC")).isNull();
+        assertThat(HL7MessageDecoder.toCharset(null)).isNull();
+    }
+
+    private static String decode(byte[] bytes, Charset defaultCharset) {
+        return HL7MessageDecoder.decode(bytes, 0, bytes.length, defaultCharset);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import ca.uhn.hl7v2.HL7Exception;
+import ca.uhn.hl7v2.model.Message;
+import ca.uhn.hl7v2.util.Terser;
+
+class MSHHeaderTest {
+
+    @Test
+    void reads_delimiters_message_type_and_control_id() {
+        MSHHeader header = MSHHeader.peek("MSH|^~\\&|SendTest1|Sendfac1|Receiveapp1|Receivefac1|200603081747|security|PPR^PC1^PPR_PC1|1|P^I|2.6\r"
+                + "PID|||555444222111^^^MPI&GenHosp&L^MR||james^anderson\r");
+
+        assertThat(header).isNotNull();
+        assertThat(header.getFieldSeparator()).isEqualTo('|');
+        assertThat(header.getEncodingCharacters()).isEqualTo("^~\\&");
+        assertThat(header.getMessageCode()).isEqualTo("PPR");
+        assertThat(header.getTriggerEvent()).isEqualTo("PC1");
+        assertThat(header.getMessageStructure()).isEqualTo("PPR_PC1");
+        assertThat(header.getMessageType()).isEqualTo("PPR_PC1");
+        assertThat(header.getMessageControlId()).isEqualTo("1");
+    }
+
+    @Test
+    void matches_hapi_for_message_type_and_control_id() throws HL7Exception {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01&X~ORU^R01|MSG^00001&2|P|2.6\r"
+                + "EVN|A01|20130617154644\r";
+        MSHHeader header = MSHHeader.peek(message);
+        Message hl7message = new HL7HapiParser().getParser().parse(message);
+
+        assertThat(header.getMessageType()).isEqualTo(HL7DataExtractor.getMessageType(hl7message));
+        assertThat(header.getMessageControlId()).isEqualTo(new Terser(hl7message).get("/MSH-10"));
+        assertThat(header.getMessageStructure()).isNull();
+    }
+
+    @Test
+    void reads_custom_delimiters_and_leading_framing() {
+        MSHHeader header = MSHHeader.peek("\u000b\r\nMSH*%#!@*A*B*C*D*20200101**ORU%R01%ORU_R01*CTRL-9\rOBX*1\r");
+
+        assertThat(header.getFieldSeparator()).isEqualTo('*');
+        assertThat(header.getMessageType()).isEqualTo("ORU_R01");
+        assertThat(header.getMessageStructure()).isEqualTo("ORU_R01");
+        assertThat(header.getMessageControlId()).isEqualTo("CTRL-9");
+    }
+
+    @Test
+    void reads_first_character_set() throws HL7Exception {
+        String message = "MSH|^~\\&|A|B|C|D|20200101||ADT^A01|1|P|2.6||||||8859/1~UNICODE UTF-8\r"
+                + "EVN|A01|20130617154644\r";
+        MSHHeader header = MSHHeader.peek(message);
+        Message hl7message = new HL7HapiParser().getParser().parse(message);
+
+        assertThat(header.getCharacterSet()).isEqualTo("8859/1").isEqualTo(new Terser(hl7message).get("/MSH-18"));
+        assertThat(MSHHeader.peek("MSH|^~\\&|A|B|C|D|20200101||ADT^A01|1|P|2.6\r").getCharacterSet()).isNull();
+    }
+
+    @Test
+    void missing_control_id_is_null() {
+        MSHHeader header = MSHHeader.peek("MSH|^~\\&|A|B|C|D|20200101||ACK^A01\r");
+
+        assertThat(header.getMessageType()).isEqualTo("ACK_A01");
+        assertThat(header.getMessageControlId()).isNull();
+    }
+
+    @Test
+    void returns_null_when_header_cannot_be_read() {
+        assertThat(MSHHeader.peek(null)).isNull();
+        assertThat(MSHHeader.peek("some text")).isNull();
+        assertThat(MSHHeader.peek("PID|1||123\rMSH|^~\\&|A|B|C|D|20200101||ADT^A01|1\r")).isNull();
+        // Ends before MSH-9
+        assertThat(MSHHeader.peek("MSH|^~\\&|A|B|C|D\rPID|1\r")).isNull();
+        // Escape sequences are left to the parser
+        assertThat(MSHHeader.peek("MSH|^~\\&|A|B|C|D|20200101||AD\\T\\T^A01|1\r")).isNull();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedMessageSplitterTest {
+
+    private static final String MESSAGE_1 = "MSH|^~\\&|A|B|||20200101||ADT^A01|1|P|2.6\rPID|1||123\r";
+    private static final String MESSAGE_2 = "MSH|^~\\&|A|B|||20200101||ADT^A02|2|P|2.6\r\nPID|1||456\r\nNTE|1||MSH is not a segment here\r\n";
+    private static final String MESSAGE_3 = "MSH|^~\\&|A|B|||20200101||ADT^A03|3|P|2.6\nPID|1||789\n";
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void splits_messages_at_msh_segments() throws IOException {
+        Path file = write("\r\n" + MESSAGE_1 + MESSAGE_2 + MESSAGE_3);
+
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file)) {
+            List<MessageSlice> slices = readAll(splitter);
+
+            assertThat(slices).extracting(MappedMessageSplitterTest::text).containsExactly(MESSAGE_1, MESSAGE_2,
+                    MESSAGE_3);
+            assertThat(slices).extracting(MessageSlice::getIndex).containsExactly(0L, 1L, 2L);
+            assertThat(slices).extracting(MessageSlice::getOffset).containsExactly(2L, 2L + MESSAGE_1.length(),
+                    2L + MESSAGE_1.length() + MESSAGE_2.length());
+            assertThat(splitter.getPosition()).isEqualTo(Files.size(file));
+            assertThrows(NoSuchElementException.class, splitter::next);
+        }
+    }
+
+    @Test
+    void splits_across_small_windows() throws IOException {
+        StringBuilder content = new StringBuilder("leading bytes before the first message\r");
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String message = (i % 3 == 0 ? MESSAGE_1 : i % 3 == 1 ? MESSAGE_2 : MESSAGE_3).replace("|P|",
+                    "|P" + i + "|");
+            messages.add(message);
+            content.append(message);
+        }
+        Path file = write(content.toString());
+
+        // Windows smaller than a message force the window to grow, larger ones to move.
+        for (int windowSize : new int[] { 4, 7, 64, 100, 1000 }) {
+            try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file, windowSize)) {
+                assertThat(readAll(splitter)).extracting(MappedMessageSplitterTest::text)
+                        .as("window size %s", windowSize).containsExactlyElementsOf(messages);
+            }
+        }
+    }
+
+    @Test
+    void starts_at_offset_of_an_earlier_run() throws IOException {
+        Path file = write(MESSAGE_1 + MESSAGE_2 + MESSAGE_3);
+        long offset = MESSAGE_1.length();
+
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file, 16, offset, 1)) {
+            List<MessageSlice> slices = readAll(splitter);
+
+            assertThat(slices).extracting(MappedMessageSplitterTest::text).containsExactly(MESSAGE_2, MESSAGE_3);
+            assertThat(slices).extracting(MessageSlice::getIndex).containsExactly(1L, 2L);
+            assertThat(slices.get(0).getOffset()).isEqualTo(offset);
+        }
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file, 16, Files.size(file), 3)) {
+            assertThat(splitter.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void splits_mllp_framed_messages() throws IOException {
+        Path file = write("\u000b" + MESSAGE_1 + "\u001c\r\u000b" + MESSAGE_3 + "\u001c\r");
+
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file)) {
+            assertThat(readAll(splitter)).extracting(MappedMessageSplitterTest::text)
+                    .containsExactly(MESSAGE_1 + "\u001c\r\u000b", MESSAGE_3 + "\u001c\r");
+        }
+    }
+
+    @Test
+    void file_without_messages_is_empty() throws IOException {
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(write(""))) {
+            assertThat(splitter.hasNext()).isFalse();
+        }
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(write("PID|1||123\rXMSH|1\r"), 4)) {
+            assertThat(splitter.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void slices_are_views_of_the_file() throws IOException {
+        Path file = write(MESSAGE_1 + MESSAGE_3);
+
+        try (MappedMessageSplitter splitter = MappedMessageSplitter.open(file)) {
+            MessageSlice slice = splitter.next();
+
+            assertThat(slice.getLength()).isEqualTo(MESSAGE_1.length());
+            assertThat(slice.getBuffer().isDirect()).isTrue();
+            assertThat(slice.getBuffer().isReadOnly()).isTrue();
+            slice.getBuffer().get();
+            assertThat(slice.getBuffer().position()).isZero();
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = Files.createTempFile(folder, "messages", ".hl7");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<MessageSlice> readAll(MappedMessageSplitter splitter) {
+        List<MessageSlice> slices = new ArrayList<>();
+        splitter.forEachRemaining(slices::add);
+        return slices;
+    }
+
+    private static String text(MessageSlice slice) {
+        return StandardCharsets.UTF_8.decode(slice.getBuffer()).toString();
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.parsing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+
+class SegmentFilterTest {
+
+    private static final String MESSAGE = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00001|P|2.6|\r"
+            + "EVN|A01|20130617154644\r"
+            + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+            + "ZPD|1|custom^data\r"
+            + "PV1|1|I|\r"
+            + "ROL|1|AD|AT\r"
+            + "ZPV|2|more custom data\r";
+
+    @Test
+    void skips_unreferenced_segments_not_defined_in_structure() {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+        SegmentFilter filter = SegmentFilter.filter(index, ImmutableSet.of("MSH", "PID", "PV1"));
+
+        assertThat(filter.hasSkippedSegments()).isTrue();
+        assertThat(filter.getSkippedSegments()).extracting(CharSequence::toString)
+                .containsExactly("ZPD|1|custom^data", "ZPV|2|more custom data");
+        // Standard segments are kept even when no template reads them.
+        assertThat(filter.getText()).isEqualTo("MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00001|P|2.6|\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+                + "PV1|1|I|\r"
+                + "ROL|1|AD|AT\r");
+    }
+
+    @Test
+    void keeps_referenced_segments_not_defined_in_structure() {
+        ER7MessageIndex index = ER7MessageIndex.index(MESSAGE);
+        SegmentFilter filter = SegmentFilter.filter(index, ImmutableSet.of("MSH", "ZPD"));
+
+        assertThat(filter.getSkippedSegments()).extracting(CharSequence::toString)
+                .containsExactly("ZPV|2|more custom data");
+        assertThat(filter.getText()).contains("ZPD|1|custom^data\r").doesNotContain("ZPV");
+    }
+
+    @Test
+    void returns_no_text_when_nothing_is_skipped() {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00001|P|2.6|\r"
+                + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r";
+        SegmentFilter filter = SegmentFilter.filter(ER7MessageIndex.index(message), ImmutableSet.of("MSH"));
+
+        assertThat(filter.hasSkippedSegments()).isFalse();
+        assertThat(filter.getText()).isNull();
+    }
+
+    @Test
+    void uses_structure_from_msh_9_3() {
+        String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A04^ADT_A01|MSG00001|P|2.6|\r"
+                + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+                + "ROL|1|AD|AT\r"
+                + "ZPD|1|custom^data\r";
+        SegmentFilter filter = SegmentFilter.filter(ER7MessageIndex.index(message), ImmutableSet.of("MSH", "PID"));
+
+        assertThat(filter.getSkippedSegments()).extracting(CharSequence::toString)
+                .containsExactly("ZPD|1|custom^data");
+        assertThat(filter.getText()).contains("ROL|1|AD|AT\r");
+    }
+
+    @Test
+    void message_templates_know_their_referenced_segments() {
+        HL7MessageModel adt = ResourceReader.getInstance().getMessageTemplates().get("ADT_A01");
+        Set<String> segments = adt.getReferencedSegments();
+
+        assertThat(segments).contains("MSH", "EVN", "PID", "PV1", "AL1");
+        assertThat(segments).noneMatch(s -> s.startsWith("Z"));
+
+        HL7MessageModel oru = ResourceReader.getInstance().getMessageTemplates().get("ORU_R01");
+        assertThat(oru.getReferencedSegments()).contains("MSH", "PID", "OBR", "OBX");
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class CommonExpressionsTest {
+
+  private static final List<String> RESOURCES = Arrays.asList("resource/Patient", "resource/Encounter",
+      "resource/Observation", "resource/AllergyIntolerance", "resource/Condition", "resource/Immunization",
+      "resource/DiagnosticReport", "resource/Organization");
+
+  private static final String ADT_A01 = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+      + "EVN|A01|20130617154644|\r"
+      + "PID|1||12345678^^^MRN^MR||DOE^JANE^M||19800202|F||2106-3|123 MAIN ST^^CITY^ST^12345||555-555-5555|||M|\r"
+      + "PV1|1|I|||||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|\r"
+      + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r";
+
+  private static final String ORU_R01 = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+      + "PID|||1234||DOE^JANE^|||F||||||||||||||||||||||\r"
+      + "OBR|1||CD_000000|2244^General Order|||20170825010500|||||||||||||||20170825010500||\r"
+      + "OBX|1|NM|1234-5^TEST^LN||17|mg/dL|10-20|N|||F|||20170825010500|\r"
+      + "OBX|2|ST|2345-6^NOTE^LN||Negative||||||F|||20170825010500|\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void resource_models_share_one_copy_of_the_common_expressions() throws IOException {
+    configure();
+    ResourceReader reader = ResourceReader.getInstance();
+    HL7DataBasedResourceModel patient = (HL7DataBasedResourceModel) reader.generateResourceModel("resource/Patient");
+    CommonExpressions common = patient.getCommonExpressions();
+    assertThat(common).isNotNull();
+    assertThat(common.getExpressions()).containsKey("meta");
+
+    for (String resource : RESOURCES) {
+      HL7DataBasedResourceModel model = (HL7DataBasedResourceModel) reader.generateResourceModel(resource);
+      assertThat(model.getCommonExpressions()).as(resource).isSameAs(common);
+      // The models only hold their own expressions and evaluate the shared ones, not copies of them
+      assertThat(model.getExpressions()).as(resource).doesNotContainKeys(
+          common.getExpressions().keySet().toArray(new String[0]));
+      for (Entry<String, Expression> entry : common.getExpressions().entrySet()) {
+        assertThat(model.getEvaluatedExpressions().get(entry.getKey())).as(resource).isSameAs(entry.getValue());
+      }
+    }
+
+    // Datatype models do not evaluate the common expressions
+    HL7DataBasedResourceModel identifier =
+        (HL7DataBasedResourceModel) reader.generateResourceModel("datatype/Identifier");
+    assertThat(identifier.getCommonExpressions()).isNull();
+    assertThat(identifier.getExpressions()).doesNotContainKey("meta");
+  }
+
+  @Test
+  void common_expressions_cannot_be_modified() throws IOException {
+    configure();
+    HL7DataBasedResourceModel patient =
+        (HL7DataBasedResourceModel) ResourceReader.getInstance().generateResourceModel("resource/Patient");
+    Expression meta = patient.getCommonExpressions().getExpressions().get("meta");
+
+    assertThatThrownBy(() -> patient.getCommonExpressions().getExpressions().remove("meta"))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> patient.getExpressions().put("meta", meta))
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThatThrownBy(() -> patient.getExpressions().clear())
+        .isInstanceOf(UnsupportedOperationException.class);
+    assertThat(patient.getExpressions()).doesNotContainKey("meta");
+    assertThatThrownBy(() -> patient.getEvaluatedExpressions().remove("meta"))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void models_loaded_concurrently_share_one_copy_of_the_common_expressions() throws Exception {
+    configure();
+    ResourceReader reader = ResourceReader.getInstance();
+    ExecutorService executor = Executors.newFixedThreadPool(RESOURCES.size());
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<HL7DataBasedResourceModel>> models = new ArrayList<>();
+      for (String resource : RESOURCES) {
+        models.add(executor.submit(() -> {
+          start.await();
+          return (HL7DataBasedResourceModel) reader.generateResourceModel(resource);
+        }));
+      }
+      start.countDown();
+
+      CommonExpressions common = models.get(0).get(1, TimeUnit.MINUTES).getCommonExpressions();
+      assertThat(common).isNotNull();
+      for (Future<HL7DataBasedResourceModel> model : models) {
+        assertThat(model.get(1, TimeUnit.MINUTES).getCommonExpressions()).isSameAs(common);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void concurrent_conversions_evaluate_the_shared_expressions_like_sequential_ones() throws Exception {
+    configure();
+    HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+    String[] messages = {ADT_A01, ORU_R01};
+    List<String> expected = new ArrayList<>();
+    for (String message : messages) {
+      expected.add(withoutIds(converter.convert(message)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> bundles = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        String message = messages[i % messages.length];
+        bundles.add(executor.submit(() -> converter.convert(message)));
+      }
+      for (int i = 0; i < bundles.size(); i++) {
+        assertThat(withoutIds(bundles.get(i).get(1, TimeUnit.MINUTES))).isEqualTo(expected.get(i % messages.length));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(expected.get(0)).contains("DOE", "OXYCODONE", "source-record-id");
+  }
+
+  private void configure() throws IOException {
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", "ADT_A01, ORU_R01");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+  }
+
+  private static String withoutIds(String json) {
+    return json.replaceAll("\"(id|fullUrl|reference|lastUpdated)\":\"[^\"]*\"", "\"$1\":\"\"");
+  }
+
+}
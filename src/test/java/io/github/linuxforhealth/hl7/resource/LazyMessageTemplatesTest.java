@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class LazyMessageTemplatesTest {
+
+  private static final String ADT_A01 = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+      + "EVN|A01|20130617154644|\r"
+      + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+      + "PV1|1|I|\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void template_is_loaded_on_first_use() throws IOException {
+    configure("ADT_A01, ORU_R01", null);
+    LazyMessageTemplates templates = new LazyMessageTemplates(ResourceReader.getInstance());
+    assertThat(templates.getMessageTypes()).containsOnly("ADT_A01", "ORU_R01");
+    assertThat(templates.isSupported("ADT_A01")).isTrue();
+    assertThat(templates.isLoaded("ADT_A01")).isFalse();
+
+    HL7MessageModel template = templates.get("ADT_A01");
+    assertThat(template.getMessageName()).isEqualTo("ADT_A01");
+    assertThat(templates.isLoaded("ADT_A01")).isTrue();
+    assertThat(templates.isLoaded("ORU_R01")).isFalse();
+    assertThat(templates.get("ADT_A01")).isSameAs(template);
+    assertThat(templates.get("ADT_A08")).isNull();
+  }
+
+  @Test
+  void concurrent_first_use_loads_template_once() throws Exception {
+    configure("ADT_A01", null);
+    LazyMessageTemplates templates = new LazyMessageTemplates(ResourceReader.getInstance());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<HL7MessageModel>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> {
+          start.await();
+          return templates.get("ADT_A01");
+        }));
+      }
+      start.countDown();
+      HL7MessageModel first = results.get(0).get();
+      for (Future<HL7MessageModel> result : results) {
+        assertThat(result.get()).isSameAs(first);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void template_that_fails_to_load_keeps_failing() throws IOException {
+    configure("ADT_A01, ADT_MISSING", null);
+    LazyMessageTemplates templates = new LazyMessageTemplates(ResourceReader.getInstance());
+    assertThat(templates.isSupported("ADT_MISSING")).isTrue();
+    assertThatThrownBy(() -> templates.get("ADT_MISSING")).isInstanceOf(IllegalStateException.class)
+        .hasRootCauseInstanceOf(IOException.class);
+    assertThatThrownBy(() -> templates.get("ADT_MISSING")).isInstanceOf(IllegalStateException.class);
+    assertThat(templates.isLoaded("ADT_MISSING")).isFalse();
+    assertThat(templates.get("ADT_A01")).isNotNull();
+  }
+
+  @Test
+  void converter_loads_warm_up_templates_and_the_rest_on_first_use() throws IOException {
+    configure("ADT_A01, ORU_R01", "ORU_R01, ADT_A08");
+    HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+    assertThat(converter.isMessageTypeSupported("ORU_R01")).isTrue();
+    assertThat(converter.isMessageTypeSupported("ADT_A01")).isTrue();
+    assertThat(converter.isMessageTypeSupported("ADT_A08")).isFalse();
+
+    assertThat(converter.convert(ADT_A01)).contains("DOE");
+    assertThatThrownBy(() -> converter.convert(ADT_A01.replace("ADT^A01", "ADT^A08")))
+        .isInstanceOf(UnsupportedOperationException.class);
+  }
+
+  @Test
+  void warm_up_fails_for_a_template_that_cannot_be_loaded() throws IOException {
+    configure("ADT_A01, ADT_MISSING", "ADT_MISSING");
+    assertThatThrownBy(HL7ToFHIRConverter::new).isInstanceOf(IllegalStateException.class);
+
+    LazyMessageTemplates templates = new LazyMessageTemplates(ResourceReader.getInstance());
+    templates.warmUp(Arrays.asList("ADT_A01", "ADT_A08"));
+    assertThat(templates.isLoaded("ADT_A01")).isTrue();
+  }
+
+  private void configure(String messages, String warmup) throws IOException {
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", messages);
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    prop.put("template.loading.lazy", "true");
+    if (warmup != null) {
+      prop.put("template.warmup.messages", warmup);
+    }
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.api.ResourceModel;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class ParallelTemplateLoadingTest {
+
+  private static final String ADT_A01 = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+      + "EVN|A01|20130617154644|\r"
+      + "PID|1||12345678^^^MRN^MR||DOE^JANE||19800202|F|\r"
+      + "PV1|1|I|||||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|\r"
+      + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void resource_model_shared_by_message_templates_is_compiled_once() throws IOException {
+    configure("ADT_A01, ADT_A08, ORU_R01", 4, null);
+    Map<String, HL7MessageModel> templates = ResourceReader.getInstance().getMessageTemplates();
+    assertThat(templates).containsOnlyKeys("ADT_A01", "ADT_A08", "ORU_R01");
+
+    ResourceModel patient = getResource(templates.get("ADT_A01"), "Patient");
+    assertThat(patient).isNotNull();
+    assertThat(getResource(templates.get("ADT_A08"), "Patient")).isSameAs(patient);
+    assertThat(getResource(templates.get("ORU_R01"), "Patient")).isSameAs(patient);
+  }
+
+  @Test
+  void parallel_and_sequential_loading_convert_the_same() throws IOException {
+    configure("ADT_A01", 1, null);
+    String sequential = new HL7ToFHIRConverter().convert(ADT_A01);
+
+    ResetConfigurationExtension.reset();
+    configure("ADT_A01", 4, null);
+    String parallel = new HL7ToFHIRConverter().convert(ADT_A01);
+
+    assertThat(withoutIds(parallel)).isEqualTo(withoutIds(sequential));
+    assertThat(parallel).contains("DOE", "OXYCODONE", "ATTEND_DOC_FAMILY_TEST");
+  }
+
+  @Test
+  void missing_resource_template_fails_the_message_template() throws IOException {
+    Path message = folder.resolve("resources/hl7/message/ADT_MISSING.yml");
+    Files.createDirectories(message.getParent());
+    Files.write(message, ("resources:\n"
+        + "    - resourceName: Patient\n"
+        + "      segment: PID\n"
+        + "      resourcePath: resource/Patient\n"
+        + "      repeats: false\n"
+        + "      isReferenced: true\n"
+        + "    - resourceName: Missing\n"
+        + "      segment: PID\n"
+        + "      resourcePath: resource/DoesNotExist\n"
+        + "      repeats: false\n").getBytes(StandardCharsets.UTF_8));
+    configure("ADT_A01, ADT_MISSING", 4, folder.resolve("resources"));
+
+    assertThatThrownBy(() -> ResourceReader.getInstance().getMessageTemplates())
+        .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("resource/DoesNotExist");
+    assertThat(ResourceReader.getInstance().getMessageTemplate("ADT_A01").getMessageName())
+        .isEqualTo("ADT_A01");
+  }
+
+  private static ResourceModel getResource(HL7MessageModel template, String resourceName) {
+    for (FHIRResourceTemplate resource : template.getResources()) {
+      if (resourceName.equals(resource.getResourceName())) {
+        return resource.getResource();
+      }
+    }
+    return null;
+  }
+
+  private void configure(String messages, int threads, Path resources) throws IOException {
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", messages);
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location",
+        resources != null ? resources.toString() : "src/test/resources/additional_resources");
+    prop.put("template.loading.threads", Integer.toString(threads));
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+  }
+
+  private static String withoutIds(String json) {
+    return json.replaceAll("\"(id|fullUrl|reference|lastUpdated)\":\"[^\"]*\"", "\"$1\":\"\"");
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+
+/**
+ * Resets the converter configuration and the resource reader before and after each test of a class
+ * that points hl7converter.config.home to its own configuration, and restores the property once the
+ * tests of the class ran. Configurations left by other test classes would otherwise be used instead
+ * of the one of the test.
+ */
+class ResetConfigurationExtension
+    implements BeforeAllCallback, BeforeEachCallback, AfterEachCallback, AfterAllCallback {
+
+  static final String CONF_PROP_HOME = "hl7converter.config.home";
+
+  private static final Namespace NAMESPACE = Namespace.create(ResetConfigurationExtension.class);
+  private static final String ORIGINAL_CONFIG_HOME = "originalConfigHome";
+
+  /**
+   * Drops the loaded configuration and templates, for tests that load a second configuration.
+   */
+  static void reset() {
+    ConverterConfiguration.reset();
+    ResourceReader.reset();
+  }
+
+  @Override
+  public void beforeAll(ExtensionContext context) {
+    String originalConfigHome = System.getProperty(CONF_PROP_HOME);
+    if (originalConfigHome != null) {
+      context.getStore(NAMESPACE).put(ORIGINAL_CONFIG_HOME, originalConfigHome);
+    }
+  }
+
+  @Override
+  public void beforeEach(ExtensionContext context) {
+    reset();
+  }
+
+  @Override
+  public void afterEach(ExtensionContext context) {
+    System.clearProperty(CONF_PROP_HOME);
+    reset();
+  }
+
+  @Override
+  public void afterAll(ExtensionContext context) {
+    String originalConfigHome = context.getStore(NAMESPACE).get(ORIGINAL_CONFIG_HOME, String.class);
+    if (originalConfigHome != null)
+      System.setProperty(CONF_PROP_HOME, originalConfigHome);
+    else
+      System.clearProperty(CONF_PROP_HOME);
+  }
+
+}
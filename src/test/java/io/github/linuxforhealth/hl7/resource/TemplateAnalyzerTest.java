@@ -0,0 +1,188 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.api.Expression;
+import io.github.linuxforhealth.api.FHIRResourceTemplate;
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.config.TemplateAnalysisMode;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class TemplateAnalyzerTest {
+
+  private static final String ADT_A01 = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+      + "EVN|A01|20130617154644|\r"
+      + "PID|1||12345678^^^MRN^MR||DOE^JANE^M||19800202|F||2106-3|123 MAIN ST^^CITY^ST^12345||555-555-5555|||M|\r"
+      + "PV1|1|I|||||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|\r"
+      + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r"
+      + "DG1|1|ICD10|B45678|Broken Arm|20210322154449|A|||||||||1|\r";
+
+  private static final String ORU_R01 = "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ORU^R01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+      + "PID|||1234||DOE^JANE^|||F||||||||||||||||||||||\r"
+      + "OBR|1||CD_000000|2244^General Order|||20170825010500|||||||||||||||20170825010500||\r"
+      + "OBX|1|NM|1234-5^TEST^LN||17|mg/dL|10-20|N|||F|||20170825010500|\r"
+      + "OBX|2|ST|2345-6^NOTE^LN||Negative||||||F|||20170825010500|\r";
+
+  private static final String MDM_T02 = "MSH|^~\\&|Epic|PQA|WHIA|IBM|20170920141233||MDM^T02^MDM_T02|M1005|D|2.6\r"
+      + "EVN|T02|20170920141233|||||\r"
+      + "PID|||1234^^^^MR||DOE^JANE|||F\r"
+      + "PV1|1|O|2GY^2417^W||||ATTEND_ID^ATTEND_LAST^ATTEND_FIRST^Q^JR|||MED||||7|||||||||||||||||||||||||20170920141233|\r"
+      + "TXA|1|OP^Operative Note|TX|20170920141233|||||||||||||AU\r"
+      + "OBX|1|TX|||First line of the note.||||||F\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void analysis_reports_the_statistics_of_the_template() throws IOException {
+    configure("off");
+    ResourceReader reader = ResourceReader.getInstance();
+    TemplateAnalysis analysis = new TemplateAnalyzer(reader).analyze(reader.getMessageTemplates().get("ADT_A01"));
+
+    assertThat(analysis.getMessageName()).isEqualTo("ADT_A01");
+    assertThat(analysis.getResourceModelCount()).isPositive();
+    assertThat(analysis.getExpressionCount()).isGreaterThan(analysis.getResourceModelCount());
+    // The Patient resource of ADT_A01 is read from PID, PD1 and MSH, the active flag needs MRG
+    assertThat(analysis.getUnreachableExpressions()).contains("Patient.active: condition needs [MRG], segment group is [MSH, PD1, PID]");
+    assertThat(analysis.getPrunableExpressionCount()).isEqualTo(analysis.getUnreachableExpressions().size());
+    assertThat(analysis.getUnusedVariables()).contains("Patient.multipleBirthBoolean_2 $multInt");
+    assertThat(analysis.getWorstFanOutDepth()).isEqualTo(analysis.getWorstFanOut().size()).isGreaterThan(1);
+    assertThat(analysis.toString()).startsWith("Template ADT_A01: ").contains("Unreachable expressions", "Patient.active");
+  }
+
+  @Test
+  void prune_removes_only_the_unreachable_expressions() throws IOException {
+    configure("off");
+    ResourceReader reader = ResourceReader.getInstance();
+    TemplateAnalyzer analyzer = new TemplateAnalyzer(reader);
+    HL7MessageModel template = reader.getMessageTemplates().get("ADT_A01");
+    HL7MessageModel pruned = analyzer.prune(template, analyzer.analyze(template));
+
+    assertThat(pruned).isNotSameAs(template);
+    assertThat(pruned.getResources()).hasSameSizeAs(template.getResources());
+    Map<String, Expression> patient = patientExpressions(template);
+    Map<String, Expression> prunedPatient = patientExpressions(pruned);
+    assertThat(patient).containsKey("active");
+    assertThat(prunedPatient).doesNotContainKey("active").hasSize(patient.size() - 1);
+    // The remaining expressions are shared, not copied
+    assertThat(prunedPatient.get("name")).isSameAs(patient.get("name"));
+    // The pruned template has nothing left to prune
+    assertThat(analyzer.analyze(pruned).getPrunableExpressionCount()).isZero();
+  }
+
+  @Test
+  void prune_keeps_the_template_without_unreachable_expressions() throws IOException {
+    configure("off");
+    ResourceReader reader = ResourceReader.getInstance();
+    TemplateAnalyzer analyzer = new TemplateAnalyzer(reader);
+    HL7MessageModel template = reader.getMessageTemplates().get("ADT_A34");
+    TemplateAnalysis analysis = analyzer.analyze(template);
+
+    assertThat(analysis.getPrunableExpressionCount()).isZero();
+    assertThat(analyzer.prune(template, analysis)).isSameAs(template);
+  }
+
+  @Test
+  void pruned_templates_convert_the_same_as_the_templates() throws IOException {
+    configure("off");
+    List<String> expected = convertAll();
+    ResetConfigurationExtension.reset();
+    configure("prune");
+    assertThat(ConverterConfiguration.getInstance().getTemplateAnalysisMode()).isEqualTo(TemplateAnalysisMode.PRUNE);
+    List<String> actual = convertAll();
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(withoutIds(actual.get(i))).isEqualTo(withoutIds(expected.get(i)));
+    }
+    assertThat(actual.get(0)).contains("DOE", "OXYCODONE", "B45678");
+  }
+
+  @Test
+  void segments_at_the_root_of_the_message_are_read_from_inside_a_group() throws IOException {
+    // Patient of the PROCEDURE group: PD1 is at the root of ADT_A01, MRG is not in ADT_A01
+    Path messageFolder = Files.createDirectories(folder.resolve("resources/hl7/message"));
+    Files.write(messageFolder.resolve("ADT_A01.yml"), Arrays.asList("resources:",
+        "    - resourceName: Patient", "      segment: .PR1", "      group: PROCEDURE",
+        "      resourcePath: resource/Patient", "      repeats: false", "      isReferenced: false",
+        "      additionalSegments:", "        - MSH"));
+    configure("off", folder.resolve("resources").toString());
+    ResourceReader reader = ResourceReader.getInstance();
+    TemplateAnalysis analysis = new TemplateAnalyzer(reader).analyze(reader.getMessageTemplates().get("ADT_A01"));
+
+    assertThat(analysis.getUnreachableExpressions())
+        .contains("Patient.active: condition needs [MRG], segment group is [MSH, PR1]")
+        .noneMatch(e -> e.startsWith("Patient.generalPractitioner"));
+
+    ResetConfigurationExtension.reset();
+    configure("prune", folder.resolve("resources").toString());
+    String message = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+        + "EVN|A01|20130617154644|\r"
+        + "PID|1||12345678^^^MRN^MR||DOE^JANE^M||19800202|F|\r"
+        + "PD1||||1234^SMITH^JOHN|\r"
+        + "PV1|1|I|\r"
+        + "PR1|1||B45678^Arm^ICD10|||20210322154449|\r";
+    assertThat(new HL7ToFHIRConverter().convert(message)).contains("\"generalPractitioner\"");
+  }
+
+  private static List<String> convertAll() {
+    HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+    List<String> bundles = new ArrayList<>();
+    for (String message : new String[] {ADT_A01, ORU_R01, MDM_T02}) {
+      bundles.add(converter.convert(message));
+    }
+    return bundles;
+  }
+
+  private static Map<String, Expression> patientExpressions(HL7MessageModel template) {
+    for (FHIRResourceTemplate resource : template.getResources()) {
+      if ("Patient".equals(resource.getResourceName())) {
+        return ((HL7DataBasedResourceModel) resource.getResource()).getExpressions();
+      }
+    }
+    throw new AssertionError("No Patient resource in " + template.getMessageName());
+  }
+
+  private void configure(String analysis) throws IOException {
+    configure(analysis, "src/main/resources");
+  }
+
+  private void configure(String analysis, String resourceFolder) throws IOException {
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", resourceFolder);
+    prop.put("supported.hl7.messages", "ADT_A01, ADT_A34, ORU_R01, MDM_T02");
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    prop.put("template.analysis", analysis);
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+  }
+
+  private static String withoutIds(String json) {
+    return json.replaceAll("\"(id|fullUrl|reference|lastUpdated)\":\"[^\"]*\"", "\"$1\":\"\"");
+  }
+
+}
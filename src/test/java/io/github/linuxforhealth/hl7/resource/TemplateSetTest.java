@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.core.config.ConverterConfiguration;
+import io.github.linuxforhealth.core.terminology.UrlLookup;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class TemplateSetTest {
+
+  private static final String CONCEPT_MAP = "src/test/resources/additional_conceptmap.yml";
+
+  private static final String ADT_A01 = "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG00002|P|2.6|\r"
+      + "EVN|A01|20130617154644|\r"
+      + "PID|1||12345678^^^MRN^MR||DOE^JANE|\r"
+      + "PV1|1|I|\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void reload_replaces_the_templates_of_the_converter() throws IOException {
+    configure("ADT_A01", null);
+    HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+    assertThat(converter.isMessageTypeSupported("ADT_A09")).isFalse();
+
+    configure("ADT_A01, ADT_A09", null);
+    assertThat(converter.isMessageTypeSupported("ADT_A09")).isFalse();
+    converter.reload();
+    assertThat(converter.isMessageTypeSupported("ADT_A09")).isTrue();
+    assertThat(converter.convert(ADT_A01)).contains("DOE");
+    // The configuration outside of conversions is not changed
+    assertThat(ConverterConfiguration.getInstance().getSupportedMessageTemplates()).containsExactly("ADT_A01");
+  }
+
+  @Test
+  void failed_reload_keeps_the_current_templates() throws IOException {
+    configure("ADT_A01", null);
+    HL7ToFHIRConverter converter = new HL7ToFHIRConverter();
+
+    configure("ADT_A01, ADT_MISSING", null);
+    assertThatThrownBy(converter::reload).isInstanceOf(IllegalStateException.class);
+    configure("", null);
+    assertThatThrownBy(converter::reload).isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("no message templates");
+
+    assertThat(converter.isMessageTypeSupported("ADT_A01")).isTrue();
+    assertThat(converter.convert(ADT_A01)).contains("DOE");
+  }
+
+  @Test
+  void bound_set_is_used_until_the_call_returns() throws IOException {
+    configure("ADT_A01", null);
+    ConverterConfiguration baseConfig = ConverterConfiguration.load();
+    TemplateSet base = TemplateSet.load(baseConfig, new ResourceReader(baseConfig));
+    configure("ADT_A01", CONCEPT_MAP);
+    ConverterConfiguration additionalConfig = ConverterConfiguration.load();
+    TemplateSet additional = TemplateSet.load(additionalConfig, new ResourceReader(additionalConfig));
+
+    base.call(() -> {
+      assertThat(ConverterConfiguration.getInstance()).isSameAs(baseConfig);
+      assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+      additional.call(() -> {
+        assertThat(ConverterConfiguration.getInstance()).isSameAs(additionalConfig);
+        assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc-additional.org");
+        assertThat(ResourceReader.getInstance().getMessageTemplateNames()).containsExactly("ADT_A01");
+        return null;
+      });
+      assertThat(UrlLookup.getSystemUrl("LN")).isEqualTo("http://loinc.org");
+      return null;
+    });
+    assertThat(ConverterConfiguration.getInstance()).isNotSameAs(baseConfig).isNotSameAs(additionalConfig);
+  }
+
+  @Test
+  void sets_do_not_share_resource_models() throws IOException {
+    configure("ADT_A01", null);
+    ConverterConfiguration config = ConverterConfiguration.load();
+    TemplateSet first = TemplateSet.load(config, new ResourceReader(config));
+    TemplateSet second = TemplateSet.load(config, new ResourceReader(config));
+    assertThat(first.getMessageTypes()).containsExactly("ADT_A01");
+    assertThat(second.get("ADT_A01")).isNotSameAs(first.get("ADT_A01"));
+    assertThat(second.get("ADT_A01").getResources().get(0).getResource())
+        .isNotSameAs(first.get("ADT_A01").getResources().get(0).getResource());
+  }
+
+  private void configure(String messages, String conceptMap) throws IOException {
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", messages);
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", "src/test/resources/additional_resources");
+    if (conceptMap != null) {
+      prop.put("additional.conceptmap.file", conceptMap);
+    }
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+  }
+
+}
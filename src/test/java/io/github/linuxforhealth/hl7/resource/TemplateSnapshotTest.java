@@ -0,0 +1,198 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.resource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.core.expression.EvaluationResultFactory;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.expression.variable.DataTypeVariable;
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+
+@ExtendWith(ResetConfigurationExtension.class)
+class TemplateSnapshotTest {
+
+  private static final String ADT_A01 =
+      "MSH|^~\\&|SE050|050|PACS|050|20120912011230||ADT^A01|102|T|2.6|||AL|NE|764|ASCII||||||^4086::132:2A57:3C28^IPv6\r"
+          + "EVN||201209122222\r"
+          + "PID|0010||PID1234^5^M11^A^MR^HOSP~1234568965^^^USA^SS||DOE^JOHN^A^||19800202|F||W|111 TEST_STREET_NAME^^TEST_CITY^NY^111-1111^USA||(905)111-1111|||S|ZZ|12^^^124|34-13-312||||TEST_BIRTH_PLACE\r"
+          + "PV1|1|ff|yyy|EL|ABC||200^ATTEND_DOC_FAMILY_TEST^ATTEND_DOC_GIVEN_TEST|||MED|||||B6|E|||48390\r"
+          + "AL1|1|DRUG|00000741^OXYCODONE||HYPOTENSION\r";
+
+  @TempDir
+  Path folder;
+
+  @Test
+  void converter_reads_the_snapshot_it_wrote() throws IOException {
+    Path snapshot = configure("ADT_A01, ADT_A09");
+    assertThat(snapshot).doesNotExist();
+
+    String fromYaml = new HL7ToFHIRConverter().convert(ADT_A01);
+    assertThat(snapshot).exists();
+
+    ResourceReader.reset();
+    Map<String, HL7MessageModel> templates = TemplateSnapshot.read(snapshot, ResourceReader.getInstance());
+    assertThat(templates).containsOnlyKeys("ADT_A01", "ADT_A09");
+    assertThat(templates.get("ADT_A01").getReferencedSegments()).contains("PID", "PV1", "AL1");
+
+    String fromSnapshot = new HL7ToFHIRConverter().convert(ADT_A01);
+    assertThat(withoutIds(fromSnapshot)).isEqualTo(withoutIds(fromYaml));
+    assertThat(fromSnapshot).contains("OXYCODONE", "DOE", "ATTEND_DOC_FAMILY_TEST");
+  }
+
+  @Test
+  void snapshot_is_replaced_when_a_template_changes() throws IOException {
+    Path snapshot = configure("ADT_A01, ADT_A09");
+    TemplateSnapshot.getMessageTemplates(snapshot);
+    ResourceReader.reset();
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNotNull();
+
+    Files.write(folder.resolve("resources/hl7/message/ADT_A09.yml"),
+        "# changed\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    ResourceReader.reset();
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNull();
+
+    assertThat(TemplateSnapshot.getMessageTemplates(snapshot)).containsOnlyKeys("ADT_A01", "ADT_A09");
+    ResourceReader.reset();
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNotNull();
+  }
+
+  @Test
+  void snapshot_is_not_used_for_other_message_templates() throws IOException {
+    Path snapshot = configure("ADT_A01, ADT_A09");
+    TemplateSnapshot.getMessageTemplates(snapshot);
+
+    ResetConfigurationExtension.reset();
+    configure("ADT_A01");
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNull();
+    assertThat(TemplateSnapshot.getMessageTemplates(snapshot)).containsOnlyKeys("ADT_A01");
+  }
+
+  @Test
+  void invalid_snapshot_is_ignored() throws IOException {
+    Path snapshot = configure("ADT_A01");
+    Files.write(snapshot, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNull();
+    assertThat(TemplateSnapshot.getMessageTemplates(snapshot)).containsOnlyKeys("ADT_A01");
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNotNull();
+  }
+
+  @Test
+  void snapshot_of_all_templates_passes_the_class_filter() throws IOException {
+    Path snapshot = configure("ADT_A01, ADT_A03, ADT_A08, ADT_A34, ADT_A40, DFT_P03, MDM_T02, MDM_T06, "
+        + "ORM_O01, OMP_O09, ORU_R01, PPR_PC1, RDE_O11, RDE_O25, VXU_V04");
+    Map<String, HL7MessageModel> templates = TemplateSnapshot.getMessageTemplates(snapshot);
+    assertThat(templates).hasSize(15);
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).containsOnlyKeys(templates.keySet().toArray(new String[0]));
+  }
+
+  @Test
+  void snapshot_with_other_classes_or_too_deep_is_rejected() throws Exception {
+    Path snapshot = configure("ADT_A01");
+    TemplateSnapshot.getMessageTemplates(snapshot);
+    Object[] content;
+    try (ObjectInputStream in = new ObjectInputStream(Files.newInputStream(snapshot))) {
+      content = new Object[] {in.readUTF(), in.readInt(), in.readObject(), in.readObject(), in.readObject(),
+          in.readObject()};
+    }
+    // Same names, in a JDK list that templates do not use
+    content[2] = new CopyOnWriteArrayList<>((List<?>) content[2]);
+    write(snapshot, content);
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNull();
+
+    List<Object> nested = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      List<Object> outer = new ArrayList<>();
+      outer.add(nested);
+      nested = outer;
+    }
+    content[2] = nested;
+    write(snapshot, content);
+    assertThat(TemplateSnapshot.read(snapshot, ResourceReader.getInstance())).isNull();
+  }
+
+  @Test
+  void transient_state_is_restored() throws IOException, ClassNotFoundException {
+    DataTypeVariable variable = new DataTypeVariable("var1", "STRING", Arrays.asList("PID.3"), false);
+    DataTypeVariable copy = (DataTypeVariable) copy(variable);
+    assertThat(copy.getResolver()).isNotNull();
+    assertThat(copy.getValueType()).isEqualTo("STRING");
+
+    assertThat(copy(EvaluationResultFactory.getEmptyEvaluationResult()))
+        .isSameAs(EvaluationResultFactory.getEmptyEvaluationResult());
+  }
+
+  // Uses the base templates and a copy of the additional ADT_A09 template that the tests can change.
+  private Path configure(String messages) throws IOException {
+    Path resources = folder.resolve("resources");
+    Path message = resources.resolve("hl7/message/ADT_A09.yml");
+    if (!Files.exists(message)) {
+      Files.createDirectories(message.getParent());
+      Files.copy(Paths.get("src/test/resources/additional_resources/hl7/message/ADT_A09.yml"), message);
+    }
+    Path snapshot = folder.resolve("templates.snapshot");
+
+    File configFile = folder.resolve("config.properties").toFile();
+    Properties prop = new Properties();
+    prop.put("base.path.resource", "src/main/resources");
+    prop.put("supported.hl7.messages", messages);
+    prop.put("default.zoneid", "+08:00");
+    prop.put("additional.resources.location", resources.toString());
+    prop.put("template.snapshot.file", snapshot.toString());
+    try (FileOutputStream out = new FileOutputStream(configFile)) {
+      prop.store(out, null);
+    }
+    System.setProperty(ResetConfigurationExtension.CONF_PROP_HOME, configFile.getParent());
+    return snapshot;
+  }
+
+  private static String withoutIds(String json) {
+    return json.replaceAll("\"(id|fullUrl|reference|lastUpdated)\":\"[^\"]*\"", "\"$1\":\"\"");
+  }
+
+  private static void write(Path snapshot, Object[] content) throws IOException {
+    try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(snapshot))) {
+      out.writeUTF((String) content[0]);
+      out.writeInt((Integer) content[1]);
+      for (int i = 2; i < content.length; i++) {
+        out.writeObject(content[i]);
+      }
+    }
+  }
+
+  private static Object copy(Object object) throws IOException, ClassNotFoundException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(object);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return in.readObject();
+    }
+  }
+
+}
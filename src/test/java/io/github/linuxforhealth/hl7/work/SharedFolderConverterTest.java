@@ -0,0 +1,245 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.work;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.work.SharedFolderCoordinator.Lease;
+
+class SharedFolderConverterTest {
+
+    private static final Pattern MRN = Pattern.compile("\"MRN(\\d+)\"");
+    private static final Duration POLL = Duration.ofMillis(20);
+
+    private static HL7BatchConverter batch;
+
+    @TempDir
+    Path folder;
+
+    @BeforeAll
+    static void createConverter() {
+        batch = new HL7BatchConverter(new HL7ToFHIRConverter(), ConverterOptions.SIMPLE_OPTIONS, 2);
+    }
+
+    @AfterAll
+    static void closeConverter() {
+        batch.close();
+    }
+
+    @Test
+    void nodes_convert_every_message_once() throws Exception {
+        Path input = Files.createDirectories(folder.resolve("in"));
+        writeMessages(input.resolve("small.hl7"), 0, 3);
+        writeMessages(Files.createDirectories(input.resolve("sub")).resolve("large.hl7"), 3, 40);
+        Path work = folder.resolve("work");
+        Path output = folder.resolve("out");
+
+        int nodes = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(nodes);
+        try {
+            List<Future<Long>> runs = new ArrayList<>();
+            for (int i = 0; i < nodes; i++) {
+                String nodeId = "node" + i;
+                runs.add(executor.submit(() -> {
+                    try (SharedFolderCoordinator coordinator = new SharedFolderCoordinator(input, work, nodeId,
+                            Duration.ofSeconds(30))) {
+                        return new SharedFolderConverter(coordinator, batch, output, 1000)
+                                .run(StandardCharsets.UTF_8, POLL, result -> {});
+                    }
+                }));
+            }
+            long converted = 0;
+            for (Future<Long> run : runs) {
+                converted += run.get();
+            }
+            assertThat(converted).isEqualTo(43);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(output.resolve("small_0.ndjson")).exists();
+        assertThat(output.resolve("sub").resolve("large_0.ndjson")).exists();
+        assertThat(readMrns(output)).isEqualTo(range(0, 43));
+        assertThat(list(work.resolve("pending"))).isEmpty();
+        assertThat(list(work.resolve("claimed"))).isEmpty();
+    }
+
+    @Test
+    void expired_lease_is_taken_over() throws Exception {
+        Path input = Files.createDirectories(folder.resolve("in"));
+        writeMessages(input.resolve("messages.hl7"), 0, 5);
+        Path work = folder.resolve("work");
+        Path output = folder.resolve("out");
+        Duration leaseDuration = Duration.ofMillis(300);
+
+        Lease abandoned;
+        try (SharedFolderCoordinator stopped = new SharedFolderCoordinator(input, work, "stopped", leaseDuration)) {
+            stopped.scan();
+            abandoned = stopped.claim();
+            assertThat(abandoned).isNotNull();
+        }
+
+        try (SharedFolderCoordinator coordinator = new SharedFolderCoordinator(input, work, "node", leaseDuration)) {
+            long converted = new SharedFolderConverter(coordinator, batch, output, 1 << 20)
+                    .run(StandardCharsets.UTF_8, POLL, result -> {});
+            assertThat(converted).isEqualTo(5);
+        }
+
+        assertThat(readMrns(output)).isEqualTo(range(0, 5));
+        assertThat(abandoned.complete()).isFalse();
+        assertThat(abandoned.isLost()).isTrue();
+    }
+
+    @Test
+    void file_registered_by_a_node_that_stopped_before_adding_its_unit_is_converted() throws Exception {
+        Path input = Files.createDirectories(folder.resolve("in"));
+        Path file = input.resolve("messages.hl7");
+        writeMessages(file, 0, 5);
+        Path work = folder.resolve("work");
+        Path output = folder.resolve("out");
+        Duration leaseDuration = Duration.ofMillis(500);
+
+        // The marker a node creates before it adds the unit
+        WorkUnit unit = new WorkUnit("messages.hl7", 0, Files.size(file));
+        Path files = Files.createDirectories(work.resolve("files"));
+        Files.write(files.resolve(unit.getFileId()), unit.getId().getBytes(StandardCharsets.UTF_8));
+
+        try (SharedFolderCoordinator coordinator = new SharedFolderCoordinator(input, work, "node", leaseDuration)) {
+            coordinator.scan();
+            assertThat(coordinator.isIdle()).isFalse();
+            long converted = new SharedFolderConverter(coordinator, batch, output, 1 << 20)
+                    .run(StandardCharsets.UTF_8, POLL, result -> {});
+            assertThat(converted).isEqualTo(5);
+        }
+
+        assertThat(readMrns(output)).isEqualTo(range(0, 5));
+    }
+
+    @Test
+    void file_that_grows_after_it_is_registered_is_converted_once() throws Exception {
+        Path input = Files.createDirectories(folder.resolve("in"));
+        Path file = input.resolve("messages.hl7");
+        writeMessages(file, 0, 5);
+        Path work = folder.resolve("work");
+        Path output = folder.resolve("out");
+
+        try (SharedFolderCoordinator first = new SharedFolderCoordinator(input, work, "first", Duration.ofSeconds(30))) {
+            first.scan();
+        }
+        Path more = folder.resolve("more.hl7");
+        writeMessages(more, 5, 3);
+        Files.write(file, Files.readAllBytes(more), StandardOpenOption.APPEND);
+
+        try (SharedFolderCoordinator coordinator = new SharedFolderCoordinator(input, work, "node",
+                Duration.ofSeconds(30))) {
+            long converted = new SharedFolderConverter(coordinator, batch, output, 1 << 20)
+                    .run(StandardCharsets.UTF_8, POLL, result -> {});
+            assertThat(converted).isEqualTo(5);
+            // Later scans keep the range of the registered unit
+            coordinator.scan();
+            assertThat(coordinator.isIdle()).isTrue();
+        }
+
+        assertThat(list(output)).containsOnly(output.resolve("messages_0.ndjson"));
+        assertThat(readMrns(output)).isEqualTo(range(0, 5));
+    }
+
+    @Test
+    void splits_large_file_at_msh_segments() throws IOException {
+        Path input = Files.createDirectories(folder.resolve("in"));
+        Path file = input.resolve("large.hl7");
+        writeMessages(file, 0, 20);
+        byte[] content = Files.readAllBytes(file);
+
+        try (SharedFolderCoordinator coordinator = new SharedFolderCoordinator(input, folder.resolve("work"), "node",
+                Duration.ofSeconds(30))) {
+            SharedFolderConverter converter = new SharedFolderConverter(coordinator, batch, folder, 500);
+            List<WorkUnit> parts = converter.split(file, new WorkUnit("large.hl7", 0, content.length));
+
+            assertThat(parts.size()).isGreaterThan(1);
+            long expectedStart = 0;
+            for (WorkUnit part : parts) {
+                assertThat(part.getStart()).isEqualTo(expectedStart);
+                assertThat(new String(content, (int) part.getStart(), 4, StandardCharsets.UTF_8)).isEqualTo("MSH|");
+                expectedStart = part.getEnd();
+            }
+            assertThat(expectedStart).isEqualTo(content.length);
+        }
+    }
+
+    @Test
+    void unit_id_round_trips() {
+        WorkUnit unit = new WorkUnit("sub folder/a@b.hl7", 10, 200);
+
+        assertThat(unit.getId()).doesNotContain("/");
+        assertThat(WorkUnit.fromId(unit.getId())).isEqualTo(unit);
+        assertThat(WorkUnit.fromId("not a unit")).isNull();
+    }
+
+    private static void writeMessages(Path file, int first, int count) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = first; i < first + count; i++) {
+            content.append("MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG" + i + "|P|2.6\r")
+                    .append("EVN|A01|20130617154644\r")
+                    .append("PID|||MRN" + i + "^^^^MR||Doe^Jane||19700101|F\r");
+        }
+        Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Integer> readMrns(Path output) throws IOException {
+        List<Integer> mrns = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(output)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".ndjson")).collect(Collectors.toList())) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    Matcher matcher = MRN.matcher(line);
+                    assertThat(matcher.find()).isTrue();
+                    mrns.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        mrns.sort(null);
+        return mrns;
+    }
+
+    private static List<Integer> range(int from, int to) {
+        List<Integer> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    private static List<Path> list(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.work;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchFileConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+
+class SpoolFolderConverterTest {
+
+    private static final HL7BatchFileConverter CONVERTER = new HL7BatchFileConverter(new HL7ToFHIRConverter(),
+            ConverterOptions.SIMPLE_OPTIONS);
+    private static final String UNSUPPORTED_MESSAGE = "MSH|^~\\&|LAB|FAC|||20200101||ACK^A01|X|P|2.6\rMSA|AA|1\r";
+    private static final Pattern MRN = Pattern.compile("\"MRN(\\d+)\"");
+
+    @TempDir
+    Path folder;
+
+    private Path spool;
+    private Path output;
+
+    @BeforeEach
+    void createFolders() throws IOException {
+        spool = Files.createDirectories(folder.resolve("spool"));
+        output = Files.createDirectories(folder.resolve("out"));
+    }
+
+    @Test
+    void converts_a_file_and_moves_it_to_done() throws IOException {
+        SpoolFolderConverter converter = newConverter();
+        Files.write(spool.resolve("single.hl7"), message(1).getBytes(StandardCharsets.UTF_8));
+        Files.write(spool.resolve("several.hl7"), (message(2) + message(3)).getBytes(StandardCharsets.UTF_8));
+
+        converter.convertExisting(Runnable::run);
+
+        assertThat(list(output)).containsOnly(output.resolve("single.json"), output.resolve("several_1.json"),
+                output.resolve("several_2.json"));
+        assertThat(readMrn(output.resolve("several_2.json"))).isEqualTo(3);
+        assertThat(list(spool.resolve(SpoolFolderConverter.DONE_FOLDER))).containsOnly(
+                spool.resolve("done/single.hl7"), spool.resolve("done/several.hl7"));
+        assertThat(list(spool.resolve(SpoolFolderConverter.PROCESSING_FOLDER))).isEmpty();
+        assertThat(list(spool)).containsOnly(spool.resolve(".processing"), spool.resolve("done"),
+                spool.resolve("error"));
+    }
+
+    @Test
+    void file_with_a_failed_message_is_moved_to_error() throws IOException {
+        SpoolFolderConverter converter = newConverter();
+        Files.write(spool.resolve("mixed.hl7"), (message(1) + UNSUPPORTED_MESSAGE).getBytes(StandardCharsets.UTF_8));
+
+        Path claimed = converter.claim(spool.resolve("mixed.hl7"));
+        assertThat(converter.convert(claimed)).isFalse();
+
+        assertThat(list(spool.resolve(SpoolFolderConverter.ERROR_FOLDER))).containsOnly(spool.resolve("error/mixed.hl7"));
+        assertThat(list(output)).containsOnly(output.resolve("mixed_1.json"));
+    }
+
+    @Test
+    void outputs_are_written_in_utf_8_whatever_the_input_charset() throws IOException {
+        SpoolFolderConverter converter = new SpoolFolderConverter(spool, output, CONVERTER,
+                StandardCharsets.ISO_8859_1);
+        Files.write(spool.resolve("latin.hl7"), message(1).replace("Doe^Jane", "M\u00fcller^J\u00fcrgen")
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        converter.convertExisting(Runnable::run);
+
+        String json = new String(Files.readAllBytes(output.resolve("latin.json")), StandardCharsets.UTF_8);
+        assertThat(json).contains("M\u00fcller", "J\u00fcrgen");
+    }
+
+    @Test
+    void files_with_the_same_name_do_not_replace_each_other() throws Exception {
+        SpoolFolderConverter converter = newConverter();
+        Path file = spool.resolve("same.hl7");
+        List<Path> claimed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Files.write(file, (message(i) + message(i + 10)).getBytes(StandardCharsets.UTF_8));
+            Path claim = converter.claim(file);
+            assertThat(claim).isNotNull();
+            claimed.add(claim);
+        }
+        assertThat(claimed).doesNotHaveDuplicates().allMatch(Files::exists);
+        assertThat(converter.claim(file)).isNull();
+
+        // The claimed files are converted at the same time, their temporary outputs must not collide
+        ExecutorService executor = Executors.newFixedThreadPool(claimed.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Path claim : claimed) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return converter.convert(claim);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(1, TimeUnit.MINUTES)).isTrue();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Path> done = list(spool.resolve(SpoolFolderConverter.DONE_FOLDER));
+        assertThat(done).hasSize(4).contains(spool.resolve("done/same.hl7"));
+        List<Integer> mrns = new ArrayList<>();
+        for (Path input : done) {
+            Matcher matcher = Pattern.compile("MRN(\\d+)\\^").matcher(
+                    new String(Files.readAllBytes(input), StandardCharsets.UTF_8));
+            assertThat(matcher.find()).isTrue();
+            mrns.add(Integer.parseInt(matcher.group(1)));
+        }
+        assertThat(mrns).containsExactlyInAnyOrder(0, 1, 2, 3);
+        // Each output is replaced by the file published last, no temporary file is left
+        assertThat(list(output)).containsOnly(output.resolve("same_1.json"), output.resolve("same_2.json"));
+        assertThat(readMrn(output.resolve("same_1.json"))).isBetween(0, 3);
+        assertThat(readMrn(output.resolve("same_2.json"))).isBetween(10, 13);
+    }
+
+    @Test
+    void unfinished_files_are_converted_under_their_original_name() throws IOException {
+        Files.write(spool.resolve("left.hl7"), message(5).getBytes(StandardCharsets.UTF_8));
+        Path claimed = newConverter().claim(spool.resolve("left.hl7"));
+        assertThat(claimed.getParent()).isEqualTo(spool.resolve(SpoolFolderConverter.PROCESSING_FOLDER));
+        assertThat(SpoolFolderConverter.getOriginalName(claimed)).isEqualTo("left.hl7");
+
+        newConverter().convertUnfinished(Runnable::run);
+
+        assertThat(readMrn(output.resolve("left.json"))).isEqualTo(5);
+        assertThat(list(spool.resolve(SpoolFolderConverter.DONE_FOLDER))).containsOnly(spool.resolve("done/left.hl7"));
+        assertThat(list(spool.resolve(SpoolFolderConverter.PROCESSING_FOLDER))).isEmpty();
+    }
+
+    @Test
+    void workers_convert_every_file_once() throws Exception {
+        SpoolFolderConverter converter = newConverter();
+        for (int i = 0; i < 20; i++) {
+            Files.write(spool.resolve("file" + i + ".hl7"), message(i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // Each file is submitted twice, as when a file is seen by the scan and by the watch service
+            converter.convertExisting(executor);
+            converter.convertExisting(executor);
+        } finally {
+            executor.shutdown();
+            assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+        }
+
+        assertThat(list(output)).hasSize(20);
+        List<Integer> mrns = new ArrayList<>();
+        for (Path file : list(output)) {
+            mrns.add(readMrn(file));
+        }
+        assertThat(mrns).containsExactlyInAnyOrderElementsOf(
+                Stream.iterate(0, i -> i + 1).limit(20).collect(Collectors.toList()));
+        assertThat(list(spool.resolve(SpoolFolderConverter.DONE_FOLDER))).hasSize(20);
+        assertThat(list(spool.resolve(SpoolFolderConverter.ERROR_FOLDER))).isEmpty();
+    }
+
+    private SpoolFolderConverter newConverter() throws IOException {
+        return new SpoolFolderConverter(spool, output, CONVERTER, StandardCharsets.UTF_8);
+    }
+
+    private static String message(int i) {
+        return "MSH|^~\\&|hl7Integration|hl7Integration|||||ADT^A01|MSG" + i + "|P|2.6\r"
+                + "EVN|A01|20130617154644\r"
+                + "PID|||MRN" + i + "^^^^MR||Doe^Jane||19700101|F\r";
+    }
+
+    private static int readMrn(Path file) throws IOException {
+        Matcher matcher = MRN.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertThat(matcher.find()).isTrue();
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private static List<Path> list(Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+}
@@ -6,34 +6,50 @@
 
 package io.github.linuxforhealth.hl7.message.tools;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
 import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.MessageConversionResult;
+import io.github.linuxforhealth.hl7.parsing.MappedMessageSplitter;
+import io.github.linuxforhealth.hl7.parsing.MessageSlice;
 
 /**
- * Converts all HL7 messages found in a folder, writes the resulting JSONs to a specified location.
- * Uses the following Java system properties:
+ * Converts all HL7 messages found in a folder and its subfolders, writes the resulting JSONs to a
+ * specified location. Uses the following Java system properties:
  * - hl7.input.folder
  * - hl7.output.folder (directory must exist, files will be overwritten if they exist)
+ * - hl7.tools.threads (number of conversion threads, defaults to the number of processors)
  * - hl7.tools.debug (set to "true" to output input HL7 and output JSON to the console as well as to files)
+ *
+ * Every message of each .hl7 file is converted. The output keeps the folder structure of the input,
+ * the messages of name.hl7 are written to name_1.json, name_2.json and so on. Files with one message
+ * are numbered too, so the output of a file never has the name of an output of another file. Files
+ * are read one message at a time, messages are converted in parallel by one converter, and each
+ * result is written as soon as it is available. A summary with the throughput, latency percentiles
+ * and failures is printed at the end.
  * This class uses a main() method; run as a Java application.
  */
 public class FHIRConverterRunFolder {
 
-    public static void main(String[] args) throws IOException {
-        String hl7MessageString;
-
+    public static void main(String[] args) throws IOException, InterruptedException {
         String inputFolderName = System.getProperty("hl7.input.folder");
         if (inputFolderName == null) {
             System.out.println("Java property hl7.input.folder not found");
@@ -44,76 +60,61 @@ public class FHIRConverterRunFolder {
             System.out.println("Java property hl7.output.folder not found");
             return;
         }
-        String debugStr = System.getProperty("hl7.tools.debug");
-        boolean debug = false;
-        if (debugStr != null && debugStr.equalsIgnoreCase("true")) {
-            debug = true;
+        boolean debug = "true".equalsIgnoreCase(System.getProperty("hl7.tools.debug"));
+        int threads = Integer.getInteger("hl7.tools.threads", Runtime.getRuntime().availableProcessors());
+
+        Path inputFolder = Paths.get(inputFolderName);
+        if (!Files.isDirectory(inputFolder)) {
+            System.out.println("Input folder " + inputFolderName + " not found");
+            return;
+        }
+        Path outputFolder = Paths.get(outputFolderName);
+        if (!Files.isDirectory(outputFolder)) {
+            System.out.println("Output folder " + outputFolderName + " not found");
+            return;
         }
 
-        int numConvertedFiles = 0;
-        try {
-            //get the list of Files in the Folder
-            File inputFolder = new File(inputFolderName);
-            if (!inputFolder.exists()) {
-                System.out.println("Intput folder " + inputFolderName + " not found");
-                return;
-            }
-            File outputFolder = new File(outputFolderName);
-            if (!outputFolder.exists()) {
-                System.out.println("Output folder " + outputFolderName + " not found");
-                return;
-            }
-            File[] fileList = inputFolder.listFiles();
-            int numFiles = fileList.length;
-            int currentFileNum = 1;
-
-            // for each file with extension .hl7 in the folder, run the HL7 to FHIR conversion
-            for (File file : fileList) {
-                String currentFileName = file.getName();
-                ++currentFileNum;
-                if (file.isFile() && getFileExtension(currentFileName).equals("hl7")) {
-                    hl7MessageString = new String(Files.readAllBytes(Paths.get(file.toString())),
-                            StandardCharsets.UTF_8);
-                    if (debug) {
-                        System.out.println("Input HL7 message:\n" + hl7MessageString);
-                    }
-
-                    if (debug) {
-                        System.out.println(
-                                "Processing file " + currentFileNum + " of " + numFiles + ": " + currentFileName);
-                    } else {
-                        System.out.println("Processing file:" + currentFileName);
-                    }
-
-                    // Convert from HL7 to JSON
-                    HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
-                    String json = ftv.convert(hl7MessageString);
-
-                    // Create a JSON object to be able to pretty print 
-                    JsonParser parser = new JsonParser();
-                    JsonObject jsonObj = parser.parse(json).getAsJsonObject();
-                    Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-                    String prettyJson = gson.toJson(jsonObj);
-                    if (debug) {
-                        System.out.println("Output JSON message:\n" + prettyJson);
-                    }
-
-                    // Write result JSON files to file system
-                    int dotLoc = file.getName().indexOf(".");
-                    String fileName = file.getName().substring(0, dotLoc);
-                    String fileOut = outputFolder + File.separator + fileName + ".json";
-                    BufferedWriter writer = new BufferedWriter(new FileWriter(fileOut));
-                    writer.write(prettyJson);
-                    writer.close();
-                    ++numConvertedFiles;
-                } else if (debug) {
-                    System.out.println("Skipping file:" + currentFileName);
+        List<Path> inputFiles;
+        try (Stream<Path> files = Files.walk(inputFolder)) {
+            inputFiles = files.filter(Files::isRegularFile)
+                    .filter(file -> getFileExtension(file.getFileName().toString()).equals("hl7"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        System.out.println("Converting " + inputFiles.size() + " files with " + threads + " threads");
+
+        HL7ToFHIRConverter ftv = new HL7ToFHIRConverter();
+        ConverterOptions options = new Builder().withPrettyPrint().build();
+        FolderMessages messages = new FolderMessages(inputFiles, inputFolder, outputFolder, debug);
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        try (HL7BatchConverter batch = new HL7BatchConverter(ftv, options, threads)) {
+            batch.convert(messages, StandardCharsets.UTF_8, result -> {
+                Path outputFile = messages.outputs.poll();
+                summary.add(result);
+                if (result.isSuccess()) {
+                    write(outputFile, result.getFhirJson(), summary, debug);
+                } else {
+                    System.out.println("Failed to convert " + outputFile.getFileName() + ": " + result.getError());
                 }
+            });
+        }
+        summary.print(inputFiles.size(), messages.unreadableFiles, System.nanoTime() - start);
+    }
+
+    private static void write(Path outputFile, String json, Summary summary, boolean debug) {
+        if (debug) {
+            System.out.println("Output JSON message:\n" + json);
+        }
+        try {
+            Files.createDirectories(outputFile.getParent());
+            try (Writer writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+                writer.write(json);
             }
-        } catch (IOException | IllegalArgumentException e) {
-            e.printStackTrace();
+        } catch (IOException e) {
+            System.out.println("Failed to write " + outputFile + ": " + e);
+            summary.writeFailures++;
         }
-        System.out.println("Done! Converted " + numConvertedFiles + " files");
     }
 
     private static String getFileExtension(String fileName) {
@@ -126,4 +127,130 @@ public class FHIRConverterRunFolder {
 
     }
 
+    /**
+     * The messages of all input files in order, read from each file as they are requested. The output
+     * file of each message returned is added to outputs, so the results, which arrive in the same
+     * order, can be matched to it.
+     */
+    private static class FolderMessages implements Iterator<MessageSlice> {
+        private final Iterator<Path> files;
+        private final Path inputFolder;
+        private final Path outputFolder;
+        private final boolean debug;
+        private final Deque<Path> outputs = new ArrayDeque<>();
+        private MappedMessageSplitter splitter;
+        private Path currentFile;
+        private int fileMessageNumber;
+        private int unreadableFiles;
+
+        FolderMessages(List<Path> files, Path inputFolder, Path outputFolder, boolean debug) {
+            this.files = files.iterator();
+            this.inputFolder = inputFolder;
+            this.outputFolder = outputFolder;
+            this.debug = debug;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (splitter == null || !splitter.hasNext()) {
+                closeFile();
+                if (!files.hasNext()) {
+                    return false;
+                }
+                currentFile = files.next();
+                fileMessageNumber = 0;
+                System.out.println("Processing file: " + inputFolder.relativize(currentFile));
+                try {
+                    splitter = MappedMessageSplitter.open(currentFile);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public MessageSlice next() {
+            while (hasNext()) {
+                MessageSlice message;
+                try {
+                    message = splitter.next();
+                } catch (RuntimeException e) {
+                    fail(e);
+                    continue;
+                }
+                outputs.add(getOutputFile(++fileMessageNumber));
+                if (debug) {
+                    System.out.println("Input HL7 message:\n" + StandardCharsets.UTF_8.decode(message.getBuffer()));
+                }
+                return message;
+            }
+            throw new NoSuchElementException();
+        }
+
+        private void fail(Exception e) {
+            System.out.println("Failed to read " + currentFile + ": " + e);
+            unreadableFiles++;
+            closeFile();
+        }
+
+        // The slices are views of the mapped file, they stay valid after the channel is closed.
+        private void closeFile() {
+            if (splitter != null) {
+                try {
+                    splitter.close();
+                } catch (IOException e) {
+                    System.out.println("Failed to close " + currentFile + ": " + e);
+                }
+                splitter = null;
+            }
+        }
+
+        private Path getOutputFile(int number) {
+            Path relative = inputFolder.relativize(currentFile);
+            String fileName = relative.getFileName().toString();
+            String outputName = fileName.substring(0, fileName.lastIndexOf('.')) + "_" + number + ".json";
+            Path parent = relative.getParent();
+            return parent != null ? outputFolder.resolve(parent).resolve(outputName) : outputFolder.resolve(outputName);
+        }
+    }
+
+    private static class Summary {
+        private long[] latencies = new long[1024];
+        private int messages;
+        private int failures;
+        private int writeFailures;
+
+        void add(MessageConversionResult result) {
+            if (messages == latencies.length) {
+                latencies = Arrays.copyOf(latencies, messages * 2);
+            }
+            latencies[messages++] = result.getElapsedNanos();
+            if (!result.isSuccess()) {
+                failures++;
+            }
+        }
+
+        void print(int files, int unreadableFiles, long elapsedNanos) {
+            long[] sorted = Arrays.copyOf(latencies, messages);
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+            System.out.println("Done! Converted " + (messages - failures - writeFailures) + " of " + messages
+                    + " messages from " + files + " files in " + String.format(Locale.ROOT, "%.2f", seconds) + " s");
+            System.out.println(String.format(Locale.ROOT, "Throughput: %.1f messages/sec", messages / seconds));
+            System.out.println(String.format(Locale.ROOT, "Latency: p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    percentile(sorted, 50), percentile(sorted, 99), percentile(sorted, 100)));
+            System.out.println("Failures: " + failures + " conversion, " + writeFailures + " write, "
+                    + unreadableFiles + " unreadable files");
+        }
+
+        private static double percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(rank, 1) - 1] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
 }
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.HL7BatchConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.work.SharedFolderConverter;
+import io.github.linuxforhealth.hl7.work.SharedFolderCoordinator;
+
+/**
+ * Converts the HL7 files of a folder together with other nodes that run this tool on the same
+ * folders, for example on an NFS volume. Uses the following Java system properties:
+ * - hl7.input.folder (shared by all nodes)
+ * - hl7.output.folder (shared by all nodes, directory must exist)
+ * - hl7.work.folder (shared by all nodes, defaults to the .work subfolder of the output folder)
+ * - hl7.tools.threads (number of conversion threads, defaults to the number of processors)
+ * - hl7.tools.node (name of this node, defaults to host name and process id)
+ * - hl7.tools.lease.seconds (time after which the work of a stopped node is taken over, defaults to 60)
+ * - hl7.tools.unit.mb (size above which a file is split between nodes, defaults to 64, must be the
+ * same on all nodes)
+ *
+ * Nodes claim files, or MSH-aligned byte ranges of large files, through atomic renames in the work
+ * folder, see {@link SharedFolderCoordinator}. The bundles of each file or range are written to one
+ * .ndjson file, one per line. Each node stops when no work is left.
+ * This class uses a main() method; run as a Java application on each node.
+ */
+public class FHIRConverterSharedFolder {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String inputFolderName = System.getProperty("hl7.input.folder");
+        if (inputFolderName == null) {
+            System.out.println("Java property hl7.input.folder not found");
+            return;
+        }
+        String outputFolderName = System.getProperty("hl7.output.folder");
+        if (outputFolderName == null) {
+            System.out.println("Java property hl7.output.folder not found");
+            return;
+        }
+        Path inputFolder = Paths.get(inputFolderName);
+        if (!Files.isDirectory(inputFolder)) {
+            System.out.println("Input folder " + inputFolderName + " not found");
+            return;
+        }
+        Path outputFolder = Paths.get(outputFolderName);
+        if (!Files.isDirectory(outputFolder)) {
+            System.out.println("Output folder " + outputFolderName + " not found");
+            return;
+        }
+        String workFolderName = System.getProperty("hl7.work.folder");
+        Path workFolder = workFolderName != null ? Paths.get(workFolderName) : outputFolder.resolve(".work");
+        int threads = Integer.getInteger("hl7.tools.threads", Runtime.getRuntime().availableProcessors());
+        String nodeId = System.getProperty("hl7.tools.node", getDefaultNodeId());
+        Duration leaseDuration = Duration.ofSeconds(Integer.getInteger("hl7.tools.lease.seconds", 60));
+        long maxUnitBytes = Integer.getInteger("hl7.tools.unit.mb", 64) * 1024L * 1024L;
+
+        System.out.println("Node " + nodeId + " converting " + inputFolder + " with " + threads + " threads");
+        AtomicLong failures = new AtomicLong();
+        long start = System.nanoTime();
+        long converted;
+        try (HL7BatchConverter batch = new HL7BatchConverter(new HL7ToFHIRConverter(),
+                ConverterOptions.SIMPLE_OPTIONS, threads);
+                SharedFolderCoordinator coordinator = new SharedFolderCoordinator(inputFolder, workFolder, nodeId,
+                        leaseDuration)) {
+            converted = new SharedFolderConverter(coordinator, batch, outputFolder, maxUnitBytes)
+                    .run(StandardCharsets.UTF_8, Duration.ofSeconds(1), result -> {
+                        failures.incrementAndGet();
+                        System.out.println("Failed to convert message at byte " + result.getOffset() + ": "
+                                + result.getError());
+                    });
+        }
+        System.out.println(String.format("Done! Node %s converted %d messages, %d failed, in %d ms", nodeId,
+                converted - failures.get(), failures.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+    }
+
+    private static String getDefaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.github.linuxforhealth.hl7.message.HL7MessageModel;
+import io.github.linuxforhealth.hl7.resource.ResourceReader;
+import io.github.linuxforhealth.hl7.resource.TemplateAnalysis;
+import io.github.linuxforhealth.hl7.resource.TemplateAnalyzer;
+
+/**
+ * Prints the analysis of each supported message template, see TemplateAnalyzer, using the
+ * configuration found through the hl7converter.config.home Java system property like the
+ * converter does.
+ *
+ * This class uses a main() method; run as a Java application.
+ */
+public class FHIRConverterTemplateAnalysis {
+
+    public static void main(String[] args) {
+        ResourceReader reader = ResourceReader.getInstance();
+        TemplateAnalyzer analyzer = new TemplateAnalyzer(reader);
+        Map<String, HL7MessageModel> templates = new TreeMap<>(reader.getMessageTemplates());
+        int unreachable = 0;
+        for (HL7MessageModel template : templates.values()) {
+            TemplateAnalysis analysis = analyzer.analyze(template);
+            unreachable += analysis.getUnreachableExpressions().size();
+            System.out.println(analysis);
+            System.out.println("----------------");
+        }
+        System.out.println(templates.size() + " templates, " + unreachable + " unreachable expressions");
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * (C) Copyright IBM Corp. 2021
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.github.linuxforhealth.hl7.message.tools;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.github.linuxforhealth.hl7.ConverterOptions;
+import io.github.linuxforhealth.hl7.ConverterOptions.Builder;
+import io.github.linuxforhealth.hl7.HL7BatchFileConverter;
+import io.github.linuxforhealth.hl7.HL7ToFHIRConverter;
+import io.github.linuxforhealth.hl7.work.SpoolFolderConverter;
+
+/**
+ * Watches a spool folder and converts each HL7 file as soon as it lands, using the following Java
+ * system properties:
+ * - hl7.input.folder (the spool folder, must exist)
+ * - hl7.output.folder (directory must exist, files will be overwritten if they exist)
+ * - hl7.tools.threads (number of files converted at a time, defaults to the number of processors)
+ *
+ * Files with the .hl7 extension are claimed through an atomic rename into the .processing subfolder,
+ * converted to name.json, or name_1.json, name_2.json and so on for a file with several messages, and
+ * moved to the done or error subfolder, see {@link SpoolFolderConverter}. Files left in .processing by
+ * a stopped run are converted again on start.
+ * This class uses a main() method; run as a Java application, stop it with Ctrl-C.
+ */
+public class FHIRConverterWatchFolder {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String inputFolderName = System.getProperty("hl7.input.folder");
+        if (inputFolderName == null) {
+            System.out.println("Java property hl7.input.folder not found");
+            return;
+        }
+        String outputFolderName = System.getProperty("hl7.output.folder");
+        if (outputFolderName == null) {
+            System.out.println("Java property hl7.output.folder not found");
+            return;
+        }
+        int threads = Integer.getInteger("hl7.tools.threads", Runtime.getRuntime().availableProcessors());
+
+        Path spoolFolder = Paths.get(inputFolderName);
+        if (!Files.isDirectory(spoolFolder)) {
+            System.out.println("Input folder " + inputFolderName + " not found");
+            return;
+        }
+        Path outputFolder = Paths.get(outputFolderName);
+        if (!Files.isDirectory(outputFolder)) {
+            System.out.println("Output folder " + outputFolderName + " not found");
+            return;
+        }
+
+        ConverterOptions options = new Builder().withPrettyPrint().build();
+        SpoolFolderConverter converter = new SpoolFolderConverter(spoolFolder, outputFolder,
+                new HL7BatchFileConverter(new HL7ToFHIRConverter(), options), StandardCharsets.UTF_8);
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        CountDownLatch watching = new CountDownLatch(1);
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                // The watch loop submits to the workers, it must return before they are shut down.
+                mainThread.interrupt();
+                try {
+                    watching.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                stop(workers);
+            }));
+            System.out.println("Watching " + spoolFolder + " with " + threads + " threads");
+            try {
+                converter.watch(watchService, workers);
+            } finally {
+                watching.countDown();
+            }
+        }
+        stop(workers);
+    }
+
+    private static void stop(ExecutorService workers) {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}